@@ -1,95 +1,104 @@
 package lawnbway.jcrawler;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import lawnbway.jcrawler.util.URLUtil;
 
 /**
- * AuthorityCheckerSingleton is a singleton that stores a compiled pattern of authority URL
- * for regex matching. It is used to verify if a certain URL address is hosted by the
- * same network as the one specified by <tt>authorityUrl</tt>.
- * 
- * 
+ * AuthorityCheckerSingleton is a singleton that stores the AuthorityScope of the current crawl.
+ * It is used to verify if a certain URL address is hosted by the same network as the one
+ * specified by <tt>authorityUrl</tt>, or by any of the seed authorities of the scope.
+ *
+ * <p>The scope is immutable and is swapped as a whole through a volatile field, so the checks
+ * do not need any locking and can run on all crawling threads at once with no contention.
+ * CrawlManager also hands the scope of each crawl to its Frontier directly, so several crawls
+ * with different scopes do not need to share this global.</p>
+ *
  * enum type fields are compile time constants and are constructed when the type is referenced for the
  * first time. Therefore multiple instantiations are not possible.
+ *
+ * @see AuthorityScope
  */
 public enum AuthorityCheckerSingleton {
 	INSTANCE;
-	
-	private volatile String authorityUrl;
-	private static volatile Pattern hostPattern;
-	
+
+	private volatile AuthorityScope scope;
+
 	/**
 	 * Returns <tt>true</tt> if the specified URL is hosted by the same <tt>authorityUrl</tt>
-	 * 
+	 *
 	 * @param urlToCheck
-	 * 		  URL address that will be compared against the authority pattern.
+	 * 		  URL address that will be compared against the authority scope.
 	 * @return <tt>true</tt> if the specified URL is hosted by the same <tt>authorityUrl</tt>
 	 */
-	public synchronized boolean isSameAuthority(String urlToCheck) {
-		if (URLUtil.isValidUrl(urlToCheck)) {
-			Matcher m = hostPattern.matcher(urlToCheck);
-			return m.find();
-		}
-		else {
-			return false;
-		}		
+	public boolean isSameAuthority(String urlToCheck) {
+		AuthorityScope current = scope;
+		return current != null && current.contains(urlToCheck);
 	}
-	
+
 	/**
 	 * Returns <tt>true</tt> if the specified URL is not hosted by the same <tt>authorityUrl</tt>.
-	 * 
+	 *
 	 * @param urlToCheck
-	 * 		  URL address that will be compared against the authority pattern.
+	 * 		  URL address that will be compared against the authority scope.
 	 * @return <tt>true</tt> if the specified URL is not hosted by the same <tt>authorityUrl</tt>
 	 */
-	public synchronized boolean isNotSameAuthority(String urlToCheck) {
+	public boolean isNotSameAuthority(String urlToCheck) {
 		return !isSameAuthority(urlToCheck);
 	}
-	
-	/**
-	 * Compiles regex pattern from <tt>authorityUrl</tt>. 
-	 */
-	private void compilePattern() {
-		StringBuilder sb = new StringBuilder();
-		String patternStart = "https?:\\/\\/(www\\.)?";
-		String patternEnd = "\\b[-a-zA-Z0-9@:%_\\+.~#?&//=]*";
-		sb.append(patternStart);
-		sb.append(authorityUrl);
-		sb.append(patternEnd);
-		String regex = sb.toString();
-		hostPattern = Pattern.compile(regex);
-	}
-	
+
 	/**
-	 * Sets <tt>authorityUrl</tt> to a provided <tt>url</tt>, given that
-	 * it is a valid URL. Calls <tt>compilePattern()</tt>.
-	 * 
+	 * Sets the scope to the authority of a provided <tt>url</tt>, given that
+	 * it is a valid URL.
+	 *
 	 * @param url
 	 * 		  authority URL that is will be compared against other addresses.
 	 */
-	public synchronized void setAuthorityUrl(String url) {
+	public void setAuthorityUrl(String url) {
 		if (URLUtil.isValidUrl(url)) {
-			authorityUrl = URLUtil.getAuthority(url);
-			compilePattern();
+			scope = AuthorityScope.of(url);
 		}
 		else {
 			System.out.println("ERROR! Provided authority URL is invalid.");
 			System.exit(1);
 		}
 	}
-	
+
+	/**
+	 * Sets the scope, which may contain multiple seed authorities.
+	 *
+	 * @param scope
+	 *        the authority scope of the current crawl
+	 */
+	public void setAuthorityScope(AuthorityScope scope) {
+		this.scope = scope;
+	}
+
+	/**
+	 * Gets the scope of the current crawl.
+	 *
+	 * @return the authority scope, or null if it is not set
+	 */
+	public AuthorityScope getAuthorityScope() {
+		return scope;
+	}
+
+	/**
+	 * Clears the scope, so that no URL is of the same authority.
+	 */
+	public void reset() {
+		scope = null;
+	}
+
 	/**
-	 * Returns <tt>authorityUrl</tt>.
-	 * 
+	 * Returns <tt>authorityUrl</tt>, which is the first authority of the scope.
+	 *
 	 * @return <tt>authorityUrl</tt>
 	 */
 	public String getAuthorityUrl() {
-		if(authorityUrl != null) {
-			return authorityUrl;
+		AuthorityScope current = scope;
+		if(current != null) {
+			return current.getAuthorities().get(0);
 		}
 		System.out.println("ERROR! Set the authority before using AuthorityChecker.");
 		return null;
 	}
-}
\ No newline at end of file
+}
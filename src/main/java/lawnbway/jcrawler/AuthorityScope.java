@@ -0,0 +1,117 @@
+package lawnbway.jcrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import lawnbway.jcrawler.util.ParsedURL;
+import lawnbway.jcrawler.util.URLUtil;
+
+/**
+ * AuthorityScope is an immutable set of authorities (host names without the leading www.)
+ * that a crawl is allowed to visit. A URL is in scope if its host is equal to one of the
+ * authorities, with or without www., or, if subdomains are allowed, ends with
+ * <tt>.authority</tt>.
+ *
+ * <p>Since the scope never changes once created, it can be read by any number of
+ * threads with no locking. Hosts are compared in place within the URL string,
+ * without regex and without extracting the host.</p>
+ *
+ * @see AuthorityCheckerSingleton
+ */
+public final class AuthorityScope {
+
+	private final String[] authorities;
+	private final String[] wwwAuthorities;
+	private final String[] suffixes;  // null if subdomains are not allowed
+
+	/**
+	 * Creates a scope from the authorities of the seed URLs.
+	 *
+	 * @param seedUrls    valid URL addresses the crawl starts from
+	 * @param allowSubdomains    true to also allow any subdomain of the seed authorities
+	 * @throws IllegalArgumentException if a seed URL is invalid or there are no seeds
+	 */
+	public AuthorityScope(Collection<String> seedUrls, boolean allowSubdomains) {
+		Set<String> unique = new LinkedHashSet<String>();
+		for (String url : seedUrls) {
+			if (URLUtil.isInvalidUrl(url))
+				throw new IllegalArgumentException("Invalid seed URL: " + url);
+			unique.add(URLUtil.getAuthority(url));
+		}
+		if (unique.isEmpty())
+			throw new IllegalArgumentException("At least one seed URL is required");
+
+		authorities = unique.toArray(new String[unique.size()]);
+		wwwAuthorities = new String[authorities.length];
+		suffixes = allowSubdomains ? new String[authorities.length] : null;
+		for (int i = 0; i < authorities.length; i++) {
+			wwwAuthorities[i] = "www." + authorities[i];
+			if (allowSubdomains)
+				suffixes[i] = "." + authorities[i];
+		}
+	}
+
+	/**
+	 * Creates a scope limited to the authorities of the seed URLs, without subdomains.
+	 *
+	 * @param seedUrls    valid URL addresses the crawl starts from
+	 * @return the scope of the seed URLs
+	 */
+	public static AuthorityScope of(String... seedUrls) {
+		return new AuthorityScope(Arrays.asList(seedUrls), false);
+	}
+
+	/**
+	 * Returns true if the URL is valid and hosted by one of the authorities of this scope.
+	 *
+	 * @param url    URL address to check
+	 * @return true if the URL is in scope
+	 */
+	public boolean contains(String url) {
+		ParsedURL parsed = URLUtil.parse(url);
+		return parsed != null && contains(parsed);
+	}
+
+	/**
+	 * Returns true if the parsed URL is hosted by one of the authorities of this scope.
+	 *
+	 * @param url    parsed URL address to check
+	 * @return true if the URL is in scope
+	 */
+	public boolean contains(ParsedURL url) {
+		for (int i = 0; i < authorities.length; i++) {
+			if (url.hostEquals(authorities[i]) || url.hostEquals(wwwAuthorities[i])
+					|| suffixes != null && url.hostEndsWith(suffixes[i]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the authorities of this scope, in the order of the seed URLs.
+	 *
+	 * @return unmodifiable list of authorities
+	 */
+	public List<String> getAuthorities() {
+		return Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(authorities)));
+	}
+
+	/**
+	 * Returns true if subdomains of the authorities are in scope.
+	 *
+	 * @return true if subdomains are allowed
+	 */
+	public boolean allowsSubdomains() {
+		return suffixes != null;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(authorities) + (suffixes != null ? " and subdomains" : "");
+	}
+}
@@ -0,0 +1,142 @@
+package lawnbway.jcrawler;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lawnbway.jcrawler.util.BloomFilter;
+import lawnbway.jcrawler.util.URLFingerprint;
+
+/**
+ * BloomFilteredVisitedSet puts a Bloom filter in front of another VisitedSet.
+ * Most links found on a page are navigation links that were seen before, but the
+ * ones that were not seen are rejected by the filter without touching the exact set,
+ * so the exact set is only consulted for URLs the filter reports as possibly present.
+ * 
+ * <p>The exact set may be omitted for very large crawls. The filter alone then
+ * decides, so a small fraction of new URLs (the false positive rate) is treated as
+ * visited and skipped, in exchange for a fixed memory footprint of about 10 bits per
+ * expected page at a 1% false positive rate.</p>
+ * 
+ * @see BloomFilter
+ * @see VisitedSet
+ */
+public class BloomFilteredVisitedSet implements VisitedSet {
+	
+	private static final int LOCK_STRIPES = 64; // must be a power of two
+	private final BloomFilter filter;
+	private final VisitedSet exact;
+	private final Object[] locks;
+	private final AtomicInteger size = new AtomicInteger();
+	
+	/**
+	 * Creates a Bloom filter sized for the expected number of pages in front of the exact set.
+	 * 
+	 * @param expectedPages    expected number of visited URLs
+	 * @param fpp    false positive probability of the filter
+	 * @param exact    the exact set, or null to rely on the filter alone
+	 */
+	public BloomFilteredVisitedSet(long expectedPages, double fpp, VisitedSet exact) {
+		this.filter = new BloomFilter(expectedPages, fpp);
+		this.exact = exact;
+		this.locks = new Object[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++)
+			locks[i] = new Object();
+	}
+
+	@Override
+	public boolean add(String url) {
+		long fingerprint = URLFingerprint.of(url);
+		if (exact != null) {
+			filter.put(fingerprint);
+			return exact.add(url);
+		}
+		// the same URL always maps to the same lock, which keeps the claim atomic
+		synchronized (locks[(int) fingerprint & (LOCK_STRIPES - 1)]) {
+			if (filter.put(fingerprint)) {
+				size.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public boolean contains(String url) {
+		if (!filter.mightContain(URLFingerprint.of(url)))
+			return false;
+		return exact == null || exact.contains(url);
+	}
+
+	@Override
+	public int size() {
+		return exact != null ? exact.size() : size.get();
+	}
+	
+	/**
+	 * Copies the bits of the filter and takes a snapshot of the exact set, if any.
+	 * 
+	 * @throws UnsupportedOperationException if the exact set cannot be saved in a checkpoint
+	 */
+	@Override
+	public Snapshot snapshot() {
+		final long[] bits = filter.copyBits();
+		final int copiedSize = size.get();
+		final Snapshot exactSnapshot = exact != null ? exact.snapshot() : null;
+		final long bitSize = filter.bitSize();
+		final int hashCount = filter.hashCount();
+		return out -> {
+			out.writeLong(bitSize);
+			out.writeInt(hashCount);
+			for (long word : bits)
+				out.writeLong(word);
+			out.writeInt(copiedSize);
+			out.writeBoolean(exactSnapshot != null);
+			if (exactSnapshot != null)
+				exactSnapshot.writeTo(out);
+		};
+	}
+	
+	/**
+	 * Restores the bits of a filter of the same size, and the exact set, if any.
+	 * 
+	 * @throws IOException if the snapshot is of a filter of another size, or of a set with another exact set
+	 */
+	@Override
+	public void restore(DataInput in) throws IOException {
+		if (in.readLong() != filter.bitSize() || in.readInt() != filter.hashCount())
+			throw new IOException("The checkpoint has a Bloom filter of another size");
+		long[] bits = new long[(int) (filter.bitSize() / 64)];
+		for (int i = 0; i < bits.length; i++)
+			bits[i] = in.readLong();
+		filter.restoreBits(bits);
+		size.addAndGet(in.readInt());
+		if (in.readBoolean() != (exact != null))
+			throw new IOException("The checkpoint has a Bloom filter " + (exact != null ? "without" : "with") + " an exact set");
+		if (exact != null)
+			exact.restore(in);
+	}
+	
+	/**
+	 * Gets the fraction of the filter bits that are set.
+	 * 
+	 * @return fill ratio from 0 to 1
+	 * 
+	 * @see BloomFilter#fillRatio()
+	 */
+	public double fillRatio() {
+		return filter.fillRatio();
+	}
+	
+	/**
+	 * Estimates the current false positive probability of the filter.
+	 * 
+	 * @return estimated false positive probability
+	 * 
+	 * @see BloomFilter#expectedFpp()
+	 */
+	public double expectedFpp() {
+		return filter.expectedFpp();
+	}
+}
@@ -0,0 +1,388 @@
+package lawnbway.jcrawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+/**
+ * Checkpoint is a saved state of a crawl, from which <tt>CrawlManager.resume</tt>
+ * continues the crawl where it stopped: the seed URLs and the terms of the search,
+ * the results found so far, the seen set and the queue of the frontier and its counters.
+ *
+ * <p>Checkpoints are written to numbered subdirectories of a checkpoint directory,
+ * <tt>checkpoint-000001</tt> and so on. A checkpoint is written to a temporary
+ * directory first and renamed once all its files are on disk, so the directory
+ * with the highest number always holds a complete checkpoint, even if the JVM dies
+ * while the next one is written. A checkpoint consists of three binary files:</p>
+ * <ul>
+ * <li><tt>crawl.bin</tt>: the search, the results and the counters of the frontier</li>
+ * <li><tt>visited.bin</tt>: the seen set, in the format of its <tt>VisitedSet.Snapshot</tt></li>
+ * <li><tt>queue.bin</tt>: the queued links, in the format of the SpillingFrontierQueue,
+ * starting with the links that were handed out but not crawled yet</li>
+ * </ul>
+ *
+ * @see CrawlManager#resume(Path)
+ * @see CrawlConfig.Builder#checkpoint(Path, int)
+ */
+public final class Checkpoint {
+
+	static final String PREFIX = "checkpoint-";
+	static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final int MAGIC = 0x4a43524b; // "JCRK"
+	private static final int VERSION = 2;	// 2: the number of trapped links is one of the counters of the frontier
+	private static final String CRAWL_FILE = "crawl.bin";
+	private static final String VISITED_FILE = "visited.bin";
+	private static final String QUEUE_FILE = "queue.bin";
+	private static final int BUFFER_BYTES = 1024 * 1024;
+
+	private final Path directory;
+	private final long createdMillis;
+	private final List<String> seedUrls;
+	private final KeywordMatcher terms;
+	private final boolean stopAtFirstHit;
+	private final List<WordSearchResult> results;
+	private final long[] frontierCounters;
+	private final long queuedCount;
+	private final String seenSetType;
+
+	Checkpoint(Path directory, long createdMillis, List<String> seedUrls, KeywordMatcher terms, boolean stopAtFirstHit,
+			List<WordSearchResult> results, long[] frontierCounters, long queuedCount, String seenSetType) {
+		this.directory = directory;
+		this.createdMillis = createdMillis;
+		this.seedUrls = Collections.unmodifiableList(new ArrayList<String>(seedUrls));
+		this.terms = terms;
+		this.stopAtFirstHit = stopAtFirstHit;
+		this.results = Collections.unmodifiableList(new ArrayList<WordSearchResult>(results));
+		this.frontierCounters = frontierCounters;
+		this.queuedCount = queuedCount;
+		this.seenSetType = seenSetType;
+	}
+
+	/**
+	 * Reads the latest complete checkpoint of a checkpoint directory.
+	 *
+	 * @param checkpointDirectory    the directory given to <tt>CrawlConfig.Builder.checkpoint</tt>
+	 * @return the latest checkpoint
+	 * @throws NoSuchFileException if there is no complete checkpoint in the directory
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	public static Checkpoint latest(Path checkpointDirectory) throws IOException {
+		long number = latestNumber(checkpointDirectory);
+		if (number == 0)
+			throw new NoSuchFileException(checkpointDirectory.toString(), null, "No checkpoint to resume from");
+		Path directory = checkpointDirectory.resolve(name(number));
+		try (DataInputStream in = open(directory.resolve(CRAWL_FILE))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(directory + " is not a checkpoint of this version of the crawler");
+			long createdMillis = in.readLong();
+			List<String> seedUrls = readStrings(in);
+			List<String> termList = readStrings(in);
+			boolean ignoreCase = in.readBoolean();
+			boolean wholeWord = in.readBoolean();
+			boolean stopAtFirstHit = in.readBoolean();
+			long[] counters = new long[in.readInt()];
+			for (int i = 0; i < counters.length; i++)
+				counters[i] = in.readLong();
+			long queuedCount = in.readLong();
+			String seenSetType = in.readUTF();
+			List<WordSearchResult> results = new ArrayList<WordSearchResult>();
+			for (int i = in.readInt(); i > 0; i--) {
+				WordSearchResult result = new WordSearchResult(in.readBoolean(), in.readBoolean(), in.readUTF());
+				for (int term = in.readInt(); term > 0; term--) {
+					String hitTerm = in.readUTF();
+					for (int hit = in.readInt(); hit > 0; hit--)
+						result.addHit(hitTerm, in.readInt());
+				}
+				results.add(result);
+			}
+			return new Checkpoint(directory, createdMillis, seedUrls, new KeywordMatcher(termList, ignoreCase, wholeWord),
+					stopAtFirstHit, results, counters, queuedCount, seenSetType);
+		}
+	}
+
+	/**
+	 * Restores the seen set and the queue of a new frontier. The seen set of the
+	 * frontier must be of the kind of the one the checkpoint was taken from.
+	 *
+	 * @param frontier    the frontier of the crawl that resumes
+	 * @throws IOException if the checkpoint cannot be read or is of another kind of seen set
+	 */
+	void restoreFrontier(Frontier frontier) throws IOException {
+		if (!seenSetType.equals(frontier.seenSetType()))
+			throw new IOException("The checkpoint has a " + seenSetType + ", not a " + frontier.seenSetType());
+		try (DataInputStream in = open(directory.resolve(VISITED_FILE))) {
+			frontier.restoreSeen(in);
+		}
+		try (FileChannel in = FileChannel.open(directory.resolve(QUEUE_FILE), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			buffer.flip();
+			long restored = 0;
+			while (true) {
+				FrontierEntry entry = FrontierEntry.readFrom(buffer);
+				if (entry != null) {
+					frontier.restoreEntry(entry);
+					restored++;
+					continue;
+				}
+				buffer.compact();
+				if (!buffer.hasRemaining()) { // an entry longer than the buffer
+					buffer.flip();
+					buffer = ByteBuffer.allocateDirect(2 * buffer.capacity()).put(buffer);
+				}
+				int read = in.read(buffer);
+				buffer.flip();
+				if (read < 0)
+					break;
+			}
+			if (restored != queuedCount || buffer.hasRemaining())
+				throw new IOException("The queue of " + directory + " is truncated");
+		}
+	}
+
+	/**
+	 * Restores the counters of the frontier, once the frontier was prepared for the crawl.
+	 *
+	 * @param frontier    the frontier of the crawl that resumes
+	 */
+	void restoreCounters(Frontier frontier) {
+		frontier.restoreCounters(frontierCounters);
+	}
+
+	/**
+	 * Writes the files of the checkpoint into its directory.
+	 *
+	 * @param seen    snapshot of the seen set
+	 * @param queue    snapshot of the queue
+	 * @return the number of bytes written
+	 * @throws IOException if a file cannot be written
+	 */
+	long write(VisitedSet.Snapshot seen, QueueSnapshot queue) throws IOException {
+		try (FileChannel channel = create(directory.resolve(CRAWL_FILE))) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(createdMillis);
+			writeStrings(out, seedUrls);
+			writeStrings(out, terms.getTerms());
+			out.writeBoolean(terms.isIgnoreCase());
+			out.writeBoolean(terms.isWholeWord());
+			out.writeBoolean(stopAtFirstHit);
+			out.writeInt(frontierCounters.length);
+			for (long counter : frontierCounters)
+				out.writeLong(counter);
+			out.writeLong(queuedCount);
+			out.writeUTF(seenSetType);
+			out.writeInt(results.size());
+			for (WordSearchResult result : results) {
+				out.writeBoolean(result.isSuccessful());
+				out.writeBoolean(result.errorOccured());
+				out.writeUTF(result.getCurrentUrl());
+				out.writeInt(result.getHits().size());
+				for (Map.Entry<String, List<Integer>> hits : result.getHits().entrySet()) {
+					out.writeUTF(hits.getKey());
+					out.writeInt(hits.getValue().size());
+					for (int position : hits.getValue())
+						out.writeInt(position);
+				}
+			}
+			out.flush();
+			channel.force(true);
+		}
+		try (FileChannel channel = create(directory.resolve(VISITED_FILE))) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			seen.writeTo(out);
+			out.flush();
+			channel.force(true);
+		}
+		try (FileChannel channel = create(directory.resolve(QUEUE_FILE))) {
+			queue.writeTo(channel);
+			channel.force(true);
+		}
+		long bytes = 0;
+		for (String file : new String[] { CRAWL_FILE, VISITED_FILE, QUEUE_FILE })
+			bytes += Files.size(directory.resolve(file));
+		return bytes;
+	}
+
+	/**
+	 * Gets the directory of this checkpoint.
+	 *
+	 * @return the numbered subdirectory of the checkpoint directory
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Gets the time the crawl was paused for this checkpoint.
+	 *
+	 * @return the time in milliseconds since the epoch
+	 */
+	public long getCreatedMillis() {
+		return createdMillis;
+	}
+
+	/**
+	 * Gets the seed URLs of the crawl.
+	 *
+	 * @return the seed URLs
+	 */
+	public List<String> getSeedUrls() {
+		return seedUrls;
+	}
+
+	/**
+	 * Gets the terms of the search, with their options.
+	 *
+	 * @return the terms of the search
+	 */
+	public KeywordMatcher getTerms() {
+		return terms;
+	}
+
+	/**
+	 * Returns true if the crawl ends at the first page where a term is found.
+	 *
+	 * @return true for a search of a single word
+	 */
+	public boolean isStopAtFirstHit() {
+		return stopAtFirstHit;
+	}
+
+	/**
+	 * Gets the results of the pages where a term was found before the checkpoint.
+	 *
+	 * @return the results found so far
+	 */
+	public List<WordSearchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Gets the number of pages that were crawled before the checkpoint.
+	 *
+	 * @return the number of crawled pages
+	 */
+	public long getPagesCrawled() {
+		return frontierCounters[0];
+	}
+
+	/**
+	 * Gets the number of links that were waiting to be crawled.
+	 *
+	 * @return the number of queued links
+	 */
+	public long getQueuedCount() {
+		return queuedCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d page(s) crawled, %d link(s) queued, %d result(s)", directory.getFileName(),
+				getPagesCrawled(), queuedCount, results.size());
+	}
+
+	/**
+	 * Renames the temporary directory of a checkpoint to the directory of the checkpoint.
+	 *
+	 * @param temporary    the temporary directory, with the files of the checkpoint
+	 * @param directory    the directory of the checkpoint
+	 * @throws IOException if the directory cannot be renamed
+	 */
+	static void commit(Path temporary, Path directory) throws IOException {
+		Files.move(temporary, directory, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Gets the number of the latest complete checkpoint of a checkpoint directory.
+	 *
+	 * @param checkpointDirectory    the checkpoint directory
+	 * @return the number of the latest checkpoint, or 0 if there is none
+	 * @throws IOException if the directory cannot be listed
+	 */
+	static long latestNumber(Path checkpointDirectory) throws IOException {
+		long latest = 0;
+		if (!Files.isDirectory(checkpointDirectory))
+			return latest;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(checkpointDirectory, PREFIX + "*")) {
+			for (Path entry : entries) {
+				String name = entry.getFileName().toString();
+				if (name.endsWith(TEMPORARY_SUFFIX))
+					continue;
+				try {
+					latest = Math.max(latest, Long.parseLong(name.substring(PREFIX.length())));
+				} catch (NumberFormatException e) {
+					// not a checkpoint
+				}
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * Gets the name of the directory of a checkpoint.
+	 *
+	 * @param number    the number of the checkpoint
+	 * @return the name of the directory
+	 */
+	static String name(long number) {
+		return String.format("%s%06d", PREFIX, number);
+	}
+
+	/**
+	 * Deletes a directory of a checkpoint with its files.
+	 *
+	 * @param directory    the directory of the checkpoint
+	 * @throws IOException if a file cannot be deleted
+	 */
+	static void delete(Path directory) throws IOException {
+		if (!Files.isDirectory(directory))
+			return;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files)
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	private static FileChannel create(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+	}
+
+	private static DataInputStream open(Path file) throws IOException {
+		InputStream in = Files.newInputStream(file);
+		return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings)
+			out.writeUTF(string);
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> strings = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			strings.add(in.readUTF());
+		return strings;
+	}
+}
@@ -0,0 +1,139 @@
+package lawnbway.jcrawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+/**
+ * CheckpointWriter takes the checkpoints of a crawl. The crawl is only paused while
+ * the state of the crawl is copied in memory; the files are written by a thread of
+ * the writer while the crawl goes on. Only one checkpoint is written at a time: the
+ * next one waits until the previous one is on disk, and once a checkpoint is complete,
+ * the older ones are deleted.
+ *
+ * @see Checkpoint
+ */
+final class CheckpointWriter implements Closeable {
+
+	private final Path directory;
+	private final ExecutorService executor;
+	private long number;
+	private Future<?> lastWrite;
+
+	/**
+	 * Creates a writer of the checkpoints of a crawl. The numbers of its checkpoints
+	 * follow the ones already in the directory, e.g. of the crawl that is resumed.
+	 *
+	 * @param directory    the checkpoint directory
+	 * @throws IOException if the directory cannot be created
+	 */
+	CheckpointWriter(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.number = Checkpoint.latestNumber(directory);
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "checkpoint-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Takes a checkpoint of the crawl. Must be called while no crawl job runs, so
+	 * that the frontier does not change; the links handed out by the frontier but
+	 * not crawled yet are given as pending, and are the first links of the queue
+	 * of the checkpoint.
+	 *
+	 * @param seedUrls    the seed URLs of the crawl
+	 * @param terms    the terms of the search
+	 * @param stopAtFirstHit    whether the crawl ends at the first hit
+	 * @param results    the results found so far
+	 * @param frontier    the frontier of the crawl
+	 * @param pending    links handed out by the frontier that were not crawled
+	 * @return the time the crawl was paused, in milliseconds
+	 * @throws IOException if the previous checkpoint could not be written, or the queue cannot be copied
+	 */
+	long write(List<String> seedUrls, KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results,
+			Frontier frontier, Collection<FrontierEntry> pending) throws IOException {
+		awaitLastWrite();
+		long start = System.nanoTime();
+		long created = System.currentTimeMillis();
+		final long current = ++number;
+		final Path temporary = directory.resolve(Checkpoint.name(current) + Checkpoint.TEMPORARY_SUFFIX);
+		Checkpoint.delete(temporary);	// left over by a crawl that died while writing it
+		Files.createDirectory(temporary);
+
+		long[] counters = frontier.counters();
+		counters[0] -= pending.size();	// the pending links are crawled again
+		final VisitedSet.Snapshot seen = frontier.snapshotSeen();
+		final QueueSnapshot queue = frontier.snapshotQueue(temporary).prependedWith(pending);
+		final Checkpoint checkpoint = new Checkpoint(temporary, created, seedUrls, terms, stopAtFirstHit,
+				new ArrayList<WordSearchResult>(results), counters, queue.size(), frontier.seenSetType());
+		final long pauseMillis = (System.nanoTime() - start) / 1000000;
+
+		lastWrite = executor.submit(() -> {
+			long writeStart = System.nanoTime();
+			long bytes;
+			try {
+				bytes = checkpoint.write(seen, queue);
+			} finally {
+				queue.release();
+			}
+			Checkpoint.commit(temporary, directory.resolve(Checkpoint.name(current)));
+			for (long older = current - 1; older > 0; older--) {
+				Path olderDirectory = directory.resolve(Checkpoint.name(older));
+				if (!Files.exists(olderDirectory))
+					break;
+				Checkpoint.delete(olderDirectory);
+			}
+			System.out.println(String.format("**Checkpoint** %s: %d page(s) crawled, %d link(s) queued; "
+					+ "crawl paused %d ms, written in %d ms, %d KB", Checkpoint.name(current), counters[0], queue.size(),
+					pauseMillis, (System.nanoTime() - writeStart) / 1000000, bytes >> 10));
+			return null;
+		});
+		return pauseMillis;
+	}
+
+	/**
+	 * Waits until the last checkpoint is on disk.
+	 *
+	 * @throws IOException if the last checkpoint could not be written
+	 */
+	void awaitLastWrite() throws IOException {
+		if (lastWrite == null)
+			return;
+		try {
+			lastWrite.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing a checkpoint", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Checkpoint could not be written", e.getCause());
+		} finally {
+			lastWrite = null;
+		}
+	}
+
+	/**
+	 * Waits until the last checkpoint is on disk and stops the thread of the writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			awaitLastWrite();
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package lawnbway.jcrawler;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConcurrentVisitedSet is the default VisitedSet that stores the full URL strings
+ * in a set backed by ConcurrentHashMap. It is exact, but each entry costs the
+ * string itself and a hash map node, which adds up on multi-million page crawls.
+ * 
+ * @see VisitedSet
+ * @see FingerprintVisitedSet
+ */
+public class ConcurrentVisitedSet implements VisitedSet {
+	
+	private final Set<String> urls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	@Override
+	public boolean add(String url) {
+		return urls.add(url);
+	}
+
+	@Override
+	public boolean contains(String url) {
+		return urls.contains(url);
+	}
+
+	@Override
+	public int size() {
+		return urls.size();
+	}
+
+	/**
+	 * Copies the references to the URL strings, which are immutable.
+	 */
+	@Override
+	public Snapshot snapshot() {
+		final String[] copy = urls.toArray(new String[0]);
+		return out -> {
+			out.writeInt(copy.length);
+			for (String url : copy) {
+				byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		};
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		int count = in.readInt();
+		byte[] bytes = new byte[256];
+		for (int i = 0; i < count; i++) {
+			int length = in.readInt();
+			if (length > bytes.length)
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			in.readFully(bytes, 0, length);
+			urls.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package lawnbway.jcrawler;
+
+/**
+ * ConsoleCrawlListener prints the events of the crawl jobs on the standard output,
+ * a line per event, the way the crawler always did. It is the listener of a crawl
+ * unless the CrawlConfig is quiet.
+ *
+ * <p>Every line is a call to the synchronized <tt>System.out.println</tt>, so the
+ * crawl jobs of a large concurrent crawl wait for each other to print. Such crawls
+ * are better quiet, with a JsonLinesCrawlListener if the events are needed.</p>
+ *
+ * @see CrawlListener
+ * @see CrawlConfig.Builder#quiet(boolean)
+ */
+public final class ConsoleCrawlListener implements CrawlListener {
+
+	/** The listener that prints on the standard output. */
+	public static final ConsoleCrawlListener INSTANCE = new ConsoleCrawlListener();
+
+	private ConsoleCrawlListener() {
+	}
+
+	/**
+	 * Prints the pages received with status 200.
+	 */
+	@Override
+	public void pageFetched(String url, int statusCode) {
+		if (statusCode == 200)
+			System.out.println("**Visiting** Received web page at " + url);
+	}
+
+	@Override
+	public void pageReused(String url, boolean notModified) {
+		System.out.println((notModified ? "**Cached** Not modified since the last crawl: "
+				: "**Cached** Unchanged since the last crawl: ") + url);
+	}
+
+	@Override
+	public void pageSkipped(String url, String reason) {
+		System.out.println(String.format("**Skipped** %s: %s", url, reason));
+	}
+
+	@Override
+	public void linksFound(String url, int count) {
+		System.out.println("Found (" + count + ") links");
+	}
+
+	@Override
+	public void hitFound(WordSearchResult result) {
+		System.out.println(String.format("**Hit** %d hit(s) of %d term(s) at %s", result.getHitCount(),
+				result.getHits().size(), result.getCurrentUrl()));
+	}
+
+	@Override
+	public void error(String url, Throwable error) {
+		System.out.println(String.format("ERROR! Can't crawl %s: %s", url, error));
+	}
+}
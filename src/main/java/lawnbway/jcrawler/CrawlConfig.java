@@ -0,0 +1,849 @@
+package lawnbway.jcrawler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * CrawlConfig holds the settings of the crawls of a CrawlManager or
+ * a CrawlManagerConcurrent:
+ *
+ * <ul>
+ * <li>the page budget and the depth limit</li>
+ * <li>the frontier: its ordering, the disk it spills to and its checkpoints</li>
+ * <li>the number of threads of every stage of the pipeline</li>
+ * <li>the fetcher and its limits</li>
+ * <li>the politeness rules and robots.txt</li>
+ * <li>the response cache, and the detection of duplicates and URL traps</li>
+ * <li>the way the documents are read</li>
+ * <li>how often the metrics of a crawl are printed, and where its events go</li>
+ * </ul>
+ *
+ * <p>A CrawlConfig is immutable and is created with a Builder. Every setting
+ * has a default, so only the settings that differ need to be set:</p>
+ *
+ * <pre>
+ * CrawlConfig config = CrawlConfig.builder()
+ *         .maxPagesToSearch(10000)
+ *         .executorMode(ExecutorMode.VIRTUAL_THREADS)
+ *         .fetchThreads(500)
+ *         .build();
+ * </pre>
+ *
+ * <p>CrawlManager only uses the settings of a single-threaded crawl: the page
+ * budget, the depth limit, the frontier, the fetcher, the parse mode, the user
+ * agents, robots.txt, the response cache, duplicate and trap detection, the
+ * metrics and the events.</p>
+ *
+ * @see CrawlManager
+ * @see CrawlManagerConcurrent
+ */
+public final class CrawlConfig {
+
+	private final int maxPagesToSearch;
+	private final int maxDepth;
+	private final FrontierOrdering frontierOrdering;
+	private final Path spillDirectory;
+	private final int frontierMemoryLimit;
+	private final Path checkpointDirectory;
+	private final int checkpointInterval;
+	private final ExecutorMode executorMode;
+	private final int fetchThreads;
+	private final int parseThreads;
+	private final int analyzeThreads;
+	private final int stageQueueCapacity;
+	private final FetcherType fetcherType;
+	private final Duration fetchTimeout;
+	private final int maxBodySize;
+	private final double requestsPerSecond;
+	private final int burst;
+	private final int maxConnectionsPerHost;
+	private final ParseMode parseMode;
+	private final int userAgentSwitchProbability;
+	private final String robotsProductToken;
+	private final Duration robotsTtl;
+	private final Path responseCacheDirectory;
+	private final int duplicateDistance;
+	private final int trapPatternBudget;
+	private final Duration metricsInterval;
+	private final boolean quiet;
+	private final Path eventLog;
+
+	private CrawlConfig(Builder builder) {
+		this.maxPagesToSearch = builder.maxPagesToSearch;
+		this.maxDepth = builder.maxDepth;
+		this.frontierOrdering = builder.frontierOrdering;
+		this.spillDirectory = builder.spillDirectory;
+		this.frontierMemoryLimit = builder.frontierMemoryLimit;
+		this.checkpointDirectory = builder.checkpointDirectory;
+		this.checkpointInterval = builder.checkpointInterval;
+		this.executorMode = builder.executorMode;
+		this.fetchThreads = builder.fetchThreads;
+		this.parseThreads = builder.parseThreads;
+		this.analyzeThreads = builder.analyzeThreads;
+		this.stageQueueCapacity = builder.stageQueueCapacity;
+		this.fetcherType = builder.fetcherType;
+		this.fetchTimeout = builder.fetchTimeout;
+		this.maxBodySize = builder.maxBodySize;
+		this.requestsPerSecond = builder.requestsPerSecond;
+		this.burst = builder.burst;
+		this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+		this.parseMode = builder.parseMode;
+		this.userAgentSwitchProbability = builder.userAgentSwitchProbability;
+		this.robotsProductToken = builder.robotsProductToken;
+		this.robotsTtl = builder.robotsTtl;
+		this.responseCacheDirectory = builder.responseCacheDirectory;
+		this.duplicateDistance = builder.duplicateDistance;
+		this.metricsInterval = builder.metricsInterval;
+		this.trapPatternBudget = builder.trapPatternBudget;
+		this.quiet = builder.quiet;
+		this.eventLog = builder.eventLog;
+	}
+
+	/**
+	 * Creates a builder with the default settings.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Creates an empty frontier with the configured ordering and depth limit,
+	 * and with a TrapDetector if traps are detected. 
+	 * If the frontier spills to disk, its queue is a SpillingFrontierQueue
+	 * in a new temporary directory under the spill directory, which is deleted
+	 * when the frontier is closed.
+	 *
+	 * @param pagesVisited    the visited set backend
+	 * @return a new frontier
+	 * @throws UncheckedIOException if the directory of the spilled links cannot be created
+	 */
+	public Frontier newFrontier(VisitedSet pagesVisited) {
+		Frontier frontier;
+		if (spillDirectory == null) {
+			frontier = new Frontier(pagesVisited, frontierOrdering);
+		} else {
+			try {
+				frontier = new Frontier(pagesVisited, frontierOrdering,
+						new SpillingFrontierQueue(spillDirectory, frontierMemoryLimit));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot create the frontier in " + spillDirectory, e);
+			}
+		}
+		frontier.setMaxDepth(maxDepth);
+		if (trapPatternBudget > 0)
+			frontier.setTrapDetector(new TrapDetector(trapPatternBudget, maxPagesToSearch));
+		return frontier;
+	}
+
+	/**
+	 * Creates a fetcher of the configured type, with the configured timeout and maximum body size.
+	 *
+	 * @return a new fetcher
+	 */
+	public Fetcher newFetcher() {
+		return fetcherType.newFetcher(fetchTimeout, maxBodySize);
+	}
+
+	/**
+	 * Creates a politeness scheduler with the configured rate, burst and
+	 * connections per host. Without a limit of connections per host,
+	 * a host may take all the jobs of the crawl.
+	 *
+	 * @param maxJobs    the number of jobs of the crawl
+	 * @return a new politeness scheduler
+	 */
+	public PolitenessScheduler newPolitenessScheduler(int maxJobs) {
+		return new PolitenessScheduler(requestsPerSecond, burst,
+				maxConnectionsPerHost > 0 ? maxConnectionsPerHost : maxJobs);
+	}
+
+	/**
+	 * Creates an empty cache of robots.txt rules with the configured product
+	 * token and time to live.
+	 *
+	 * @param fetcher    the fetcher of robots.txt
+	 * @return a new robots.txt cache
+	 */
+	public RobotsCache newRobotsCache(Fetcher fetcher) {
+		return new RobotsCache(fetcher, robotsProductToken, robotsTtl);
+	}
+
+	/**
+	 * Gets the maximum number of pages to visit in a crawl.
+	 *
+	 * @return the page budget
+	 */
+	public int getMaxPagesToSearch() {
+		return maxPagesToSearch;
+	}
+
+	/**
+	 * Gets the maximum depth of a crawled page, where the seed URLs are at depth 0.
+	 *
+	 * @return the depth limit, Integer.MAX_VALUE if there is none
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Gets the order in which the frontier hands out the links.
+	 *
+	 * @return the frontier ordering
+	 */
+	public FrontierOrdering getFrontierOrdering() {
+		return frontierOrdering;
+	}
+
+	/**
+	 * Gets the directory in which the frontier spills the links that do not fit into memory.
+	 *
+	 * @return the spill directory, or null if the frontier is kept in memory
+	 */
+	public Path getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * Gets the largest number of queued links a spilling frontier keeps in memory.
+	 *
+	 * @return the number of links kept in memory
+	 */
+	public int getFrontierMemoryLimit() {
+		return frontierMemoryLimit;
+	}
+
+	/**
+	 * Gets the directory of the checkpoints of the crawls.
+	 *
+	 * @return the checkpoint directory, or null if no checkpoint is taken
+	 */
+	public Path getCheckpointDirectory() {
+		return checkpointDirectory;
+	}
+
+	/**
+	 * Gets the number of pages crawled between two checkpoints.
+	 *
+	 * @return the checkpoint interval in pages
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * Gets the executor service that runs the fetch stage.
+	 *
+	 * @return the executor mode
+	 */
+	public ExecutorMode getExecutorMode() {
+		return executorMode;
+	}
+
+	/**
+	 * Gets the maximum number of concurrent fetches.
+	 *
+	 * @return the number of fetching threads of a fixed thread pool
+	 */
+	public int getFetchThreads() {
+		return fetchThreads;
+	}
+
+	/**
+	 * Gets the number of threads that parse documents.
+	 *
+	 * @return the number of threads of the parse stage
+	 */
+	public int getParseThreads() {
+		return parseThreads;
+	}
+
+	/**
+	 * Gets the number of threads that search documents.
+	 *
+	 * @return the number of threads of the analyze stage
+	 */
+	public int getAnalyzeThreads() {
+		return analyzeThreads;
+	}
+
+	/**
+	 * Gets the number of documents that may wait in the queue of the parse and analyze stages.
+	 *
+	 * @return the queue capacity of a stage
+	 */
+	public int getStageQueueCapacity() {
+		return stageQueueCapacity;
+	}
+
+	/**
+	 * Gets the type of fetcher that sends the requests.
+	 *
+	 * @return the fetcher type
+	 */
+	public FetcherType getFetcherType() {
+		return fetcherType;
+	}
+
+	/**
+	 * Gets the timeout of every request.
+	 *
+	 * @return the fetch timeout
+	 */
+	public Duration getFetchTimeout() {
+		return fetchTimeout;
+	}
+
+	/**
+	 * Gets the maximum number of bytes read from a response.
+	 *
+	 * @return the maximum body size, 0 if there is no limit
+	 */
+	public int getMaxBodySize() {
+		return maxBodySize;
+	}
+
+	/**
+	 * Gets the maximum request rate per host.
+	 *
+	 * @return requests per second, 0 if there is no limit
+	 */
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	/**
+	 * Gets the number of requests a host may receive at once after being idle.
+	 *
+	 * @return the burst
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Gets the maximum number of concurrent fetches per host.
+	 *
+	 * @return connections per host, 0 if a host may take all the jobs of the crawl
+	 */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * Gets how the crawl jobs read the documents they fetch.
+	 *
+	 * @return the parse mode
+	 */
+	public ParseMode getParseMode() {
+		return parseMode;
+	}
+
+	/**
+	 * Gets the probability that a crawl job switches to another random user agent.
+	 *
+	 * @return the probability, in percent
+	 */
+	public int getUserAgentSwitchProbability() {
+		return userAgentSwitchProbability;
+	}
+
+	/**
+	 * Gets the product token of this crawler in robots.txt.
+	 *
+	 * @return the product token
+	 */
+	public String getRobotsProductToken() {
+		return robotsProductToken;
+	}
+
+	/**
+	 * Gets the time to live of the robots.txt rules of a website.
+	 *
+	 * @return the time to live
+	 */
+	public Duration getRobotsTtl() {
+		return robotsTtl;
+	}
+
+	/**
+	 * Gets the directory of the response cache, which keeps the pages of a crawl for the next one.
+	 *
+	 * @return the cache directory, or null if pages are not cached
+	 */
+	public Path getResponseCacheDirectory() {
+		return responseCacheDirectory;
+	}
+
+	/**
+	 * Gets the number of bits in which the fingerprints of near-duplicate pages may differ.
+	 *
+	 * @return the distance, 0 if only exact duplicates are detected, or -1 if duplicates are not detected
+	 */
+	public int getDuplicateDistance() {
+		return duplicateDistance;
+	}
+
+	/**
+	 * Gets the number of links of a pattern that are queued before its pages must have new content.
+	 *
+	 * @return the budget of a pattern, or 0 if traps are not detected
+	 */
+	public int getTrapPatternBudget() {
+		return trapPatternBudget;
+	}
+
+	/**
+	 * Gets the time between two printouts of the metrics of a crawl.
+	 *
+	 * @return the interval, or Duration.ZERO if the metrics are only printed once the crawl is over
+	 */
+	public Duration getMetricsInterval() {
+		return metricsInterval;
+	}
+
+	/**
+	 * Gets whether the crawl jobs keep their events off the standard output.
+	 *
+	 * @return true if the crawls are quiet
+	 */
+	public boolean isQuiet() {
+		return quiet;
+	}
+
+	/**
+	 * Gets the file the events of the crawl jobs are written to, as JSON lines.
+	 *
+	 * @return the event log, or null if the events are not written
+	 */
+	public Path getEventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * Returns a one-line summary of the settings.
+	 *
+	 * @return summary of the settings
+	 */
+	@Override
+	public String toString() {
+		return String.format("max pages %d, max depth %s, %s frontier%s%s, %s with %d fetch thread(s), %d parse thread(s), "
+				+ "%d analyze thread(s), stage queues of %d; %s fetcher, timeout %d ms, max body size %d; "
+				+ "%s request(s) per second per host, burst %d, %s connection(s) per host; %s parse mode, "
+				+ "user agent switch probability %d%%; robots.txt for %s, cached for %d s%s%s%s%s%s%s",
+				maxPagesToSearch, maxDepth == Integer.MAX_VALUE ? "unlimited" : String.valueOf(maxDepth), frontierOrdering,
+				spillDirectory == null ? "" : String.format(" spilling to %s beyond %d link(s)", spillDirectory, frontierMemoryLimit),
+				checkpointDirectory == null ? "" : String.format(", checkpoint to %s every %d page(s)", checkpointDirectory,
+						checkpointInterval),
+				executorMode, fetchThreads, parseThreads, analyzeThreads, stageQueueCapacity,
+				fetcherType, fetchTimeout.toMillis(), maxBodySize,
+				requestsPerSecond == 0 ? "unlimited" : String.valueOf(requestsPerSecond), burst,
+				maxConnectionsPerHost == 0 ? "unlimited" : String.valueOf(maxConnectionsPerHost),
+				parseMode, userAgentSwitchProbability, robotsProductToken, robotsTtl.getSeconds(),
+				responseCacheDirectory == null ? "" : "; response cache in " + responseCacheDirectory,
+				duplicateDistance < 0 ? "" : String.format("; duplicates within %d bit(s) skipped", duplicateDistance),
+				trapPatternBudget == 0 ? "" : String.format("; URL traps detected, %d link(s) per pattern", trapPatternBudget),
+				metricsInterval.isZero() ? "" : String.format("; metrics printed every %d ms", metricsInterval.toMillis()),
+				quiet ? "; quiet" : "", eventLog == null ? "" : "; events logged to " + eventLog);
+	}
+
+	/**
+	 * Builder of a CrawlConfig. The settings are checked by <tt>build</tt>.
+	 */
+	public static final class Builder {
+
+		private int maxPagesToSearch = 1000;
+		private int maxDepth = Integer.MAX_VALUE;
+		private FrontierOrdering frontierOrdering = FrontierOrdering.FIFO;
+		private Path spillDirectory;
+		private int frontierMemoryLimit = 100000;
+		private Path checkpointDirectory;
+		private int checkpointInterval = 10000;
+		private ExecutorMode executorMode = ExecutorMode.FIXED_THREAD_POOL;
+		private int fetchThreads = 5;
+		private int parseThreads = Runtime.getRuntime().availableProcessors();
+		private int analyzeThreads = Runtime.getRuntime().availableProcessors();
+		private int stageQueueCapacity = 64;
+		private FetcherType fetcherType = FetcherType.JSOUP;
+		private Duration fetchTimeout = Duration.ofSeconds(30);
+		private int maxBodySize = 1024 * 1024;
+		private double requestsPerSecond;
+		private int burst = 1;
+		private int maxConnectionsPerHost;
+		private ParseMode parseMode = ParseMode.DOM;
+		private int userAgentSwitchProbability = 30;
+		private String robotsProductToken = RobotsCache.DEFAULT_PRODUCT_TOKEN;
+		private Duration robotsTtl = RobotsCache.DEFAULT_TTL;
+		private Path responseCacheDirectory;
+		private int duplicateDistance = -1;
+		private int trapPatternBudget;
+		private Duration metricsInterval = Duration.ZERO;
+		private boolean quiet;
+		private Path eventLog;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets the maximum number of pages to visit in a crawl. 1000 by default.
+		 *
+		 * @param maxPagesToSearch    the page budget
+		 * @return this builder
+		 */
+		public Builder maxPagesToSearch(int maxPagesToSearch) {
+			this.maxPagesToSearch = maxPagesToSearch;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum depth of a crawled page: 0 only crawls the seed URLs,
+		 * 1 also crawls the links found on them, and so on. There is no limit by default.
+		 *
+		 * @param maxDepth    the depth limit
+		 * @return this builder
+		 */
+		public Builder maxDepth(int maxDepth) {
+			this.maxDepth = maxDepth;
+			return this;
+		}
+
+		/**
+		 * Sets the order in which the frontier hands out the links. FIFO by default.
+		 *
+		 * @param frontierOrdering    the frontier ordering
+		 * @return this builder
+		 */
+		public Builder frontierOrdering(FrontierOrdering frontierOrdering) {
+			this.frontierOrdering = frontierOrdering;
+			return this;
+		}
+
+		/**
+		 * Makes the frontier keep at most <tt>memoryLimit</tt> queued links in memory
+		 * and spill the rest to segment files in the provided directory, so that the
+		 * queue of a large crawl does not take up the heap. Only a FIFO frontier can 
+		 * spill. The frontier is kept in memory by default.
+		 *
+		 * @param directory    the directory of the segment files, or null to keep the frontier in memory
+		 * @param memoryLimit    the largest number of queued links kept in memory, 100000 by default
+		 * @return this builder
+		 *
+		 * @see SpillingFrontierQueue
+		 */
+		public Builder frontierSpill(Path directory, int memoryLimit) {
+			this.spillDirectory = directory;
+			this.frontierMemoryLimit = memoryLimit;
+			return this;
+		}
+
+		/**
+		 * Makes the crawls take a checkpoint in the provided directory every
+		 * <tt>everyPages</tt> crawled pages and at the end of the crawl, from which
+		 * <tt>CrawlManager.resume</tt> continues the crawl. No checkpoint is taken by default.
+		 *
+		 * @param directory    the checkpoint directory, or null for no checkpoints
+		 * @param everyPages    the number of pages crawled between two checkpoints, 10000 by default
+		 * @return this builder
+		 *
+		 * @see Checkpoint
+		 */
+		public Builder checkpoint(Path directory, int everyPages) {
+			this.checkpointDirectory = directory;
+			this.checkpointInterval = everyPages;
+			return this;
+		}
+
+		/**
+		 * Sets the executor service that runs the fetch stage. FIXED_THREAD_POOL by default.
+		 * VIRTUAL_THREADS falls back to a fixed thread pool on runtimes without virtual threads.
+		 *
+		 * @param executorMode    the executor mode
+		 * @return this builder
+		 */
+		public Builder executorMode(ExecutorMode executorMode) {
+			this.executorMode = executorMode;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of concurrent fetches, i.e. the number of fetching
+		 * threads of a fixed thread pool. 5 by default.
+		 *
+		 * @param fetchThreads    the number of concurrent fetches
+		 * @return this builder
+		 */
+		public Builder fetchThreads(int fetchThreads) {
+			this.fetchThreads = fetchThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the number of threads that parse documents. A thread per core by default.
+		 *
+		 * @param parseThreads    the number of threads of the parse stage
+		 * @return this builder
+		 */
+		public Builder parseThreads(int parseThreads) {
+			this.parseThreads = parseThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the number of threads that search documents. A thread per core by default.
+		 *
+		 * @param analyzeThreads    the number of threads of the analyze stage
+		 * @return this builder
+		 */
+		public Builder analyzeThreads(int analyzeThreads) {
+			this.analyzeThreads = analyzeThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the number of documents that may wait in the queue of the parse
+		 * and analyze stages. 64 by default.
+		 *
+		 * @param stageQueueCapacity    the queue capacity of a stage
+		 * @return this builder
+		 */
+		public Builder stageQueueCapacity(int stageQueueCapacity) {
+			this.stageQueueCapacity = stageQueueCapacity;
+			return this;
+		}
+
+		/**
+		 * Sets the type of fetcher that sends the requests. JSOUP by default.
+		 *
+		 * @param fetcherType    the fetcher type
+		 * @return this builder
+		 */
+		public Builder fetcherType(FetcherType fetcherType) {
+			this.fetcherType = fetcherType;
+			return this;
+		}
+
+		/**
+		 * Sets the timeout of every request. 30 seconds by default.
+		 *
+		 * @param fetchTimeout    the fetch timeout
+		 * @return this builder
+		 */
+		public Builder fetchTimeout(Duration fetchTimeout) {
+			this.fetchTimeout = fetchTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of bytes read from a response; a longer response
+		 * is truncated. 1 MB by default.
+		 *
+		 * @param maxBodySize    the maximum body size, or 0 for no limit
+		 * @return this builder
+		 */
+		public Builder maxBodySize(int maxBodySize) {
+			this.maxBodySize = maxBodySize;
+			return this;
+		}
+
+		/**
+		 * Sets the politeness rules of CrawlManagerConcurrent. By default, there is no
+		 * rate limit, apart from the Crawl-delay of robots.txt, and a host may take
+		 * all the jobs of the crawl.
+		 *
+		 * @param requestsPerSecond    maximum request rate per host, or 0 for no limit
+		 * @param burst    number of requests a host may receive at once after being idle
+		 * @param maxConnectionsPerHost    maximum number of concurrent fetches per host, or 0 for no limit
+		 * @return this builder
+		 *
+		 * @see PolitenessScheduler
+		 */
+		public Builder politeness(double requestsPerSecond, int burst, int maxConnectionsPerHost) {
+			this.requestsPerSecond = requestsPerSecond;
+			this.burst = burst;
+			this.maxConnectionsPerHost = maxConnectionsPerHost;
+			return this;
+		}
+
+		/**
+		 * Sets how the crawl jobs read the documents they fetch. ParseMode.DOM by default.
+		 *
+		 * @param parseMode    the parse mode
+		 * @return this builder
+		 */
+		public Builder parseMode(ParseMode parseMode) {
+			this.parseMode = parseMode;
+			return this;
+		}
+
+		/**
+		 * Sets the probability that a crawl job switches to another random user agent. 30 by default.
+		 *
+		 * @param userAgentSwitchProbability    the probability, in percent
+		 * @return this builder
+		 */
+		public Builder userAgentSwitchProbability(int userAgentSwitchProbability) {
+			this.userAgentSwitchProbability = userAgentSwitchProbability;
+			return this;
+		}
+
+		/**
+		 * Sets the product token of this crawler, which selects its group of rules 
+		 * in robots.txt, and the time after which robots.txt of a website is fetched 
+		 * again. By default, <tt>jcrawler</tt> and 24 hours.
+		 *
+		 * @param productToken    the product token, e.g. <tt>jcrawler</tt>
+		 * @param ttl    the time to live of the robots.txt rules of a website
+		 * @return this builder
+		 *
+		 * @see RobotsCache
+		 */
+		public Builder robots(String productToken, Duration ttl) {
+			this.robotsProductToken = productToken;
+			this.robotsTtl = ttl;
+			return this;
+		}
+
+		/**
+		 * Makes the crawls keep the pages they fetch in a response cache in the provided
+		 * directory, so that the next crawl of the same websites fetches them with 
+		 * conditional requests and does not parse the pages that did not change. 
+		 * Pages are not cached by default.
+		 *
+		 * @param directory    the cache directory, or null to not cache pages
+		 * @return this builder
+		 *
+		 * @see ResponseCache
+		 */
+		public Builder responseCache(Path directory) {
+			this.responseCacheDirectory = directory;
+			return this;
+		}
+
+		/**
+		 * Makes the crawls skip the pages whose text is a copy of a page crawled before,
+		 * such as the same page under another session ID: their links are not followed and
+		 * their text is not searched. Pages whose SimHash fingerprints differ in at most
+		 * <tt>maxDistance</tt> bits are near-duplicates; 3 is a good start for web pages.
+		 * Duplicates are not detected by default.
+		 *
+		 * @param maxDistance    from 0, for exact duplicates only, to DuplicateIndex.MAX_DISTANCE,
+		 *        or -1 to not detect duplicates
+		 * @return this builder
+		 *
+		 * @see DuplicateIndex
+		 */
+		public Builder duplicateDetection(int maxDistance) {
+			this.duplicateDistance = maxDistance;
+			return this;
+		}
+
+		/**
+		 * Makes the frontier detect URL traps, such as calendars and query strings that
+		 * grow on every page: the links that are traps on their own are dropped, and a pattern
+		 * of links may queue <tt>patternBudget</tt> links before its pages must have new content.
+		 * Traps are not detected by default.
+		 *
+		 * @param patternBudget    the budget of a pattern, e.g. TrapDetector.DEFAULT_PATTERN_BUDGET,
+		 *        or 0 to not detect traps
+		 * @return this builder
+		 *
+		 * @see TrapDetector
+		 */
+		public Builder trapDetection(int patternBudget) {
+			this.trapPatternBudget = patternBudget;
+			return this;
+		}
+
+		/**
+		 * Makes the crawls print their metrics every <tt>interval</tt> while they run: 
+		 * the counters, the gauges and the latency histograms of the stages of the 
+		 * crawl jobs. The metrics are recorded and printed once the crawl is over anyway.
+		 * By default, they are not printed while the crawl runs.
+		 *
+		 * @param interval    the time between two printouts, or Duration.ZERO for none
+		 * @return this builder
+		 *
+		 * @see CrawlMetrics
+		 */
+		public Builder metricsInterval(Duration interval) {
+			this.metricsInterval = interval;
+			return this;
+		}
+
+		/**
+		 * Makes the crawl jobs keep their events off the standard output: the pages
+		 * they visit, the links they find, their hits and their errors. The summary of
+		 * a crawl is printed anyway. The events are printed by default.
+		 *
+		 * @param quiet    true to not print the events
+		 * @return this builder
+		 *
+		 * @see ConsoleCrawlListener
+		 */
+		public Builder quiet(boolean quiet) {
+			this.quiet = quiet;
+			return this;
+		}
+
+		/**
+		 * Makes the crawls append the events of their crawl jobs to a file, as JSON
+		 * lines, which are written by a thread of their own. The events are not
+		 * written by default.
+		 *
+		 * @param eventLog    the file, or null for none
+		 * @return this builder
+		 *
+		 * @see JsonLinesCrawlListener
+		 */
+		public Builder eventLog(Path eventLog) {
+			this.eventLog = eventLog;
+			return this;
+		}
+
+		/**
+		 * Checks the settings and creates the CrawlConfig.
+		 *
+		 * @return the CrawlConfig
+		 * @throws IllegalArgumentException if a setting is out of range
+		 */
+		public CrawlConfig build() {
+			if (maxPagesToSearch < 1)
+				throw new IllegalArgumentException("At least one page must be searched");
+			if (maxDepth < 0)
+				throw new IllegalArgumentException("The maximum depth must not be negative");
+			if (fetchThreads < 1)
+				throw new IllegalArgumentException("At least one fetch must be allowed in flight");
+			if (parseThreads < 1 || analyzeThreads < 1 || stageQueueCapacity < 1)
+				throw new IllegalArgumentException("Invalid pipeline sizes");
+			if (spillDirectory != null && (frontierOrdering != FrontierOrdering.FIFO || frontierMemoryLimit < 1))
+				throw new IllegalArgumentException("Only a FIFO frontier with room for a link in memory can spill");
+			if (checkpointInterval < 1)
+				throw new IllegalArgumentException("At least one page must be crawled between two checkpoints");
+			if (frontierOrdering == null || executorMode == null || fetcherType == null || parseMode == null)
+				throw new IllegalArgumentException("The frontier ordering, executor mode, fetcher type and parse mode must be set");
+			if (fetchTimeout == null || fetchTimeout.isNegative() || fetchTimeout.isZero())
+				throw new IllegalArgumentException("The fetch timeout must be positive");
+			if (maxBodySize < 0)
+				throw new IllegalArgumentException("The maximum body size must not be negative");
+			if (requestsPerSecond < 0 || burst < 1 || maxConnectionsPerHost < 0)
+				throw new IllegalArgumentException("Invalid politeness settings");
+			if (userAgentSwitchProbability < 0 || userAgentSwitchProbability > 100)
+				throw new IllegalArgumentException("The user agent switch probability must be between 0 and 100");
+			if (robotsProductToken == null || robotsProductToken.isEmpty() || robotsTtl == null
+					|| robotsTtl.isNegative() || robotsTtl.isZero())
+				throw new IllegalArgumentException("Invalid robots.txt settings");
+			if (duplicateDistance < -1 || duplicateDistance > DuplicateIndex.MAX_DISTANCE)
+				throw new IllegalArgumentException("The distance of near-duplicates must be between -1 and "
+						+ DuplicateIndex.MAX_DISTANCE);
+			if (trapPatternBudget < 0)
+				throw new IllegalArgumentException("The budget of a pattern must not be negative");
+			if (metricsInterval == null || metricsInterval.isNegative())
+				throw new IllegalArgumentException("The metrics interval must not be negative");
+			return new CrawlConfig(this);
+		}
+	}
+}
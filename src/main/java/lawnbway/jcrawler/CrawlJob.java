@@ -3,16 +3,21 @@ package lawnbway.jcrawler;
 import java.util.LinkedList;
 import java.util.List;
 
+import lawnbway.jcrawler.util.CancellationToken;
+
 /**
  * Crawljob is an abstract class that represents the state
  * of an arbitrary job performed at a specified URL address.
  */
 public abstract class CrawlJob {
 	
+	private static final Fetcher DEFAULT_FETCHER = new JsoupFetcher();
 	protected String url;
 	volatile protected CrawlResult crawlResult;
 	protected List<String> links = new LinkedList<String>(); // list of URLs that are gathered from the current URL
 	protected String usrAgent;
+	private Fetcher fetcher = DEFAULT_FETCHER;
+	protected CancellationToken cancellation = new CancellationToken();
 
 	
 	public abstract CrawlResult crawl(String url);
@@ -63,6 +68,36 @@ public abstract class CrawlJob {
 		return usrAgent;
 	}
 	
+	/**
+	 * Sets the fetcher that sends the HTTP requests of this crawl job.
+	 * JsoupFetcher is used by default.
+	 * 
+	 * @param fetcher    the fetcher to use
+	 */
+	public void setFetcher(Fetcher fetcher) {
+		this.fetcher = fetcher;
+	}
+	
+	/**
+	 * Gets the fetcher that sends the HTTP requests of this crawl job.
+	 * 
+	 * @return the fetcher
+	 */
+	protected Fetcher getFetcher() {
+		return fetcher;
+	}
+	
+	/**
+	 * Sets the cancellation token of the crawl this job belongs to. Once the token
+	 * is cancelled, the job aborts its fetch and stops reading the document.
+	 * By default, every job has a token of its own.
+	 * 
+	 * @param cancellation    the cancellation token of the crawl
+	 */
+	public void setCancellationToken(CancellationToken cancellation) {
+		this.cancellation = cancellation;
+	}
+	
 	protected abstract void switchUsrAgent();
 	public abstract List<String> getLinks();
 
@@ -0,0 +1,129 @@
+package lawnbway.jcrawler;
+
+import java.util.List;
+
+/**
+ * CrawlListener is told what the crawl jobs do with their pages: the responses they
+ * receive, the pages they take from the response cache or skip, the links they find,
+ * the hits of the search terms and the errors. Every method does nothing by default,
+ * so a listener only overrides the events it is interested in.
+ *
+ * <p>The crawl jobs call their listener on their own threads, many at once, so a
+ * listener must be thread-safe, and should return quickly: a slow listener slows down
+ * the crawl. JsonLinesCrawlListener hands its events over to a thread of its own.</p>
+ *
+ * @see ConsoleCrawlListener
+ * @see JsonLinesCrawlListener
+ * @see CrawlManager#setCrawlListener(CrawlListener)
+ */
+public interface CrawlListener {
+
+	/** A listener that ignores every event. */
+	CrawlListener QUIET = new CrawlListener() {
+	};
+
+	/**
+	 * Called when a response is received, whatever its status.
+	 *
+	 * @param url    the URL address of the page
+	 * @param statusCode    the HTTP status code of the response
+	 */
+	default void pageFetched(String url, int statusCode) {
+	}
+
+	/**
+	 * Called when the links and the text of a page are taken from the response cache.
+	 *
+	 * @param url    the URL address of the page
+	 * @param notModified    true if the server answered 304 Not Modified, false if the page has the same body
+	 */
+	default void pageReused(String url, boolean notModified) {
+	}
+
+	/**
+	 * Called when a page is neither searched nor followed, although it was received.
+	 *
+	 * @param url    the URL address of the page
+	 * @param reason    why the page was skipped, e.g. that it is not HTML
+	 */
+	default void pageSkipped(String url, String reason) {
+	}
+
+	/**
+	 * Called when the links of a page were found.
+	 *
+	 * @param url    the URL address of the page
+	 * @param count    the number of links on the page
+	 */
+	default void linksFound(String url, int count) {
+	}
+
+	/**
+	 * Called when a page was searched and any of the terms was found on it.
+	 *
+	 * @param result    the result of the search, with the hits of every term
+	 */
+	default void hitFound(WordSearchResult result) {
+	}
+
+	/**
+	 * Called when a page could not be fetched or processed.
+	 *
+	 * @param url    the URL address of the page
+	 * @param error    what went wrong
+	 */
+	default void error(String url, Throwable error) {
+	}
+
+	/**
+	 * Gets a listener that passes every event on to several listeners, in order.
+	 *
+	 * @param listeners    the listeners
+	 * @return QUIET if there is no listener, the listener itself if there is one,
+	 *         or a listener that tells all of them
+	 */
+	static CrawlListener of(List<CrawlListener> listeners) {
+		if (listeners.isEmpty())
+			return QUIET;
+		if (listeners.size() == 1)
+			return listeners.get(0);
+		final CrawlListener[] all = listeners.toArray(new CrawlListener[0]);
+		return new CrawlListener() {
+			@Override
+			public void pageFetched(String url, int statusCode) {
+				for (CrawlListener listener : all)
+					listener.pageFetched(url, statusCode);
+			}
+
+			@Override
+			public void pageReused(String url, boolean notModified) {
+				for (CrawlListener listener : all)
+					listener.pageReused(url, notModified);
+			}
+
+			@Override
+			public void pageSkipped(String url, String reason) {
+				for (CrawlListener listener : all)
+					listener.pageSkipped(url, reason);
+			}
+
+			@Override
+			public void linksFound(String url, int count) {
+				for (CrawlListener listener : all)
+					listener.linksFound(url, count);
+			}
+
+			@Override
+			public void hitFound(WordSearchResult result) {
+				for (CrawlListener listener : all)
+					listener.hitFound(result);
+			}
+
+			@Override
+			public void error(String url, Throwable error) {
+				for (CrawlListener listener : all)
+					listener.error(url, error);
+			}
+		};
+	}
+}
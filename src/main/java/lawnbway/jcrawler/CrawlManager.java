@@ -1,53 +1,189 @@
 package lawnbway.jcrawler;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lawnbway.jcrawler.util.*;
 
 /**
- * CrawlManager a class that stores and updates a set
+ * CrawlManager a class that stores and updates a frontier, that is a set
  * of visited links and a queue of links that are not yet visited.
  * Its main function is to send CrawlJobs to individual webpages 
  * and, if the webpage is an HTML document, look for a specified word
  * on that webpage. Under normal conditions (when no exceptions were thrown),
  * the search terminates when one of the following conditions it true:
  * 
- * 1) size of pagesVisited set is bigger than MAX_PAGES_TO_SEARCH
+ * 1) size of the visited set is bigger than the page budget (MAX_PAGES_TO_SEARCH by default)
  * 2) specified word is found by a dispatched CrawlJob
+ * 3) there are no unvisited links left in the frontier
+ * 
+ * <p>The page budget, the depth limit and the other settings of the crawls 
+ * may be given in a CrawlConfig.</p>
+ * 
+ * <p>If the CrawlConfig has a checkpoint directory, the crawl is paused every
+ * few thousand pages to take a checkpoint, and once more when it ends. 
+ * <tt>resume</tt> continues a crawl from its latest checkpoint.</p>
+ * 
+ * <p>If the CrawlConfig has a response cache directory, the pages of a crawl are
+ * kept for the next one, which fetches them with conditional requests.</p>
+ * 
+ * <p>If the CrawlConfig detects duplicates, the pages that copy a page crawled
+ * before are neither searched nor followed. The duplicate index is not part of
+ * the checkpoints, so a resumed crawl starts with an empty one.</p>
+ * 
+ * <p>Every crawl records its CrawlMetrics, which are printed once it is over, and
+ * every few seconds while it runs if the CrawlConfig says so.</p>
+ * 
+ * <p>The crawl jobs tell a CrawlListener what they do with every page. They print
+ * it on the standard output unless the CrawlConfig is quiet, and write it to the
+ * event log of the CrawlConfig as JSON lines, if there is one.</p>
+ * 
+ * @see Frontier
+ * @see CrawlConfig
+ * @see Checkpoint
+ * @see ResponseCache
+ * @see DuplicateIndex
+ * @see CrawlMetrics
+ * @see CrawlListener
  */
 public class CrawlManager {
 	
 	private static final int MAX_PAGES_TO_SEARCH = 500;
-	protected Set<String> pagesVisited = new HashSet<String>();
-	protected Deque<String> pagesToVisit = new LinkedList<String>();
+	/** How often a thread that waits for robots.txt checks whether the crawl was cancelled, in milliseconds. */
+	private static final long ROBOTS_WAIT_MILLIS = 100;
+	protected Frontier frontier;
+	protected AuthorityScope authorityScope;
+	protected LinkScorer linkScorer;
+	protected ParseMode parseMode;
+	protected Fetcher fetcher;
+	protected RobotsCache robots;
+	protected int maxPagesToSearch;
+	protected int userAgentSwitchProbability;
+	protected volatile CancellationToken cancellation = new CancellationToken();
+	private CancellationToken nextCancellation;
 	protected StringBuffer words;
+	protected List<String> seedUrls = Collections.emptyList();
+	protected Path checkpointDirectory;
+	protected int checkpointInterval;
+	protected Path responseCacheDirectory;
+	protected ResponseCache responseCache; // open while a crawl runs
+	protected int duplicateDistance;
+	protected DuplicateIndex duplicateIndex; // of the current or last crawl
+	protected Duration metricsInterval;
+	protected CrawlMetrics metrics; // of the current or last crawl
+	private ScheduledExecutorService metricsPrinter;
+	protected boolean quiet;
+	protected Path eventLog;
+	private CrawlListener extraListener;
+	protected CrawlListener listener = ConsoleCrawlListener.INSTANCE; // of the current or last crawl
+	private JsonLinesCrawlListener eventWriter; // open while a crawl runs
+	private CheckpointWriter checkpointWriter;
+	private long nextCheckpointAt;
 	
+	/**
+	 * Creates a CrawlManager that stores visited URLs in a ConcurrentVisitedSet.
+	 */
+	public CrawlManager() {
+		this(new ConcurrentVisitedSet());
+	}
+	
+	/**
+	 * Creates a CrawlManager that stores visited URLs in the provided set.
+	 * FingerprintVisitedSet takes a fraction of the memory on large crawls.
+	 * 
+	 * @param pagesVisited    the visited set backend
+	 * 
+	 * @see VisitedSet
+	 */
+	public CrawlManager(VisitedSet pagesVisited) {
+		this(pagesVisited, CrawlConfig.builder().maxPagesToSearch(MAX_PAGES_TO_SEARCH).build());
+	}
+	
+	/**
+	 * Creates a CrawlManager with the provided settings, that stores visited 
+	 * URLs in a ConcurrentVisitedSet.
+	 * 
+	 * @param config    the settings of the crawls
+	 * 
+	 * @see CrawlConfig
+	 */
+	public CrawlManager(CrawlConfig config) {
+		this(new ConcurrentVisitedSet(), config);
+	}
+	
+	/**
+	 * Creates a CrawlManager with the provided settings, that stores visited 
+	 * URLs in the provided set.
+	 * 
+	 * @param pagesVisited    the visited set backend
+	 * @param config    the settings of the crawls
+	 * 
+	 * @see VisitedSet
+	 * @see CrawlConfig
+	 */
+	public CrawlManager(VisitedSet pagesVisited, CrawlConfig config) {
+		this.frontier = config.newFrontier(pagesVisited);
+		this.maxPagesToSearch = config.getMaxPagesToSearch();
+		this.parseMode = config.getParseMode();
+		this.fetcher = config.newFetcher();
+		this.robots = config.newRobotsCache(this.fetcher);
+		this.frontier.setRobotsCache(this.robots);
+		this.userAgentSwitchProbability = config.getUserAgentSwitchProbability();
+		this.checkpointDirectory = config.getCheckpointDirectory();
+		this.checkpointInterval = config.getCheckpointInterval();
+		this.responseCacheDirectory = config.getResponseCacheDirectory();
+		this.duplicateDistance = config.getDuplicateDistance();
+		this.metricsInterval = config.getMetricsInterval();
+		this.quiet = config.isQuiet();
+		this.eventLog = config.getEventLog();
+	}
 
 	/**
-	 * Gets an oldest URL address from the queue of links that
-	 * were not visited.
+	 * Gets the next link from the queue of links that were not 
+	 * visited, with its depth, in the order of the frontier.
+	 * By default, the oldest link.
 	 * 
-	 * Since the links are added to pagesToVisit without verifying
-	 * whether they were visited in the past, this method ensures
-	 * that only the unvisited links are given to the new CrawlJobs.
+	 * The frontier filters the links when they are discovered,
+	 * so only the unvisited links are given to the new CrawlJobs.
 	 * 
-	 * @return next unvisited url from the queue of pages to visit
+	 * @see Frontier
+	 * 
+	 * @return next unvisited link from the queue of pages to visit, or null if there is none
 	 */
-	protected String nextUrl() {
-		
-		String nextUrl = this.pagesToVisit.removeFirst();
-		// look for a valid url that has not been visited
-		while (URLUtil.isInvalidUrl(nextUrl) || AuthorityCheckerSingleton.INSTANCE.isNotSameAuthority(nextUrl)
-				|| pagesVisited.contains(nextUrl)) {
-			nextUrl = this.pagesToVisit.removeFirst();
-		} 
-		this.pagesVisited.add(nextUrl);
-		return nextUrl;
+	protected FrontierEntry nextEntry() {
+		return this.frontier.pollEntry();
+	}
+	
+	/**
+	 * Waits while the queue of the frontier is empty, but links found during
+	 * the crawl wait for robots.txt of their website, which is fetched without
+	 * holding up the crawl jobs. Returns as soon as the crawl is cancelled.
+	 * 
+	 * @return true if there may be links in the queue, false if the crawl is over
+	 */
+	protected boolean awaitLinks() {
+		try {
+			while (!this.frontier.awaitRobots(ROBOTS_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (this.cancellation.isCancelled())
+					return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.cancellation.cancel();
+			return false;
+		}
+		return this.frontier.size() > 0;
 	}
 	
 	/**
@@ -65,55 +201,622 @@ public class CrawlManager {
 	 * @param searchWord	the word that the crawler is looking for
 	 */
 	public void search(String url, String searchWord) {
+		search(Collections.singletonList(url), searchWord);
+	}
+	
+	/**
+	 * Same as <tt>search(String, String)</tt>, but starts at several URL
+	 * addresses at once. Links under the authority of any of the seed URLs
+	 * are crawled.
+	 * 
+	 * @param seedUrls	the starting points of the search
+	 * @param searchWord	the word that the crawler is looking for
+	 */
+	public void search(List<String> seedUrls, String searchWord) {
 		
-		if(URLUtil.isInvalidUrl(url)) {
-			System.out.println(String.format("ERROR! %s is not a valid URL address", url));
-			System.exit(1);
+		List<WordSearchResult> results = searchTerms(seedUrls, KeywordMatcher.forWord(searchWord), true);
+        if(!results.isEmpty()) {
+            System.out.println(String.format("**Success** Word %s found at %s", searchWord, results.get(0).getCurrentUrl())); //current URL was here
+        }
+        printSummary();
+    }
+	
+	/**
+	 * Searches every page of the crawl for a set of terms. Unlike the search for
+	 * a single word, the crawl does not stop at the first hit: every page is scanned 
+	 * once for all the terms, and every hit of every term is recorded, until the 
+	 * maximum number of pages was visited.
+	 * 
+	 * @param url	the starting point of the search
+	 * @param terms	the terms that the crawler is looking for, with the case and whole word options
+	 * @return results of the pages where any of the terms was found, with the positions of the hits
+	 * 
+	 * @see KeywordMatcher
+	 */
+	public List<WordSearchResult> search(String url, KeywordMatcher terms) {
+		return search(Collections.singletonList(url), terms);
+	}
+	
+	/**
+	 * Same as <tt>search(String, KeywordMatcher)</tt>, but starts at several URL
+	 * addresses at once.
+	 * 
+	 * @param seedUrls	the starting points of the search
+	 * @param terms	the terms that the crawler is looking for, with the case and whole word options
+	 * @return results of the pages where any of the terms was found, with the positions of the hits
+	 */
+	public List<WordSearchResult> search(List<String> seedUrls, KeywordMatcher terms) {
+		
+		List<WordSearchResult> results = searchTerms(seedUrls, terms, false);
+		int hits = 0;
+		for (WordSearchResult result : results)
+			hits += result.getHitCount();
+		System.out.println(String.format("**Hits** %d hit(s) of %d term(s) on %d web page(s)", 
+				hits, terms.getTerms().size(), results.size()));
+		printSummary();
+		return results;
+	}
+	
+	/**
+	 * Crawls from the seed URLs and searches every page for the terms, until 
+	 * the maximum number of pages was visited, the crawl is cancelled or, 
+	 * if <tt>stopAtFirstHit</tt>, until a page contains any of the terms. 
+	 * In the latter case, the crawl is cancelled once the hit is found.
+	 * 
+	 * @param seedUrls	the starting points of the search
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether the crawl ends at the first page where a term is found
+	 * @return results of the pages where any of the terms was found
+	 */
+	protected List<WordSearchResult> searchTerms(List<String> seedUrls, KeywordMatcher terms, boolean stopAtFirstHit) {
+		
+		startCancellation();
+		prepareSearch(seedUrls, terms);
+		openResponseCache();
+		startDuplicateDetection();
+		startMetrics();
+		openCrawlListener();
+		try {
+			return crawl(terms, stopAtFirstHit, new ArrayList<WordSearchResult>());
+		} finally {
+			closeCrawlListener();
+			stopMetrics();
+			closeResponseCache();
+			closeFrontier();
 		}
-		bePolite(url);	// exclude links from robots.txt from the search
-		AuthorityCheckerSingleton.INSTANCE.setAuthorityUrl(url);
+	}
+	
+	/**
+	 * Crawls the links of the frontier, once the search is prepared, and searches 
+	 * every page for the terms. Takes the checkpoints of the crawl in between jobs, 
+	 * if there is a checkpoint directory, and a last one when the crawl ends.
+	 * 
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether the crawl ends at the first page where a term is found
+	 * @param results	the results found so far, which receives the results of the crawl
+	 * @return the results
+	 */
+	protected List<WordSearchResult> crawl(KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results) {
 		
-		JobResult overallResult = new WordSearchResult(false, false, url);
+		startCheckpoints();
+		FrontierEntry current = this.awaitLinks() ? this.nextEntry() : null;
 		
-        while (overallResult.isUnsuccessful() && this.pagesVisited.size() < MAX_PAGES_TO_SEARCH) {
-        	overallResult = dispatchSearchCrawler(url, searchWord);       
-        }
-        // close file handles in UserAgent
-        UserAgentManagerSingleton.INSTANCE.cleanup();
-        if(overallResult.isSuccessful()) {
-            System.out.println(String.format("**Success** Word %s found at %s", searchWord, overallResult.getCurrentUrl())); //current URL was here
+        while (current != null && !this.cancellation.isCancelled()) {
+        	WordSearchResult result = dispatchSearchCrawler(current, terms, stopAtFirstHit);
+        	current = null;
+        	if(result.isSuccessful()) {
+        		results.add(result);
+        		if(stopAtFirstHit) {
+        			this.cancellation.cancel();
+        			break;
+        		}
+        	}
+        	if(checkpointDue())
+        		checkpoint(terms, stopAtFirstHit, results, Collections.<FrontierEntry> emptyList());
+        	current = this.frontier.visitedCount() < this.maxPagesToSearch && this.awaitLinks() ? this.nextEntry() : null;
         }
-        System.out.println(String.format("**Done** Visited %s web page(s)", this.pagesVisited.size()));
-    }
+        // a link handed out when the crawl was cancelled is crawled once the crawl resumes
+        finishCheckpoints(terms, stopAtFirstHit, results, 
+        		current != null ? Collections.singletonList(current) : Collections.<FrontierEntry> emptyList());
+        return results;
+	}
+	
+	/**
+	 * Continues a crawl from the latest checkpoint of a checkpoint directory: the
+	 * seen set and the queue of the frontier are restored, and the crawl goes on
+	 * with the seed URLs and the terms of the checkpoint, until the page budget of
+	 * this CrawlManager is reached. The results found before the checkpoint are
+	 * part of the results. A crawl that stopped at its first hit is not continued.
+	 * 
+	 * <p>The crawl must be resumed by a new CrawlManager, with a visited set of the
+	 * kind the crawl was started with. Unless the CrawlManager has a checkpoint 
+	 * directory of its own, the resumed crawl takes its checkpoints in the directory 
+	 * it was resumed from.</p>
+	 * 
+	 * @param checkpointDirectory	the checkpoint directory of the crawl
+	 * @return results of the pages where any of the terms was found, before and after the checkpoint
+	 * @throws IOException if there is no checkpoint, or it cannot be read
+	 * 
+	 * @see Checkpoint
+	 */
+	public List<WordSearchResult> resume(Path checkpointDirectory) throws IOException {
+		
+		long start = System.nanoTime();
+		Checkpoint checkpoint = Checkpoint.latest(checkpointDirectory);
+		startCancellation();
+		checkpoint.restoreFrontier(this.frontier);
+		prepareSearch(checkpoint.getSeedUrls(), checkpoint.getTerms());	// the seed URLs were seen already
+		checkpoint.restoreCounters(this.frontier);
+		System.out.println(String.format("**Resumed** %s in %d ms", checkpoint, (System.nanoTime() - start) / 1000000));
+		
+		KeywordMatcher terms = checkpoint.getTerms();
+		List<WordSearchResult> results = new ArrayList<WordSearchResult>(checkpoint.getResults());
+		if (!checkpoint.isStopAtFirstHit() || results.isEmpty()) {
+			Path configured = this.checkpointDirectory;
+			this.checkpointDirectory = configured != null ? configured : checkpointDirectory;
+			openResponseCache();
+			startDuplicateDetection();
+			startMetrics();
+			openCrawlListener();
+			try {
+				results = crawl(terms, checkpoint.isStopAtFirstHit(), results);
+			} finally {
+				this.checkpointDirectory = configured;
+				closeCrawlListener();
+				stopMetrics();
+				closeResponseCache();
+				closeFrontier();
+			}
+		}
+		
+		if (checkpoint.isStopAtFirstHit()) {
+			if (!results.isEmpty())
+				System.out.println(String.format("**Success** Word %s found at %s", terms, results.get(0).getCurrentUrl()));
+		}
+		else {
+			int hits = 0;
+			for (WordSearchResult result : results)
+				hits += result.getHitCount();
+			System.out.println(String.format("**Hits** %d hit(s) of %d term(s) on %d web page(s)", 
+					hits, terms.getTerms().size(), results.size()));
+		}
+		printSummary();
+		return results;
+	}
+	
+	/**
+	 * Opens the checkpoint directory at the start of a crawl, if there is one.
+	 * The first checkpoint is taken <tt>checkpointInterval</tt> pages later.
+	 */
+	protected void startCheckpoints() {
+		this.checkpointWriter = null;
+		if (this.checkpointDirectory == null)
+			return;
+		try {
+			this.checkpointWriter = new CheckpointWriter(this.checkpointDirectory);
+			this.nextCheckpointAt = this.frontier.visitedCount() + this.checkpointInterval;
+		} catch (IOException e) {
+			System.out.println(String.format("ERROR! Can't open the checkpoint directory %s: %s", this.checkpointDirectory, e));
+		}
+	}
+	
+	/**
+	 * Returns true if the crawl has to be paused for a checkpoint.
+	 * 
+	 * @return true if <tt>checkpointInterval</tt> pages were crawled since the last checkpoint
+	 */
+	protected boolean checkpointDue() {
+		return this.checkpointWriter != null && this.frontier.visitedCount() >= this.nextCheckpointAt;
+	}
+	
+	/**
+	 * Takes a checkpoint of the crawl, which is written to disk while the crawl goes on. 
+	 * Must be called while no crawl job runs. If the checkpoint cannot be taken, 
+	 * the crawl goes on without checkpoints.
+	 * 
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether the crawl ends at the first page where a term is found
+	 * @param results	the results found so far
+	 * @param pending	links handed out by the frontier that were not crawled
+	 */
+	protected void checkpoint(KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results, 
+			Collection<FrontierEntry> pending) {
+		try {
+			this.checkpointWriter.write(this.seedUrls, terms, stopAtFirstHit, results, this.frontier, pending);
+			this.nextCheckpointAt = this.frontier.visitedCount() + this.checkpointInterval;
+		} catch (IOException | UnsupportedOperationException e) {
+			System.out.println("ERROR! Can't take a checkpoint, the crawl goes on without them: " + e);
+			closeCheckpoints();
+		}
+	}
+	
+	/**
+	 * Takes the last checkpoint of the crawl and waits until it is written.
+	 * 
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether the crawl ends at the first page where a term is found
+	 * @param results	the results of the crawl
+	 * @param pending	links handed out by the frontier that were not crawled
+	 */
+	protected void finishCheckpoints(KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results, 
+			Collection<FrontierEntry> pending) {
+		if (this.checkpointWriter == null)
+			return;
+		checkpoint(terms, stopAtFirstHit, results, pending);
+		closeCheckpoints();
+	}
+	
+	/**
+	 * Waits until the last checkpoint of the crawl is written, and takes no more checkpoints.
+	 */
+	protected void closeCheckpoints() {
+		CheckpointWriter writer = this.checkpointWriter;
+		this.checkpointWriter = null;
+		if (writer == null)
+			return;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			System.out.println("ERROR! Can't write the checkpoint: " + e);
+		}
+	}
+	
+	/**
+	 * Opens the response cache at the start of a crawl, if there is a cache directory.
+	 * If the cache cannot be opened, the crawl goes on without it.
+	 */
+	protected void openResponseCache() {
+		this.responseCache = null;
+		if (this.responseCacheDirectory == null)
+			return;
+		try {
+			this.responseCache = ResponseCache.open(this.responseCacheDirectory);
+			System.out.println(String.format("**Cache** %d page(s) cached in %s", this.responseCache.size(), 
+					this.responseCacheDirectory));
+		} catch (IOException e) {
+			System.out.println(String.format("ERROR! Can't open the response cache %s, the crawl goes on without it: %s", 
+					this.responseCacheDirectory, e));
+		}
+	}
+	
+	/**
+	 * Closes the response cache at the end of a crawl, and prints how many pages were reused.
+	 */
+	protected void closeResponseCache() {
+		ResponseCache cache = this.responseCache;
+		this.responseCache = null;
+		if (cache == null)
+			return;
+		try {
+			cache.close();
+		} catch (IOException e) {
+			System.out.println("ERROR! Can't compact the response cache: " + e);
+		}
+		System.out.println("**Cache** " + cache);
+	}
+	
+	/**
+	 * Releases the queue of the frontier at the end of a crawl, once its last checkpoint
+	 * was taken, so that a frontier that spills to disk deletes its files.
+	 * 
+	 * @see Frontier#close()
+	 */
+	protected void closeFrontier() {
+		try {
+			this.frontier.close();
+		} catch (IOException e) {
+			System.out.println("ERROR! Can't delete the spilled frontier: " + e);
+		}
+	}
+	
+	/**
+	 * Creates the empty duplicate index of a crawl that is about to start, 
+	 * if duplicates are detected. The pages of earlier crawls are not in the index.
+	 */
+	protected void startDuplicateDetection() {
+		this.duplicateIndex = this.duplicateDistance < 0 ? null : new DuplicateIndex(this.duplicateDistance);
+	}
+	
+	/**
+	 * Gets the duplicate index of the current crawl, or of the last one once it is over.
+	 * 
+	 * @return the duplicate index, or null if duplicates are not detected
+	 * 
+	 * @see CrawlConfig.Builder#duplicateDetection(int)
+	 */
+	public DuplicateIndex getDuplicateIndex() {
+		return this.duplicateIndex;
+	}
+	
+	/**
+	 * Creates the empty metrics of a crawl that is about to start, with the gauges 
+	 * of the frontier, and starts printing them if there is a metrics interval.
+	 */
+	protected void startMetrics() {
+		final CrawlMetrics metrics = new CrawlMetrics();
+		final Frontier frontier = this.frontier;
+		metrics.registerGauge("frontier.size", frontier::size);
+		metrics.registerGauge("links.discovered", frontier::offeredCount);
+		metrics.registerGauge("links.deduplicated", frontier::duplicateCount);
+		metrics.registerGauge("pages.visited", frontier::visitedCount);
+		this.metrics = metrics;
+		if (this.metricsInterval.isZero())
+			return;
+		this.metricsPrinter = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long millis = this.metricsInterval.toMillis();
+		this.metricsPrinter.scheduleAtFixedRate(() -> System.out.println("**Metrics** " + metrics), 
+				millis, millis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stops printing the metrics at the end of a crawl. They are printed once more by <tt>printSummary</tt>.
+	 */
+	protected void stopMetrics() {
+		ScheduledExecutorService printer = this.metricsPrinter;
+		this.metricsPrinter = null;
+		if (printer != null)
+			printer.shutdownNow();
+	}
+	
+	/**
+	 * Gets the metrics of the current crawl, or of the last one once it is over. 
+	 * They may be read while the crawl runs.
+	 * 
+	 * @return the metrics, or null before the first crawl
+	 * 
+	 * @see CrawlMetrics
+	 */
+	public CrawlMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Sets a listener that is told of the events of the crawl jobs, along with 
+	 * the standard output and the event log of the CrawlConfig. It applies to 
+	 * the crawls started after it is set.
+	 * 
+	 * @param listener	the listener, which must be thread-safe, or null for none
+	 * 
+	 * @see CrawlListener
+	 */
+	public void setCrawlListener(CrawlListener listener) {
+		this.extraListener = listener;
+	}
+	
+	/**
+	 * Combines the listeners of a crawl that is about to start: the standard output
+	 * unless the crawl is quiet, the listener that was set and the event log, if any.
+	 * The crawl goes on without the event log if it cannot be opened.
+	 */
+	protected void openCrawlListener() {
+		List<CrawlListener> listeners = new ArrayList<CrawlListener>();
+		if (!this.quiet)
+			listeners.add(ConsoleCrawlListener.INSTANCE);
+		if (this.extraListener != null)
+			listeners.add(this.extraListener);
+		if (this.eventLog != null) {
+			try {
+				this.eventWriter = JsonLinesCrawlListener.open(this.eventLog);
+				listeners.add(this.eventWriter);
+			} catch (IOException e) {
+				System.out.println(String.format("ERROR! Can't open the event log %s, the crawl goes on without it: %s", 
+						this.eventLog, e));
+			}
+		}
+		this.listener = CrawlListener.of(listeners);
+	}
+	
+	/**
+	 * Closes the event log at the end of a crawl, once the events still queued are written,
+	 * and prints how many events were written and dropped.
+	 */
+	protected void closeCrawlListener() {
+		JsonLinesCrawlListener writer = this.eventWriter;
+		this.eventWriter = null;
+		if (writer == null)
+			return;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			System.out.println("ERROR! Can't write the event log: " + e);
+		}
+		System.out.println(String.format("**Events** %s in %s", writer, this.eventLog));
+	}
+	
+	/**
+	 * Sets the cancellation token of the next crawl, so that it can be cancelled 
+	 * from another thread, or so that the caller is told when it stops at the 
+	 * first hit. The token only applies to one crawl; by default, every crawl 
+	 * has a token of its own.
+	 * 
+	 * @param cancellation	the cancellation token of the next crawl
+	 * 
+	 * @see CancellationToken
+	 */
+	public void setCancellationToken(CancellationToken cancellation) {
+		this.nextCancellation = cancellation;
+	}
+	
+	/**
+	 * Cancels the current crawl: the search returns with the results found so far,
+	 * and the crawl jobs abort their fetches and stop reading their documents.
+	 */
+	public void cancel() {
+		this.cancellation.cancel();
+	}
+	
+	/**
+	 * Sets the cancellation token of a crawl that is about to start.
+	 * 
+	 * @return the cancellation token of the crawl
+	 */
+	protected CancellationToken startCancellation() {
+		this.cancellation = this.nextCancellation != null ? this.nextCancellation : new CancellationToken();
+		this.nextCancellation = null;
+		return this.cancellation;
+	}
+	
+	/**
+	 * Prints the number of visited pages, the state of the frontier,
+	 * the duplicates found and the metrics at the end of a search.
+	 */
+	protected void printSummary() {
+        System.out.println(String.format("**Done** Visited %s web page(s)", this.frontier.visitedCount()));
+        System.out.println("**Frontier** " + this.frontier);
+        if(this.duplicateIndex != null)
+        	System.out.println("**Duplicates** " + this.duplicateIndex);
+        if(this.metrics != null)
+        	System.out.println("**Metrics** " + this.metrics);
+	}
+	
+	/**
+	 * Validates the seed URLs, sets the authority scope of the crawl,
+	 * excludes the links from robots.txt of every seed website and
+	 * pushes the seed URLs into the frontier. If the frontier orders
+	 * the links by score, they are scored for the terms of the search,
+	 * unless a LinkScorer was set.
+	 * 
+	 * @param seedUrls	the starting points of the search
+	 * @param terms	the terms that the crawler is looking for
+	 */
+	protected void prepareSearch(List<String> seedUrls, KeywordMatcher terms) {
+		
+		Set<String> roots = new LinkedHashSet<String>();
+		for (String url : seedUrls) {
+			if(URLUtil.isInvalidUrl(url)) {
+				System.out.println(String.format("ERROR! %s is not a valid URL address", url));
+				System.exit(1);
+			}
+			roots.add(URLUtil.getRootUrl(url));
+		}
+		AuthorityScope scope = this.authorityScope != null ? this.authorityScope : new AuthorityScope(seedUrls, false);
+		AuthorityCheckerSingleton.INSTANCE.setAuthorityScope(scope);
+		this.frontier.setAuthorityScope(scope);
+		
+		for (String root : roots)
+			bePolite(root);	// fetch robots.txt of the seed websites up front
+		this.frontier.setLinkScorer(this.linkScorer != null ? this.linkScorer : new KeywordLinkScorer(terms));
+		this.frontier.pushAll(seedUrls);
+		this.seedUrls = new ArrayList<String>(seedUrls);
+	}
+	
+	/**
+	 * Sets the authority scope of the following crawls, e.g. to allow subdomains
+	 * or authorities that are not among the seed URLs. By default, the scope
+	 * consists of the authorities of the seed URLs.
+	 * 
+	 * @param authorityScope	the authority scope, or null to derive it from the seed URLs
+	 */
+	public void setAuthorityScope(AuthorityScope authorityScope) {
+		this.authorityScope = authorityScope;
+	}
+	
+	/**
+	 * Sets the LinkScorer of the following crawls, used when the frontier
+	 * orders the links by score. By default, a KeywordLinkScorer for the 
+	 * terms of the crawl.
+	 * 
+	 * @param linkScorer	the link scorer, or null for the default one
+	 * 
+	 * @see FrontierOrdering#BEST_FIRST
+	 */
+	public void setLinkScorer(LinkScorer linkScorer) {
+		this.linkScorer = linkScorer;
+	}
+	
+	/**
+	 * Sets how the crawl jobs of the following crawls read the documents they fetch.
+	 * ParseMode.DOM is used by default; ParseMode.STREAMING takes far less memory
+	 * on large pages.
+	 * 
+	 * @param parseMode	the parse mode
+	 * 
+	 * @see ParseMode
+	 */
+	public void setParseMode(ParseMode parseMode) {
+		this.parseMode = parseMode;
+	}
+	
+	/**
+	 * Sets the fetcher that sends the HTTP requests of the following crawls.
+	 * By default, the fetcher is created from the CrawlConfig, which uses 
+	 * a JsoupFetcher unless told otherwise. With a non-blocking fetcher such as 
+	 * HttpClientFetcher, no thread of CrawlManagerConcurrent waits for the network:
+	 * its fetch stage only has a single thread that hands the responses over to 
+	 * the parse stage.
+	 * 
+	 * @param fetcher    the fetcher to use
+	 * 
+	 * @see Fetcher
+	 */
+	public void setFetcher(Fetcher fetcher) {
+		this.fetcher = fetcher;
+		this.robots.setFetcher(fetcher);
+	}
+	
+	/**
+	 * Sets the cache of robots.txt rules of the following crawls, e.g. to share 
+	 * it with other CrawlManagers. By default, every CrawlManager has a cache of 
+	 * its own, that fetches robots.txt with its fetcher.
+	 * 
+	 * @param robots    the robots.txt cache
+	 * 
+	 * @see RobotsCache
+	 */
+	public void setRobotsCache(RobotsCache robots) {
+		this.robots = robots;
+		this.frontier.setRobotsCache(robots);
+	}
+	
+	/**
+	 * Sets the maximum number of pages to visit in the following crawls. 
+	 * By default, the page budget of the CrawlConfig, or MAX_PAGES_TO_SEARCH.
+	 * 
+	 * @param maxPagesToSearch    the maximum number of pages to visit
+	 */
+	public void setMaxPagesToSearch(int maxPagesToSearch) {
+		this.maxPagesToSearch = maxPagesToSearch;
+	}
 	
 	/**
 	 * Dispatches a single CrawlJob to a chosen URL address to collect
 	 * all the hyperlinks and look for the search word. Since the main aim
 	 * of each CrawlJob and the crawl overall is to find the search word,
 	 * the JobResult will be unsuccessful unless the word is found.
+	 * The links found by the job are one level deeper than the page
+	 * and are scored with their anchor texts, if the frontier uses scores.
 	 * 
-	 * @param url	only used by the very first CrawlJob
-	 * @param searchWord	the word that the crawler is looking for
-	 * @return result of the call to searchForWord method in CrawlJob class
+	 * @param current	the link claimed for this CrawlJob
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether the job ends the crawl once it finds a term
+	 * @return result of the call to searchForTerms method in CrawlJob class
 	 */
-	protected JobResult dispatchSearchCrawler(String url, String searchWord) {
+	protected WordSearchResult dispatchSearchCrawler(FrontierEntry current, KeywordMatcher terms, boolean stopAtFirstHit) {
 		
-		String currentUrl;   
-        // first search only
-        if(this.pagesToVisit.isEmpty()) {
-            currentUrl = url;
-            this.pagesVisited.add(url);
-        }
-        else
-            currentUrl = this.nextUrl();
-        
+		String currentUrl = current.getUrl();
         SearchCrawlJob spider = new SearchCrawlJob();
+        spider.setFetcher(this.fetcher);
+        spider.setParseMode(this.parseMode);
+        spider.setUserAgentSwitchProbability(this.userAgentSwitchProbability);
+        spider.setCancellationToken(this.cancellation);
+        spider.setStopAtFirstHit(stopAtFirstHit);
+        spider.setCollectAnchorTexts(this.frontier.getOrdering().usesScore());
+        spider.setResponseCache(this.responseCache);
+        spider.setDuplicateIndex(this.duplicateIndex);
+        spider.setFingerprintText(this.frontier.getTrapDetector() != null);
+        spider.setMetrics(this.metrics);
+        spider.setCrawlListener(this.listener);
         CrawlResult crawlResult = spider.crawl(currentUrl);
         WordSearchResult wordSearchResult = new WordSearchResult(false, false, currentUrl); 
         
         if(crawlResult.isSuccessful())
-        	wordSearchResult = spider.searchForWord(searchWord);
-        this.pagesToVisit.addAll(spider.getLinks());
+        	wordSearchResult = spider.searchForTerms(terms);
+        this.frontier.crawled(current, spider.getTextHash());
+        this.frontier.pushAll(spider.getLinks(), spider.getAnchorTexts(), current);
         
         return wordSearchResult;
 	}
@@ -133,18 +836,17 @@ public class CrawlManager {
 	
 	
 	/**
-	 * Parses robots.txt, gets list of links that should
-	 * be excluded from the search and adds them to the
-	 * set of visited pages.
+	 * Fetches robots.txt of a seed website, unless its rules are cached, 
+	 * and prints them. The frontier only queues the links robots.txt allows.
 	 * 
 	 * @param url	address of website where this crawler will be polite
 	 * 
-	 * @see RobotsUtil
+	 * @see RobotsCache
 	 */
 	protected void bePolite(String url) {
 		
-		RobotsUtil.parse(url);
-		this.pagesVisited.addAll(RobotsUtil.getLinks());
+		System.out.println(String.format("**Robots** %s/robots.txt: %s", URLUtil.getRootUrl(url), 
+				this.robots.rulesFor(url)));
 	}
 	
 }
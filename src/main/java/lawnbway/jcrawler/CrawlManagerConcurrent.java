@@ -1,43 +1,152 @@
 package lawnbway.jcrawler;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import lawnbway.jcrawler.util.CancellationToken;
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.ParsedURL;
 import lawnbway.jcrawler.util.URLUtil;
 
 /**
  * CrawlManagerConcurrent is a version of CrawlManager that supports multithreading.
- * This class uses FixedThreadPool, that creates and reuses fixed number of threads.
- * Only N_THREAD threads exist at any point of time.
+ * Each crawl job is split into three stages, fetch, parse and analyze, which run on
+ * separate pools connected by bounded queues, so that network-bound fetching and
+ * CPU-bound parsing can be sized independently.
+ * By default, the fetch stage uses FixedThreadPool, that creates and reuses fixed number of threads.
+ * Only N_THREAD fetching threads exist at any point of time. With ExecutorMode.VIRTUAL_THREADS,
+ * every fetch runs on its own virtual thread instead, and a semaphore caps the number
+ * of fetches in flight, so thousands of blocking fetches can run at once.
+ * 
+ * <p>The crawl jobs share the frontier of the CrawlManager: each job pushes
+ * the links it discovers directly into the frontier, and the frontier hands out
+ * every URL at most once no matter how many threads use it. A PolitenessScheduler
+ * between the frontier and the fetch stage limits the request rate and the number
+ * of concurrent connections of every host.</p>
+ * 
+ * <p>The number of threads of every stage, the fetcher and the politeness rules
+ * may be given in a CrawlConfig.</p>
  * 
  * @see CrawlManager
+ * @see CrawlConfig
  */
 public class CrawlManagerConcurrent extends CrawlManager {
 
 	private static final int MAX_PAGES_TO_SEARCH = 1000;
 	private static final int N_THREAD = 5;
-	private ConcurrentLinkedQueue<String> pagesToVisit = new ConcurrentLinkedQueue<String>();
-	private JobResult overallResult;
+	private final ExecutorMode executorMode;
+	private final int maxInFlight;
+	private int maxJobs;
+	private final Semaphore fetchPermits;
+	private PolitenessScheduler scheduler;
+	private final Map<String, FrontierEntry> scheduled = new HashMap<String, FrontierEntry>(); // links in the scheduler, by URL
+	private final Set<SearchCrawlJobConcurrent> running = new HashSet<SearchCrawlJobConcurrent>(); // jobs in flight
+	private int parseThreads;
+	private int analyzeThreads;
+	private int stageQueueCapacity;
+	private PipelineStage fetchStage;
+	private PipelineStage parseStage;
+	private PipelineStage analyzeStage;
+	private volatile List<PipelineStage> stages = Collections.emptyList();
+	
+	/**
+	 * Creates a CrawlManagerConcurrent that stores visited URLs in a ConcurrentVisitedSet.
+	 */
+	public CrawlManagerConcurrent() {
+		this(new ConcurrentVisitedSet());
+	}
 	
 	/**
-	 * Almost identical to the nextUrl method in the parent class.
-	 * An override was needed since this class uses ConcurrentLinkedQueue
-	 * rather than LinkedList.
+	 * Creates a CrawlManagerConcurrent that stores visited URLs in the provided set.
 	 * 
-	 * @see CrawlManager
+	 * @param pagesVisited    the visited set backend
 	 * 
-	 * @return next unvisited url from the queue of pages to visit
+	 * @see VisitedSet
 	 */
-	protected String nextUrl(){
-		String nextUrl = this.pagesToVisit.poll();
-
-		// look for a valid url under same hostname that has not been visited
-		while (URLUtil.isInvalidUrl(nextUrl) || AuthorityCheckerSingleton.INSTANCE.isNotSameAuthority(nextUrl) 
-				|| super.pagesVisited.contains(nextUrl)) {
-			nextUrl = this.pagesToVisit.poll();	
-		}
-		this.pagesVisited.add(nextUrl);
-		return nextUrl;
+	public CrawlManagerConcurrent(VisitedSet pagesVisited) {
+		this(pagesVisited, ExecutorMode.FIXED_THREAD_POOL, N_THREAD);
+	}
+	
+	/**
+	 * Creates a CrawlManagerConcurrent that stores visited URLs in a ConcurrentVisitedSet
+	 * and runs the crawl jobs in the chosen executor mode.
+	 * 
+	 * @param executorMode    the executor service that runs the crawl jobs
+	 * @param maxInFlight    maximum number of concurrent fetches
+	 * 
+	 * @see ExecutorMode
+	 */
+	public CrawlManagerConcurrent(ExecutorMode executorMode, int maxInFlight) {
+		this(new ConcurrentVisitedSet(), executorMode, maxInFlight);
+	}
+	
+	/**
+	 * Creates a CrawlManagerConcurrent that stores visited URLs in the provided set
+	 * and runs the fetch stage of the crawl jobs in the chosen executor mode. With a fixed 
+	 * thread pool, there are <tt>maxInFlight</tt> fetching threads. With a blocking fetcher, 
+	 * up to twice as many jobs are dispatched, so that documents are parsed and searched 
+	 * while the <tt>maxInFlight</tt> fetches are waiting for the network.
+	 * 
+	 * @param pagesVisited    the visited set backend
+	 * @param executorMode    the executor service that runs the crawl jobs
+	 * @param maxInFlight    maximum number of concurrent fetches
+	 * 
+	 * @see VisitedSet
+	 * @see ExecutorMode
+	 */
+	public CrawlManagerConcurrent(VisitedSet pagesVisited, ExecutorMode executorMode, int maxInFlight) {
+		this(pagesVisited, CrawlConfig.builder()
+				.maxPagesToSearch(MAX_PAGES_TO_SEARCH)
+				.executorMode(executorMode)
+				.fetchThreads(maxInFlight)
+				.build());
+	}
+	
+	/**
+	 * Creates a CrawlManagerConcurrent with the provided settings, that stores 
+	 * visited URLs in a ConcurrentVisitedSet.
+	 * 
+	 * @param config    the settings of the crawls
+	 * 
+	 * @see CrawlConfig
+	 */
+	public CrawlManagerConcurrent(CrawlConfig config) {
+		this(new ConcurrentVisitedSet(), config);
+	}
+	
+	/**
+	 * Creates a CrawlManagerConcurrent with the provided settings, that stores 
+	 * visited URLs in the provided set. The fetch stage has 
+	 * <tt>config.getFetchThreads()</tt> concurrent fetches, see 
+	 * <tt>CrawlManagerConcurrent(VisitedSet, ExecutorMode, int)</tt>.
+	 * 
+	 * @param pagesVisited    the visited set backend
+	 * @param config    the settings of the crawls
+	 * 
+	 * @see VisitedSet
+	 * @see CrawlConfig
+	 */
+	public CrawlManagerConcurrent(VisitedSet pagesVisited, CrawlConfig config) {
+		super(pagesVisited, config);
+		this.executorMode = config.getExecutorMode();
+		this.maxInFlight = config.getFetchThreads();
+		this.fetchPermits = new Semaphore(this.maxInFlight);
+		this.scheduler = config.newPolitenessScheduler(2 * this.maxInFlight);
+		this.parseThreads = config.getParseThreads();
+		this.analyzeThreads = config.getAnalyzeThreads();
+		this.stageQueueCapacity = config.getStageQueueCapacity();
 	}
 	
 	/**
@@ -45,106 +154,381 @@ public class CrawlManagerConcurrent extends CrawlManager {
 	 * CrawlManager, but uses multiple threads to dispatch and process
 	 * crawl jobs simultaneously. 
 	 * 
-	 * <p>Since FixedThreadPool pool service is used to dispatch and process 
-	 * the jobs, only a limited number of threads is alive at any given time. 
-	 * The exact number of threads to use is specified by N_THREAD.</p>
+	 * <p>Every job goes through a pipeline of three stages, each with its own threads: 
+	 * fetch (N_THREAD or <tt>maxInFlight</tt> threads of a FixedThreadPool, or a virtual 
+	 * thread per job), parse (a thread per core) and analyze (a thread per core). 
+	 * The parse and analyze stages have bounded queues: if pages arrive faster than 
+	 * they can be parsed, the fetching threads wait for room in the parse queue 
+	 * instead of keeping ever more documents in memory.</p>
 	 * 
 	 * The search terminates if the maximum number of pages was visited
-	 * or if the search word was found on one of the pages.
+	 * or, if <tt>stopAtFirstHit</tt>, if a term was found on one of the pages.
+	 * The links that were handed out by the frontier but not crawled by then, 
+	 * in the scheduler or in flight, are the first links of the last checkpoint.
 	 * 
 	 * @see CrawlManager
+	 * @see PipelineStage
 	 * 
-	 * @param url	
-	 * The starting point of the search
-	 * @param searchWord	The word that the crawler is looking for
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether the crawl ends at the first page where a term is found
+	 * @param results	the results found so far, which receives the results of the crawl
+	 * @return the results
 	 */
 	@Override
-	public void search(String url, String searchWord) {
-		
-		if(URLUtil.isInvalidUrl(url)) {
-			System.out.println(String.format("ERROR! %s is not a valid URL address", url));
-			System.exit(1);
-		}
-		bePolite(url);	// exclude links from robots.txt from the search
-		AuthorityCheckerSingleton.INSTANCE.setAuthorityUrl(url);
+	protected List<WordSearchResult> crawl(KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results) {
 		
-		ExecutorService pool = Executors.newFixedThreadPool(N_THREAD);
+		startCheckpoints();
+		this.scheduled.clear();
+		this.running.clear();
 		
-		overallResult = new WordSearchResult(false, false, url);
+		this.maxJobs = this.fetcher.isNonBlocking() ? this.maxInFlight : 2 * this.maxInFlight;
+		this.fetchStage = new PipelineStage("fetch", this.fetcher.isNonBlocking() ? 
+				Executors.newSingleThreadExecutor() : this.executorMode.newExecutor(this.maxInFlight));
+		this.parseStage = new PipelineStage("parse", this.parseThreads, this.stageQueueCapacity);
+		this.analyzeStage = new PipelineStage("analyze", this.analyzeThreads, this.stageQueueCapacity);
+		this.stages = Collections.unmodifiableList(Arrays.asList(fetchStage, parseStage, analyzeStage));
 		
-        while (overallResult.isUnsuccessful() && this.pagesVisited.size() < MAX_PAGES_TO_SEARCH) {
-        	overallResult = dispatchSearchCrawler(url, searchWord, pool);
-        }
+		dispatchSearchCrawlers(terms, stopAtFirstHit, results);
+		if (stopAtFirstHit && !results.isEmpty())
+			this.cancellation.cancel();	// aborts the fetches and scans still in flight
         
         // stops execution of all running/waiting threads
-        shutdownAndAwaitTermination(pool);
-        // close file handles in UserAgent
-        UserAgentManagerSingleton.INSTANCE.cleanup();
-        
-        if(overallResult.isSuccessful()) {
-            System.out.println(String.format("**Success** Word %s found at %s", searchWord, overallResult.getCurrentUrl())); //current URL was here
-        }
-        System.out.println(String.format("**Done** Visited %s web page(s)", this.pagesVisited.size()));
+        shutdownAndAwaitTermination(this.stages);
+        List<FrontierEntry> pending = new ArrayList<FrontierEntry>(this.scheduled.values());
+        for (SearchCrawlJobConcurrent spider : this.running)
+        	pending.add(spider.getEntry());
+        finishCheckpoints(terms, stopAtFirstHit, results, pending);
+        return results;
     }
 	
 	/**
-	 * Dispatches a thread that starts CrawlJobConcurrent at a chosen URL, 
-	 * collects all the hyperlinks and looks for the search word. 
+	 * Does the same as CrawlManager, and also registers the gauges of the stages of 
+	 * the pipeline: the tasks queued and active in every stage, and the active tasks 
+	 * in percent of the fetches in flight or of the threads of the stage.
+	 */
+	@Override
+	protected void startMetrics() {
+		super.startMetrics();
+		String[] names = { "fetch", "parse", "analyze" };
+		int[] threads = { this.maxInFlight, this.parseThreads, this.analyzeThreads };
+		for (int i = 0; i < names.length; i++) {
+			final int index = i;
+			final int size = threads[i];
+			this.metrics.registerGauge(names[i] + ".queued", () -> stageGauge(index, PipelineStage::queueDepth));
+			this.metrics.registerGauge(names[i] + ".active", () -> stageGauge(index, PipelineStage::activeCount));
+			this.metrics.registerGauge(names[i] + ".utilisation", 
+					() -> stageGauge(index, PipelineStage::activeCount) * 100 / size);
+		}
+	}
+	
+	/**
+	 * Reads a gauge of a stage of the current pipeline.
+	 * 
+	 * @param index    the index of the stage: fetch, parse or analyze
+	 * @param gauge    reads the gauge of the stage
+	 * @return the value of the gauge, or 0 before the pipeline is started
+	 */
+	private long stageGauge(int index, ToLongFunction<PipelineStage> gauge) {
+		List<PipelineStage> stages = this.stages;
+		return index < stages.size() ? gauge.applyAsLong(stages.get(index)) : 0;
+	}
+	
+	/**
+	 * Does the same as CrawlManager, and also prints the state of the pipeline.
+	 */
+	@Override
+	protected void printSummary() {
+		super.printSummary();
+        System.out.println("**Pipeline** " + this.stages);
+	}
+	
+	/**
+	 * Keeps up to <tt>2 * maxInFlight</tt> SearchCrawlJobConcurrent instances in flight and 
+	 * collects them through a completion queue in the order in which
+	 * the jobs finish. The jobs push their hyperlinks into the frontier themselves,
+	 * so every time a job completes, the freed slots are refilled with new jobs.
+	 * 
+	 * <p>URLs go from the frontier through the PolitenessScheduler, which only hands
+	 * out a URL once its host may be fetched. While no host is ready, the dispatching
+	 * thread waits for either a job to complete or the earliest host to become ready,
+	 * whichever happens first, so pool threads never sleep on behalf of a host.
+	 * If nothing is in flight or scheduled, it waits for the links that wait for
+	 * robots.txt of their website, before it decides that the crawl is over.</p>
+	 * 
+	 * <p>Dispatching stops once <tt>maxPagesToSearch</tt> pages were visited, 
+	 * or if <tt>stopAtFirstHit</tt>, as soon as a job finds any of the terms. 
+	 * In the former case, the jobs that are still in flight are drained, since 
+	 * any of them may yet find a term. In the latter case, or once the crawl is 
+	 * cancelled, the jobs in flight are abandoned: the cancellation token aborts 
+	 * their requests and scans, and the dispatching thread returns right away.</p>
+	 * 
+	 * <p>When a checkpoint is due, no job is dispatched until the jobs in flight
+	 * are drained, so that the frontier does not change while the checkpoint is
+	 * taken. The links waiting in the scheduler are part of the checkpoint.</p>
 	 * 
 	 * @see CrawlManager
-	 * @see CrawlJobConcurrent
+	 * @see SearchCrawlJobConcurrent
+	 * @see PolitenessScheduler
 	 * 
-	 * @param url	only used by the very first CrawlJob
-	 * @param searchWord	the word that the crawler is looking for
-	 * @param pool    reference to the fixed thread pool executor service
-	 * @return result of the call to searchForWord method in CrawlJob class
+	 * @param terms	the terms that the crawler is looking for
+	 * @param stopAtFirstHit	whether to stop at the first page where a term is found
+	 * @param results	receives the results of the pages where any of the terms was found
 	 */
-	protected JobResult dispatchSearchCrawler(String url, String searchWord, ExecutorService pool) {
+	protected void dispatchSearchCrawlers(KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results) {
 		
-		String currentUrl;
+		final BlockingQueue<SearchCrawlJobConcurrent> completed = new LinkedBlockingQueue<SearchCrawlJobConcurrent>();
+		// a job that is never run, put in the completion queue to wake the dispatching thread on cancel
+		final SearchCrawlJobConcurrent wakeUp = new SearchCrawlJobConcurrent("wake-up", new FrontierEntry("", 0, null, 0), terms, 
+				this.frontier, null);
+		int inFlight = 0;
 		
-        // first search only
-        if(this.pagesToVisit.isEmpty()) {
-            currentUrl = url;
-            this.pagesVisited.add(url);
-        }
-        else
-            currentUrl = this.nextUrl();
-        
-        SearchCrawlJobConcurrent spider = new SearchCrawlJobConcurrent("Thread-" +  + this.pagesVisited.size(), currentUrl, searchWord);
-        pool.execute(spider); // runs search method in CrawlJob concurrent, and if successful, runs searchForWord
-        
-    	// wait until the thread finishes the crawlJob before 
-        try {
-			spider.getCrawlJobLatch().await();
+		CancellationToken.Registration registration = this.cancellation.onCancel(() -> completed.add(wakeUp));
+		try {
+			while (!this.cancellation.isCancelled()) {
+				if (inFlight == 0 && checkpointDue())
+					checkpoint(terms, stopAtFirstHit, results, this.scheduled.values());
+				boolean draining = checkpointDue();	// for a checkpoint
+				if (!draining)
+					inFlight = fillFreeSlots(completed, inFlight, terms, stopAtFirstHit);
+				if (inFlight == 0 && this.scheduler.pendingCount() == 0) {
+					if (!draining && this.frontier.visitedCount() < this.maxPagesToSearch && this.awaitLinks())
+						continue;	// links of the last jobs were queued once robots.txt of their website was fetched
+					return;
+				}
+				
+				if (inFlight == 0) {
+					// nothing to wait for but the next host, or the cancellation of the crawl
+					String url = this.scheduler.take(this.cancellation);
+					if (url == null)
+						return;
+					submitSearchCrawler(completed, this.scheduled.remove(url), terms, stopAtFirstHit);
+					inFlight++;
+					continue;
+				}
+				// a ready host is only worth waking up for if there is a free slot
+				long nanosUntilReady = inFlight < this.maxJobs && !draining ? this.scheduler.nanosUntilReady() : Long.MAX_VALUE;
+				SearchCrawlJobConcurrent spider = nanosUntilReady == Long.MAX_VALUE ? completed.take()
+						: completed.poll(nanosUntilReady, TimeUnit.NANOSECONDS);
+				if (spider == null || spider == wakeUp)
+					continue;	// a host became ready before any job completed, or the crawl was cancelled
+				inFlight--;
+				this.running.remove(spider);
+				this.scheduler.release(spider.getUrl());
+				
+				if (spider.getWordSearchResult().isSuccessful()) {
+					results.add(spider.getWordSearchResult());
+					if (stopAtFirstHit)
+						return;
+				}
+			}
 		} catch (InterruptedException e) {
-			System.out.println("Waiting thread " + spider.threadName + " was interrupted.");
-			e.printStackTrace();
+			System.out.println("Dispatching thread was interrupted.");
+			Thread.currentThread().interrupt();
+			this.cancellation.cancel();
+		} finally {
+			registration.close();
+		}
+	}
+	
+	/**
+	 * Moves URLs from the frontier into the scheduler, keeping a window of 
+	 * twice as many URLs as jobs there, and submits new jobs for the URLs 
+	 * whose host is ready until all job slots are taken. The links in the 
+	 * scheduler are kept by URL, so that the jobs know their depth.
+	 * 
+	 * @param completed    completion queue of the current crawl
+	 * @param inFlight    the number of jobs in flight
+	 * @param terms    the terms that the crawler is looking for
+	 * @param stopAtFirstHit    whether the jobs stop scanning at the first hit
+	 * @return the number of jobs in flight after the free slots were filled
+	 */
+	private int fillFreeSlots(BlockingQueue<SearchCrawlJobConcurrent> completed, int inFlight, KeywordMatcher terms, 
+			boolean stopAtFirstHit) {
+		FrontierEntry next;
+		while (this.scheduler.pendingCount() < 2 * this.maxJobs 
+				&& this.frontier.visitedCount() < this.maxPagesToSearch 
+				&& (next = nextEntry()) != null) {
+			this.scheduled.put(next.getUrl(), next);
+			setCrawlDelay(next.getUrl());	// the website may have been discovered during the crawl
+			this.scheduler.add(next.getUrl());
+		}
+		String nextUrl;
+		while (inFlight < this.maxJobs && (nextUrl = this.scheduler.poll()) != null) {
+			submitSearchCrawler(completed, this.scheduled.remove(nextUrl), terms, stopAtFirstHit);
+			inFlight++;
+		}
+		return inFlight;
+	}
+	
+	/**
+	 * Submits a SearchCrawlJobConcurrent for a chosen URL address to the fetch
+	 * stage. Each stage hands the job over to the next one, and the analyze stage
+	 * puts the job in the completion queue once it is done. A job that fails is 
+	 * put in the completion queue right away.
+	 * 
+	 * <p>With a non-blocking fetcher, the request is sent right away. Once the
+	 * response arrives, the single thread of the fetch stage hands it over to the
+	 * parse stage, so that the threads of the HTTP client never wait for room in
+	 * the parse queue.</p>
+	 * 
+	 * @param completed    completion queue of the current crawl
+	 * @param entry    the link to the document to be crawled
+	 * @param terms    the terms that the crawler is looking for
+	 * @param stopAtFirstHit    whether the job stops scanning its page at the first hit
+	 */
+	private void submitSearchCrawler(final BlockingQueue<SearchCrawlJobConcurrent> completed, 
+			FrontierEntry entry, KeywordMatcher terms, boolean stopAtFirstHit) {
+		final SearchCrawlJobConcurrent spider = new SearchCrawlJobConcurrent("Thread-" + this.frontier.visitedCount(), entry, terms, 
+				this.frontier, this.fetchPermits);
+		spider.setFetcher(this.fetcher);
+		spider.setParseMode(this.parseMode);
+		spider.setUserAgentSwitchProbability(this.userAgentSwitchProbability);
+		spider.setCancellationToken(this.cancellation);
+		spider.setStopAtFirstHit(stopAtFirstHit);
+		spider.setCollectAnchorTexts(this.frontier.getOrdering().usesScore());
+		spider.setResponseCache(this.responseCache);
+		spider.setDuplicateIndex(this.duplicateIndex);
+		spider.setFingerprintText(this.frontier.getTrapDetector() != null);
+		spider.setMetrics(this.metrics);
+		spider.setCrawlListener(this.listener);
+		this.running.add(spider);
+		final Runnable analyze = () -> {
+			spider.analyze();	// if crawl was successful, runs searchForTerms
+			completed.add(spider);
+		};
+		final Runnable parse = () -> {
+			spider.parse();
+			submitStep(this.analyzeStage, spider, completed, analyze);
+		};
+		
+		if (this.fetcher.isNonBlocking()) {
+			this.fetchStage.track(spider.fetchAsync())
+					.thenRunAsync(() -> submitStep(this.parseStage, spider, completed, parse), this.fetchStage.getExecutor());
+		}
+		else {
+			submitStep(this.fetchStage, spider, completed, () -> {
+				spider.fetch();
+				submitStep(this.parseStage, spider, completed, parse);
+			});
+		}
+	}
+	
+	/**
+	 * Runs a step of a job on a stage of the pipeline, waiting while the stage
+	 * is full. If the step fails or the stage is shut down, the job is put in
+	 * the completion queue, so that its slot is free again.
+	 * 
+	 * @param stage    the stage to run the step on
+	 * @param spider    the job
+	 * @param completed    completion queue of the current crawl
+	 * @param step    the step of the job
+	 */
+	private static void submitStep(PipelineStage stage, final SearchCrawlJobConcurrent spider, 
+			final BlockingQueue<SearchCrawlJobConcurrent> completed, final Runnable step) {
+		try {
+			stage.submit(() -> {
+				try {
+					step.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();	// a job failed with an unchecked exception; its slot is free again
+					completed.add(spider);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			completed.add(spider);	// the crawl is over
 		}
-        
-        this.pagesToVisit.addAll(spider.getLinks());
-        return spider.getWordSearchResult();
 	}
 	
 	/**
-	 * Shuts down FixedThreadPool without waiting for threads to finish execution.
-	 * This is done to avoid overwrite to overallResult. If any thread is still 
+	 * Gets the stages of the pipeline of the current or the last crawl: fetch, 
+	 * parse and analyze. Their queue depth and throughput may be read while
+	 * the crawl runs.
+	 * 
+	 * @return the stages of the pipeline, or an empty list before the first crawl
+	 */
+	public List<PipelineStage> getPipelineStages() {
+		return this.stages;
+	}
+	
+	/**
+	 * Sets the size of the parse and analyze stages of the following crawls.
+	 * By default, the sizes of the CrawlConfig: both stages have a thread 
+	 * per core and a queue of 64 documents.
+	 * 
+	 * @param parseThreads    number of threads that parse documents
+	 * @param analyzeThreads    number of threads that search documents
+	 * @param queueCapacity    number of documents that may wait in the queue of each stage
+	 */
+	public void setPipelineSizes(int parseThreads, int analyzeThreads, int queueCapacity) {
+		if (parseThreads < 1 || analyzeThreads < 1 || queueCapacity < 1)
+			throw new IllegalArgumentException("Invalid pipeline sizes");
+		this.parseThreads = parseThreads;
+		this.analyzeThreads = analyzeThreads;
+		this.stageQueueCapacity = queueCapacity;
+	}
+	
+	/**
+	 * Sets the politeness scheduler of the following crawls. By default, 
+	 * the scheduler follows the politeness rules of the CrawlConfig: unless 
+	 * told otherwise, a host may take all connections and there is no rate 
+	 * limit, apart from the Crawl-delay of robots.txt.
+	 * 
+	 * @param scheduler    the politeness scheduler
+	 * 
+	 * @see PolitenessScheduler
+	 */
+	public void setPolitenessScheduler(PolitenessScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Does the same as CrawlManager, and also passes the Crawl-delay 
+	 * of robots.txt to the politeness scheduler.
+	 * 
+	 * @param url	address of website where this crawler will be polite
+	 */
+	@Override
+	protected void bePolite(String url) {
+		super.bePolite(url);
+		setCrawlDelay(url);
+	}
+	
+	/**
+	 * Passes the Crawl-delay of the website of a URL to the politeness scheduler.
+	 * The rules of the website are cached by then, since the frontier checked the URL.
+	 * 
+	 * @param url	a queued URL
+	 */
+	private void setCrawlDelay(String url) {
+		double delay = this.robots.getCrawlDelay(url);
+		ParsedURL parsed;
+		if (delay > 0 && (parsed = URLUtil.parse(url)) != null)
+			this.scheduler.setCrawlDelay(parsed.host(), delay);
+	}
+	
+	/**
+	 * Shuts down the stages of the pipeline without waiting for threads to finish execution.
+	 * This is done to avoid adding results once the search is over. If any thread is still 
 	 * running 10 seconds after the method call, display error message.
 	 * 
 	 * Taken from: https://docs.oracle.com/javase/7/docs/api/java/util/concurrent/ExecutorService.html
 	 * 
-	 * @param pool    reference to the fixed thread pool executor service
-	 */
-	protected void shutdownAndAwaitTermination(ExecutorService pool) {
-		  pool.shutdownNow();// Disable new tasks from being submitted
-		   try {
-		       if (!pool.awaitTermination(10, TimeUnit.SECONDS))
-		           System.err.println("ERROR! Fixed Thread Pool did not terminate.");
-		   } catch (InterruptedException ie) {
-		     // (Re-)Cancel if current thread also interrupted
-		     pool.shutdownNow();
-		     // Preserve interrupt status
-		     Thread.currentThread().interrupt();
-		   }
-		 }
-}
\ No newline at end of file
+	 * @param stages    the stages of the pipeline
+	 */
+	protected void shutdownAndAwaitTermination(List<PipelineStage> stages) {
+		for (PipelineStage stage : stages)
+			stage.shutdownNow();	// Disable new tasks from being submitted
+		try {
+			for (PipelineStage stage : stages) {
+				if (!stage.awaitTermination(10, TimeUnit.SECONDS))
+					System.err.println("ERROR! Stage " + stage.getName() + " did not terminate.");
+			}
+		} catch (InterruptedException ie) {
+			// (Re-)Cancel if current thread also interrupted
+			for (PipelineStage stage : stages)
+				stage.shutdownNow();
+			// Preserve interrupt status
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package lawnbway.jcrawler;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.jsoup.HttpStatusException;
+
+import lawnbway.jcrawler.util.LatencyHistogram;
+
+/**
+ * CrawlMetrics is the registry of the measurements of a crawl: counters of the pages
+ * fetched, the bytes downloaded and the errors by type, a LatencyHistogram for every
+ * stage of a crawl job, and gauges that read the state of the frontier and the pipeline,
+ * such as the size of the queue and the number of busy threads of every stage.
+ *
+ * <p>The crawl jobs record into the registry of their crawl as they go. Recording is
+ * lock-free: the counters are LongAdders and the histograms are lock-free too, so
+ * the threads of a crawl never wait for each other to record. The registry may be
+ * read at any time, from any thread, while the crawl runs; CrawlManager also prints
+ * it every few seconds if the CrawlConfig says so, and once the crawl is over.</p>
+ *
+ * @see CrawlManager#getMetrics()
+ * @see CrawlConfig.Builder#metricsInterval(java.time.Duration)
+ * @see LatencyHistogram
+ */
+public final class CrawlMetrics {
+
+	/** The stages of a crawl job that are timed. */
+	public enum Stage {
+		/** DNS lookup, connect, request and the wait for the headers of the response; only some fetchers can tell it apart. */
+		CONNECT,
+		/** Reading the body of the response, after its headers; only some fetchers can tell it apart. */
+		DOWNLOAD,
+		/** The whole request, from the crawl job to the end of the response, with any fetcher. */
+		FETCH,
+		/** Parsing the document; in ParseMode.STREAMING, the links are extracted in the same pass. */
+		PARSE,
+		/** Extracting the links from the parsed document, in ParseMode.DOM. */
+		EXTRACT,
+		/** Searching the text of the document for the terms. */
+		SEARCH;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	/** The events of a crawl that are counted. */
+	public enum Counter {
+		/** Responses received, whatever their status. */
+		PAGES_FETCHED,
+		/** Responses to conditional requests that had no body, since the page did not change. */
+		PAGES_NOT_MODIFIED,
+		/** Bytes of the bodies of the responses, as sent by the servers. */
+		BYTES_DOWNLOADED,
+		/** Documents searched for the terms. */
+		PAGES_SEARCHED,
+		/** Requests that failed, and responses with an error status. */
+		ERRORS;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase().replace('_', ' ');
+		}
+	}
+
+	private final LongAdder[] counters = new LongAdder[Counter.values().length];
+	private final Map<Stage, LatencyHistogram> histograms = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+	private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentSkipListMap<String, LongSupplier>();
+
+	/**
+	 * Creates an empty registry, without gauges.
+	 */
+	public CrawlMetrics() {
+		for (int i = 0; i < counters.length; i++)
+			counters[i] = new LongAdder();
+		for (Stage stage : Stage.values())
+			histograms.put(stage, new LatencyHistogram());
+	}
+
+	/**
+	 * Records a response: it is counted with the bytes of its body, and the time
+	 * of the request is recorded, split into the wait and the download if the
+	 * fetcher could tell them apart.
+	 *
+	 * @param response    the response
+	 * @param fetchNanos    the time since the crawl job sent the request
+	 */
+	public void recordFetch(FetchResponse response, long fetchNanos) {
+		increment(Counter.PAGES_FETCHED);
+		if (response.isNotModified())
+			increment(Counter.PAGES_NOT_MODIFIED);
+		long bytes = response.getBodySize();
+		add(Counter.BYTES_DOWNLOADED, bytes >= 0 ? bytes : response.getBody() == null ? 0 : response.getBody().length());
+		record(Stage.FETCH, fetchNanos);
+		long headersNanos = response.getHeadersNanos();
+		if (headersNanos >= 0) {
+			record(Stage.CONNECT, headersNanos);
+			record(Stage.DOWNLOAD, fetchNanos - headersNanos);
+		}
+	}
+
+	/**
+	 * Records an error of a crawl job, by type: <tt>HTTP</tt> and its status code for
+	 * an error status, or the simple name of the class of the exception otherwise.
+	 *
+	 * @param error    the reason the document could not be fetched
+	 */
+	public void recordError(Throwable error) {
+		increment(Counter.ERRORS);
+		String type = error instanceof HttpStatusException ? "HTTP " + ((HttpStatusException) error).getStatusCode()
+				: error.getClass().getSimpleName();
+		errors.computeIfAbsent(type, key -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Records the time a stage of a crawl job took.
+	 *
+	 * @param stage    the stage
+	 * @param nanos    the time, in nanoseconds
+	 */
+	public void record(Stage stage, long nanos) {
+		histograms.get(stage).record(nanos);
+	}
+
+	/**
+	 * Records the time a stage of a crawl job took, from its start until now.
+	 *
+	 * @param stage    the stage
+	 * @param startNanos    the <tt>System.nanoTime()</tt> at the start of the stage
+	 */
+	public void recordSince(Stage stage, long startNanos) {
+		record(stage, System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Adds one to a counter.
+	 *
+	 * @param counter    the counter
+	 */
+	public void increment(Counter counter) {
+		counters[counter.ordinal()].increment();
+	}
+
+	/**
+	 * Adds to a counter.
+	 *
+	 * @param counter    the counter
+	 * @param amount    the amount to add
+	 */
+	public void add(Counter counter, long amount) {
+		counters[counter.ordinal()].add(amount);
+	}
+
+	/**
+	 * Registers a gauge, which is read whenever the registry is read. A gauge
+	 * of the same name is replaced.
+	 *
+	 * @param name    the name of the gauge, e.g. <tt>frontier.size</tt>
+	 * @param gauge    reads the value of the gauge; it must be cheap and thread-safe
+	 */
+	public void registerGauge(String name, LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Gets the value of a counter.
+	 *
+	 * @param counter    the counter
+	 * @return the value of the counter
+	 */
+	public long count(Counter counter) {
+		return counters[counter.ordinal()].sum();
+	}
+
+	/**
+	 * Gets the histogram of a stage of the crawl jobs.
+	 *
+	 * @param stage    the stage
+	 * @return the histogram of the times of the stage
+	 */
+	public LatencyHistogram histogram(Stage stage) {
+		return histograms.get(stage);
+	}
+
+	/**
+	 * Gets the number of errors of a type.
+	 *
+	 * @param type    the type of the errors, e.g. <tt>HTTP 404</tt> or <tt>SocketTimeoutException</tt>
+	 * @return the number of errors of the type
+	 */
+	public long errorCount(String type) {
+		LongAdder count = errors.get(type);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * Gets the number of errors of every type.
+	 *
+	 * @return the number of errors by type, sorted by type
+	 */
+	public Map<String, Long> errorCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : errors.entrySet())
+			counts.put(entry.getKey(), entry.getValue().sum());
+		return counts;
+	}
+
+	/**
+	 * Reads a gauge.
+	 *
+	 * @param name    the name of the gauge
+	 * @return the value of the gauge, or -1 if there is no such gauge
+	 */
+	public long gauge(String name) {
+		LongSupplier gauge = gauges.get(name);
+		return gauge == null ? -1 : gauge.getAsLong();
+	}
+
+	/**
+	 * Reads every gauge.
+	 *
+	 * @return the value of every gauge, sorted by name
+	 */
+	public Map<String, Long> gauges() {
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet())
+			values.put(entry.getKey(), entry.getValue().getAsLong());
+		return values;
+	}
+
+	/**
+	 * Returns the counters, the errors by type and the gauges on a line, followed
+	 * by a line for every stage that was timed.
+	 *
+	 * @return summary of the registry
+	 */
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder();
+		for (Counter counter : Counter.values())
+			summary.append(summary.length() == 0 ? "" : ", ").append(counter).append(' ').append(count(counter));
+		Map<String, Long> errorCounts = errorCounts();
+		if (!errorCounts.isEmpty())
+			summary.append(' ').append(errorCounts);
+		for (Map.Entry<String, Long> gauge : gauges().entrySet())
+			summary.append(", ").append(gauge.getKey()).append(' ').append(gauge.getValue());
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = histogram(stage);
+			if (histogram.count() > 0)
+				summary.append(System.lineSeparator()).append("    ").append(stage).append(": ").append(histogram);
+		}
+		return summary.toString();
+	}
+}
@@ -3,8 +3,12 @@ package lawnbway.jcrawler;
 /**
  * CrawlResult acts as a 3-tuple that is used by the CrawlJob and CrawlManager classes.
  * Represents the state of the current crawl.
+ * The crawl of a page that duplicates a page crawled before is unsuccessful,
+ * and records the URL of the original page.
  */
 public class CrawlResult extends JobResult{
+	
+	private String duplicateOf;
 
 	/**
 	 * Creates an instance of the CrawlResult class.
@@ -16,4 +20,31 @@ public class CrawlResult extends JobResult{
 	public CrawlResult(boolean result, boolean errorStatus, String url) {
 		super(result, errorStatus, url);
 	}
+	
+	/**
+	 * Records that the crawled page is a duplicate of another page.
+	 * 
+	 * @param url	the URL address of the page it duplicates
+	 */
+	public void setDuplicateOf(String url) {
+		duplicateOf = url;
+	}
+	
+	/**
+	 * Gets the URL of the page that the crawled page duplicates.
+	 * 
+	 * @return the URL address of the original page, or null if the page is not a duplicate
+	 */
+	public String getDuplicateOf() {
+		return duplicateOf;
+	}
+	
+	/**
+	 * Returns true if the crawled page is a duplicate of another page.
+	 * 
+	 * @return true if the page is a duplicate
+	 */
+	public boolean isDuplicate() {
+		return duplicateOf != null;
+	}
 }
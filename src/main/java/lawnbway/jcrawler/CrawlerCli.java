@@ -0,0 +1,357 @@
+package lawnbway.jcrawler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+/**
+ * CrawlerCli is the command line entry point of the crawler. It searches the
+ * websites of the seed URLs for one or more terms, with the settings given as options:
+ *
+ * <pre>
+ * java lawnbway.jcrawler.CrawlerCli [options] &lt;seed URL&gt;... &lt;term&gt;...
+ * </pre>
+ *
+ * <p>Arguments that start with <tt>http://</tt> or <tt>https://</tt> are seed URLs,
+ * the others are search terms. A single term is searched until its first occurrence;
+ * several terms are searched on every page until the page budget is spent.
+ * With <tt>--resume</tt>, the crawl of a checkpoint directory is continued instead.
+ * Run with <tt>--help</tt> for the list of options.</p>
+ *
+ * @see CrawlConfig
+ */
+public final class CrawlerCli {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: java lawnbway.jcrawler.CrawlerCli [options] <seed URL>... <term>...",
+			"       java lawnbway.jcrawler.CrawlerCli [options] --resume <checkpoint directory>",
+			"Options:",
+			"  --max-pages N              maximum number of pages to visit (default 1000)",
+			"  --max-depth N              maximum depth of a page, 0 for the seed URLs only (default unlimited)",
+			"  --frontier ORDER           fifo, bfs or best-first (default fifo)",
+			"  --spill-dir DIR            spill the queued links of a fifo frontier to this directory",
+			"  --frontier-memory N        queued links kept in memory when spilling (default 100000)",
+			"  --checkpoint-dir DIR       take checkpoints of the crawl in this directory",
+			"  --checkpoint-every N       pages crawled between two checkpoints (default 10000)",
+			"  --resume DIR               continue the crawl of the latest checkpoint in this directory;",
+			"                             seed URLs and terms are taken from the checkpoint",
+			"  --executor MODE            fixed-thread-pool or virtual-threads (default fixed-thread-pool)",
+			"  --fetch-threads N          maximum number of concurrent fetches (default 5)",
+			"  --parse-threads N          threads of the parse stage (default a thread per core)",
+			"  --analyze-threads N        threads of the analyze stage (default a thread per core)",
+			"  --queue-capacity N         documents waiting in the queue of a stage (default 64)",
+			"  --fetcher TYPE             jsoup or http-client (default jsoup)",
+			"  --timeout MILLIS           timeout of every request (default 30000)",
+			"  --max-body-size BYTES      bytes read from a response, 0 for no limit (default 1048576)",
+			"  --rate N                   requests per second per host, 0 for no limit (default 0)",
+			"  --burst N                  requests a host may receive at once after being idle (default 1)",
+			"  --connections-per-host N   concurrent fetches per host, 0 for no limit (default 0);",
+			"                             --rate, --burst and this are not allowed with --serial",
+			"  --parse-mode MODE          dom or streaming (default dom)",
+			"  --user-agent-switch N      probability of switching user agents, in percent (default 30)",
+			"  --robots-agent TOKEN       product token of the crawler in robots.txt (default jcrawler)",
+			"  --robots-ttl SECONDS       time robots.txt of a website is cached (default 86400)",
+			"  --cache-dir DIR            keep the fetched pages in this directory, and fetch them",
+			"                             with conditional requests in the next crawl",
+			"  --duplicates BITS          skip pages whose text fingerprint is within BITS bits of",
+			"                             a page crawled before, 0 for exact copies only (default off)",
+			"  --trap-budget N            links of a URL pattern queued before its pages must have",
+			"                             new content, 0 to not detect URL traps (default 0)",
+			"  --metrics SECONDS          print the metrics of the crawl every SECONDS seconds,",
+			"                             0 to only print them at the end (default 0)",
+			"  --events FILE              append the events of the crawl to FILE as JSON lines",
+			"  --quiet                    do not print the events of the crawl, only its summary",
+			"  --serial                   crawl on a single thread with CrawlManager",
+			"  --help                     print this message");
+
+	private final CrawlConfig config;
+	private final boolean serial;
+	private final List<String> seedUrls;
+	private final List<String> terms;
+	private final Path resumeDirectory;
+
+	private CrawlerCli(CrawlConfig config, boolean serial, List<String> seedUrls, List<String> terms, Path resumeDirectory) {
+		this.config = config;
+		this.serial = serial;
+		this.seedUrls = Collections.unmodifiableList(seedUrls);
+		this.terms = Collections.unmodifiableList(terms);
+		this.resumeDirectory = resumeDirectory;
+	}
+
+	public static void main(String[] args) {
+		for (String arg : args) {
+			if (arg.equals("--help") || arg.equals("-h")) {
+				System.out.println(USAGE);
+				return;
+			}
+		}
+		CrawlerCli cli = null;
+		try {
+			cli = parse(args);
+		} catch (IllegalArgumentException e) {
+			System.out.println("ERROR! " + e.getMessage());
+			System.out.println(USAGE);
+			System.exit(1);
+		}
+		cli.run();
+	}
+
+	/**
+	 * Parses the command line arguments. An option and its value are either
+	 * two arguments, or one argument of the form <tt>--option=value</tt>.
+	 *
+	 * @param args    the command line arguments
+	 * @return the parsed command line
+	 * @throws IllegalArgumentException if an option is unknown or its value is invalid,
+	 *         if there is no seed URL or no search term to start a crawl with, or if
+	 *         <tt>--serial</tt> is given with an option of the concurrent crawl only
+	 */
+	public static CrawlerCli parse(String... args) {
+		CrawlConfig.Builder builder = CrawlConfig.builder();
+		double rate = 0;
+		int burst = 1;
+		int connectionsPerHost = 0;
+		String politenessOption = null;
+		String spillDirectory = null;
+		int frontierMemoryLimit = 100000;
+		String checkpointDirectory = null;
+		int checkpointInterval = 10000;
+		String resumeDirectory = null;
+		String robotsProductToken = RobotsCache.DEFAULT_PRODUCT_TOKEN;
+		Duration robotsTtl = RobotsCache.DEFAULT_TTL;
+		boolean serial = false;
+		List<String> seedUrls = new ArrayList<String>();
+		List<String> terms = new ArrayList<String>();
+
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				if (arg.startsWith("http://") || arg.startsWith("https://"))
+					seedUrls.add(arg);
+				else
+					terms.add(arg);
+				continue;
+			}
+			if (arg.equals("--serial")) {
+				serial = true;
+				continue;
+			}
+			if (arg.equals("--quiet")) {
+				builder.quiet(true);
+				continue;
+			}
+			String option = arg;
+			String value;
+			int equals = arg.indexOf('=');
+			if (equals >= 0) {
+				option = arg.substring(0, equals);
+				value = arg.substring(equals + 1);
+			} else if (i + 1 < args.length) {
+				value = args[++i];
+			} else {
+				throw new IllegalArgumentException("Missing value of " + option);
+			}
+
+			switch (option) {
+			case "--max-pages":
+				builder.maxPagesToSearch(intValue(option, value));
+				break;
+			case "--max-depth":
+				builder.maxDepth(intValue(option, value));
+				break;
+			case "--frontier":
+				builder.frontierOrdering(enumValue(FrontierOrdering.class, option, value));
+				break;
+			case "--spill-dir":
+				spillDirectory = value;
+				break;
+			case "--frontier-memory":
+				frontierMemoryLimit = intValue(option, value);
+				break;
+			case "--checkpoint-dir":
+				checkpointDirectory = value;
+				break;
+			case "--checkpoint-every":
+				checkpointInterval = intValue(option, value);
+				break;
+			case "--resume":
+				resumeDirectory = value;
+				break;
+			case "--executor":
+				builder.executorMode(enumValue(ExecutorMode.class, option, value));
+				break;
+			case "--fetch-threads":
+				builder.fetchThreads(intValue(option, value));
+				break;
+			case "--parse-threads":
+				builder.parseThreads(intValue(option, value));
+				break;
+			case "--analyze-threads":
+				builder.analyzeThreads(intValue(option, value));
+				break;
+			case "--queue-capacity":
+				builder.stageQueueCapacity(intValue(option, value));
+				break;
+			case "--fetcher":
+				builder.fetcherType(enumValue(FetcherType.class, option, value));
+				break;
+			case "--timeout":
+				builder.fetchTimeout(Duration.ofMillis(intValue(option, value)));
+				break;
+			case "--max-body-size":
+				builder.maxBodySize(intValue(option, value));
+				break;
+			case "--rate":
+				try {
+					rate = Double.parseDouble(value);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+				}
+				politenessOption = option;
+				break;
+			case "--burst":
+				burst = intValue(option, value);
+				politenessOption = option;
+				break;
+			case "--connections-per-host":
+				connectionsPerHost = intValue(option, value);
+				politenessOption = option;
+				break;
+			case "--parse-mode":
+				builder.parseMode(enumValue(ParseMode.class, option, value));
+				break;
+			case "--user-agent-switch":
+				builder.userAgentSwitchProbability(intValue(option, value));
+				break;
+			case "--robots-agent":
+				robotsProductToken = value;
+				break;
+			case "--robots-ttl":
+				robotsTtl = Duration.ofSeconds(intValue(option, value));
+				break;
+			case "--cache-dir":
+				builder.responseCache(Paths.get(value));
+				break;
+			case "--duplicates":
+				builder.duplicateDetection(intValue(option, value));
+				break;
+			case "--trap-budget":
+				builder.trapDetection(intValue(option, value));
+				break;
+			case "--metrics":
+				builder.metricsInterval(Duration.ofSeconds(intValue(option, value)));
+				break;
+			case "--events":
+				builder.eventLog(Paths.get(value));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + option);
+			}
+		}
+		if (resumeDirectory != null && !(seedUrls.isEmpty() && terms.isEmpty()))
+			throw new IllegalArgumentException("The seed URLs and terms of a resumed crawl are those of its checkpoint");
+		if (resumeDirectory == null && seedUrls.isEmpty())
+			throw new IllegalArgumentException("No seed URL given");
+		if (resumeDirectory == null && terms.isEmpty())
+			throw new IllegalArgumentException("No search term given");
+		if (serial && politenessOption != null)
+			throw new IllegalArgumentException(politenessOption + " only applies to the concurrent crawl, not with --serial");
+		if (spillDirectory != null)
+			builder.frontierSpill(Paths.get(spillDirectory), frontierMemoryLimit);
+		if (checkpointDirectory != null || resumeDirectory != null)
+			builder.checkpoint(Paths.get(checkpointDirectory != null ? checkpointDirectory : resumeDirectory), checkpointInterval);
+		CrawlConfig config = builder.politeness(rate, burst, connectionsPerHost).robots(robotsProductToken, robotsTtl).build();
+		return new CrawlerCli(config, serial, seedUrls, terms, resumeDirectory == null ? null : Paths.get(resumeDirectory));
+	}
+
+	/**
+	 * Runs the search and prints the time it took.
+	 */
+	public void run() {
+		System.out.println("**Config** " + config);
+		long startTime = System.currentTimeMillis();
+		CrawlManager spiderManager = serial ? new CrawlManager(config) : new CrawlManagerConcurrent(config);
+		if (resumeDirectory != null) {
+			try {
+				spiderManager.resume(resumeDirectory);
+			} catch (IOException e) {
+				System.out.println(String.format("ERROR! Can't resume the crawl of %s: %s", resumeDirectory, e));
+				System.exit(1);
+			}
+		}
+		else if (terms.size() == 1)
+			spiderManager.search(seedUrls, terms.get(0));
+		else
+			spiderManager.search(seedUrls, new KeywordMatcher(terms, true, false));
+		long totalTime = System.currentTimeMillis() - startTime;
+		System.out.println("Total time: " + totalTime);
+	}
+
+	/**
+	 * Gets the settings of the crawl.
+	 *
+	 * @return the settings given by the options
+	 */
+	public CrawlConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Returns true if the crawl runs on a single thread.
+	 *
+	 * @return true if <tt>--serial</tt> was given
+	 */
+	public boolean isSerial() {
+		return serial;
+	}
+
+	/**
+	 * Gets the seed URLs of the crawl.
+	 *
+	 * @return the seed URLs, in the order in which they were given
+	 */
+	public List<String> getSeedUrls() {
+		return seedUrls;
+	}
+
+	/**
+	 * Gets the search terms.
+	 *
+	 * @return the terms, in the order in which they were given
+	 */
+	public List<String> getTerms() {
+		return terms;
+	}
+
+	/**
+	 * Gets the checkpoint directory of the crawl to continue.
+	 *
+	 * @return the directory given to <tt>--resume</tt>, or null to start a new crawl
+	 */
+	public Path getResumeDirectory() {
+		return resumeDirectory;
+	}
+
+	private static int intValue(String option, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+		}
+	}
+
+	private static <E extends Enum<E>> E enumValue(Class<E> type, String option, String value) {
+		try {
+			return Enum.valueOf(type, value.toUpperCase(Locale.ROOT).replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package lawnbway.jcrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lawnbway.jcrawler.util.SimHash;
+
+/**
+ * DuplicateIndex keeps the fingerprints of the pages of a crawl, and tells the crawl
+ * jobs whether the page they just read is a copy of a page crawled before: the same
+ * page under a URL with another session ID or sort parameter, a print view, or a mirror.
+ * The links of a duplicate are not followed and its text is not searched.
+ *
+ * <p>A page is an exact duplicate if it has the same words as an earlier page, and a
+ * near-duplicate if the SimHash of its text differs from the SimHash of an earlier page
+ * in at most <tt>maxDistance</tt> bits. Near-duplicates are found by the pigeonhole
+ * principle (Manku, Jain and Das Sarma): the fingerprints are split into <tt>maxDistance + 1</tt>
+ * blocks of bits, and two fingerprints within the distance share at least one block,
+ * so only the fingerprints that share a block with the page are compared to it.
+ * Pages with too few words to tell them apart are only checked for exact duplicates,
+ * and pages with less than <tt>MIN_WORDS</tt> words, such as image galleries, framesets
+ * and pages built by scripts, are not checked at all: they would all have the same words.</p>
+ *
+ * <p>The index is thread-safe and lock-free, but two near-duplicates checked at the same
+ * time may both be taken for originals. Exact duplicates are always found.</p>
+ *
+ * @see SimHash
+ * @see CrawlConfig.Builder#duplicateDetection(int)
+ */
+public final class DuplicateIndex {
+
+	/** The largest number of bits in which near-duplicates may differ. */
+	public static final int MAX_DISTANCE = 8;
+	/** The number of shingles a page needs to be checked for near-duplicates. */
+	public static final int MIN_SHINGLES = 8;
+	/** The number of words a page needs to be checked for exact duplicates. */
+	public static final int MIN_WORDS = 3;
+
+	private static final long[] NONE = new long[0];
+
+	private final int maxDistance;
+	private final int[] blockShifts;
+	private final long[] blockMasks;
+	private final List<ConcurrentMap<Long, long[]>> blocks;
+	private final ConcurrentMap<Long, String> exact = new ConcurrentHashMap<Long, String>();
+	private final ConcurrentMap<Long, String> fingerprints = new ConcurrentHashMap<Long, String>();
+	private final AtomicLong checked = new AtomicLong();
+	private final AtomicLong exactDuplicates = new AtomicLong();
+	private final AtomicLong nearDuplicates = new AtomicLong();
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param maxDistance    the number of bits in which near-duplicates may differ,
+	 *        from 0, for exact duplicates only, to MAX_DISTANCE
+	 */
+	public DuplicateIndex(int maxDistance) {
+		if (maxDistance < 0 || maxDistance > MAX_DISTANCE)
+			throw new IllegalArgumentException("The distance of near-duplicates must be between 0 and " + MAX_DISTANCE);
+		this.maxDistance = maxDistance;
+		int blockCount = maxDistance == 0 ? 0 : maxDistance + 1;
+		this.blockShifts = new int[blockCount];
+		this.blockMasks = new long[blockCount];
+		this.blocks = new ArrayList<ConcurrentMap<Long, long[]>>(blockCount);
+		for (int block = 0, shift = 0; block < blockCount; block++) {
+			int width = (64 - shift) / (blockCount - block);
+			blockShifts[block] = shift;
+			blockMasks[block] = (1L << width) - 1;
+			blocks.add(new ConcurrentHashMap<Long, long[]>());
+			shift += width;
+		}
+	}
+
+	/**
+	 * Checks whether a page is a duplicate of a page checked before, and adds it
+	 * to the index if it is not.
+	 *
+	 * @param url    the URL address of the page
+	 * @param text    the SimHash of the text of the page
+	 * @return the URL address of the page it duplicates, or null if it is not a duplicate
+	 *         or has less than MIN_WORDS words
+	 */
+	public String check(String url, SimHash text) {
+		checked.incrementAndGet();
+		if (text.wordCount() < MIN_WORDS)
+			return null;
+		String original = exact.putIfAbsent(text.exactValue(), url);
+		if (original != null) {
+			if (original.equals(url))
+				return null;	// the same page, crawled again
+			exactDuplicates.incrementAndGet();
+			return original;
+		}
+		if (blocks.isEmpty() || text.shingleCount() < MIN_SHINGLES)
+			return null;
+		long fingerprint = text.value();
+		original = findNear(fingerprint);
+		if (original != null && !original.equals(url)) {
+			nearDuplicates.incrementAndGet();
+			return original;
+		}
+		if (fingerprints.putIfAbsent(fingerprint, url) == null) {
+			for (int block = 0; block < blocks.size(); block++) {
+				blocks.get(block).merge(blockOf(fingerprint, block), new long[] { fingerprint }, (known, added) -> {
+					long[] merged = Arrays.copyOf(known, known.length + 1);
+					merged[known.length] = added[0];
+					return merged;
+				});
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a page whose fingerprint is within the distance of a fingerprint.
+	 *
+	 * @param fingerprint    the SimHash of the text of a page
+	 * @return the URL address of the page, or null if there is none
+	 */
+	private String findNear(long fingerprint) {
+		for (int block = 0; block < blocks.size(); block++) {
+			for (long candidate : blocks.get(block).getOrDefault(blockOf(fingerprint, block), NONE)) {
+				if (SimHash.distance(candidate, fingerprint) <= maxDistance)
+					return fingerprints.get(candidate);
+			}
+		}
+		return null;
+	}
+
+	private long blockOf(long fingerprint, int block) {
+		return fingerprint >>> blockShifts[block] & blockMasks[block];
+	}
+
+	/**
+	 * Gets the number of bits in which near-duplicates may differ.
+	 *
+	 * @return the distance, 0 if only exact duplicates are found
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Gets the number of pages checked.
+	 *
+	 * @return the number of pages checked
+	 */
+	public long checkedCount() {
+		return checked.get();
+	}
+
+	/**
+	 * Gets the number of pages found to have the same words as an earlier page.
+	 *
+	 * @return the number of exact duplicates
+	 */
+	public long exactCount() {
+		return exactDuplicates.get();
+	}
+
+	/**
+	 * Gets the number of pages found to have nearly the same text as an earlier page.
+	 *
+	 * @return the number of near-duplicates
+	 */
+	public long nearCount() {
+		return nearDuplicates.get();
+	}
+
+	/**
+	 * Gets the share of the checked pages that were duplicates.
+	 *
+	 * @return the duplicate ratio, between 0 and 1
+	 */
+	public double duplicateRatio() {
+		long checked = checkedCount();
+		return checked == 0 ? 0 : (double) (exactCount() + nearCount()) / checked;
+	}
+
+	/**
+	 * Returns the number of duplicates found, and their share of the pages checked.
+	 *
+	 * @return summary of the index
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d of %d page(s) skipped as duplicates (%.1f%%): %d exact, %d within %d bit(s)",
+				exactCount() + nearCount(), checkedCount(), duplicateRatio() * 100, exactCount(), nearCount(), maxDistance);
+	}
+}
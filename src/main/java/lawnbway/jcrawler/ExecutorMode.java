@@ -0,0 +1,78 @@
+package lawnbway.jcrawler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ExecutorMode selects the executor service that runs the crawl jobs of
+ * CrawlManagerConcurrent.
+ *
+ * <p>Fetches are blocking, so with FIXED_THREAD_POOL the number of concurrent
+ * fetches is the number of platform threads in the pool. VIRTUAL_THREADS runs
+ * every job on its own virtual thread, which is parked instead of blocking a
+ * platform thread while it waits for the network, so thousands of fetches can be
+ * in flight at once. The number of concurrent fetches is then capped by a semaphore
+ * in CrawlManagerConcurrent.</p>
+ *
+ * <p>Virtual threads are only available on Java 21 and newer. The executor is
+ * looked up at run time, and on older runtimes VIRTUAL_THREADS falls back to a fixed
+ * pool of as many platform threads as fetches may be in flight. The crawl is then
+ * bounded the same way, but every fetch in flight holds a platform thread, so a large
+ * number of fetches costs as much memory as with FIXED_THREAD_POOL.</p>
+ *
+ * @see CrawlManagerConcurrent
+ */
+public enum ExecutorMode {
+
+	FIXED_THREAD_POOL {
+		@Override
+		public ExecutorService newExecutor(int nThreads) {
+			return Executors.newFixedThreadPool(nThreads);
+		}
+	},
+
+	VIRTUAL_THREADS {
+		@Override
+		public ExecutorService newExecutor(int nThreads) {
+			if (VIRTUAL_EXECUTOR_FACTORY == null) {
+				System.out.println(String.format("Virtual threads are not supported by this Java runtime, "
+						+ "using a fixed thread pool of %d threads.", nThreads));
+				return Executors.newFixedThreadPool(nThreads);
+			}
+			try {
+				return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot create the virtual thread executor", e);
+			}
+		}
+	};
+
+	private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+	/**
+	 * Creates a new executor service for a crawl.
+	 *
+	 * @param nThreads    number of threads of a fixed thread pool, which VIRTUAL_THREADS
+	 *        only uses if it falls back to one
+	 * @return the executor service
+	 */
+	public abstract ExecutorService newExecutor(int nThreads);
+
+	/**
+	 * Returns true if the Java runtime supports virtual threads.
+	 *
+	 * @return true if VIRTUAL_THREADS runs the jobs on virtual threads
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return VIRTUAL_EXECUTOR_FACTORY != null;
+	}
+
+	private static Method findVirtualExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package lawnbway.jcrawler;
+
+/**
+ * FetchResponse is an immutable HTTP response returned by a Fetcher:
+ * the final URL address (after redirects), the status code, the content type
+ * and the decoded body of the document, and the validators of the document
+ * (its ETag and Last-Modified headers) for conditional requests. A fetcher
+ * may also tell how many bytes the body had and when the headers arrived.
+ *
+ * @see Fetcher
+ */
+public final class FetchResponse {
+
+	private final String url;
+	private final int statusCode;
+	private final String contentType;
+	private final String body;
+	private final String etag;
+	private final String lastModified;
+	private final long bodySize;
+	private final long headersNanos;
+
+	/**
+	 * Creates an instance of the FetchResponse class, without validators.
+	 *
+	 * @param url    the URL address the document was received from
+	 * @param statusCode    the HTTP status code
+	 * @param contentType    the value of the Content-Type header, or null if there is none
+	 * @param body    the body of the document
+	 */
+	public FetchResponse(String url, int statusCode, String contentType, String body) {
+		this(url, statusCode, contentType, body, null, null);
+	}
+
+	/**
+	 * Creates an instance of the FetchResponse class.
+	 *
+	 * @param url    the URL address the document was received from
+	 * @param statusCode    the HTTP status code
+	 * @param contentType    the value of the Content-Type header, or null if there is none
+	 * @param body    the body of the document
+	 * @param etag    the value of the ETag header, or null if there is none
+	 * @param lastModified    the value of the Last-Modified header, or null if there is none
+	 */
+	public FetchResponse(String url, int statusCode, String contentType, String body, String etag, String lastModified) {
+		this(url, statusCode, contentType, body, etag, lastModified, -1, -1);
+	}
+
+	/**
+	 * Creates an instance of the FetchResponse class, with the size of the body
+	 * and the time the headers took to arrive.
+	 *
+	 * @param url    the URL address the document was received from
+	 * @param statusCode    the HTTP status code
+	 * @param contentType    the value of the Content-Type header, or null if there is none
+	 * @param body    the body of the document
+	 * @param etag    the value of the ETag header, or null if there is none
+	 * @param lastModified    the value of the Last-Modified header, or null if there is none
+	 * @param bodySize    the number of bytes of the body as it was received, or -1 if unknown
+	 * @param headersNanos    the time from the request to the headers of the response, or -1 if unknown
+	 */
+	public FetchResponse(String url, int statusCode, String contentType, String body, String etag, String lastModified,
+			long bodySize, long headersNanos) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.contentType = contentType;
+		this.body = body;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.bodySize = bodySize;
+		this.headersNanos = headersNanos;
+	}
+
+	/**
+	 * Gets the URL address the document was received from, which differs
+	 * from the requested one if the request was redirected.
+	 *
+	 * @return the URL address of the document
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Gets the HTTP status code of the response.
+	 *
+	 * @return the status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Gets the content type of the document.
+	 *
+	 * @return the value of the Content-Type header, or null if there is none
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Returns true if the server answered a conditional request with 304 Not Modified:
+	 * the document did not change since the validators were received, and the
+	 * response has no body.
+	 *
+	 * @return true if the cached copy of the document is still valid
+	 */
+	public boolean isNotModified() {
+		return statusCode == 304;
+	}
+
+	/**
+	 * Returns true if the document is HTML, or if the server did not say what it is.
+	 *
+	 * @return true if the document can be parsed as HTML
+	 */
+	public boolean isHtml() {
+		return contentType == null || contentType.contains("text/html");
+	}
+
+	/**
+	 * Gets the body of the document.
+	 *
+	 * @return the body of the document
+	 */
+	public String getBody() {
+		return body;
+	}
+
+	/**
+	 * Gets the entity tag of the document, which the server compares with
+	 * the If-None-Match header of a conditional request.
+	 *
+	 * @return the value of the ETag header, or null if there is none
+	 */
+	public String getETag() {
+		return etag;
+	}
+
+	/**
+	 * Gets the time the document last changed, which the server compares with
+	 * the If-Modified-Since header of a conditional request.
+	 *
+	 * @return the value of the Last-Modified header, or null if there is none
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Gets the number of bytes of the body as it was received, before it was decoded.
+	 *
+	 * @return the size of the body, or -1 if the fetcher did not tell
+	 */
+	public long getBodySize() {
+		return bodySize;
+	}
+
+	/**
+	 * Gets the time from the request to the headers of the response: the DNS lookup,
+	 * the connect, the request and the wait for the server, but not the body.
+	 *
+	 * @return the time to the headers, in nanoseconds, or -1 if the fetcher did not tell
+	 */
+	public long getHeadersNanos() {
+		return headersNanos;
+	}
+}
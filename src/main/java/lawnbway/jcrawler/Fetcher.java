@@ -0,0 +1,130 @@
+package lawnbway.jcrawler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import lawnbway.jcrawler.util.CancellationToken;
+
+/**
+ * Fetcher sends HTTP GET requests on behalf of the crawl jobs. Responses are
+ * returned whatever their status code or content type; it is up to the crawl job
+ * to decide what to do with them.
+ *
+ * <p>A blocking fetcher (JsoupFetcher) ties up the calling thread until the response
+ * arrives. A non-blocking fetcher (HttpClientFetcher) completes <tt>fetchAsync</tt>
+ * without holding a thread per request, so CrawlManagerConcurrent only uses its threads
+ * to parse the documents that have arrived.</p>
+ *
+ * <p>Both kinds of fetches may be bound to the CancellationToken of a crawl,
+ * which aborts them once the crawl is cancelled.</p>
+ *
+ * <p>A fetch may also be conditional: given the validators of a cached copy of the
+ * document, the server answers 304 Not Modified, without a body, if the document
+ * did not change. A fetcher that does not send validators fetches the whole document.</p>
+ *
+ * @see JsoupFetcher
+ * @see HttpClientFetcher
+ */
+public interface Fetcher {
+
+	/**
+	 * Fetches a document and waits for the response.
+	 *
+	 * @param url    the address of the document
+	 * @param userAgent    the user agent to send
+	 * @return the response
+	 * @throws IOException if the request fails
+	 */
+	FetchResponse fetch(String url, String userAgent) throws IOException;
+
+	/**
+	 * Fetches a document asynchronously.
+	 *
+	 * @param url    the address of the document
+	 * @param userAgent    the user agent to send
+	 * @return future that completes with the response, or exceptionally if the request fails
+	 */
+	CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent);
+
+	/**
+	 * Same as <tt>fetch(String, String)</tt>, but gives up once the crawl is cancelled.
+	 * By default, the fetch is not started if the crawl is already cancelled, 
+	 * but runs to completion otherwise.
+	 *
+	 * @param url    the address of the document
+	 * @param userAgent    the user agent to send
+	 * @param cancellation    the cancellation token of the crawl
+	 * @return the response
+	 * @throws IOException if the request fails, or InterruptedIOException if it was cancelled
+	 */
+	default FetchResponse fetch(String url, String userAgent, CancellationToken cancellation) throws IOException {
+		if (cancellation.isCancelled())
+			throw new InterruptedIOException("Crawl cancelled before fetching " + url);
+		return fetch(url, userAgent);
+	}
+
+	/**
+	 * Same as <tt>fetchAsync(String, String)</tt>, but gives up once the crawl is cancelled.
+	 * By default, the future completes with a CancellationException as soon as
+	 * the crawl is cancelled, and the request runs to completion in the background.
+	 *
+	 * @param url    the address of the document
+	 * @param userAgent    the user agent to send
+	 * @param cancellation    the cancellation token of the crawl
+	 * @return future that completes with the response, or exceptionally if the request fails or is cancelled
+	 */
+	default CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent, CancellationToken cancellation) {
+		if (cancellation.isCancelled())
+			return CompletableFuture.failedFuture(new CancellationException("Crawl cancelled before fetching " + url));
+		CompletableFuture<FetchResponse> future = fetchAsync(url, userAgent);
+		CancellationToken.Registration registration = cancellation.onCancel(() -> future.cancel(true));
+		future.whenComplete((response, failure) -> registration.close());
+		return future;
+	}
+
+	/**
+	 * Same as <tt>fetch(String, String, CancellationToken)</tt>, but sends the validators
+	 * of a cached copy of the document in the If-None-Match and If-Modified-Since headers.
+	 * By default, the validators are not sent and the whole document is fetched.
+	 *
+	 * @param url    the address of the document
+	 * @param userAgent    the user agent to send
+	 * @param etag    the ETag of the cached copy, or null if there is none
+	 * @param lastModified    the Last-Modified time of the cached copy, or null if there is none
+	 * @param cancellation    the cancellation token of the crawl
+	 * @return the response, with status 304 if the cached copy is still valid
+	 * @throws IOException if the request fails, or InterruptedIOException if it was cancelled
+	 *
+	 * @see ResponseCache
+	 */
+	default FetchResponse fetchIfModified(String url, String userAgent, String etag, String lastModified,
+			CancellationToken cancellation) throws IOException {
+		return fetch(url, userAgent, cancellation);
+	}
+
+	/**
+	 * Same as <tt>fetchAsync(String, String, CancellationToken)</tt>, but sends the validators
+	 * of a cached copy of the document, see <tt>fetchIfModified</tt>.
+	 * By default, the validators are not sent and the whole document is fetched.
+	 *
+	 * @param url    the address of the document
+	 * @param userAgent    the user agent to send
+	 * @param etag    the ETag of the cached copy, or null if there is none
+	 * @param lastModified    the Last-Modified time of the cached copy, or null if there is none
+	 * @param cancellation    the cancellation token of the crawl
+	 * @return future that completes with the response, or exceptionally if the request fails or is cancelled
+	 */
+	default CompletableFuture<FetchResponse> fetchAsyncIfModified(String url, String userAgent, String etag,
+			String lastModified, CancellationToken cancellation) {
+		return fetchAsync(url, userAgent, cancellation);
+	}
+
+	/**
+	 * Returns true if <tt>fetchAsync</tt> does not hold a thread while waiting for the response.
+	 *
+	 * @return true for a non-blocking fetcher
+	 */
+	boolean isNonBlocking();
+}
@@ -0,0 +1,40 @@
+package lawnbway.jcrawler;
+
+import java.time.Duration;
+
+/**
+ * FetcherType selects the Fetcher that a crawl configured by a CrawlConfig
+ * sends its requests through.
+ *
+ * <p>JSOUP is a blocking fetcher, with a thread per request in flight.
+ * HTTP_CLIENT is a non-blocking fetcher that shares one HttpClient
+ * between all the crawl jobs.</p>
+ *
+ * @see CrawlConfig
+ * @see Fetcher
+ */
+public enum FetcherType {
+
+	JSOUP {
+		@Override
+		public Fetcher newFetcher(Duration timeout, int maxBodySize) {
+			return new JsoupFetcher(timeout, maxBodySize);
+		}
+	},
+
+	HTTP_CLIENT {
+		@Override
+		public Fetcher newFetcher(Duration timeout, int maxBodySize) {
+			return new HttpClientFetcher(timeout, maxBodySize);
+		}
+	};
+
+	/**
+	 * Creates a new fetcher for a crawl.
+	 *
+	 * @param timeout    the timeout of every request
+	 * @param maxBodySize    maximum number of bytes read from a response, or 0 for no limit
+	 * @return the fetcher
+	 */
+	public abstract Fetcher newFetcher(Duration timeout, int maxBodySize);
+}
@@ -0,0 +1,745 @@
+package lawnbway.jcrawler;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lawnbway.jcrawler.util.RobotsRules;
+import lawnbway.jcrawler.util.SimHash;
+import lawnbway.jcrawler.util.URLUtil;
+
+/**
+ * Frontier stores the queue of links that are not yet visited and the set
+ * of links that were already seen. It is safe to use from multiple threads:
+ * crawl jobs push the links they discover directly into the frontier and the
+ * next URL to crawl is pulled from the queue, so no URL is ever handed out twice,
+ * regardless of how many threads push and poll at once.
+ *
+ * <p>Links are filtered at the point of discovery: a pushed link is normalized and
+ * queued only if it is a valid URL under the authority of the current crawl and it
+ * is claimed in the seen set by this push. The queue therefore only ever contains unique,
+ * crawlable URLs, and polling never has to skip anything. Every queued link keeps its
+ * depth and the page it was found on, and links deeper than the maximum depth of the 
+ * crawl are dropped.</p>
+ *
+ * <p>The first links to a website whose robots.txt is not known yet do not wait for it:
+ * they are pushed once the RobotsCache has fetched it, by the thread that completes the
+ * fetch, and until then they are counted by <tt>awaitingRobotsCount</tt>. So the queue
+ * may be empty while the crawl is not over yet; <tt>awaitRobots</tt> waits for them.</p>
+ *
+ * <p>The order in which the links are handed out is pluggable. By default, the queue
+ * is a lock-free ConcurrentLinkedQueue that hands out the oldest link first. For crawls
+ * whose queue does not fit into the heap, a SpillingFrontierQueue keeps the oldest links
+ * in memory and the rest on disk, until the frontier is closed. The seen
+ * set is pluggable as well; its <tt>add</tt> is the atomic claim-if-unseen operation. 
+ * By default it is a ConcurrentVisitedSet, which is lock-free too.</p>
+ *
+ * <p>With a TrapDetector, the links that lead into URL spaces that never end are
+ * dropped, and the links of a pattern that has not shown new content yet are held
+ * back until it does. The crawl jobs report the fingerprints of the text of their
+ * pages with <tt>crawled</tt>.</p>
+ *
+ * @see CrawlManager
+ * @see VisitedSet
+ * @see FrontierOrdering
+ * @see TrapDetector
+ */
+public class Frontier implements Closeable {
+
+	private final FrontierOrdering ordering;
+	private final Queue<FrontierEntry> pagesToVisit;
+	private final VisitedSet pagesSeen;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicInteger queued = new AtomicInteger(); // ConcurrentLinkedQueue.size() is not constant time
+	private final AtomicInteger peakQueued = new AtomicInteger();
+	private final AtomicInteger visited = new AtomicInteger();
+	private final AtomicLong offered = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+	private final AtomicLong uncrawlable = new AtomicLong();
+	private final AtomicLong tooDeep = new AtomicLong();
+	private final AtomicLong trapped = new AtomicLong();
+	private final AtomicInteger awaitingRobots = new AtomicInteger();
+	private final Object robotsLock = new Object();
+	private volatile AuthorityScope authorityScope;
+	private volatile RobotsCache robots;
+	private volatile int maxDepth = Integer.MAX_VALUE;
+	private volatile LinkScorer linkScorer;
+	private volatile TrapDetector trapDetector;
+
+	/**
+	 * Creates an empty frontier that stores seen URLs in a ConcurrentVisitedSet.
+	 */
+	public Frontier() {
+		this(new ConcurrentVisitedSet());
+	}
+
+	/**
+	 * Creates an empty frontier that stores seen URLs in the provided set.
+	 *
+	 * @param pagesSeen    the seen set backend, e.g. FingerprintVisitedSet for large crawls
+	 */
+	public Frontier(VisitedSet pagesSeen) {
+		this(pagesSeen, FrontierOrdering.FIFO);
+	}
+
+	/**
+	 * Creates an empty frontier that stores seen URLs in the provided set
+	 * and hands out the links in the provided order.
+	 *
+	 * @param pagesSeen    the seen set backend, e.g. FingerprintVisitedSet for large crawls
+	 * @param ordering    the order in which the links are handed out
+	 */
+	public Frontier(VisitedSet pagesSeen, FrontierOrdering ordering) {
+		this(pagesSeen, ordering, ordering.newQueue());
+	}
+
+	/**
+	 * Creates an empty frontier that stores seen URLs in the provided set
+	 * and queues the links in the provided queue, which hands them out 
+	 * in the provided order.
+	 *
+	 * @param pagesSeen    the seen set backend, e.g. FingerprintVisitedSet for large crawls
+	 * @param ordering    the order in which the queue hands out the links
+	 * @param pagesToVisit    an empty thread-safe queue, e.g. a SpillingFrontierQueue for FIFO
+	 */
+	public Frontier(VisitedSet pagesSeen, FrontierOrdering ordering, Queue<FrontierEntry> pagesToVisit) {
+		this.pagesSeen = pagesSeen;
+		this.ordering = ordering;
+		this.pagesToVisit = pagesToVisit;
+	}
+
+	/**
+	 * Adds a seed URL to the queue, at depth 0.
+	 *
+	 * @param url    seed URL
+	 * @return true if the link was queued
+	 * @see #push(String, int)
+	 */
+	public boolean push(String url) {
+		return push(url, 0);
+	}
+
+	/**
+	 * Adds a link to the queue at the provided depth, without a page it was found on.
+	 *
+	 * @param url    link to queue
+	 * @param depth    depth of the link
+	 * @return true if the link was queued
+	 * @see #push(String, String, FrontierEntry)
+	 */
+	public boolean push(String url, int depth) {
+		return push(url, depth, null, null);
+	}
+
+	/**
+	 * Adds a discovered link to the queue if it is crawlable, not deeper 
+	 * than the maximum depth and was not seen before. Otherwise the link 
+	 * is dropped right away. A link that is too deep is not marked as seen, 
+	 * since it may yet be found at a lower depth.
+	 *
+	 * <p>The seen check runs first, since most of the links found on a page
+	 * are navigation links that every page repeats. It is cheap when the
+	 * seen set is a BloomFilteredVisitedSet. The link is only scored once 
+	 * it is known to be queued, and only if the ordering uses the score.</p>
+	 *
+	 * <p>A link the TrapDetector drops or holds back is marked as seen, so that
+	 * it is not offered to the detector again.</p>
+	 *
+	 * <p>A link to a website whose robots.txt is being fetched is checked and
+	 * queued once it is fetched, and false is returned right away.</p>
+	 *
+	 * @param url    link discovered by a crawl job
+	 * @param anchorText    visible text of the link, or null if it is not known
+	 * @param parent    the link of the page the link was found on
+	 * @return true if the link was queued
+	 */
+	public boolean push(String url, String anchorText, FrontierEntry parent) {
+		return push(url, parent.getDepth() + 1, anchorText, parent);
+	}
+
+	private boolean push(String url, int depth, String anchorText, FrontierEntry parent) {
+		if (url == null)
+			return false;
+		offered.incrementAndGet();
+		if (depth > maxDepth) {
+			tooDeep.incrementAndGet();
+			return false;
+		}
+		url = URLUtil.normalize(url);
+		if (url == null) {
+			uncrawlable.incrementAndGet();
+			return false;
+		}
+		if (pagesSeen.contains(url)) {
+			duplicates.incrementAndGet();
+			return false;
+		}
+		RobotsCache cache = robots;
+		if (cache != null && isInScope(url)) {
+			CompletableFuture<RobotsRules> rules = cache.rulesForAsync(url);
+			if (!rules.isDone()) {
+				awaitRobots(rules, url, depth, anchorText, parent);
+				return false;
+			}
+		}
+		return admit(url, depth, anchorText, parent);
+	}
+
+	/**
+	 * Checks a normalized link that was not seen yet, and queues it
+	 * unless it is uncrawlable, a duplicate or trapped.
+	 */
+	private boolean admit(String url, int depth, String anchorText, FrontierEntry parent) {
+		if (!isCrawlable(url)) {
+			uncrawlable.incrementAndGet();
+			return false;
+		}
+		if (!pagesSeen.add(url)) { // another thread queued it in the meantime
+			duplicates.incrementAndGet();
+			return false;
+		}
+		LinkScorer scorer = linkScorer;
+		double score = ordering.usesScore() && scorer != null ? scorer.score(url, anchorText, parent) : 0;
+		FrontierEntry entry = new FrontierEntry(url, depth, parent != null ? parent.getUrl() : null, score,
+				sequence.getAndIncrement());
+		TrapDetector detector = trapDetector;
+		if (detector != null && detector.admit(entry) != TrapDetector.Verdict.QUEUED) {
+			trapped.incrementAndGet();
+			return false;
+		}
+		enqueue(entry);
+		return true;
+	}
+
+	/**
+	 * Admits a link once robots.txt of its website is fetched.
+	 */
+	private void awaitRobots(CompletableFuture<RobotsRules> rules, String url, int depth, String anchorText,
+			FrontierEntry parent) {
+		awaitingRobots.incrementAndGet();
+		rules.whenComplete((fetched, error) -> {
+			try {
+				admit(url, depth, anchorText, parent);
+			} catch (RuntimeException e) {
+				System.out.println(String.format("ERROR! Can't queue %s: %s", url, e));
+			} finally {
+				synchronized (robotsLock) {
+					awaitingRobots.decrementAndGet();
+					robotsLock.notifyAll();
+				}
+			}
+		});
+	}
+
+	private void enqueue(FrontierEntry entry) {
+		pagesToVisit.add(entry);
+		int size = queued.incrementAndGet();
+		int peak;
+		while (size > (peak = peakQueued.get()) && !peakQueued.compareAndSet(peak, size))
+			;
+	}
+
+	/**
+	 * Same as <tt>crawled(FrontierEntry, boolean)</tt>, but lets the TrapDetector tell
+	 * whether the page had new content from the fingerprint of its text.
+	 *
+	 * @param entry    the link of the crawled page
+	 * @param text    the fingerprint of the text of the page, or null if it could not be crawled or is a duplicate
+	 */
+	public void crawled(FrontierEntry entry, SimHash text) {
+		TrapDetector detector = trapDetector;
+		if (detector != null)
+			crawled(entry, detector.hasNewContent(text));
+	}
+
+	/**
+	 * Reports whether a crawled page had new content to the TrapDetector, if there
+	 * is one, and queues the links of its pattern that were held back and are now
+	 * allowed. Must be called before the links of the page are pushed.
+	 *
+	 * @param entry    the link of the crawled page
+	 * @param hasNewContent    false if the page could not be crawled or was a duplicate
+	 */
+	public void crawled(FrontierEntry entry, boolean hasNewContent) {
+		TrapDetector detector = trapDetector;
+		if (detector == null)
+			return;
+		for (FrontierEntry released : detector.crawled(entry.getUrl(), hasNewContent)) {
+			trapped.decrementAndGet();	// counted as queued from now on
+			enqueue(released);
+		}
+	}
+
+	/**
+	 * Adds all the seed URLs to the queue, at depth 0.
+	 *
+	 * @param urls    seed URLs
+	 * @see #push(String)
+	 */
+	public void pushAll(Collection<String> urls) {
+		for (String url : urls)
+			push(url);
+	}
+
+	/**
+	 * Adds all the links discovered on a page to the queue.
+	 *
+	 * @param urls    links discovered by a crawl job
+	 * @param anchorTexts    visible texts of the links, in the same order, or null or an empty list if they are not known
+	 * @param parent    the link of the page the links were found on
+	 * @see #push(String, String, FrontierEntry)
+	 */
+	public void pushAll(Collection<String> urls, Collection<String> anchorTexts, FrontierEntry parent) {
+		Iterator<String> texts = anchorTexts != null && anchorTexts.size() == urls.size() ? anchorTexts.iterator() : null;
+		for (String url : urls)
+			push(url, texts != null ? texts.next() : null, parent);
+	}
+
+	/**
+	 * Gets the next link from the queue, the oldest one unless the frontier 
+	 * has another ordering. Each link is handed out once.
+	 *
+	 * @return next unvisited URL, or null if the queue is empty
+	 */
+	public String poll() {
+		FrontierEntry next = pollEntry();
+		return next != null ? next.getUrl() : null;
+	}
+
+	/**
+	 * Same as <tt>poll</tt>, but also gets the depth, the parent and the score of the link.
+	 *
+	 * @return next unvisited link, or null if the queue is empty
+	 */
+	public FrontierEntry pollEntry() {
+		FrontierEntry next = pagesToVisit.poll();
+		if (next != null) {
+			queued.decrementAndGet();
+			visited.incrementAndGet();
+		}
+		return next;
+	}
+
+	/**
+	 * Atomically marks the URL as seen if it was not seen yet, without queuing it.
+	 * Exactly one of the threads claiming the same URL wins.
+	 *
+	 * @param url    the URL to claim
+	 * @return true if this call claimed the URL, false if it was seen before
+	 */
+	public boolean claim(String url) {
+		return pagesSeen.add(normalize(url));
+	}
+
+	/**
+	 * Returns true if the URL was queued, claimed or excluded before.
+	 *
+	 * @param url    the URL to check
+	 * @return true if the URL was seen
+	 */
+	public boolean isSeen(String url) {
+		return pagesSeen.contains(normalize(url));
+	}
+
+	/**
+	 * Marks the links as seen without crawling them,
+	 * e.g. the links excluded by robots.txt.
+	 *
+	 * @param urls    links to exclude from the crawl
+	 */
+	public void exclude(Collection<String> urls) {
+		for (String url : urls)
+			claim(url);
+	}
+
+	/**
+	 * Returns true if the URL may be handed out to a crawl job:
+	 * it is a valid URL under the authority of the current crawl,
+	 * and robots.txt of its website allows it, if there is a RobotsCache.
+	 * Uses the scope set on this frontier, or the global one of
+	 * AuthorityCheckerSingleton if there is none.
+	 * 
+	 * <p>A URL of a website whose robots.txt is not cached waits until it is fetched;
+	 * <tt>push</tt> only checks a link once robots.txt of its website is cached.</p>
+	 *
+	 * @param url    the URL to check
+	 * @return true if the URL is crawlable
+	 */
+	protected boolean isCrawlable(String url) {
+		if (!isInScope(url))
+			return false;
+		RobotsCache cache = robots;
+		return cache == null || cache.isAllowed(url);
+	}
+
+	private boolean isInScope(String url) {
+		AuthorityScope scope = authorityScope;
+		return scope != null ? scope.contains(url) : AuthorityCheckerSingleton.INSTANCE.isSameAuthority(url);
+	}
+
+	/**
+	 * Sets the cache of the robots.txt rules the links must follow to be queued.
+	 *
+	 * @param robots    the robots.txt cache, or null to ignore robots.txt
+	 */
+	public void setRobotsCache(RobotsCache robots) {
+		this.robots = robots;
+	}
+
+	/**
+	 * Sets the authority scope of the crawl that uses this frontier.
+	 *
+	 * @param authorityScope    the scope links must be in to be queued
+	 */
+	public void setAuthorityScope(AuthorityScope authorityScope) {
+		this.authorityScope = authorityScope;
+	}
+
+	/**
+	 * Sets the maximum depth of the links queued from now on: seed URLs are 
+	 * at depth 0, the links found on them at depth 1, and so on. 
+	 * There is no limit by default.
+	 *
+	 * @param maxDepth    the maximum depth of a queued link
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Sets the scorer of the links queued from now on, e.g. a KeywordLinkScorer
+	 * for the terms of the current search. Links are only scored if the 
+	 * ordering of the frontier uses the score.
+	 *
+	 * @param linkScorer    the scorer of the links, or null for none
+	 */
+	public void setLinkScorer(LinkScorer linkScorer) {
+		this.linkScorer = linkScorer;
+	}
+
+	/**
+	 * Sets the detector of the URL traps the links queued from now on are checked against.
+	 *
+	 * @param trapDetector    the trap detector, or null to queue every link
+	 */
+	public void setTrapDetector(TrapDetector trapDetector) {
+		this.trapDetector = trapDetector;
+	}
+
+	/**
+	 * Gets the detector of the URL traps of this frontier.
+	 *
+	 * @return the trap detector, or null if there is none
+	 */
+	public TrapDetector getTrapDetector() {
+		return trapDetector;
+	}
+
+	/**
+	 * Gets the order in which the frontier hands out its links.
+	 *
+	 * @return the ordering of the frontier
+	 */
+	public FrontierOrdering getOrdering() {
+		return ordering;
+	}
+
+	/**
+	 * Gets the number of links handed out to crawl jobs.
+	 *
+	 * @return the number of visited pages
+	 */
+	public int visitedCount() {
+		return visited.get();
+	}
+
+	/**
+	 * Gets the number of queued, visited and excluded links.
+	 *
+	 * @return size of the seen set
+	 */
+	public int seenCount() {
+		return pagesSeen.size();
+	}
+
+	/**
+	 * Gets the number of links waiting in the queue.
+	 *
+	 * @return size of the queue
+	 */
+	public int size() {
+		return queued.get();
+	}
+
+	/**
+	 * Gets the number of pushed links that wait for robots.txt of their website to be
+	 * fetched, before they are queued or dropped.
+	 *
+	 * @return the number of links waiting for robots.txt
+	 */
+	public int awaitingRobotsCount() {
+		return awaitingRobots.get();
+	}
+
+	/**
+	 * Waits while the queue is empty and pushed links wait for robots.txt of their
+	 * website, until one of them is queued or dropped, or the time is up.
+	 *
+	 * @param timeout    the longest time to wait
+	 * @param unit    the unit of the timeout
+	 * @return true if the queue is not empty or no link waits for robots.txt
+	 * @throws InterruptedException if the thread is interrupted while it waits
+	 */
+	public boolean awaitRobots(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (robotsLock) {
+			long left;
+			while (awaitingRobots.get() > 0 && size() == 0 && (left = deadline - System.nanoTime()) > 0)
+				TimeUnit.NANOSECONDS.timedWait(robotsLock, left);
+			return awaitingRobots.get() == 0 || size() > 0;
+		}
+	}
+
+	/**
+	 * Waits until no pushed link waits for robots.txt of its website, e.g. before
+	 * the queue is closed or saved, so that none of them comes in afterwards.
+	 *
+	 * @throws InterruptedException if the thread is interrupted while it waits
+	 */
+	private void awaitAllRobots() throws InterruptedException {
+		synchronized (robotsLock) {
+			while (awaitingRobots.get() > 0)
+				robotsLock.wait();
+		}
+	}
+
+	/**
+	 * Gets the largest number of links that were waiting in the queue at once.
+	 *
+	 * @return peak size of the queue
+	 */
+	public int peakSize() {
+		return peakQueued.get();
+	}
+
+	/**
+	 * Gets the number of links pushed into the frontier, including the dropped ones.
+	 *
+	 * @return the number of discovered links
+	 */
+	public long offeredCount() {
+		return offered.get();
+	}
+
+	/**
+	 * Gets the number of pushed links that were dropped because they were seen before.
+	 *
+	 * @return the number of duplicate links
+	 */
+	public long duplicateCount() {
+		return duplicates.get();
+	}
+
+	/**
+	 * Gets the number of pushed links that were dropped because they are
+	 * invalid or outside of the authority of the crawl.
+	 *
+	 * @return the number of uncrawlable links
+	 */
+	public long uncrawlableCount() {
+		return uncrawlable.get();
+	}
+
+	/**
+	 * Gets the number of pushed links that were dropped because they are
+	 * deeper than the maximum depth.
+	 *
+	 * @return the number of links that are too deep
+	 */
+	public long tooDeepCount() {
+		return tooDeep.get();
+	}
+
+	/**
+	 * Gets the number of pushed links that the TrapDetector dropped or still holds back.
+	 * A link held back is counted as queued once it is released.
+	 *
+	 * @return the number of trapped links
+	 */
+	public long trappedCount() {
+		return trapped.get();
+	}
+
+	/**
+	 * Releases the queue once a crawl is over: a queue that is Closeable, such as
+	 * a SpillingFrontierQueue, is closed, which drops the links still in it and
+	 * deletes its files, once the links that wait for robots.txt are queued or dropped.
+	 * The frontier may still be used, e.g. for the next crawl of the same CrawlManager.
+	 * Other queues keep their links.
+	 *
+	 * @throws IOException if the queue cannot be closed, or InterruptedIOException if the thread is interrupted
+	 */
+	@Override
+	public void close() throws IOException {
+		if (pagesToVisit instanceof Closeable) {
+			try {
+				awaitAllRobots();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while links wait for robots.txt");
+			}
+			((Closeable) pagesToVisit).close();
+			queued.set(0);
+		}
+	}
+
+	/**
+	 * Returns true if there are no links waiting in the queue.
+	 *
+	 * @return true if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return pagesToVisit.isEmpty();
+	}
+
+	/**
+	 * Returns a one-line summary of the frontier counters.
+	 *
+	 * @return summary of the frontier counters
+	 */
+	@Override
+	public String toString() {
+		TrapDetector detector = trapDetector;
+		int awaiting = awaitingRobotsCount();
+		long queuedCount = offeredCount() - duplicateCount() - uncrawlableCount() - tooDeepCount() - trappedCount() - awaiting;
+		return String.format("discovered %d link(s): queued %d, dropped %d duplicate(s), %d uncrawlable, " 
+				+ "%d too deep and %d trapped%s; peak queue size %d, %d left in queue%s", 
+				offeredCount(), queuedCount, duplicateCount(), uncrawlableCount(), tooDeepCount(), trappedCount(),
+				awaiting == 0 ? "" : ", " + awaiting + " waiting for robots.txt", peakSize(), size(),
+				detector == null ? "" : "; traps: " + detector);
+	}
+
+	/**
+	 * Takes a snapshot of the queue for a checkpoint, while the crawl is paused.
+	 * The links held back by the TrapDetector are part of the queue of the checkpoint,
+	 * and the links that wait for robots.txt are queued or dropped first.
+	 *
+	 * @param linkDirectory    the directory of the checkpoint, for the links to the segment files of a spilling queue
+	 * @return the snapshot of the queue
+	 * @throws IOException if the segment files cannot be linked, or InterruptedIOException if the thread is interrupted
+	 */
+	QueueSnapshot snapshotQueue(Path linkDirectory) throws IOException {
+		try {
+			awaitAllRobots();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while links wait for robots.txt");
+		}
+		QueueSnapshot snapshot;
+		if (pagesToVisit instanceof SpillingFrontierQueue)
+			snapshot = ((SpillingFrontierQueue) pagesToVisit).snapshot(linkDirectory);
+		else
+			snapshot = new QueueSnapshot(new ArrayList<FrontierEntry>(pagesToVisit));
+		TrapDetector detector = trapDetector;
+		return detector == null ? snapshot : snapshot.prependedWith(detector.heldBackEntries());
+	}
+
+	/**
+	 * Takes a snapshot of the seen set for a checkpoint, while the crawl is paused.
+	 *
+	 * @return the snapshot of the seen set
+	 * @throws UnsupportedOperationException if the seen set cannot be saved in a checkpoint
+	 */
+	VisitedSet.Snapshot snapshotSeen() {
+		return pagesSeen.snapshot();
+	}
+
+	/**
+	 * Gets the kind of the seen set, which must be the same when a checkpoint is restored.
+	 *
+	 * @return the class name of the seen set
+	 */
+	String seenSetType() {
+		return pagesSeen.getClass().getName();
+	}
+
+	/**
+	 * Gets the counters of the frontier for a checkpoint: the number of visited links,
+	 * of offered, duplicate, uncrawlable and too deep links, the peak size of the queue,
+	 * the next sequence number and the number of trapped links. The links held back are
+	 * not counted as trapped, since the checkpoint queues them.
+	 *
+	 * @return the counters
+	 */
+	long[] counters() {
+		TrapDetector detector = trapDetector;
+		long heldBack = detector == null ? 0 : detector.heldBackEntries().size();
+		return new long[] { visited.get(), offered.get(), duplicates.get(), uncrawlable.get(), tooDeep.get(),
+				peakQueued.get(), sequence.get(), trapped.get() - heldBack };
+	}
+
+	/**
+	 * Sets the counters of the frontier from a checkpoint.
+	 *
+	 * @param counters    the counters returned by <tt>counters</tt>
+	 */
+	void restoreCounters(long[] counters) {
+		visited.set((int) counters[0]);
+		offered.set(counters[1]);
+		duplicates.set(counters[2]);
+		uncrawlable.set(counters[3]);
+		tooDeep.set(counters[4]);
+		peakQueued.set((int) Math.max(counters[5], queued.get()));
+		sequence.set(Math.max(counters[6], sequence.get()));
+		trapped.set(counters[7]);
+	}
+
+	/**
+	 * Adds the URLs of a snapshot of the seen set to the seen set.
+	 *
+	 * @param in    the input of the checkpoint
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	void restoreSeen(DataInput in) throws IOException {
+		pagesSeen.restore(in);
+	}
+
+	/**
+	 * Queues an entry of a checkpoint as it is, and marks it as seen.
+	 *
+	 * @param entry    the entry, with its sequence number
+	 */
+	void restoreEntry(FrontierEntry entry) {
+		pagesSeen.add(entry.getUrl());
+		pagesToVisit.add(entry);
+		queued.incrementAndGet();
+		long next = entry.sequence + 1;
+		long current;
+		while (next > (current = sequence.get()) && !sequence.compareAndSet(current, next))
+			;
+	}
+
+	/**
+	 * Normalizes the URL, so that different spellings of the same address,
+	 * e.g. the ones that differ only in the fragment, are seen once.
+	 *
+	 * @param url    the URL to normalize
+	 * @return normalized URL, or the URL as is if it is invalid
+	 *
+	 * @see URLUtil#normalize(String)
+	 */
+	private static String normalize(String url) {
+		String normalized = URLUtil.normalize(url);
+		return normalized == null ? url : normalized;
+	}
+}
@@ -0,0 +1,157 @@
+package lawnbway.jcrawler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FrontierEntry is an immutable link in the queue of the Frontier:
+ * the normalized URL address, its depth, i.e. the number of links
+ * that were followed from a seed URL to find it, the page it was found on
+ * and its score, i.e. how likely it is to lead to the search terms.
+ *
+ * @see Frontier
+ * @see FrontierOrdering
+ */
+public final class FrontierEntry {
+
+	private final String url;
+	private final int depth;
+	private final String parent;
+	private final double score;
+	final long sequence; // order in which the frontier queued the entries
+	private static final int FIXED_ENCODED_SIZE = 4 + 4 + 4 + 8 + 8; // lengths, depth, score and sequence
+
+	/**
+	 * Creates an instance of the FrontierEntry class.
+	 *
+	 * @param url    the URL address of the link
+	 * @param depth    the depth of the link, 0 for a seed URL
+	 * @param parent    the URL address of the page the link was found on, or null for a seed URL
+	 * @param score    the score of the link, higher for more relevant links
+	 */
+	public FrontierEntry(String url, int depth, String parent, double score) {
+		this(url, depth, parent, score, 0);
+	}
+
+	FrontierEntry(String url, int depth, String parent, double score, long sequence) {
+		this.url = url;
+		this.depth = depth;
+		this.parent = parent;
+		this.score = score;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Gets the URL address of the link.
+	 *
+	 * @return the URL address
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Gets the depth of the link.
+	 *
+	 * @return the number of links followed from a seed URL, 0 for a seed URL
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the page the link was found on.
+	 *
+	 * @return the URL address of the page, or null for a seed URL
+	 */
+	public String getParent() {
+		return parent;
+	}
+
+	/**
+	 * Gets the score of the link, given by the LinkScorer of the frontier.
+	 *
+	 * @return the score, 0 if the links are not scored
+	 *
+	 * @see LinkScorer
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the size of this entry in the binary format of <tt>writeTo</tt>.
+	 *
+	 * @return the size in bytes
+	 */
+	int encodedSize() {
+		return FIXED_ENCODED_SIZE + utf8Length(url) + (parent != null ? utf8Length(parent) : 0);
+	}
+
+	/**
+	 * Writes this entry in the binary format of the segment files of a SpillingFrontierQueue
+	 * and of the queue of a checkpoint: the URL and the parent as length-prefixed UTF-8,
+	 * with length -1 for no parent, then the depth, the score and the sequence number.
+	 *
+	 * @param buffer    a buffer with at least <tt>encodedSize()</tt> bytes remaining
+	 */
+	void writeTo(ByteBuffer buffer) {
+		byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(urlBytes.length).put(urlBytes);
+		if (parent != null) {
+			byte[] parentBytes = parent.getBytes(StandardCharsets.UTF_8);
+			buffer.putInt(parentBytes.length).put(parentBytes);
+		} else {
+			buffer.putInt(-1);
+		}
+		buffer.putInt(depth).putDouble(score).putLong(sequence);
+	}
+
+	/**
+	 * Reads the next entry written by <tt>writeTo</tt>.
+	 *
+	 * @param buffer    the buffer to read
+	 * @return the entry, or null if the buffer does not hold a whole entry, in which case its position is unchanged
+	 */
+	static FrontierEntry readFrom(ByteBuffer buffer) {
+		int start = buffer.position();
+		if (buffer.remaining() < 4)
+			return null;
+		int urlLength = buffer.getInt();
+		if (buffer.remaining() < urlLength + 4) {
+			buffer.position(start);
+			return null;
+		}
+		String url = string(buffer, urlLength);
+		int parentLength = buffer.getInt();
+		if (buffer.remaining() < Math.max(parentLength, 0) + 4 + 8 + 8) {
+			buffer.position(start);
+			return null;
+		}
+		String parent = parentLength >= 0 ? string(buffer, parentLength) : null;
+		return new FrontierEntry(url, buffer.getInt(), parent, buffer.getDouble(), buffer.getLong());
+	}
+
+	private static String string(ByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int utf8Length(String s) {
+		int length = s.length();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x800)
+				length += Character.isSurrogate(c) ? 1 : 2; // a surrogate pair takes 4 bytes
+			else if (c >= 0x80)
+				length++;
+		}
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (depth %d, score %.2f)", url, depth, score);
+	}
+}
@@ -0,0 +1,76 @@
+package lawnbway.jcrawler;
+
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * FrontierOrdering selects the order in which the Frontier hands out its links.
+ *
+ * <p>FIFO hands out the links in the order they were discovered, from a lock-free
+ * queue. With several crawl jobs running at once, a page at depth 3 may be found
+ * before the last page at depth 2 is. BFS hands out the links strictly by depth,
+ * so every page at one depth is crawled before any deeper page; with a depth limit,
+ * the crawl covers the levels it can afford completely. BEST_FIRST hands out the
+ * most relevant links first, by the score of the LinkScorer of the crawl, so that
+ * the pages with the search terms are found after fewer fetches.</p>
+ *
+ * <p>BFS and BEST_FIRST are backed by a PriorityBlockingQueue. Links of equal
+ * priority are handed out in the order they were discovered.</p>
+ *
+ * @see Frontier
+ * @see LinkScorer
+ */
+public enum FrontierOrdering {
+
+	FIFO {
+		@Override
+		public Queue<FrontierEntry> newQueue() {
+			return new ConcurrentLinkedQueue<FrontierEntry>();
+		}
+	},
+
+	BFS {
+		@Override
+		public Queue<FrontierEntry> newQueue() {
+			return new PriorityBlockingQueue<FrontierEntry>(INITIAL_CAPACITY, BY_DEPTH);
+		}
+	},
+
+	BEST_FIRST {
+		@Override
+		public Queue<FrontierEntry> newQueue() {
+			return new PriorityBlockingQueue<FrontierEntry>(INITIAL_CAPACITY, BY_SCORE);
+		}
+
+		@Override
+		public boolean usesScore() {
+			return true;
+		}
+	};
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final Comparator<FrontierEntry> BY_DEPTH = Comparator
+			.comparingInt(FrontierEntry::getDepth)
+			.thenComparingLong(entry -> entry.sequence);
+	private static final Comparator<FrontierEntry> BY_SCORE = Comparator
+			.comparingDouble(FrontierEntry::getScore).reversed()
+			.thenComparing(BY_DEPTH);
+
+	/**
+	 * Creates the queue of a frontier, that hands out the links in this order.
+	 *
+	 * @return a new thread-safe queue
+	 */
+	public abstract Queue<FrontierEntry> newQueue();
+
+	/**
+	 * Returns true if the links need to be scored for this order.
+	 *
+	 * @return true if the order depends on the score of the links
+	 */
+	public boolean usesScore() {
+		return false;
+	}
+}
@@ -0,0 +1,343 @@
+package lawnbway.jcrawler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+import lawnbway.jcrawler.util.CancellationToken;
+
+/**
+ * HttpClientFetcher fetches documents with a java.net.http.HttpClient that is shared
+ * by all the crawl jobs. The client keeps connections alive between requests to the same
+ * host and multiplexes requests over HTTP/2 connections where the server supports it.
+ *
+ * <p>It is a non-blocking fetcher: <tt>fetchAsync</tt> returns as soon as the request
+ * is sent, and no thread waits for the response. A fetch bound to a CancellationToken
+ * cancels its exchange once the crawl is cancelled, which closes the connection
+ * and stops reading the response.</p>
+ *
+ * <p>Conditional fetches send the validators of a cached copy of the document,
+ * and return the validators of the response.</p>
+ *
+ * <p>The responses tell how many bytes their body had, and how long their
+ * headers took to arrive.</p>
+ *
+ * @see Fetcher
+ */
+public class HttpClientFetcher implements Fetcher {
+
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+	private static final int DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+	private final HttpClient client;
+	private final Duration timeout;
+	private final int maxBodySize;
+
+	/**
+	 * Creates a fetcher with its own HttpClient, that prefers HTTP/2,
+	 * follows redirects, times out after 10 seconds and reads at most 1 MB
+	 * of a response, like JsoupFetcher. The client completes its requests
+	 * on the common ForkJoinPool rather than on a thread per connection,
+	 * since the responses are handed over to the crawl threads anyway.
+	 */
+	public HttpClientFetcher() {
+		this(DEFAULT_TIMEOUT, DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * Same as <tt>HttpClientFetcher()</tt>, but with the provided limits.
+	 *
+	 * @param timeout    the connect timeout of the client and the timeout of every request
+	 * @param maxBodySize    maximum number of bytes read from a response, or 0 for no limit
+	 */
+	public HttpClientFetcher(Duration timeout, int maxBodySize) {
+		this(HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(timeout)
+				.executor(ForkJoinPool.commonPool())
+				.build(), timeout, maxBodySize);
+	}
+
+	/**
+	 * Creates a fetcher that sends its requests through the provided client,
+	 * and reads at most 1 MB of a response.
+	 *
+	 * @param client    the HTTP client to share between the crawl jobs
+	 * @param timeout    the timeout of every request
+	 */
+	public HttpClientFetcher(HttpClient client, Duration timeout) {
+		this(client, timeout, DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * Creates a fetcher that sends its requests through the provided client,
+	 * and truncates the responses that are longer than <tt>maxBodySize</tt> bytes.
+	 * The rest of a truncated response is not read, and a character that the limit
+	 * cuts in two is left out.
+	 *
+	 * @param client    the HTTP client to share between the crawl jobs
+	 * @param timeout    the timeout of every request
+	 * @param maxBodySize    maximum number of bytes read from a response, or 0 for no limit
+	 */
+	public HttpClientFetcher(HttpClient client, Duration timeout, int maxBodySize) {
+		if (maxBodySize < 0)
+			throw new IllegalArgumentException("The maximum body size must not be negative");
+		this.client = client;
+		this.timeout = timeout;
+		this.maxBodySize = maxBodySize;
+	}
+
+	@Override
+	public FetchResponse fetch(String url, String userAgent) throws IOException {
+		try {
+			return fetchAsync(url, userAgent).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching " + url);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	@Override
+	public FetchResponse fetch(String url, String userAgent, CancellationToken cancellation) throws IOException {
+		return fetchIfModified(url, userAgent, null, null, cancellation);
+	}
+
+	@Override
+	public FetchResponse fetchIfModified(String url, String userAgent, String etag, String lastModified,
+			CancellationToken cancellation) throws IOException {
+		try {
+			return fetchAsyncIfModified(url, userAgent, etag, lastModified, cancellation).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching " + url);
+		} catch (CancellationException e) {
+			throw new InterruptedIOException("Crawl cancelled while fetching " + url);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof CancellationException)
+				throw new InterruptedIOException("Crawl cancelled while fetching " + url);
+			throw new IOException(e.getCause());
+		}
+	}
+
+	@Override
+	public CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent) {
+		return fetchAsync(url, userAgent, null);
+	}
+
+	@Override
+	public CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent, CancellationToken cancellation) {
+		return fetchAsyncIfModified(url, userAgent, null, null, cancellation);
+	}
+
+	/**
+	 * Sends the request and, if the crawl is cancelled before the response
+	 * is read, cancels the exchange itself rather than a future derived from it.
+	 */
+	@Override
+	public CompletableFuture<FetchResponse> fetchAsyncIfModified(String url, String userAgent, String etag,
+			String lastModified, CancellationToken cancellation) {
+		if (cancellation != null && cancellation.isCancelled())
+			return CompletableFuture.failedFuture(new CancellationException("Crawl cancelled before fetching " + url));
+		HttpRequest request;
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+					.timeout(timeout)
+					.header("User-Agent", userAgent);
+			if (etag != null)
+				builder.header("If-None-Match", etag);
+			if (lastModified != null)
+				builder.header("If-Modified-Since", lastModified);
+			request = builder.GET().build();
+		} catch (IllegalArgumentException e) {
+			return CompletableFuture.failedFuture(new IOException("Malformed URL: " + url, e));
+		}
+		final long sent = System.nanoTime();
+		final long[] transfer = { -1, 0 };	// time to the headers, and bytes of the body
+		HttpResponse.BodyHandler<String> bodyHandler = responseInfo -> {
+			transfer[0] = System.nanoTime() - sent;
+			Charset charset = charsetOf(responseInfo.headers());
+			return new CountingBodySubscriber(maxBodySize == 0 ? HttpResponse.BodySubscribers.ofString(charset)
+					: new LimitedBodySubscriber(charset, maxBodySize), transfer);
+		};
+		CompletableFuture<HttpResponse<String>> exchange = client.sendAsync(request, bodyHandler);
+		if (cancellation != null) {
+			CancellationToken.Registration registration = cancellation.onCancel(() -> exchange.cancel(true));
+			exchange.whenComplete((response, failure) -> registration.close());
+		}
+		return exchange.thenApply(response -> new FetchResponse(response.uri().toString(), response.statusCode(),
+						response.headers().firstValue("Content-Type").orElse(null), response.body(),
+						response.headers().firstValue("ETag").orElse(null),
+						response.headers().firstValue("Last-Modified").orElse(null), transfer[1], transfer[0]));
+	}
+
+	@Override
+	public boolean isNonBlocking() {
+		return true;
+	}
+
+	/**
+	 * Gets the client shared by the crawl jobs.
+	 *
+	 * @return the HTTP client
+	 */
+	public HttpClient getClient() {
+		return client;
+	}
+
+	/**
+	 * Gets the charset of the Content-Type header, the way
+	 * <tt>BodyHandlers.ofString()</tt> does.
+	 *
+	 * @param headers    the headers of the response
+	 * @return the charset of the response, UTF-8 if there is none or it is not supported
+	 */
+	private static Charset charsetOf(HttpHeaders headers) {
+		String contentType = headers.firstValue("Content-Type").orElse("");
+		int start = contentType.toLowerCase().indexOf("charset=");
+		if (start < 0)
+			return StandardCharsets.UTF_8;
+		String name = contentType.substring(start + "charset=".length());
+		int end = name.indexOf(';');
+		name = (end < 0 ? name : name.substring(0, end)).trim().replace("\"", "");
+		try {
+			return Charset.forName(name);
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+	/**
+	 * Counts the bytes of the body of a response on their way to another subscriber.
+	 */
+	private static final class CountingBodySubscriber implements HttpResponse.BodySubscriber<String> {
+		private final HttpResponse.BodySubscriber<String> body;
+		private final long[] transfer;
+
+		CountingBodySubscriber(HttpResponse.BodySubscriber<String> body, long[] transfer) {
+			this.body = body;
+			this.transfer = transfer;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			body.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			for (ByteBuffer buffer : buffers)
+				transfer[1] += buffer.remaining();
+			body.onNext(buffers);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			body.onComplete();
+		}
+
+		@Override
+		public CompletionStage<String> getBody() {
+			return body.getBody();
+		}
+	}
+
+	/**
+	 * Reads the body of a response up to a number of bytes, and cancels
+	 * the rest of the response once the limit is reached.
+	 */
+	private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<String> {
+		private final CompletableFuture<String> body = new CompletableFuture<String>();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final Charset charset;
+		private final int maxBodySize;
+		private Flow.Subscription subscription;
+		private boolean truncated;
+
+		LimitedBodySubscriber(Charset charset, int maxBodySize) {
+			this.charset = charset;
+			this.maxBodySize = maxBodySize;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (body.isDone())
+				return;
+			for (ByteBuffer buffer : buffers) {
+				byte[] chunk = new byte[Math.min(buffer.remaining(), maxBodySize - bytes.size())];
+				buffer.get(chunk);
+				bytes.write(chunk, 0, chunk.length);
+				if (bytes.size() >= maxBodySize) {
+					subscription.cancel();
+					truncated = true;
+					onComplete();
+					return;
+				}
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			if (body.isDone())
+				return;
+			if (!truncated) {
+				body.complete(new String(bytes.toByteArray(), charset));
+				return;
+			}
+			// the input does not end here: the first bytes of a character cut in two are left undecoded
+			CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			CharBuffer text = CharBuffer.allocate((int) (bytes.size() * (double) decoder.maxCharsPerByte()) + 1);
+			decoder.decode(ByteBuffer.wrap(bytes.toByteArray()), text, false);
+			text.flip();
+			body.complete(text.toString());
+		}
+
+		@Override
+		public CompletionStage<String> getBody() {
+			return body;
+		}
+	}
+}
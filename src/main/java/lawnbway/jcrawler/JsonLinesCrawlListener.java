@@ -0,0 +1,327 @@
+package lawnbway.jcrawler;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JsonLinesCrawlListener writes the events of the crawl jobs as JSON lines, one
+ * object per event, for other programs to read:
+ *
+ * <pre>
+ * {"time":"2026-10-18T09:12:01.234Z","thread":"parse-3","event":"fetched","url":"https://example.com/","status":200}
+ * {"time":"2026-10-18T09:12:01.240Z","thread":"parse-3","event":"links","url":"https://example.com/","count":42}
+ * </pre>
+ *
+ * <p>The crawl jobs do not write anything themselves: they put their events in a queue
+ * and return, and a thread of the listener takes them out in batches, formats and writes
+ * them, and flushes the output once per batch. The events are written in the order they
+ * were queued.</p>
+ *
+ * <p>The crawl jobs never wait for the output. The queue holds <tt>capacity</tt> events,
+ * and while it is full, e.g. because the output is a pipe that is not read, the events
+ * are dropped and counted by <tt>droppedCount</tt>, so that a slow output neither slows
+ * down the crawl nor fills the heap.</p>
+ *
+ * <p>The listener must be closed once the crawl is over, which writes the events still
+ * in the queue. Events that arrive after <tt>close</tt> are dropped. If the output fails,
+ * the listener prints the error once and drops the events from then on; the crawl goes on.</p>
+ *
+ * @see CrawlListener
+ * @see CrawlConfig.Builder#eventLog(Path)
+ */
+public final class JsonLinesCrawlListener implements CrawlListener, Closeable {
+
+	/** The number of events the queue holds by default. */
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+	private static final int BATCH_SIZE = 1024;
+	private static final Event END = new Event("end", null, null, null);
+
+	/** An event, formatted by the thread of the listener. */
+	private static final class Event {
+		final long time = System.currentTimeMillis();
+		final String thread = Thread.currentThread().getName();
+		final String type;
+		final String url;
+		final String field;
+		final Object value;
+
+		Event(String type, String url, String field, Object value) {
+			this.type = type;
+			this.url = url;
+			this.field = field;
+			this.value = value;
+		}
+	}
+
+	private final BlockingQueue<Event> events;
+	private final Writer out;
+	private final Thread writer;
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	/**
+	 * Creates a listener that writes to a stream, in UTF-8, with a queue of
+	 * DEFAULT_CAPACITY events, and starts its thread.
+	 *
+	 * @param out    the output, which is closed along with the listener
+	 */
+	public JsonLinesCrawlListener(OutputStream out) {
+		this(out, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a listener that writes to a stream, in UTF-8, and starts its thread.
+	 *
+	 * @param out    the output, which is closed along with the listener
+	 * @param capacity    the number of events the queue holds before it drops them
+	 */
+	public JsonLinesCrawlListener(OutputStream out, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The queue must hold at least one event");
+		this.events = new LinkedBlockingQueue<Event>(capacity);
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		this.writer = new Thread(this::writeEvents, "crawl-events");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Opens a listener that appends to a file, so that a resumed crawl goes on with
+	 * the file of the crawl it continues.
+	 *
+	 * @param file    the file, which is created if it does not exist
+	 * @return the listener
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static JsonLinesCrawlListener open(Path file) throws IOException {
+		return new JsonLinesCrawlListener(Files.newOutputStream(file, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND, StandardOpenOption.WRITE));
+	}
+
+	@Override
+	public void pageFetched(String url, int statusCode) {
+		queue(new Event("fetched", url, "status", statusCode));
+	}
+
+	@Override
+	public void pageReused(String url, boolean notModified) {
+		queue(new Event("reused", url, "notModified", notModified));
+	}
+
+	@Override
+	public void pageSkipped(String url, String reason) {
+		queue(new Event("skipped", url, "reason", reason));
+	}
+
+	@Override
+	public void linksFound(String url, int count) {
+		queue(new Event("links", url, "count", count));
+	}
+
+	/**
+	 * Queues the number of hits of every term, rather than their positions.
+	 */
+	@Override
+	public void hitFound(WordSearchResult result) {
+		queue(new Event("hit", result.getCurrentUrl(), "hits", result.getHits()));
+	}
+
+	@Override
+	public void error(String url, Throwable error) {
+		queue(new Event("error", url, "error", error.toString()));
+	}
+
+	/**
+	 * Queues an event unless the queue is full or the listener is closed, and counts it as dropped otherwise.
+	 */
+	private void queue(Event event) {
+		if (closed || !events.offer(event))
+			dropped.incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of events written so far.
+	 *
+	 * @return the number of lines written
+	 */
+	public long writtenCount() {
+		return written.get();
+	}
+
+	/**
+	 * Gets the number of events dropped so far, because the queue was full, the
+	 * listener was closed or the output failed.
+	 *
+	 * @return the number of events that are not written
+	 */
+	public long droppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of events written and dropped.
+	 *
+	 * @return summary of the listener
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d event(s) written, %d dropped", writtenCount(), droppedCount());
+	}
+
+	/**
+	 * Writes the events still in the queue, stops the thread of the listener and closes
+	 * the output. The events that arrive from then on are dropped. Does nothing if the
+	 * listener is closed already.
+	 *
+	 * @throws IOException if the events could not be written, or the output could not be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			events.put(END);	// waits for room, which the thread of the listener makes
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		dropped.addAndGet(events.size());	// queued while the listener was being closed
+		out.close();
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Takes the events out of the queue in batches and writes them, until the listener is closed.
+	 */
+	private void writeEvents() {
+		List<Event> batch = new ArrayList<Event>(BATCH_SIZE);
+		StringBuilder line = new StringBuilder();
+		try {
+			while (true) {
+				batch.add(events.take());
+				events.drainTo(batch, BATCH_SIZE - 1);
+				for (Event event : batch) {
+					if (event == END) {
+						flush();
+						return;
+					}
+					if (failure != null) {
+						dropped.incrementAndGet();
+						continue;
+					}
+					line.setLength(0);
+					format(event, line);
+					try {
+						out.write(line.toString());
+						written.incrementAndGet();
+					} catch (IOException e) {
+						dropped.incrementAndGet();
+						fail(e);
+					}
+				}
+				batch.clear();
+				flush();
+			}
+		} catch (InterruptedException e) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		if (failure != null)
+			return;
+		try {
+			out.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void fail(IOException e) {
+		failure = e;
+		System.out.println("ERROR! Can't write the crawl events, they are dropped from now on: " + e);
+	}
+
+	private static void format(Event event, StringBuilder line) {
+		line.append("{\"time\":");
+		quote(Instant.ofEpochMilli(event.time).toString(), line);
+		line.append(",\"thread\":");
+		quote(event.thread, line);
+		line.append(",\"event\":");
+		quote(event.type, line);
+		line.append(",\"url\":");
+		quote(event.url, line);
+		line.append(",\"").append(event.field).append("\":");
+		if (event.value instanceof Map) {
+			line.append('{');
+			for (Map.Entry<?, ?> hits : ((Map<?, ?>) event.value).entrySet()) {
+				if (line.charAt(line.length() - 1) != '{')
+					line.append(',');
+				quote(String.valueOf(hits.getKey()), line);
+				line.append(':').append(((List<?>) hits.getValue()).size());
+			}
+			line.append('}');
+		}
+		else if (event.value instanceof String)
+			quote((String) event.value, line);
+		else
+			line.append(event.value);
+		line.append('}').append('\n');
+	}
+
+	/**
+	 * Appends a JSON string, or null.
+	 */
+	private static void quote(String value, StringBuilder line) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					line.append(String.format("\\u%04x", (int) c));
+				else
+					line.append(c);
+			}
+		}
+		line.append('"');
+	}
+}
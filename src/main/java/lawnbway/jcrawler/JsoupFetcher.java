@@ -0,0 +1,143 @@
+package lawnbway.jcrawler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import lawnbway.jcrawler.util.CancellationToken;
+
+/**
+ * JsoupFetcher fetches documents with a new jsoup Connection per request.
+ * It is a blocking fetcher: the calling thread waits for the response,
+ * so the number of concurrent fetches is the number of fetching threads.
+ *
+ * <p>A fetch bound to a CancellationToken interrupts its thread once the crawl is
+ * cancelled. On a virtual thread, this closes the socket and aborts the read right
+ * away; on a platform thread, the read goes on until the response or the timeout.</p>
+ *
+ * <p>jsoup reads the body along with the headers, so the responses tell the size
+ * of their body, but not when their headers arrived.</p>
+ *
+ * @see Fetcher
+ */
+public class JsoupFetcher implements Fetcher {
+
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+	private static final int DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+	private final int timeoutMillis;
+	private final int maxBodySize;
+
+	/**
+	 * Creates a fetcher with the defaults of jsoup: requests time out after
+	 * 30 seconds, and only the first megabyte of a response is read.
+	 */
+	public JsoupFetcher() {
+		this(DEFAULT_TIMEOUT, DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * Creates a fetcher with the provided limits. A longer response is truncated.
+	 *
+	 * @param timeout    the connect and read timeout of every request
+	 * @param maxBodySize    maximum number of bytes read from a response, or 0 for no limit
+	 */
+	public JsoupFetcher(Duration timeout, int maxBodySize) {
+		this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+		this.maxBodySize = maxBodySize;
+	}
+
+	@Override
+	public FetchResponse fetch(String url, String userAgent) throws IOException {
+		return execute(url, userAgent, null, null);
+	}
+
+	@Override
+	public FetchResponse fetch(String url, String userAgent, CancellationToken cancellation) throws IOException {
+		return fetchIfModified(url, userAgent, null, null, cancellation);
+	}
+
+	@Override
+	public FetchResponse fetchIfModified(String url, String userAgent, String etag, String lastModified,
+			CancellationToken cancellation) throws IOException {
+		if (cancellation.isCancelled())
+			throw new InterruptedIOException("Crawl cancelled before fetching " + url);
+		final Thread thread = Thread.currentThread();
+		CancellationToken.Registration registration = cancellation.onCancel(thread::interrupt);
+		try {
+			return execute(url, userAgent, etag, lastModified);
+		} catch (IOException e) {
+			if (cancellation.isCancelled())
+				throw new InterruptedIOException("Crawl cancelled while fetching " + url);
+			throw e;
+		} finally {
+			registration.close();
+			if (registration.hasFired())
+				Thread.interrupted();	// the interrupt was only meant for this fetch, not for the next job of the thread
+		}
+	}
+
+	/**
+	 * Runs the blocking fetch on the common ForkJoinPool.
+	 */
+	@Override
+	public CompletableFuture<FetchResponse> fetchAsync(final String url, final String userAgent) {
+		return executeAsync(url, userAgent, null, null);
+	}
+
+	/**
+	 * Same as <tt>fetchAsync(String, String, CancellationToken)</tt>, but the blocking 
+	 * fetch on the common ForkJoinPool sends the validators.
+	 */
+	@Override
+	public CompletableFuture<FetchResponse> fetchAsyncIfModified(String url, String userAgent, String etag,
+			String lastModified, CancellationToken cancellation) {
+		if (cancellation.isCancelled())
+			return CompletableFuture.failedFuture(new CancellationException("Crawl cancelled before fetching " + url));
+		CompletableFuture<FetchResponse> future = executeAsync(url, userAgent, etag, lastModified);
+		CancellationToken.Registration registration = cancellation.onCancel(() -> future.cancel(true));
+		future.whenComplete((response, failure) -> registration.close());
+		return future;
+	}
+
+	/**
+	 * Sends the request, with the validators of a cached copy of the document if there are any.
+	 */
+	private FetchResponse execute(String url, String userAgent, String etag, String lastModified) throws IOException {
+		Connection connection = Jsoup.connect(url)
+				.userAgent(userAgent)
+				.timeout(timeoutMillis)
+				.maxBodySize(maxBodySize)
+				.ignoreHttpErrors(true)
+				.ignoreContentType(true);
+		if (etag != null)
+			connection.header("If-None-Match", etag);
+		if (lastModified != null)
+			connection.header("If-Modified-Since", lastModified);
+		Connection.Response response = connection.execute();
+		return new FetchResponse(response.url().toExternalForm(), response.statusCode(),
+				response.contentType(), response.body(), response.header("ETag"), response.header("Last-Modified"),
+				response.bodyAsBytes().length, -1);
+	}
+
+	private CompletableFuture<FetchResponse> executeAsync(final String url, final String userAgent,
+			final String etag, final String lastModified) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return execute(url, userAgent, etag, lastModified);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	@Override
+	public boolean isNonBlocking() {
+		return false;
+	}
+}
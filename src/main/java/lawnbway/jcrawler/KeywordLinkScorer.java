@@ -0,0 +1,97 @@
+package lawnbway.jcrawler;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+/**
+ * KeywordLinkScorer scores a link by the words of the search terms that
+ * it shows, a heuristic that works well for topical crawls: links whose anchor
+ * text or URL mention the topic tend to lead to pages about the topic, and
+ * so do the links found on such pages.
+ *
+ * <p>The score of a link adds up:</p>
+ * <ul>
+ * <li>the share of the words of the terms that are in its anchor text</li>
+ * <li>half the share of the words that are in its path and query, where
+ * punctuation such as <tt>-</tt>, <tt>_</tt> and <tt>/</tt> separates words</li>
+ * <li>half the score of the link of the page it was found on</li>
+ * </ul>
+ *
+ * <p>Words are matched as whole words, ignoring case. A single word of a phrase
+ * counts, even though only the whole phrase is a hit of the search.</p>
+ *
+ * @see LinkScorer
+ * @see FrontierOrdering#BEST_FIRST
+ */
+public class KeywordLinkScorer implements LinkScorer {
+
+	private static final double ANCHOR_WEIGHT = 1.0;
+	private static final double URL_WEIGHT = 0.5;
+	private static final double PARENT_DECAY = 0.5;
+	private final KeywordMatcher words;
+	private final int wordCount;
+
+	/**
+	 * Creates a scorer for the words of the search terms.
+	 *
+	 * @param terms    the terms that the crawler is looking for
+	 */
+	public KeywordLinkScorer(KeywordMatcher terms) {
+		Set<String> distinct = new LinkedHashSet<String>();
+		for (String term : terms.getTerms())
+			distinct.addAll(Arrays.asList(term.toLowerCase().split(" ")));
+		distinct.remove("");
+		this.words = new KeywordMatcher(distinct, true, true);
+		this.wordCount = this.words.getTerms().size();
+	}
+
+	@Override
+	public double score(String url, String anchorText, FrontierEntry parent) {
+		double score = ANCHOR_WEIGHT * shareOfWordsIn(anchorText) + URL_WEIGHT * shareOfWordsIn(wordsOfUrl(url));
+		if (parent != null)
+			score += PARENT_DECAY * parent.getScore();
+		return score;
+	}
+
+	/**
+	 * Gets the share of the words of the terms that are in a text.
+	 *
+	 * @param text    the text to scan, or null
+	 * @return the number of distinct words found, divided by the number of words
+	 */
+	private double shareOfWordsIn(CharSequence text) {
+		if (text == null || text.length() == 0 || wordCount == 0)
+			return 0;
+		final boolean[] found = new boolean[wordCount];
+		final int[] distinctFound = new int[1];
+		words.scan(text, (word, position) -> {
+			if (!found[word]) {
+				found[word] = true;
+				distinctFound[0]++;
+			}
+		});
+		return distinctFound[0] / (double) wordCount;
+	}
+
+	/**
+	 * Turns the path and the query of a URL into words separated by spaces.
+	 *
+	 * @param url    the URL address
+	 * @return the words of the path and the query
+	 */
+	private static CharSequence wordsOfUrl(String url) {
+		int scheme = url.indexOf("://");
+		int path = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+		if (path < 0)
+			return null;
+		StringBuilder text = new StringBuilder(url.length() - path);
+		for (int i = path; i < url.length(); i++) {
+			char c = url.charAt(i);
+			text.append(Character.isLetterOrDigit(c) ? c : ' ');
+		}
+		return text;
+	}
+}
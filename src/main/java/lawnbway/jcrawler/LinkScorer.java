@@ -0,0 +1,25 @@
+package lawnbway.jcrawler;
+
+/**
+ * LinkScorer estimates how likely a link is to lead to the pages a crawl
+ * is looking for, so that FrontierOrdering.BEST_FIRST can crawl the most
+ * promising links first. The score is computed once, when the link is
+ * pushed into the Frontier, from what is known about the link at that point.
+ *
+ * <p>A scorer is called by many crawl jobs at once, so it must be thread-safe.</p>
+ *
+ * @see KeywordLinkScorer
+ * @see FrontierOrdering
+ */
+public interface LinkScorer {
+
+	/**
+	 * Scores a discovered link. Higher scores are crawled first.
+	 *
+	 * @param url    the normalized URL address of the link
+	 * @param anchorText    the visible text of the link, or null if it is not known
+	 * @param parent    the link of the page the link was found on, or null for a seed URL
+	 * @return the score of the link
+	 */
+	double score(String url, String anchorText, FrontierEntry parent);
+}
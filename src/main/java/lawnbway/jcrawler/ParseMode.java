@@ -0,0 +1,17 @@
+package lawnbway.jcrawler;
+
+/**
+ * ParseMode selects how a SearchCrawlJob reads the documents it fetches.
+ *
+ * <p>DOM parses every document with Jsoup into a Document, selects its links
+ * and keeps it until the word search is done. STREAMING scans the document once
+ * with a StreamingHtmlExtractor, which collects the links and the visible text
+ * without building a DOM, so a job only keeps the text of the page. On large pages,
+ * the DOM takes several times the memory of the document itself.</p>
+ *
+ * @see lawnbway.jcrawler.util.StreamingHtmlExtractor
+ */
+public enum ParseMode {
+	DOM,
+	STREAMING
+}
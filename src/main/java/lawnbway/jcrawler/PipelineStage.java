@@ -0,0 +1,223 @@
+package lawnbway.jcrawler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PipelineStage is one stage of the crawl pipeline (fetch, parse or analyze):
+ * an executor service that runs the tasks of the stage, along with counters
+ * that make its queue depth and throughput observable while the crawl runs.
+ *
+ * <p>A bounded stage has a fixed number of threads and a queue of limited capacity.
+ * Once the queue is full, <tt>submit</tt> blocks until a thread takes a task out of it,
+ * so a stage that falls behind slows down the stage that feeds it rather than
+ * piling up documents in memory.</p>
+ *
+ * @see CrawlManagerConcurrent
+ */
+public class PipelineStage {
+
+	private final String name;
+	private final ExecutorService executor;
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicInteger peakQueued = new AtomicInteger();
+	private final long startNanos = System.nanoTime();
+
+	/**
+	 * Creates a bounded stage.
+	 *
+	 * @param name    name of the stage, also used for its threads
+	 * @param threads    number of threads of the stage
+	 * @param queueCapacity    number of tasks that may wait for a thread
+	 */
+	public PipelineStage(final String name, int threads, int queueCapacity) {
+		this.name = name;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						return new Thread(r, name + "-" + count.incrementAndGet());
+					}
+				}, new BlockingHandoff());
+	}
+
+	/**
+	 * Creates a stage that runs its tasks on the provided executor service,
+	 * e.g. on virtual threads. The stage is as bounded as the executor service is.
+	 *
+	 * @param name    name of the stage
+	 * @param executor    the executor service that runs the tasks
+	 */
+	public PipelineStage(String name, ExecutorService executor) {
+		this.name = name;
+		this.executor = executor;
+	}
+
+	/**
+	 * Submits a task to the stage, waiting while the queue of the stage is full.
+	 *
+	 * @param task    the task to run
+	 * @throws RejectedExecutionException if the stage is shut down, or the thread
+	 *         is interrupted while waiting
+	 */
+	public void submit(final Runnable task) {
+		submitted.incrementAndGet();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					started.incrementAndGet();
+					try {
+						task.run();
+					} finally {
+						completed.incrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			submitted.decrementAndGet();
+			throw e;
+		}
+		updatePeak();
+	}
+
+	/**
+	 * Counts a task that runs outside of the executor service of this stage,
+	 * such as a non-blocking fetch, from now until the future completes.
+	 *
+	 * @param task    future of the task
+	 * @return the same future
+	 */
+	public <T> CompletableFuture<T> track(CompletableFuture<T> task) {
+		submitted.incrementAndGet();
+		started.incrementAndGet();
+		task.whenComplete((result, failure) -> completed.incrementAndGet());
+		return task;
+	}
+
+	private void updatePeak() {
+		int queued = queueDepth();
+		int peak;
+		while (queued > (peak = peakQueued.get()) && !peakQueued.compareAndSet(peak, queued))
+			;
+	}
+
+	/**
+	 * Gets the executor service of the stage, e.g. to run the continuation of 
+	 * a <tt>track</tt>ed task. Tasks run on it directly are not counted.
+	 *
+	 * @return the executor service of the stage
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Gets the name of the stage.
+	 *
+	 * @return the name of the stage
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of tasks waiting for a thread.
+	 *
+	 * @return the queue depth
+	 */
+	public int queueDepth() {
+		return (int) Math.max(0, submitted.get() - started.get());
+	}
+
+	/**
+	 * Gets the largest number of tasks that waited for a thread at once.
+	 *
+	 * @return the peak queue depth
+	 */
+	public int peakQueueDepth() {
+		return peakQueued.get();
+	}
+
+	/**
+	 * Gets the number of tasks being run.
+	 *
+	 * @return the number of active tasks
+	 */
+	public int activeCount() {
+		return (int) Math.max(0, started.get() - completed.get());
+	}
+
+	/**
+	 * Gets the number of tasks completed so far, successfully or not.
+	 *
+	 * @return the number of completed tasks
+	 */
+	public long completedCount() {
+		return completed.get();
+	}
+
+	/**
+	 * Gets the number of tasks completed per second since the stage was created.
+	 *
+	 * @return the throughput of the stage
+	 */
+	public double throughput() {
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		return seconds > 0 ? completed.get() / seconds : 0;
+	}
+
+	/**
+	 * Stops the stage, interrupting running tasks and tasks waiting to submit.
+	 */
+	public void shutdownNow() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Waits until the tasks of the stage stop after <tt>shutdownNow</tt>.
+	 *
+	 * @param timeout    maximum time to wait
+	 * @param unit    unit of the timeout
+	 * @return true if the stage terminated, false if the timeout elapsed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d queued (peak %d), %d active, %d done, %.1f/s",
+				name, queueDepth(), peakQueueDepth(), activeCount(), completedCount(), throughput());
+	}
+
+	/**
+	 * Puts a task the executor could not take into the queue, waiting for space.
+	 */
+	private static class BlockingHandoff implements RejectedExecutionHandler {
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown())
+				throw new RejectedExecutionException("Stage is shut down");
+			try {
+				executor.getQueue().put(r);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for the stage", e);
+			}
+		}
+	}
+}
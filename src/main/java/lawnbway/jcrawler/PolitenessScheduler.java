@@ -0,0 +1,290 @@
+package lawnbway.jcrawler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import lawnbway.jcrawler.util.CancellationToken;
+import lawnbway.jcrawler.util.ParsedURL;
+import lawnbway.jcrawler.util.URLUtil;
+
+/**
+ * PolitenessScheduler sits between the Frontier and the crawl jobs and decides
+ * when a URL may be fetched. It keeps a queue of URLs per host and limits
+ * every host to a number of requests per second (a token bucket with a burst size)
+ * and a number of concurrent connections. A <tt>Crawl-delay</tt> from robots.txt
+ * lowers the request rate of its host further.
+ *
+ * <p>Hosts that have URLs waiting and may be fetched at some point in the future
+ * are kept in a DelayQueue ordered by the time they become ready, so no thread
+ * sleeps on behalf of a host: the dispatching thread either polls for a ready URL
+ * or blocks in the DelayQueue until the earliest host is ready, or the crawl is cancelled.</p>
+ *
+ * <p>Every URL handed out by <tt>poll</tt> or <tt>take</tt> must be passed to
+ * <tt>release</tt> once its fetch completes, to free the connection slot.</p>
+ *
+ * @see Frontier
+ * @see CrawlManagerConcurrent
+ */
+public class PolitenessScheduler {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	private final double requestsPerSecond;
+	private final int burst;
+	private final int maxConnectionsPerHost;
+	private final Map<String, HostQueue> hosts = new HashMap<String, HostQueue>();
+	private final Map<String, Double> crawlDelays = new HashMap<String, Double>();
+	private final DelayQueue<HostQueue> readyQueue = new DelayQueue<HostQueue>();
+	private int pending;
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param requestsPerSecond    maximum request rate per host, or 0 for no limit
+	 * @param burst    number of requests a host may receive at once after being idle
+	 * @param maxConnectionsPerHost    maximum number of concurrent fetches per host
+	 */
+	public PolitenessScheduler(double requestsPerSecond, int burst, int maxConnectionsPerHost) {
+		if (requestsPerSecond < 0 || burst < 1 || maxConnectionsPerHost < 1)
+			throw new IllegalArgumentException("Invalid politeness settings");
+		this.requestsPerSecond = requestsPerSecond;
+		this.burst = burst;
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * Creates a scheduler that waits at least <tt>minDelayMillis</tt> between
+	 * two requests to the same host.
+	 *
+	 * @param minDelayMillis    minimum delay between requests to a host, in milliseconds
+	 * @param maxConnectionsPerHost    maximum number of concurrent fetches per host
+	 * @return the scheduler
+	 */
+	public static PolitenessScheduler withMinDelay(long minDelayMillis, int maxConnectionsPerHost) {
+		double rate = minDelayMillis > 0 ? 1000.0 / minDelayMillis : 0;
+		return new PolitenessScheduler(rate, 1, maxConnectionsPerHost);
+	}
+
+	/**
+	 * Honours the <tt>Crawl-delay</tt> of a host: there will be at least that many
+	 * seconds between two requests to the host, unless the configured rate is lower.
+	 * A delay that is not a positive finite number is ignored.
+	 *
+	 * @param host    host name
+	 * @param seconds    delay between requests, in seconds
+	 */
+	public synchronized void setCrawlDelay(String host, double seconds) {
+		if (!Double.isFinite(seconds) || seconds <= 0)
+			return;
+		Double previous = crawlDelays.put(host, seconds);
+		if (previous != null && previous == seconds)
+			return;
+		HostQueue queue = hosts.get(host);
+		if (queue != null)
+			queue.setRate(rateOf(host));
+	}
+
+	/**
+	 * Adds a URL to the queue of its host.
+	 *
+	 * @param url    valid URL address to schedule
+	 */
+	public synchronized void add(String url) {
+		String host = hostOf(url);
+		HostQueue queue = hosts.get(host);
+		if (queue == null) {
+			queue = new HostQueue(host, rateOf(host));
+			hosts.put(host, queue);
+		}
+		queue.urls.add(url);
+		pending++;
+		schedule(queue);
+	}
+
+	/**
+	 * Gets a URL whose host may be fetched right now.
+	 *
+	 * @return URL to fetch, or null if no host is ready
+	 */
+	public String poll() {
+		return acquire(readyQueue.poll());
+	}
+
+	/**
+	 * Waits until a host is ready and gets its next URL. Must only be called
+	 * when there are URLs pending and some host has a free connection slot,
+	 * otherwise it waits until another thread adds or releases a URL.
+	 *
+	 * @return URL to fetch
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public String take() throws InterruptedException {
+		String url;
+		while ((url = acquire(readyQueue.take())) == null)
+			;
+		return url;
+	}
+
+	/**
+	 * Same as <tt>take()</tt>, but stops waiting once the crawl is cancelled:
+	 * the cancellation puts a host without URLs into the ready queue, which wakes it up.
+	 *
+	 * @param cancellation    the cancellation token of the crawl
+	 * @return URL to fetch, or null if the crawl was cancelled
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public String take(CancellationToken cancellation) throws InterruptedException {
+		CancellationToken.Registration registration = cancellation.onCancel(() -> readyQueue.add(new HostQueue("", 0)));
+		try {
+			while (!cancellation.isCancelled()) {
+				String url = acquire(readyQueue.take());
+				if (url != null)
+					return url;
+			}
+			return null;
+		} finally {
+			registration.close();
+		}
+	}
+
+	/**
+	 * Frees the connection slot taken by a URL once its fetch completes.
+	 *
+	 * @param url    URL returned by <tt>poll</tt> or <tt>take</tt>
+	 */
+	public synchronized void release(String url) {
+		HostQueue queue = hosts.get(hostOf(url));
+		if (queue == null)
+			return;
+		queue.active--;
+		schedule(queue);
+	}
+
+	/**
+	 * Gets the time until the earliest host becomes ready.
+	 *
+	 * @return nanoseconds until a URL can be polled, 0 if one can be polled now,
+	 *         or Long.MAX_VALUE if no host is waiting
+	 */
+	public long nanosUntilReady() {
+		HostQueue next = readyQueue.peek();
+		return next == null ? Long.MAX_VALUE : Math.max(0, next.getDelay(TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Gets the number of URLs waiting in the host queues.
+	 *
+	 * @return the number of pending URLs
+	 */
+	public synchronized int pendingCount() {
+		return pending;
+	}
+
+	/**
+	 * Gets the number of hosts URLs were scheduled for. Hosts are kept
+	 * after their queue drains, so that their request rate carries over.
+	 *
+	 * @return the number of hosts
+	 */
+	public synchronized int hostCount() {
+		return hosts.size();
+	}
+
+	/**
+	 * Takes the next URL of a host that came out of the ready queue.
+	 */
+	private synchronized String acquire(HostQueue queue) {
+		if (queue == null)
+			return null;
+		queue.scheduled = false;
+		String url = queue.urls.poll();
+		if (url == null)
+			return null;
+		pending--;
+		queue.consumeToken();
+		queue.active++;
+		schedule(queue);
+		return url;
+	}
+
+	/**
+	 * Puts the host in the ready queue if it has URLs waiting and a free connection slot.
+	 */
+	private void schedule(HostQueue queue) {
+		if (!queue.scheduled && !queue.urls.isEmpty() && queue.active < maxConnectionsPerHost) {
+			queue.scheduled = true;
+			readyQueue.add(queue);
+		}
+	}
+
+	private double rateOf(String host) {
+		Double crawlDelay = crawlDelays.get(host);
+		if (crawlDelay == null)
+			return requestsPerSecond;
+		double robotsRate = 1 / crawlDelay;
+		if (!(robotsRate > 0))	// a rate of 0 would mean no limit at all
+			return requestsPerSecond;
+		return requestsPerSecond > 0 ? Math.min(requestsPerSecond, robotsRate) : robotsRate;
+	}
+
+	private static String hostOf(String url) {
+		ParsedURL parsed = URLUtil.parse(url);
+		return parsed == null ? "" : parsed.host();
+	}
+
+	/**
+	 * The URLs of a single host together with its token bucket.
+	 * Guarded by the scheduler lock, except for the ready time read by DelayQueue,
+	 * which is only changed while the host is out of the queue.
+	 */
+	private class HostQueue implements Delayed {
+		final String host;
+		final Deque<String> urls = new ArrayDeque<String>();
+		int active;
+		boolean scheduled;
+		private double rate;
+		private double tokens;
+		private long lastRefill;
+		private volatile long readyAt;
+
+		HostQueue(String host, double rate) {
+			this.host = host;
+			this.rate = rate;
+			this.tokens = burst;
+			this.lastRefill = System.nanoTime();
+			this.readyAt = lastRefill;
+		}
+
+		void setRate(double rate) {
+			this.rate = rate;
+			this.tokens = Math.min(tokens, rate > 0 ? 1 : burst);
+		}
+
+		/**
+		 * Spends a token and computes when the next token will be available.
+		 */
+		void consumeToken() {
+			if (rate <= 0)
+				return;
+			long now = System.nanoTime();
+			tokens = Math.min(burst, tokens + (now - lastRefill) * rate / NANOS_PER_SECOND) - 1;
+			lastRefill = now;
+			readyAt = tokens >= 1 ? now : now + (long) ((1 - tokens) * NANOS_PER_SECOND / rate);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			long diff = readyAt - ((HostQueue) other).readyAt;
+			return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package lawnbway.jcrawler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * QueueSnapshot is a copy of the queue of a Frontier, taken while the crawl is
+ * paused and written to a checkpoint afterwards, while the crawl goes on.
+ *
+ * <p>The entries of an in-memory queue are copied, which only copies references,
+ * since the entries are immutable. The entries a SpillingFrontierQueue keeps on disk
+ * are not read at all: the snapshot keeps links to its segment files, with the range
+ * of every file that belongs to the snapshot, and copies them into the checkpoint
+ * byte for byte, since both use the binary format of FrontierEntry.</p>
+ *
+ * @see Checkpoint
+ * @see SpillingFrontierQueue
+ */
+final class QueueSnapshot {
+
+	/** A range of a segment file that belongs to the snapshot. */
+	static final class Segment {
+		final Path path;
+		final long from;
+		final long to;
+
+		Segment(Path path, long from, long to) {
+			this.path = path;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private static final int BUFFER_BYTES = 1024 * 1024;
+	private final List<FrontierEntry> entries;
+	private final List<Segment> segments;
+	private final ByteBuffer tail;
+	private final long size;
+
+	/**
+	 * Creates a snapshot of entries that are in memory.
+	 *
+	 * @param entries    the entries, in the order in which they are handed out
+	 */
+	QueueSnapshot(Collection<FrontierEntry> entries) {
+		this(entries, Collections.<Segment> emptyList(), null, 0);
+	}
+
+	/**
+	 * Creates a snapshot of entries in memory, followed by entries in segment files
+	 * and in a buffer that was not written to a segment yet.
+	 *
+	 * @param entries    the entries in memory
+	 * @param segments    ranges of segment files that only belong to this snapshot
+	 * @param tail    encoded entries that follow the segments, or null
+	 * @param spilled    the number of entries in the segments and the tail
+	 */
+	QueueSnapshot(Collection<FrontierEntry> entries, List<Segment> segments, ByteBuffer tail, long spilled) {
+		this.entries = new ArrayList<FrontierEntry>(entries);
+		this.segments = segments;
+		this.tail = tail;
+		this.size = this.entries.size() + spilled;
+	}
+
+	/**
+	 * Creates a snapshot of the entries of this snapshot, preceded by other entries.
+	 *
+	 * @param first    the entries to hand out first, e.g. the ones polled but not crawled yet
+	 * @return the new snapshot
+	 */
+	QueueSnapshot prependedWith(Collection<FrontierEntry> first) {
+		if (first.isEmpty())
+			return this;
+		List<FrontierEntry> all = new ArrayList<FrontierEntry>(first.size() + entries.size());
+		all.addAll(first);
+		all.addAll(entries);
+		return new QueueSnapshot(all, segments, tail, size - entries.size());
+	}
+
+	/**
+	 * Gets the number of entries of the snapshot.
+	 *
+	 * @return the number of entries
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Writes the entries in the binary format of FrontierEntry.
+	 *
+	 * @param out    the channel to write to
+	 * @throws IOException if an entry or a segment file cannot be copied
+	 */
+	void writeTo(FileChannel out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		for (FrontierEntry entry : entries) {
+			if (buffer.remaining() < entry.encodedSize()) {
+				write(buffer, out);
+				if (entry.encodedSize() > buffer.capacity())
+					buffer = ByteBuffer.allocateDirect(entry.encodedSize());
+			}
+			entry.writeTo(buffer);
+		}
+		write(buffer, out);
+		for (Segment segment : segments) {
+			try (FileChannel in = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+				long position = segment.from;
+				while (position < segment.to)
+					position += in.transferTo(position, segment.to - position, out);
+			}
+		}
+		if (tail != null) {
+			ByteBuffer copy = tail.duplicate();
+			while (copy.hasRemaining())
+				out.write(copy);
+		}
+	}
+
+	/**
+	 * Deletes the links to the segment files.
+	 *
+	 * @throws IOException if a link cannot be deleted
+	 */
+	void release() throws IOException {
+		for (Segment segment : segments)
+			Files.deleteIfExists(segment.path);
+	}
+
+	private static void write(ByteBuffer buffer, FileChannel out) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,557 @@
+package lawnbway.jcrawler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lawnbway.jcrawler.util.URLFingerprint;
+import lawnbway.jcrawler.util.URLUtil;
+
+/**
+ * ResponseCache keeps, from one crawl to the next, what the crawl jobs got out of
+ * every HTML page they fetched: the validators of the page (its ETag and Last-Modified
+ * headers), a hash of its body, its links with their anchor texts and its visible text.
+ * Pages are kept by normalized URL.
+ *
+ * <p>When a page is crawled again, the crawl job sends a conditional request with the
+ * validators of the cached copy. If the server answers 304 Not Modified, the page is
+ * neither downloaded nor parsed: the links and the text of the cached copy are used
+ * instead. If the server ignores the validators but the body hashes to the same value,
+ * the page is downloaded but not parsed.</p>
+ *
+ * <p>The cache is a single file, <tt>responses.bin</tt>, in the cache directory. Every
+ * page that is stored is appended to it as a record, so a crash loses at most the last
+ * record. Only the headers of the records, with the validators and the position of
+ * the content, are kept in memory; the links and the text of a page are read from
+ * the file when the page is reused. When the cache is closed, the file is compacted
+ * if most of it holds outdated copies of pages.</p>
+ *
+ * <p>A cache directory may only be used by one crawl at a time.</p>
+ *
+ * @see CrawlConfig.Builder#responseCache(Path)
+ * @see Fetcher#fetchIfModified(String, String, String, String, lawnbway.jcrawler.util.CancellationToken)
+ */
+public final class ResponseCache implements Closeable {
+
+	static final String FILE_NAME = "responses.bin";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final int MAGIC = 0x4a435243; // "JCRC"
+	private static final int VERSION = 1;
+	private static final int FILE_HEADER_BYTES = 8;
+	private static final int RECORD_HEADER_BYTES = 8;	// lengths of the page header and of the content
+
+	/**
+	 * The cached copy of a page, without its content: the validators, the hash
+	 * of the body and the position of the content in the cache file.
+	 */
+	public static final class Page {
+		private final String url;
+		private final String etag;
+		private final String lastModified;
+		private final long contentHash;
+		private final int bodyLength;
+		private final long recordOffset;
+		private final int recordLength;
+		private final int contentLength;
+
+		Page(String url, String etag, String lastModified, long contentHash, int bodyLength, long recordOffset,
+				int recordLength, int contentLength) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.contentHash = contentHash;
+			this.bodyLength = bodyLength;
+			this.recordOffset = recordOffset;
+			this.recordLength = recordLength;
+			this.contentLength = contentLength;
+		}
+
+		/**
+		 * Gets the normalized URL address of the page.
+		 *
+		 * @return the URL address
+		 */
+		public String getUrl() {
+			return url;
+		}
+
+		/**
+		 * Gets the ETag of the page when it was cached.
+		 *
+		 * @return the ETag, or null if the server sent none
+		 */
+		public String getETag() {
+			return etag;
+		}
+
+		/**
+		 * Gets the Last-Modified time of the page when it was cached.
+		 *
+		 * @return the Last-Modified header, or null if the server sent none
+		 */
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Gets the hash of the body of the page.
+		 *
+		 * @return the hash, see <tt>ResponseCache.contentHash</tt>
+		 */
+		public long getContentHash() {
+			return contentHash;
+		}
+
+		/**
+		 * Gets the length of the body of the page, which is not downloaded
+		 * again as long as the page is not modified.
+		 *
+		 * @return the number of characters of the body
+		 */
+		public int getBodyLength() {
+			return bodyLength;
+		}
+
+		/**
+		 * Returns true if a response has the same body as the cached copy.
+		 *
+		 * @param response    a response with a body
+		 * @return true if the body hashes to the hash of the cached copy
+		 */
+		public boolean hasSameContent(FetchResponse response) {
+			return response.getBody() != null && response.getBody().length() == bodyLength
+					&& contentHash(response.getBody()) == contentHash;
+		}
+
+		private long contentOffset() {
+			return recordOffset + recordLength - contentLength;
+		}
+	}
+
+	/**
+	 * What the crawl job got out of a cached page: its links, their anchor texts and its visible text.
+	 */
+	public static final class Content {
+		private final List<String> links;
+		private final List<String> anchorTexts;
+		private final String text;
+
+		Content(List<String> links, List<String> anchorTexts, String text) {
+			this.links = Collections.unmodifiableList(links);
+			this.anchorTexts = Collections.unmodifiableList(anchorTexts);
+			this.text = text;
+		}
+
+		/**
+		 * Gets the links of the page.
+		 *
+		 * @return the absolute URL addresses of the links, in the order of the page
+		 */
+		public List<String> getLinks() {
+			return links;
+		}
+
+		/**
+		 * Gets the anchor texts of the links, if they were collected when the page was cached.
+		 *
+		 * @return the anchor texts in the order of the links, or an empty list
+		 */
+		public List<String> getAnchorTexts() {
+			return anchorTexts;
+		}
+
+		/**
+		 * Gets the visible text of the page.
+		 *
+		 * @return the body text
+		 */
+		public String getText() {
+			return text;
+		}
+	}
+
+	private final Path directory;
+	private final Path file;
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final ConcurrentMap<String, Page> pages = new ConcurrentHashMap<String, Page>();
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong unchanged = new AtomicLong();
+	private final AtomicLong stored = new AtomicLong();
+	private final AtomicLong charactersSaved = new AtomicLong();
+	private long end;	// guarded by this
+	private long outdatedBytes;	// guarded by this
+	private boolean closed;	// guarded by this
+
+	private ResponseCache(Path directory, FileChannel channel, FileLock lock) {
+		this.directory = directory;
+		this.file = directory.resolve(FILE_NAME);
+		this.channel = channel;
+		this.lock = lock;
+	}
+
+	/**
+	 * Opens the cache of a directory, which is created if it does not exist,
+	 * and reads the headers of the cached pages. A record that was cut short
+	 * by a crash is dropped.
+	 *
+	 * @param directory    the cache directory
+	 * @return the cache
+	 * @throws IOException if the cache cannot be read, or is used by another crawl
+	 */
+	public static ResponseCache open(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		FileChannel channel = FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		FileLock lock;
+		try {
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			channel.close();
+			throw new IOException("The response cache in " + directory + " is used by another crawl");
+		}
+		ResponseCache cache = new ResponseCache(directory, channel, lock);
+		try {
+			cache.readIndex();
+		} catch (IOException e) {
+			cache.closeChannel();
+			throw e;
+		}
+		return cache;
+	}
+
+	/**
+	 * Gets the cached copy of a page.
+	 *
+	 * @param url    the URL address of the page
+	 * @return the cached copy, or null if the page is not cached
+	 */
+	public Page get(String url) {
+		return pages.get(key(url));
+	}
+
+	/**
+	 * Reads the content of a cached page, to be used instead of a response whose body
+	 * is the same as that of the cached copy: either a 304 Not Modified response to
+	 * a conditional request, or a response with the same content hash. The statistics
+	 * of the cache count the page as not modified or unchanged; in the latter case,
+	 * the validators of the cached copy are updated if the server sent new ones.
+	 *
+	 * @param page    the cached copy
+	 * @param response    the response to the request for the page
+	 * @return the content of the cached copy
+	 * @throws IOException if the content cannot be read
+	 */
+	public Content reuse(Page page, FetchResponse response) throws IOException {
+		Content content = read(page);
+		if (response.isNotModified()) {
+			notModified.incrementAndGet();
+			charactersSaved.addAndGet(page.getBodyLength());
+		} else {
+			unchanged.incrementAndGet();
+			if (!Objects.equals(page.getETag(), response.getETag())
+					|| !Objects.equals(page.getLastModified(), response.getLastModified()))
+				append(page.getUrl(), response, content.getLinks(), content.getAnchorTexts(), content.getText());
+		}
+		return content;
+	}
+
+	/**
+	 * Stores what a crawl job got out of a page, replacing the cached copy if there is one.
+	 * Nothing is stored once the cache is closed.
+	 *
+	 * @param url    the URL address of the page
+	 * @param response    the response with the body of the page and its validators
+	 * @param links    the links of the page
+	 * @param anchorTexts    the anchor texts of the links, or an empty list if they were not collected
+	 * @param text    the visible text of the page
+	 * @throws IOException if the page cannot be written to the cache file
+	 */
+	public void put(String url, FetchResponse response, List<String> links, List<String> anchorTexts, String text)
+			throws IOException {
+		append(key(url), response, links, anchorTexts, text);
+		stored.incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of cached pages.
+	 *
+	 * @return the number of pages
+	 */
+	public int size() {
+		return pages.size();
+	}
+
+	/**
+	 * Gets the number of pages the servers answered with 304 Not Modified since the cache was opened.
+	 *
+	 * @return the number of pages reused without downloading them
+	 */
+	public long notModifiedCount() {
+		return notModified.get();
+	}
+
+	/**
+	 * Gets the number of pages that were downloaded with the same body as their cached copy
+	 * since the cache was opened.
+	 *
+	 * @return the number of pages reused without parsing them
+	 */
+	public long unchangedCount() {
+		return unchanged.get();
+	}
+
+	/**
+	 * Gets the number of pages that were stored since the cache was opened.
+	 *
+	 * @return the number of new or changed pages
+	 */
+	public long storedCount() {
+		return stored.get();
+	}
+
+	/**
+	 * Gets the length of the bodies that were not downloaded since the cache was opened.
+	 *
+	 * @return the number of characters of the bodies of the pages that were not modified
+	 */
+	public long charactersSaved() {
+		return charactersSaved.get();
+	}
+
+	/**
+	 * Computes the hash of the body of a page. Two bodies with the same hash
+	 * are taken to be the same.
+	 *
+	 * @param body    the body of a page
+	 * @return the 64-bit hash of the body
+	 */
+	public static long contentHash(String body) {
+		return URLFingerprint.of(body);	// the fingerprint hashes any sequence of characters
+	}
+
+	/**
+	 * Returns a one-line summary of the cache.
+	 *
+	 * @return summary of the cache
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d page(s) in %s: %d not modified (%.1f MB not downloaded), %d unchanged, %d stored",
+				size(), directory, notModifiedCount(), charactersSaved() / 1e6, unchangedCount(), storedCount());
+	}
+
+	/**
+	 * Closes the cache. If more than half of the cache file holds outdated copies
+	 * of pages, the file is compacted first.
+	 *
+	 * @throws IOException if the cache file cannot be compacted
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		Path compacted = null;
+		try {
+			if (outdatedBytes > (end - FILE_HEADER_BYTES) / 2)
+				compacted = compact();
+		} finally {
+			closeChannel();
+		}
+		if (compacted != null)
+			Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void closeChannel() throws IOException {
+		try {
+			lock.release();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads the headers of the records, or writes the header of a new cache file.
+	 */
+	private void readIndex() throws IOException {
+		long size = channel.size();
+		if (size == 0) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+			header.flip();
+			writeFully(header, 0);
+			end = FILE_HEADER_BYTES;
+			return;
+		}
+		channel.position(0);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+		if (size < FILE_HEADER_BYTES || in.readInt() != MAGIC || in.readInt() != VERSION)
+			throw new IOException(file + " is not a response cache of this version");
+		long offset = FILE_HEADER_BYTES;
+		while (offset < size) {
+			try {
+				int headerLength = in.readInt();
+				int contentLength = in.readInt();
+				int recordLength = RECORD_HEADER_BYTES + headerLength + contentLength;
+				if (headerLength < 0 || contentLength < 0 || offset + recordLength > size)
+					break;	// cut short by a crash
+				String url = in.readUTF();
+				String etag = readString(in);
+				String lastModified = readString(in);
+				long contentHash = in.readLong();
+				int bodyLength = in.readInt();
+				in.skipNBytes(contentLength);
+				Page previous = pages.put(url, new Page(url, etag, lastModified, contentHash, bodyLength, offset,
+						recordLength, contentLength));
+				if (previous != null)
+					outdatedBytes += previous.recordLength;
+				offset += recordLength;
+			} catch (EOFException e) {
+				break;
+			}
+		}
+		if (offset < size)
+			channel.truncate(offset);
+		end = offset;
+	}
+
+	private Content read(Page page) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(page.contentLength);
+		long position = page.contentOffset();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException("The cached copy of " + page.getUrl() + " is cut short");
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+		List<String> links = readStrings(in);
+		List<String> anchorTexts = readStrings(in);
+		String text = readString(in);
+		return new Content(links, anchorTexts, text);
+	}
+
+	private void append(String url, FetchResponse response, List<String> links, List<String> anchorTexts, String text)
+			throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(header);
+		String body = response.getBody() != null ? response.getBody() : "";
+		out.writeUTF(url);
+		writeString(out, response.getETag());
+		writeString(out, response.getLastModified());
+		out.writeLong(contentHash(body));
+		out.writeInt(body.length());
+		ByteArrayOutputStream content = new ByteArrayOutputStream(64 + (text == null ? 0 : 2 * text.length()));
+		out = new DataOutputStream(content);
+		writeStrings(out, links);
+		writeStrings(out, anchorTexts);
+		writeString(out, text);
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + header.size() + content.size());
+		record.putInt(header.size()).putInt(content.size()).put(header.toByteArray()).put(content.toByteArray());
+		record.flip();
+		synchronized (this) {
+			if (closed)
+				return;
+			long offset = end;
+			writeFully(record, offset);
+			end += record.limit();
+			Page previous = pages.put(url, new Page(url, response.getETag(), response.getLastModified(),
+					contentHash(body), body.length(), offset, record.limit(), content.size()));
+			if (previous != null)
+				outdatedBytes += previous.recordLength;
+		}
+	}
+
+	/**
+	 * Copies the records of the cached pages to a new cache file, which replaces 
+	 * the old one once it is closed.
+	 *
+	 * @return the new cache file
+	 */
+	private Path compact() throws IOException {
+		Path temporary = directory.resolve(FILE_NAME + TEMPORARY_SUFFIX);
+		List<Page> live = new ArrayList<Page>(pages.values());
+		live.sort((a, b) -> Long.compare(a.recordOffset, b.recordOffset));
+		try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+			header.flip();
+			while (header.hasRemaining())
+				out.write(header);
+			for (Page page : live) {
+				long copied = 0;
+				while (copied < page.recordLength)
+					copied += channel.transferTo(page.recordOffset + copied, page.recordLength - copied, out);
+			}
+			out.force(true);
+		}
+		return temporary;
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer, position + buffer.position());
+	}
+
+	private static String key(String url) {
+		String normalized = URLUtil.normalize(url);
+		return normalized == null ? url : normalized;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings)
+			writeString(out, string);
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> strings = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			strings.add(readString(in));
+		return strings;
+	}
+}
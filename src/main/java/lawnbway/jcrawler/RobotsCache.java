@@ -0,0 +1,226 @@
+package lawnbway.jcrawler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lawnbway.jcrawler.util.ParsedURL;
+import lawnbway.jcrawler.util.RobotsRules;
+import lawnbway.jcrawler.util.RobotsUtil;
+import lawnbway.jcrawler.util.URLUtil;
+
+/**
+ * RobotsCache keeps the RobotsRules of every website a crawl comes across.
+ * robots.txt of a website is fetched the first time one of its URLs is checked,
+ * and again once its rules are older than the time to live. The threads that check
+ * URLs of a website while its robots.txt is fetched wait for that fetch, so
+ * robots.txt is fetched once per website, however many threads use the cache.
+ * A thread that must not wait, such as a parse thread that pushes links into the
+ * Frontier, gets the rules with <tt>rulesForAsync</tt> instead, which fetches
+ * robots.txt with <tt>Fetcher.fetchAsync</tt>.
+ *
+ * <p>As in RFC 9309, a website whose robots.txt does not exist (a 4xx status) may be
+ * crawled entirely, and a website whose robots.txt cannot be fetched (a 5xx status or
+ * a network error) may not be crawled at all. Since the latter is usually temporary,
+ * it is fetched again after at most ERROR_TTL, and the previous rules of the website,
+ * if there are any, are kept in the meantime.</p>
+ *
+ * <p>A CrawlManager has a cache of its own, that keeps the rules across its crawls;
+ * several CrawlManagers may share a cache.</p>
+ *
+ * @see RobotsRules
+ * @see RobotsUtil
+ * @see CrawlConfig.Builder#robots(String, Duration)
+ */
+public class RobotsCache {
+
+	/** The time to live of the rules of a website, by default. */
+	public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+	/** The time after which robots.txt is fetched again if it could not be fetched. */
+	public static final Duration ERROR_TTL = Duration.ofMinutes(5);
+	/** The product token of this crawler in robots.txt, by default. */
+	public static final String DEFAULT_PRODUCT_TOKEN = "jcrawler";
+
+	/** The rules of a website, once they are fetched, and when they expire. */
+	private static final class Entry {
+		final CompletableFuture<RobotsRules> rules = new CompletableFuture<RobotsRules>();
+		final RobotsRules previous;
+		volatile long expiresAtNanos = Long.MAX_VALUE;	// does not expire while it is fetched
+
+		Entry(RobotsRules previous) {
+			this.previous = previous;
+		}
+	}
+
+	private final ConcurrentMap<String, Entry> websites = new ConcurrentHashMap<String, Entry>();
+	private final String productToken;
+	private final long ttlNanos;
+	private final long errorTtlNanos;
+	private volatile Fetcher fetcher;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param fetcher    the fetcher of robots.txt
+	 * @param productToken    the product token of this crawler in robots.txt
+	 * @param ttl    the time to live of the rules of a website
+	 */
+	public RobotsCache(Fetcher fetcher, String productToken, Duration ttl) {
+		if (ttl.isNegative() || ttl.isZero())
+			throw new IllegalArgumentException("The time to live of robots.txt must be positive");
+		this.fetcher = fetcher;
+		this.productToken = productToken;
+		this.ttlNanos = ttl.toNanos();
+		this.errorTtlNanos = Math.min(ttlNanos, ERROR_TTL.toNanos());
+	}
+
+	/**
+	 * Gets the rules of the website of a URL, and fetches its robots.txt
+	 * if the website is new or its rules expired.
+	 *
+	 * @param url    a valid URL address
+	 * @return the rules of the website
+	 */
+	public RobotsRules rulesFor(String url) {
+		return rules(url, false).join();
+	}
+
+	/**
+	 * Same as <tt>rulesFor</tt>, but does not wait for robots.txt: if the website is
+	 * new or its rules expired, robots.txt is fetched asynchronously.
+	 *
+	 * @param url    a valid URL address
+	 * @return future that completes with the rules of the website, which is done if they are cached
+	 */
+	public CompletableFuture<RobotsRules> rulesForAsync(String url) {
+		return rules(url, true);
+	}
+
+	private CompletableFuture<RobotsRules> rules(String url, boolean async) {
+		String root = URLUtil.getRootUrl(url);
+		Entry entry = websites.get(root);
+		if (entry == null || entry.expiresAtNanos - System.nanoTime() < 0) {
+			Entry fresh = new Entry(entry == null ? null : entry.rules.getNow(null));
+			Entry current = entry == null ? websites.putIfAbsent(root, fresh)
+					: websites.replace(root, entry, fresh) ? null : websites.get(root);
+			if (current == null) {	// this thread won: it fetches robots.txt
+				if (async)
+					loadAsync(root, fresh);
+				else
+					load(root, fresh);
+				return fresh.rules;
+			}
+			entry = current;
+		}
+		return entry.rules;
+	}
+
+	/**
+	 * Returns true if robots.txt of its website allows the URL to be crawled.
+	 *
+	 * @param url    a valid URL address
+	 * @return true if the URL may be crawled
+	 */
+	public boolean isAllowed(String url) {
+		ParsedURL parsed = URLUtil.parse(url);
+		return parsed == null || rulesFor(url).isPathAllowed(RobotsRules.pathOf(parsed));
+	}
+
+	/**
+	 * Gets the Crawl-delay of the website of a URL.
+	 *
+	 * @param url    a valid URL address
+	 * @return the delay between two requests in seconds, or 0 if there is none
+	 */
+	public double getCrawlDelay(String url) {
+		return rulesFor(url).getCrawlDelay();
+	}
+
+	/**
+	 * Sets the fetcher of robots.txt from now on.
+	 *
+	 * @param fetcher    the fetcher to use
+	 */
+	public void setFetcher(Fetcher fetcher) {
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Gets the number of websites in the cache.
+	 *
+	 * @return the number of websites whose rules were fetched or are being fetched
+	 */
+	public int size() {
+		return websites.size();
+	}
+
+	/**
+	 * Fetches and parses robots.txt of a website, and completes the entry with its rules.
+	 *
+	 * @param root    the root URL of the website
+	 * @param entry    the entry of the website, which this thread put in the cache
+	 */
+	private void load(String root, Entry entry) {
+		FetchResponse response;
+		try {
+			response = fetcher.fetch(root + "/robots.txt", productToken);
+		} catch (IOException | RuntimeException e) {
+			complete(root, entry, null, e);
+			return;
+		}
+		complete(root, entry, response, null);
+	}
+
+	/**
+	 * Same as <tt>load</tt>, but returns right away: the entry is completed by
+	 * the thread that completes the fetch.
+	 *
+	 * @param root    the root URL of the website
+	 * @param entry    the entry of the website, which this thread put in the cache
+	 */
+	private void loadAsync(String root, Entry entry) {
+		CompletableFuture<FetchResponse> response;
+		try {
+			response = fetcher.fetchAsync(root + "/robots.txt", productToken);
+		} catch (RuntimeException e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+		response.whenComplete((fetched, error) -> complete(root, entry, fetched,
+				error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+	}
+
+	/**
+	 * Parses the response to the fetch of robots.txt of a website, and completes the entry with its rules.
+	 *
+	 * @param root    the root URL of the website
+	 * @param entry    the entry of the website
+	 * @param response    the response, or null if the fetch failed
+	 * @param error    the reason the fetch failed, or null if it did not
+	 */
+	private void complete(String root, Entry entry, FetchResponse response, Throwable error) {
+		RobotsRules rules = null;
+		try {
+			if (error == null) {
+				int status = response.getStatusCode();
+				if (status >= 200 && status < 300)
+					rules = RobotsUtil.parse(response.getBody(), productToken);
+				else if (status >= 400 && status < 500)
+					rules = RobotsRules.ALLOW_ALL;
+			}
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		if (error != null)
+			System.out.println(String.format("ERROR! Can't fetch %s/robots.txt: %s", root, error));
+		long ttl = ttlNanos;
+		if (rules == null) {	// a 5xx status or an error
+			rules = entry.previous != null ? entry.previous : RobotsRules.DISALLOW_ALL;
+			ttl = errorTtlNanos;
+		}
+		entry.expiresAtNanos = System.nanoTime() + ttl;
+		entry.rules.complete(rules);
+	}
+}
@@ -1,80 +1,354 @@
 package lawnbway.jcrawler;
 import java.io.IOException;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import org.jsoup.*;
 import org.jsoup.nodes.*;
 import org.jsoup.select.*;
 
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.SimHash;
+import lawnbway.jcrawler.util.StreamingHtmlExtractor;
+
 /**
  * SearchCrawlJob represents a single unit of crawling activity performed on a specified HTML document.
  * Its main functions are to gather every hyperlink from the provided HTML document
  * and search for a specified key word (searchWord) in that document. It also stores
  * the collected hyperlinks in a list, ready to provide them to a CrawlManager.
  * 
+ * <p>With a ResponseCache, a page that was crawled before is fetched with a conditional
+ * request, and if it did not change, its links and text are taken from the cache
+ * instead of being parsed again.</p>
+ * 
+ * <p>With a DuplicateIndex, the text of every page is fingerprinted, and a page that is
+ * a copy of a page crawled before is skipped: its links are dropped and its text is not searched.</p>
+ * 
+ * <p>With CrawlMetrics, the job records its response, its errors and the time of its stages.</p>
+ * 
  * @see CrawlManager
  */
 public class SearchCrawlJob extends CrawlJob{
 	
 	private static final int USER_AGENT_SWITCH_PROBABILITY = 30;
+	private static final ThreadLocal<StreamingHtmlExtractor> EXTRACTOR = new ThreadLocal<StreamingHtmlExtractor>() {
+		@Override
+		protected StreamingHtmlExtractor initialValue() {
+			return new StreamingHtmlExtractor();
+		}
+	};
 	protected Document htmlDocument;
+	protected String bodyText; // visible text of the document, in ParseMode.STREAMING
+	protected ParseMode parseMode = ParseMode.DOM;
 	protected String searchWord;
+	protected boolean stopAtFirstHit;
+	protected int userAgentSwitchProbability = USER_AGENT_SWITCH_PROBABILITY;
+	protected boolean collectAnchorTexts;
+	protected List<String> anchorTexts = new LinkedList<String>(); // visible text of every link, if collected
 	volatile protected WordSearchResult wordSearchResult;
+	protected ResponseCache responseCache;
+	protected ResponseCache.Page cachedPage; // cached copy of the current page, if any
+	protected DuplicateIndex duplicateIndex;
+	protected boolean fingerprintText;
+	protected SimHash textHash; // fingerprint of the text, if it is fingerprinted
+	protected CrawlMetrics metrics;
+	protected CrawlListener listener = ConsoleCrawlListener.INSTANCE;
 
 	
 	/**
-	 * Sends a HTTP GET request to a specified url.
+	 * Sends a HTTP GET request to a specified url through the fetcher of this job.
 	 * In case the requested document is HTML, collects all the 
 	 * links from the page (regardless of reply status code) and
 	 * saves them to a list.
 	 * 
 	 * @param url	the address of the document to be crawled
 	 * @return result of the crawl job; conatins status (successful or unsuccessful) and URL of the document
+	 * 
+	 * @see Fetcher
 	 */
 	public CrawlResult crawl(String url) {
 		
-		setUrl(url);
-		crawlResult = new CrawlResult(false, false, url);  // crawl result is false by default, no error occured
-		
+		startCrawl(url);
         try {
-        	switchUsrAgent(); // changes user agent every once in a while
-            Connection connection = Jsoup.connect(getUrl()).userAgent(getUsrAgent());
-            
-            Document htmlDocument = connection.get();
-            this.htmlDocument = htmlDocument;
-            
-            // if status code is other than 200, the page is unlikely to contain any links,
-            // so it is safe to proceed regardless
-            if(connection.response().statusCode() == 200) {
-            	System.out.println("**Visiting** Received web page at " + getUrl());
-            }
-            
-            // abort the crawl with negative (unsuccessful) result if document is not in HTML format
-            if(!connection.response().contentType().contains("text/html")) {
-                System.out.println("**Failure** Retrieved something other than HTML");
-                return crawlResult;
-            }
-
-            Elements linksOnPage = htmlDocument.select("a[href]");    // find all html links on the page
-            System.out.println("Found (" + linksOnPage.size() + ") links");
-            for(Element link : linksOnPage) {
-                this.links.add(link.absUrl("href"));    // add the links to the list of links from the page
-            }
-            crawlResult.setSuccess(true);
-            return crawlResult;
+            long start = System.nanoTime();
+            FetchResponse response = sendRequest();
+            recordFetch(response, start);
+            return processResponse(response);
             // when the method's attempt to get the document at specified URL address is unsuccessful
         } catch(IOException ioe) {
-        	crawlResult.setErrorStatus(true);
-            System.out.println("ERROR! Error in HTTP request. " + ioe);
-            return crawlResult;
+        	return failCrawl(ioe);
         }
     }
 	
+	/**
+	 * Prepares a new crawl of the specified url: resets the crawl result, 
+	 * changes user agent every once in a while and looks up the cached copy 
+	 * of the document, if there is a response cache.
+	 * 
+	 * @param url	the address of the document to be crawled
+	 */
+	protected void startCrawl(String url) {
+		setUrl(url);
+		crawlResult = new CrawlResult(false, false, url);  // crawl result is false by default, no error occured
+		switchUsrAgent();
+		cachedPage = responseCache != null ? responseCache.get(url) : null;
+		textHash = null;
+	}
+	
+	/**
+	 * Sends the request of the crawl through the fetcher of this job, 
+	 * with the validators of the cached copy of the document if there is one.
+	 * 
+	 * @return the response
+	 * @throws IOException if the request fails
+	 */
+	protected FetchResponse sendRequest() throws IOException {
+		if(cachedPage == null)
+			return getFetcher().fetch(getUrl(), getUsrAgent(), cancellation);
+		return getFetcher().fetchIfModified(getUrl(), getUsrAgent(), cachedPage.getETag(), 
+				cachedPage.getLastModified(), cancellation);
+	}
+	
+	/**
+	 * Same as <tt>sendRequest</tt>, but sends the request asynchronously.
+	 * 
+	 * @return future that completes with the response, or exceptionally if the request fails
+	 */
+	protected CompletableFuture<FetchResponse> sendRequestAsync() {
+		if(cachedPage == null)
+			return getFetcher().fetchAsync(getUrl(), getUsrAgent(), cancellation);
+		return getFetcher().fetchAsyncIfModified(getUrl(), getUsrAgent(), cachedPage.getETag(), 
+				cachedPage.getLastModified(), cancellation);
+	}
+	
+	/**
+	 * Records a response in the metrics of the crawl, if there are any.
+	 * 
+	 * @param response	the response to the request of the crawl
+	 * @param start	the <tt>System.nanoTime()</tt> at which the request was sent
+	 */
+	protected void recordFetch(FetchResponse response, long start) {
+		if(metrics != null)
+			metrics.recordFetch(response, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Parses a fetched document and collects all the links from the page.
+	 * In ParseMode.STREAMING, only the visible text of the page is kept
+	 * for the word search, rather than the whole document.
+	 * If the crawl is cancelled, the document is not parsed, or only partly
+	 * in ParseMode.STREAMING, and the crawl is unsuccessful.
+	 * 
+	 * <p>If the document was not modified since it was cached, or has the same body 
+	 * as the cached copy, it is not parsed: the links and the text of the cached copy 
+	 * are used instead. Otherwise, the parsed document is stored in the response cache.
+	 * A 304 Not Modified without a cached copy fails the crawl.</p>
+	 * 
+	 * <p>If the document is a duplicate of a document crawled before, the crawl is unsuccessful 
+	 * and finds no links.</p>
+	 * 
+	 * @param response	the response to the request sent by <tt>crawl</tt>
+	 * @return result of the crawl job
+	 */
+	protected CrawlResult processResponse(FetchResponse response) {
+		
+		if(cancellation.isCancelled()) {
+			return crawlResult;
+		}
+		listener.pageFetched(getUrl(), response.getStatusCode());
+		if(response.isNotModified() && cachedPage != null) {
+			return reuseCachedPage(response);
+		}
+		if(response.getStatusCode() >= 400) {
+			return failCrawl(new HttpStatusException("HTTP error fetching URL", response.getStatusCode(), getUrl()));
+		}
+		if(response.isNotModified()) {	// there is no cached copy, and no body to parse
+			return failCrawl(new HttpStatusException("Not Modified without a cached copy", 304, getUrl()));
+		}
+        // abort the crawl with negative (unsuccessful) result if document is not in HTML format
+        if(!response.isHtml()) {
+            listener.pageSkipped(getUrl(), "not HTML");
+            return crawlResult;
+        }
+        if(cachedPage != null && response.getStatusCode() == 200 && cachedPage.hasSameContent(response)) {
+        	return reuseCachedPage(response);
+        }
+        
+        long start = System.nanoTime();
+        if(parseMode == ParseMode.STREAMING) {
+        	this.htmlDocument = null;
+        	try {
+        		this.bodyText = extractLinksAndText(response);
+        	} catch (CancellationException e) {
+        		this.links.clear();
+        		this.anchorTexts.clear();
+        		return crawlResult;
+        	}
+        	if(metrics != null)
+        		metrics.recordSince(CrawlMetrics.Stage.PARSE, start);
+        }
+        else {
+        	this.bodyText = null;
+        	this.htmlDocument = Jsoup.parse(response.getBody(), response.getUrl());
+        	if(metrics != null) {
+        		long parsed = System.nanoTime();
+        		metrics.record(CrawlMetrics.Stage.PARSE, parsed - start);
+        		start = parsed;
+        	}
+        	Elements linksOnPage = htmlDocument.select("a[href]");    // find all html links on the page
+        	listener.linksFound(getUrl(), linksOnPage.size());
+        	for(Element link : linksOnPage) {
+        		this.links.add(link.absUrl("href"));    // add the links to the list of links from the page
+        		if(collectAnchorTexts)
+        			this.anchorTexts.add(link.text());
+        	}
+        	if(metrics != null)
+        		metrics.recordSince(CrawlMetrics.Stage.EXTRACT, start);
+        }
+        crawlResult.setSuccess(true);
+        if(responseCache != null && response.getStatusCode() == 200) {
+        	cacheResponse(response);
+        }
+        return checkDuplicate();
+	}
+	
+	/**
+	 * Takes the links and the text of the document from its cached copy, 
+	 * rather than from the response, which has no body or the same body.
+	 * 
+	 * @param response	the response to the request sent by <tt>crawl</tt>
+	 * @return result of the crawl job, unsuccessful if the cached copy cannot be read
+	 */
+	private CrawlResult reuseCachedPage(FetchResponse response) {
+		ResponseCache.Content content;
+		try {
+			content = responseCache.reuse(cachedPage, response);
+		} catch (IOException e) {
+			return failCrawl(e);
+		}
+		listener.pageReused(getUrl(), response.isNotModified());
+		this.htmlDocument = null;
+		this.bodyText = content.getText();
+		this.links.addAll(content.getLinks());
+		if(collectAnchorTexts)
+			this.anchorTexts.addAll(content.getAnchorTexts());
+		listener.linksFound(getUrl(), content.getLinks().size());
+		crawlResult.setSuccess(true);
+		return checkDuplicate();
+	}
+	
+	/**
+	 * Fingerprints the text of the document, unless it was fingerprinted while it was read, 
+	 * and checks it against the pages crawled before, if there is a duplicate index. 
+	 * A duplicate is skipped: its links, text and fingerprint are dropped, 
+	 * and the crawl is unsuccessful, so that the document is not searched.
+	 * 
+	 * @return result of the crawl job
+	 */
+	private CrawlResult checkDuplicate() {
+		if(duplicateIndex == null && !fingerprintText)
+			return crawlResult;
+		if(textHash == null) {
+			this.bodyText = getBodyText();
+			textHash = new SimHash().add(this.bodyText);
+		}
+		String original = duplicateIndex != null ? duplicateIndex.check(getUrl(), textHash) : null;
+		if(original != null) {
+			listener.pageSkipped(getUrl(), "copy of " + original);
+			this.links.clear();
+			this.anchorTexts.clear();
+			this.htmlDocument = null;
+			this.bodyText = null;
+			this.textHash = null;
+			crawlResult.setSuccess(false);
+			crawlResult.setDuplicateOf(original);
+		}
+		return crawlResult;
+	}
+	
+	/**
+	 * Stores the links and the text of a parsed document in the response cache.
+	 * In ParseMode.DOM, the text is extracted right away, and kept for the word search.
+	 * 
+	 * @param response	the response with the body of the document
+	 */
+	private void cacheResponse(FetchResponse response) {
+		this.bodyText = getBodyText();
+		try {
+			responseCache.put(getUrl(), response, this.links, 
+					collectAnchorTexts ? this.anchorTexts : new LinkedList<String>(), this.bodyText);
+		} catch (IOException e) {
+			listener.error(getUrl(), e);
+		}
+	}
+	
+	/**
+	 * Scans a fetched document once with the StreamingHtmlExtractor of the
+	 * current thread, adding the links to the list of links from the page.
+	 * The anchor text of a link is the text up to its end tag, or up to the
+	 * next link if it has none. The text is fingerprinted as it is read, if there 
+	 * is a duplicate index or the text is fingerprinted anyway.
+	 * 
+	 * @param response	the response to the request sent by <tt>crawl</tt>
+	 * @return the visible text of the document
+	 */
+	private String extractLinksAndText(FetchResponse response) {
+		final StringBuilder text = new StringBuilder();
+		final int linksBefore = this.links.size();
+		final SimHash hash = duplicateIndex != null || fingerprintText ? new SimHash() : null;
+		StreamingHtmlExtractor.Handler handler = new StreamingHtmlExtractor.Handler() {
+			private int anchorStart = -1;	// start of the text of the open link, if any
+			
+			@Override
+			public void link(String url) {
+				endLink();
+				links.add(url);
+				if(collectAnchorTexts)
+					anchorStart = text.length();
+			}
+			
+			@Override
+			public void text(CharSequence chunk) {
+				text.append(chunk);
+				if(hash != null)
+					hash.add(chunk);
+			}
+			
+			@Override
+			public void endLink() {
+				if(anchorStart >= 0) {
+					anchorTexts.add(text.substring(anchorStart).trim());
+					anchorStart = -1;
+				}
+			}
+		};
+		EXTRACTOR.get().extract(response.getBody(), response.getUrl(), handler, cancellation);
+		handler.endLink();	// the last link may never be closed
+		listener.linksFound(getUrl(), this.links.size() - linksBefore);
+		this.textHash = hash;
+		return text.toString();
+	}
+	
+	/**
+	 * Ends the crawl with an error.
+	 * 
+	 * @param error	the reason the document could not be fetched
+	 * @return result of the crawl job
+	 */
+	protected CrawlResult failCrawl(Throwable error) {
+    	crawlResult.setErrorStatus(true);
+    	if(metrics != null)
+    		metrics.recordError(error);
+        listener.error(getUrl(), error);
+        return crawlResult;
+	}
+	
 	
 	/**
 	 * Method should only be called after successful crawl!
 	 * Looks for a specified word on the current webpage.
-	 * When the webpage body text is read, it is converted to all lowercase.
-	 * Therefore, the search is case-insensetive.
+	 * The search is case-insensetive.
 	 * 
 	 * @param searchWord	the String to search for on the current page
 	 * @return true if the searchWord is found in the current htmlDocument, false if not found
@@ -82,17 +356,176 @@ public class SearchCrawlJob extends CrawlJob{
 	protected WordSearchResult searchForWord(String searchWord){
 		
 		setSearchWord(searchWord);
+		return searchForTerms(KeywordMatcher.forWord(searchWord));
+    }
+	
+	/**
+	 * Method should only be called after successful crawl!
+	 * Scans the body text of the current webpage once for all the terms
+	 * and records every hit of every term in the word search result.
+	 * If the search stops at the first hit, so does the scan. The scan also
+	 * stops once the crawl is cancelled.
+	 * 
+	 * @param terms	the terms to search for on the current page
+	 * @return word search result, successful if any of the terms was found
+	 * 
+	 * @see KeywordMatcher
+	 */
+	protected WordSearchResult searchForTerms(KeywordMatcher terms) {
+		
 		wordSearchResult = new WordSearchResult(false, false, getUrl()); // word search result is false by default, no error occured
-		if(this.htmlDocument == null) {
+		String bodyText = getBodyText();
+		if(bodyText == null) {
             System.out.println("ERROR! Call crawl() before performing analysis on the document");
             return wordSearchResult;
         }
-        System.out.println("Searching for the word " + searchWord + "...");
-        String bodyText = this.htmlDocument.body().text();
-        boolean containsSearchWord = bodyText.toLowerCase().contains(getSearchWord().toLowerCase());
-        wordSearchResult.setSuccess(containsSearchWord);
-        return wordSearchResult;
-    }
+        final List<String> termList = terms.getTerms();
+        final WordSearchResult result = wordSearchResult;
+        final boolean stopAtFirstHit = this.stopAtFirstHit;
+        long start = System.nanoTime();
+        try {
+        	terms.scan(bodyText, (term, position) -> {
+        		result.addHit(termList.get(term), position);
+        		if(stopAtFirstHit)
+        			throw new CancellationException("First hit found");
+        	}, this.cancellation);
+        } catch (CancellationException e) {
+        	// the first hit was found, or the crawl is over
+        }
+        if(metrics != null) {
+        	metrics.recordSince(CrawlMetrics.Stage.SEARCH, start);
+        	metrics.increment(CrawlMetrics.Counter.PAGES_SEARCHED);
+        }
+        if(result.getHitCount() > 0)
+        	listener.hitFound(result);
+        return result;
+	}
+	
+	/**
+	 * Gets the visible text of the crawled document, from the parsed document
+	 * or from the text kept in ParseMode.STREAMING.
+	 * 
+	 * @return body text of the document, or null if no document was crawled
+	 */
+	protected String getBodyText() {
+		if(this.bodyText != null)
+			return this.bodyText;
+		return this.htmlDocument != null ? this.htmlDocument.body().text() : null;
+	}
+	
+	/**
+	 * Sets how this crawl job reads the documents it fetches. 
+	 * ParseMode.DOM is used by default.
+	 * 
+	 * @param parseMode    the parse mode
+	 * 
+	 * @see ParseMode
+	 */
+	public void setParseMode(ParseMode parseMode) {
+		this.parseMode = parseMode;
+	}
+	
+	/**
+	 * Sets the cache of the documents of earlier crawls, which this job 
+	 * fetches with conditional requests. There is no cache by default.
+	 * 
+	 * @param responseCache	the response cache, or null for none
+	 * 
+	 * @see ResponseCache
+	 */
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+	
+	/**
+	 * Sets the index of the pages crawled so far, against which this job checks 
+	 * its document for duplicates. Duplicates are not detected by default.
+	 * 
+	 * @param duplicateIndex	the duplicate index, or null for none
+	 * 
+	 * @see DuplicateIndex
+	 */
+	public void setDuplicateIndex(DuplicateIndex duplicateIndex) {
+		this.duplicateIndex = duplicateIndex;
+	}
+	
+	/**
+	 * Sets the metrics of the crawl this job belongs to, which it records into.
+	 * Nothing is recorded by default.
+	 * 
+	 * @param metrics	the metrics of the crawl, or null for none
+	 * 
+	 * @see CrawlMetrics
+	 */
+	public void setMetrics(CrawlMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Sets the listener this job tells what it does with its document.
+	 * The events are printed on the standard output by default.
+	 * 
+	 * @param listener	the listener of the crawl, or CrawlListener.QUIET for none
+	 * 
+	 * @see CrawlListener
+	 */
+	public void setCrawlListener(CrawlListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets whether this job fingerprints the text of its document even without 
+	 * a duplicate index, for frontiers that detect URL traps.
+	 * 
+	 * @param fingerprintText	true to fingerprint the text
+	 * 
+	 * @see TrapDetector
+	 */
+	public void setFingerprintText(boolean fingerprintText) {
+		this.fingerprintText = fingerprintText;
+	}
+	
+	/**
+	 * Gets the fingerprint of the text of the crawled document.
+	 * 
+	 * @return the fingerprint, or null if the text was not fingerprinted, 
+	 *         the document could not be crawled or is a duplicate
+	 */
+	public SimHash getTextHash() {
+		return this.textHash;
+	}
+	
+	/**
+	 * Sets whether this job stops scanning its document at the first hit,
+	 * for searches that end at the first page where a term is found.
+	 * 
+	 * @param stopAtFirstHit	true to stop at the first hit
+	 */
+	public void setStopAtFirstHit(boolean stopAtFirstHit) {
+		this.stopAtFirstHit = stopAtFirstHit;
+	}
+	
+	/**
+	 * Sets whether this job keeps the anchor text of every link it finds, 
+	 * for frontiers that score the links.
+	 * 
+	 * @param collectAnchorTexts	true to keep the anchor texts
+	 * 
+	 * @see FrontierOrdering#BEST_FIRST
+	 */
+	public void setCollectAnchorTexts(boolean collectAnchorTexts) {
+		this.collectAnchorTexts = collectAnchorTexts;
+	}
+	
+	/**
+	 * Gets the anchor texts of the links that were found by this crawl job,
+	 * in the same order as <tt>getLinks</tt>, if they were collected.
+	 * 
+	 * @return list of anchor texts, empty if they were not collected
+	 */
+	public List<String> getAnchorTexts(){
+		return this.anchorTexts;
+	}
 	
 	/**
 	 * Gets the list links that were found by this crawl job.
@@ -106,13 +539,22 @@ public class SearchCrawlJob extends CrawlJob{
 	
 	/**
 	 * Switches current user agent to another random user agent
-	 * with a certain probability, specified by USER_AGENT_SPOOF_PROBABILITY.
+	 * with a certain probability, USER_AGENT_SWITCH_PROBABILITY by default.
+	 * The user agent is kept per thread, so concurrent jobs do not interfere.
 	 * 
-	 * @see UserAgentManager
+	 * @see UserAgentManagerSingleton
 	 */
 	protected void switchUsrAgent() {
-		UserAgentManagerSingleton.INSTANCE.changeUserAgent(USER_AGENT_SWITCH_PROBABILITY);
-    	setUsrAgent(UserAgentManagerSingleton.INSTANCE.getName());
+		setUsrAgent(UserAgentManagerSingleton.INSTANCE.nextUserAgent(userAgentSwitchProbability));
+	}
+	
+	/**
+	 * Sets the probability that this crawl job switches to another random user agent.
+	 * 
+	 * @param probability	the probability, in percent
+	 */
+	public void setUserAgentSwitchProbability(int probability) {
+		this.userAgentSwitchProbability = probability;
 	}
 	
 	/**
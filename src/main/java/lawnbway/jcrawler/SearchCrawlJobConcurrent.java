@@ -1,13 +1,20 @@
 package lawnbway.jcrawler;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import lawnbway.jcrawler.util.KeywordMatcher;
 
 
 
 /**
  * SearchCrawlJobConcurrent represents a single unit of crawling 
  * activity performed on a specified HTML document. Each crawl job 
- * is performed by one of the threads from the FixedThreadPool that 
- * is instantiated by the CrawlManagerConcurrentObject.
+ * goes through three stages: fetch, parse and analyze, which
+ * CrawlManagerConcurrent runs on separate pools.
  * 
  * In order to support multithreading, the class was changed
  * substantially compared to its parent - CrawlJob.
@@ -19,6 +26,12 @@ public class SearchCrawlJobConcurrent extends SearchCrawlJob implements Runnable
 	public Thread thread;
 	public String threadName;
 	private CountDownLatch crawlJobLatch;
+	private Frontier frontier;
+	private Semaphore fetchPermits;
+	private final KeywordMatcher terms;
+	private final FrontierEntry entry;
+	private FetchResponse response;
+	private Throwable fetchFailure;
 	
 	/**
 	 * Creates an instance of CrawlJoboncurrent class. Sets
@@ -32,16 +45,23 @@ public class SearchCrawlJobConcurrent extends SearchCrawlJob implements Runnable
 	 * before the crawl job is completed.
 	 * 
 	 * @param threadName	the name of the executing thread
-	 * @param url    the address of the document to be crawled
-	 * @param searchWord    the String to search for on the current page
+	 * @param entry    the link to the document to be crawled, with its depth
+	 * @param terms    the terms to search for on the current page
+	 * @param frontier    the frontier that receives the links found by this job
+	 * @param fetchPermits    permits for concurrent fetches shared by the jobs of a crawl, or null for no limit
 	 */
-	SearchCrawlJobConcurrent(String threadName, String url, String searchWord) {
+	SearchCrawlJobConcurrent(String threadName, FrontierEntry entry, KeywordMatcher terms, Frontier frontier, Semaphore fetchPermits) {
 		this.threadName = threadName;
+		String url = entry.getUrl();
 		setUrl(url);
-		setSearchWord(searchWord);
+		this.entry = entry;
+		setSearchWord(terms.toString());
+		this.terms = terms;
 		crawlResult = new CrawlResult(false, false, url);  // crawl result is false by default, no error occured
 		wordSearchResult = new WordSearchResult(false, false, url); // word search result is false by default, no error occured
 		this.crawlJobLatch = new CountDownLatch(1);
+		this.frontier = frontier;
+		this.fetchPermits = fetchPermits;
 	}
 	
 	/**
@@ -58,16 +78,110 @@ public class SearchCrawlJobConcurrent extends SearchCrawlJob implements Runnable
 	/**
 	 * The processing task for a thread consists of performing 
 	 * a crawl and, if crawl is successful, a word search.
+	 * The links found by the crawl are pushed into the frontier.
+	 * 
+	 * <p>This runs the three stages of the job one after another on the
+	 * calling thread. CrawlManagerConcurrent runs each stage on its own pool instead.</p>
 	 */
 	public void run(){
-       crawlResult = crawl(getUrl());
+       fetch();
+       parse();
+       analyze();
+    }
+	
+	/**
+	 * Fetch stage: sends the request through the fetcher of this job and keeps 
+	 * the response for the parse stage. A fetch permit is held while the 
+	 * document is fetched, but not during the other stages.
+	 */
+	void fetch() {
+		startCrawl(getUrl());
+		if(cancellation.isCancelled() || !acquireFetchPermit()) {
+			fetchFailure = new InterruptedIOException("Cancelled or interrupted while waiting to fetch " + getUrl());
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			response = sendRequest();
+			recordFetch(response, start);
+		} catch (IOException ioe) {
+			fetchFailure = ioe;
+		} finally {
+			if(fetchPermits != null)
+				fetchPermits.release();
+		}
+	}
+	
+	/**
+	 * Same as <tt>fetch</tt>, but sends the request through the non-blocking 
+	 * fetcher of this job. No thread is held while waiting for the response.
+	 * 
+	 * @return future that completes once the response or the failure is kept for the parse stage
+	 */
+	CompletableFuture<Void> fetchAsync() {
+		startCrawl(getUrl());
+		final long start = System.nanoTime();
+		return sendRequestAsync().handle((response, failure) -> {
+			if(response != null)
+				recordFetch(response, start);
+			this.response = response;
+			this.fetchFailure = failure instanceof CompletionException ? failure.getCause() : failure;
+			return null;
+		});
+	}
+	
+	/**
+	 * Parse stage: parses the fetched document, tells the frontier whether it had
+	 * new content and pushes the links found by the crawl into the frontier, one level deeper than the 
+	 * document, with their anchor texts if they were collected. The body of the response
+	 * is dropped once it is parsed. Nothing is done once the crawl is cancelled.
+	 */
+	void parse() {
+		if(cancellation.isCancelled()) {
+			response = null;
+			return;
+		}
+		if(response != null)
+			crawlResult = processResponse(response);
+		else
+			crawlResult = failCrawl(fetchFailure);
+		response = null;
+		frontier.crawled(entry, getTextHash());
+		frontier.pushAll(getLinks(), getAnchorTexts(), entry);
+	}
+	
+	/**
+	 * Analyze stage: if crawl is successful, searches the document for the terms.
+	 * The parsed document or its text is dropped afterwards.
+	 */
+	void analyze() {
        if(crawlResult.isSuccessful()) {
-    	   wordSearchResult = searchForWord(getSearchWord());
+    	   wordSearchResult = searchForTerms(terms);
        }
        else {
     	    crawlJobLatch.countDown();
        }
-    }
+       htmlDocument = null;
+       bodyText = null;
+       textHash = null;
+	}
+	
+	/**
+	 * Waits for a fetch permit, if the number of concurrent fetches is limited.
+	 * 
+	 * @return false if the thread was interrupted while waiting
+	 */
+	private boolean acquireFetchPermit() {
+		if(fetchPermits == null)
+			return true;
+		try {
+			fetchPermits.acquire();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
 	
 	
 	/**
@@ -77,22 +191,24 @@ public class SearchCrawlJobConcurrent extends SearchCrawlJob implements Runnable
 	 * 
 	 * @see CrawlJob
 	 * 
-	 * @param searchWord	the String to search for on the current page
+	 * @param terms	the terms to search for on the current page
 	 * @return WordSearchResult    the state of the current word search
 	 */
 	@Override
-	protected WordSearchResult searchForWord(String searchWord) {
+	protected WordSearchResult searchForTerms(KeywordMatcher terms) {
 	
-		if(this.htmlDocument == null) {
-	        System.out.println("ERROR! Call crawl() before performing analysis on the document");
-	        return wordSearchResult;
-	    }
-	    System.out.println("Searching for the word " + searchWord + "...");
-	    String bodyText = this.htmlDocument.body().text();
-	    boolean containsSearchWord = bodyText.toLowerCase().contains(getSearchWord().toLowerCase());
+		WordSearchResult result = super.searchForTerms(terms);
 	    crawlJobLatch.countDown();
-	    wordSearchResult.setSuccess(containsSearchWord);
-	    return wordSearchResult;
+	    return result;
+	}
+	
+	/**
+	 * Gets the link to the document of this job.
+	 * 
+	 * @return the link, with its depth
+	 */
+	FrontierEntry getEntry() {
+		return entry;
 	}
 	
 	/**
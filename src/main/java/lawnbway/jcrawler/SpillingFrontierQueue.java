@@ -0,0 +1,397 @@
+package lawnbway.jcrawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * SpillingFrontierQueue is a first-in first-out queue of frontier entries whose
+ * heap usage does not grow with its size: it keeps a head of at most
+ * <tt>headCapacity</tt> entries in memory and spills the rest to append-only
+ * segment files, which are read back sequentially as the head drains.
+ *
+ * <p>Once the head is full, every new entry is encoded into a write buffer, and
+ * the buffer is appended to the current segment file with a single write when
+ * it is full, so the disk sees large sequential writes only. A segment file is
+ * closed once it reaches <tt>segmentBytes</tt>. When the head runs empty, it is
+ * refilled from the oldest segment, which is deleted once it is read, so the
+ * disk usage follows the size of the queue too. Entries that are still in the
+ * write buffer are moved to the head without touching the disk.</p>
+ *
+ * <p>The queue is thread-safe: every operation holds the lock of the queue,
+ * including the occasional batched write or read. Iteration is not supported,
+ * since most of the entries are on disk. The segment files are created in a
+ * temporary directory, which <tt>close</tt> deletes. A checkpoint of the queue
+ * links to the segment files instead of reading them.</p>
+ *
+ * @see Frontier
+ * @see CrawlConfig.Builder#frontierSpill(Path, int)
+ */
+public class SpillingFrontierQueue extends AbstractQueue<FrontierEntry> implements Closeable {
+
+	/** Size of the write and the read buffer. */
+	public static final int DEFAULT_BATCH_BYTES = 1024 * 1024;
+	/** Size at which a segment file is closed. */
+	public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+	private static final int MIN_BATCH_BYTES = 64;
+
+	private final Path directory;
+	private final int headCapacity;
+	private final long segmentBytes;
+	private final ArrayDeque<FrontierEntry> head;
+	private final ArrayDeque<Path> segments = new ArrayDeque<Path>(); // closed segments, oldest first
+	private final ByteBuffer writeBuffer;
+	private ByteBuffer readBuffer;
+	private FileChannel writeChannel;
+	private Path writePath;
+	private long writtenBytes;
+	private FileChannel readChannel;
+	private Path readPath;
+	private int segmentCount;
+	private long spilled; // entries in the segments and the write buffer
+	private long spilledTotal;
+
+	/**
+	 * Creates an empty queue that spills to a new temporary directory.
+	 *
+	 * @param parent    the directory in which the temporary directory is created
+	 * @param headCapacity    the largest number of entries kept in memory
+	 * @throws IOException if the temporary directory cannot be created
+	 */
+	public SpillingFrontierQueue(Path parent, int headCapacity) throws IOException {
+		this(parent, headCapacity, DEFAULT_SEGMENT_BYTES, DEFAULT_BATCH_BYTES);
+	}
+
+	/**
+	 * Creates an empty queue that spills to a new temporary directory, with the
+	 * provided sizes of the segment files and of the write and read buffers.
+	 *
+	 * @param parent    the directory in which the temporary directory is created
+	 * @param headCapacity    the largest number of entries kept in memory
+	 * @param segmentBytes    the size at which a segment file is closed
+	 * @param batchBytes    the size of the write and the read buffer
+	 * @throws IOException if the temporary directory cannot be created
+	 * @throws IllegalArgumentException if a size is not positive
+	 */
+	public SpillingFrontierQueue(Path parent, int headCapacity, long segmentBytes, int batchBytes) throws IOException {
+		if (headCapacity < 1 || segmentBytes < 1 || batchBytes < MIN_BATCH_BYTES)
+			throw new IllegalArgumentException("Invalid sizes of the spilling frontier queue");
+		Files.createDirectories(parent);
+		this.directory = Files.createTempDirectory(parent, "frontier-");
+		this.headCapacity = headCapacity;
+		this.segmentBytes = segmentBytes;
+		this.head = new ArrayDeque<FrontierEntry>(Math.min(headCapacity, 1 << 16));
+		this.writeBuffer = ByteBuffer.allocateDirect(batchBytes);
+		this.readBuffer = ByteBuffer.allocateDirect(batchBytes);
+		this.readBuffer.flip(); // nothing to read yet
+	}
+
+	/**
+	 * Adds an entry at the tail of the queue. The entry is kept in memory if
+	 * the head has room and no entry was spilled before it, otherwise it is spilled.
+	 *
+	 * @param entry    the entry to add
+	 * @return true
+	 * @throws UncheckedIOException if the entry cannot be written to the segment file
+	 */
+	@Override
+	public synchronized boolean offer(FrontierEntry entry) {
+		if (entry == null)
+			throw new NullPointerException();
+		if (spilled == 0 && head.size() < headCapacity) {
+			head.add(entry);
+			return true;
+		}
+		try {
+			write(entry);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot spill the frontier to " + directory, e);
+		}
+		spilled++;
+		spilledTotal++;
+		return true;
+	}
+
+	/**
+	 * Removes the entry at the head of the queue, refilling the head from the
+	 * oldest spilled entries if it is empty.
+	 *
+	 * @return the oldest entry, or null if the queue is empty
+	 * @throws UncheckedIOException if a segment file cannot be read
+	 */
+	@Override
+	public synchronized FrontierEntry poll() {
+		if (head.isEmpty() && spilled > 0) {
+			try {
+				refill();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read the spilled frontier from " + directory, e);
+			}
+		}
+		return head.poll();
+	}
+
+	@Override
+	public synchronized FrontierEntry peek() {
+		if (head.isEmpty() && spilled > 0) {
+			try {
+				refill();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read the spilled frontier from " + directory, e);
+			}
+		}
+		return head.peek();
+	}
+
+	@Override
+	public synchronized int size() {
+		return (int) Math.min(Integer.MAX_VALUE, head.size() + spilled);
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return head.isEmpty() && spilled == 0;
+	}
+
+	/**
+	 * Not supported, since most of the entries are on disk.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Iterator<FrontierEntry> iterator() {
+		throw new UnsupportedOperationException("A spilling frontier queue cannot be iterated");
+	}
+
+	/**
+	 * Gets the number of entries that did not fit into the head since the queue
+	 * was created. Most of them went through a segment file.
+	 *
+	 * @return the number of spilled entries
+	 */
+	public synchronized long spilledCount() {
+		return spilledTotal;
+	}
+
+	/**
+	 * Gets the number of segment files on disk.
+	 *
+	 * @return the number of segment files
+	 */
+	public synchronized int segmentCount() {
+		return segments.size() + (writeChannel != null ? 1 : 0) + (readChannel != null ? 1 : 0);
+	}
+
+	/**
+	 * Takes a snapshot of the queue for a checkpoint. The entries of the head and
+	 * of the write buffer are copied, and every segment file is hard linked into
+	 * the provided directory, or copied if it cannot be linked there, so that the
+	 * segments outlive their deletion by the queue.
+	 *
+	 * @param linkDirectory    the directory of the links to the segment files
+	 * @return the snapshot
+	 * @throws IOException if a segment file can neither be linked nor copied
+	 */
+	synchronized QueueSnapshot snapshot(Path linkDirectory) throws IOException {
+		List<QueueSnapshot.Segment> linked = new ArrayList<QueueSnapshot.Segment>(segments.size() + 2);
+		if (readChannel != null) // the bytes in the read buffer were read, but not handed out yet
+			linked.add(link(readPath, linkDirectory, readChannel.position() - readBuffer.remaining(), readChannel.size()));
+		for (Path segment : segments)
+			linked.add(link(segment, linkDirectory, 0, Files.size(segment)));
+		if (writeChannel != null)
+			linked.add(link(writePath, linkDirectory, 0, writtenBytes));
+		ByteBuffer tail = null;
+		if (writeBuffer.position() > 0) {
+			ByteBuffer written = writeBuffer.duplicate();
+			written.flip();
+			tail = ByteBuffer.allocate(written.remaining()).put(written);
+			tail.flip();
+		}
+		return new QueueSnapshot(head, linked, tail, spilled);
+	}
+
+	private static QueueSnapshot.Segment link(Path segment, Path linkDirectory, long from, long to) throws IOException {
+		Path link = linkDirectory.resolve(segment.getFileName());
+		try {
+			Files.createLink(link, segment);
+		} catch (IOException | UnsupportedOperationException e) {
+			Files.copy(segment, link); // e.g. on another file system
+		}
+		return new QueueSnapshot.Segment(link, from, to);
+	}
+
+	/**
+	 * Gets the directory of the segment files.
+	 *
+	 * @return the temporary directory of this queue
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Drops all the entries and deletes the segment files and their directory.
+	 * The queue may still be used: the directory is created again once an entry is spilled.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		head.clear();
+		writeBuffer.clear();
+		readBuffer.clear().flip();
+		if (writeChannel != null) {
+			writeChannel.close();
+			segments.add(writePath);
+			writeChannel = null;
+		}
+		if (readChannel != null) {
+			readChannel.close();
+			segments.addFirst(readPath);
+			readChannel = null;
+		}
+		for (Path segment : segments)
+			Files.deleteIfExists(segment);
+		segments.clear();
+		spilled = 0;
+		Files.deleteIfExists(directory);
+	}
+
+	@Override
+	public void clear() {
+		try {
+			close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot delete the spilled frontier in " + directory, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d entries, %d in memory, %d segment file(s) in %s", size(), head.size(),
+				segmentCount(), directory);
+	}
+
+	/**
+	 * Encodes an entry into the write buffer, appending the buffer to the current
+	 * segment first if the entry does not fit.
+	 */
+	private void write(FrontierEntry entry) throws IOException {
+		int recordBytes = entry.encodedSize();
+		if (writeBuffer.remaining() < recordBytes)
+			flush();
+		if (recordBytes <= writeBuffer.capacity()) {
+			entry.writeTo(writeBuffer);
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(recordBytes); // an unusually long URL
+		entry.writeTo(buffer);
+		buffer.flip();
+		append(buffer);
+	}
+
+	/**
+	 * Appends the write buffer to the current segment, opening a new
+	 * segment if there is none, and closes the segment once it is full.
+	 */
+	private void flush() throws IOException {
+		writeBuffer.flip();
+		if (writeBuffer.hasRemaining())
+			append(writeBuffer);
+		writeBuffer.clear();
+	}
+
+	private void append(ByteBuffer buffer) throws IOException {
+		if (writeChannel == null) {
+			Files.createDirectories(directory); // deleted by close
+			writePath = directory.resolve(String.format("segment-%06d.bin", segmentCount++));
+			writeChannel = FileChannel.open(writePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			writtenBytes = 0;
+		}
+		while (buffer.hasRemaining())
+			writtenBytes += writeChannel.write(buffer);
+		if (writtenBytes >= segmentBytes)
+			closeWriteSegment();
+	}
+
+	private void closeWriteSegment() throws IOException {
+		writeChannel.close();
+		writeChannel = null;
+		segments.add(writePath);
+	}
+
+	/**
+	 * Moves up to <tt>headCapacity</tt> of the oldest spilled entries into the head:
+	 * from the segment being read, then from the closed segments, then from the
+	 * segment being written and finally from the write buffer.
+	 */
+	private void refill() throws IOException {
+		while (head.size() < headCapacity && spilled > 0) {
+			if (readChannel == null && !openNextSegment()) {
+				// every spilled entry on disk was read: the rest are in the write buffer
+				writeBuffer.flip();
+				readAll(writeBuffer);
+				writeBuffer.clear();
+				continue;
+			}
+			FrontierEntry entry = FrontierEntry.readFrom(readBuffer);
+			if (entry != null) {
+				head.add(entry);
+				spilled--;
+				continue;
+			}
+			readBuffer.compact();
+			if (!readBuffer.hasRemaining()) // an entry longer than the buffer
+				readBuffer = ByteBuffer.allocateDirect(2 * readBuffer.capacity()).put(readBuffer.flip());
+			int read = readChannel.read(readBuffer);
+			readBuffer.flip();
+			if (read < 0) // the segment was read to its end
+				closeReadSegment();
+		}
+		if (spilled == 0 && readChannel != null) // the last spilled entry was read
+			closeReadSegment();
+	}
+
+	private void closeReadSegment() throws IOException {
+		readChannel.close();
+		readChannel = null;
+		Files.delete(readPath);
+		readBuffer.clear().flip();
+	}
+
+	/**
+	 * Opens the oldest segment for reading. If only the segment being written
+	 * is left, it is closed first, unless nothing was written to it yet.
+	 *
+	 * @return false if there is no segment on disk
+	 */
+	private boolean openNextSegment() throws IOException {
+		if (segments.isEmpty() && writeChannel != null) {
+			flush();
+			if (writeChannel != null)
+				closeWriteSegment();
+		}
+		if (segments.isEmpty())
+			return false;
+		readPath = segments.poll();
+		readChannel = FileChannel.open(readPath, StandardOpenOption.READ);
+		readBuffer.clear().flip();
+		return true;
+	}
+
+	private void readAll(ByteBuffer buffer) {
+		FrontierEntry entry;
+		while ((entry = FrontierEntry.readFrom(buffer)) != null) {
+			head.add(entry);
+			spilled--;
+		}
+	}
+}
@@ -0,0 +1,338 @@
+package lawnbway.jcrawler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lawnbway.jcrawler.util.BloomFilter;
+import lawnbway.jcrawler.util.ParsedURL;
+import lawnbway.jcrawler.util.SimHash;
+import lawnbway.jcrawler.util.URLUtil;
+
+/**
+ * TrapDetector keeps a crawl out of URL spaces that never end: calendars that link
+ * to the next month forever, faceted navigation with every combination of filters,
+ * query strings that grow on every page, and relative links that repeat the path.
+ *
+ * <p>Some links are traps on their own, and are dropped as soon as they are found:
+ * links longer than MAX_URL_LENGTH, and links in which a path segment or a query
+ * parameter occurs more than MAX_REPEATS times.</p>
+ *
+ * <p>Other links are only traps in numbers. Every link belongs to a pattern: its website
+ * and its path, in which the segments with digits, such as dates and IDs, are wildcards,
+ * and whether it has a query, whatever its parameters are. A pattern may queue
+ * <tt>patternBudget</tt> links, and two more for every page of the pattern that had new
+ * content. The links beyond its
+ * allowance are held back, and are queued as soon as the pages of the pattern earn
+ * them. A pattern whose budget was crawled and of which less than a tenth of the pages
+ * had new content is a trap: its links are dropped from then on.</p>
+ *
+ * <p>A page has new content if at least a quarter of the shingles sampled from its text
+ * were not seen on any page of the crawl before. The shingles seen so far are kept in a
+ * BloomFilter, so a calendar page that only differs from the others in its date has no
+ * new content, nor has a page that could not be crawled or is a duplicate.</p>
+ *
+ * <p>The detector is thread-safe: every pattern has a lock of its own.</p>
+ *
+ * @see Frontier#setTrapDetector(TrapDetector)
+ * @see CrawlConfig.Builder#trapDetection(int)
+ * @see SimHash
+ */
+public final class TrapDetector {
+
+	/** The number of links a pattern may queue before its pages must have new content, by default. */
+	public static final int DEFAULT_PATTERN_BUDGET = 100;
+	/** The length of the longest link that is crawled. */
+	public static final int MAX_URL_LENGTH = 512;
+	/** The number of times a path segment or a query parameter may occur in a link. */
+	public static final int MAX_REPEATS = 3;
+
+	private static final int GROWTH = 2;	// links a pattern may queue for every page with new content
+	private static final int MIN_NEW_CONTENT_PERCENT = 10;	// of the pages of a pattern that is not a trap
+	private static final int MIN_NEW_SHINGLES_PERCENT = 25;	// of the sampled shingles of a page with new content
+	private static final long MAX_SHINGLES = 1 << 24;
+	private static final int MAX_FIXED_SEGMENT_LENGTH = 32;	// longer segments are IDs too
+
+	/** The links of a pattern, and how many of its pages had new content. */
+	private final class Pattern {
+		private int queued;
+		private int crawled;
+		private int newContent;
+		private boolean trap;
+		private final ArrayDeque<FrontierEntry> waiting = new ArrayDeque<FrontierEntry>();
+
+		synchronized Verdict admit(FrontierEntry entry) {
+			if (trap)
+				return Verdict.DROPPED;
+			if (queued < allowance()) {
+				queued++;
+				return Verdict.QUEUED;
+			}
+			waiting.add(entry);
+			return Verdict.HELD_BACK;
+		}
+
+		synchronized List<FrontierEntry> crawled(boolean hasNewContent) {
+			crawled++;
+			if (hasNewContent)
+				newContent++;
+			else if (!trap && crawled >= patternBudget && newContent * 100 < crawled * MIN_NEW_CONTENT_PERCENT) {
+				trap = true;
+				trapPatterns.incrementAndGet();
+				dropped.addAndGet(waiting.size());
+				waiting.clear();
+			}
+			if (waiting.isEmpty() || queued >= allowance())
+				return Collections.emptyList();
+			List<FrontierEntry> released = new ArrayList<FrontierEntry>();
+			while (!waiting.isEmpty() && queued < allowance()) {
+				released.add(waiting.poll());
+				queued++;
+			}
+			return released;
+		}
+
+		synchronized void addHeldBackTo(List<FrontierEntry> entries) {
+			entries.addAll(waiting);
+		}
+
+		private long allowance() {
+			return patternBudget + (long) GROWTH * newContent;
+		}
+	}
+
+	/** What becomes of a link. */
+	enum Verdict {
+		QUEUED, HELD_BACK, DROPPED
+	}
+
+	private final int patternBudget;
+	private final BloomFilter shingles;
+	private final ConcurrentMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong heldBack = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+	private final AtomicLong trapPatterns = new AtomicLong();
+
+	/**
+	 * Creates a detector that has not seen any link, sized for the pages of a crawl.
+	 *
+	 * @param patternBudget    the number of links a pattern may queue before its pages must have new content
+	 * @param expectedPages    the number of pages of the crawl, e.g. its page budget
+	 */
+	public TrapDetector(int patternBudget, long expectedPages) {
+		if (patternBudget < 1)
+			throw new IllegalArgumentException("The budget of a pattern must be positive");
+		this.patternBudget = patternBudget;
+		this.shingles = new BloomFilter(Math.min(Math.max(expectedPages, 1000) * 16, MAX_SHINGLES), 0.01);
+	}
+
+	/**
+	 * Returns true if a link is a trap on its own: it is too long, or it repeats
+	 * a path segment or a query parameter too many times.
+	 *
+	 * @param url    a normalized URL address
+	 * @return true if the link must not be crawled
+	 */
+	public static boolean isTrap(String url) {
+		if (url.length() > MAX_URL_LENGTH)
+			return true;
+		ParsedURL parsed = URLUtil.parse(url);
+		if (parsed == null)
+			return false;
+		if (repeats(parsed.path().split("/"), false))
+			return true;
+		String query = parsed.query();
+		return query != null && repeats(query.split("&"), true);
+	}
+
+	private static boolean repeats(String[] parts, boolean names) {
+		if (parts.length <= MAX_REPEATS)
+			return false;
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (String part : parts) {
+			if (names) {
+				int equals = part.indexOf('=');
+				part = equals < 0 ? part : part.substring(0, equals);
+			}
+			if (!part.isEmpty() && counts.merge(part, 1, Integer::sum) > MAX_REPEATS)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the pattern of a link: its root URL, its path with the segments that contain digits
+	 * or are very long replaced by <tt>*</tt>, and a trailing <tt>?</tt> if it has a query.
+	 * For instance, the pattern of <tt>https://www.example.com/calendar/2024/05?view=week</tt>
+	 * is <tt>https://www.example.com/calendar/&#42;/&#42;?</tt>.
+	 *
+	 * @param url    a valid URL address
+	 * @return the pattern of the link
+	 */
+	public static String patternOf(String url) {
+		ParsedURL parsed = URLUtil.parse(url);
+		if (parsed == null)
+			return url;
+		String path = parsed.path();
+		String root = parsed.root();
+		StringBuilder pattern = new StringBuilder(root.length() + path.length() + 1).append(root);
+		int start = 0;
+		while (start < path.length()) {
+			int end = path.indexOf('/', start + 1);
+			if (end < 0)
+				end = path.length();
+			boolean variable = end - start - 1 > MAX_FIXED_SEGMENT_LENGTH;
+			for (int i = start + 1; i < end && !variable; i++)
+				variable = Character.isDigit(path.charAt(i));
+			if (variable)
+				pattern.append("/*");
+			else
+				pattern.append(path, start, end);
+			start = end;
+		}
+		if (parsed.query() != null)
+			pattern.append('?');
+		return pattern.toString();
+	}
+
+	/**
+	 * Decides whether a new link is queued, held back until its pattern earns it, or dropped.
+	 *
+	 * @param entry    the link, which was not seen before
+	 * @return what becomes of the link
+	 */
+	Verdict admit(FrontierEntry entry) {
+		if (isTrap(entry.getUrl())) {
+			dropped.incrementAndGet();
+			return Verdict.DROPPED;
+		}
+		Verdict verdict = patterns.computeIfAbsent(patternOf(entry.getUrl()), key -> new Pattern()).admit(entry);
+		if (verdict == Verdict.DROPPED)
+			dropped.incrementAndGet();
+		else if (verdict == Verdict.HELD_BACK)
+			heldBack.incrementAndGet();
+		return verdict;
+	}
+
+	/**
+	 * Tells whether a page had new content: whether enough of its sampled shingles,
+	 * or its words if it has too few, were not seen before. Its shingles are seen from now on.
+	 *
+	 * @param text    the fingerprint of the text of the page, or null if it could not be crawled or is a duplicate
+	 * @return true if the page had new content
+	 */
+	public boolean hasNewContent(SimHash text) {
+		if (text == null)
+			return false;
+		long[] sampled = text.sampledShingles();
+		if (sampled.length == 0)
+			return shingles.put(text.exactValue());
+		int unseen = 0;
+		for (long shingle : sampled) {
+			if (shingles.put(shingle))
+				unseen++;
+		}
+		return unseen * 100 >= sampled.length * MIN_NEW_SHINGLES_PERCENT;
+	}
+
+	/**
+	 * Records whether a crawled page had new content, and releases the links
+	 * of its pattern that it earned.
+	 *
+	 * @param url    the URL address of the page
+	 * @param hasNewContent    false if the page could not be crawled or was a duplicate
+	 * @return the links held back that may be queued now
+	 */
+	List<FrontierEntry> crawled(String url, boolean hasNewContent) {
+		Pattern pattern = patterns.get(patternOf(url));
+		if (pattern == null)
+			return Collections.emptyList();	// a link queued before the crawl was resumed
+		List<FrontierEntry> entries = pattern.crawled(hasNewContent);
+		released.addAndGet(entries.size());
+		return entries;
+	}
+
+	/**
+	 * Gets the links that are held back, for a checkpoint.
+	 *
+	 * @return the links held back by every pattern
+	 */
+	List<FrontierEntry> heldBackEntries() {
+		List<FrontierEntry> entries = new ArrayList<FrontierEntry>();
+		for (Pattern pattern : patterns.values())
+			pattern.addHeldBackTo(entries);
+		return entries;
+	}
+
+	/**
+	 * Gets the number of links a pattern may queue before its pages must have new content.
+	 *
+	 * @return the budget of a pattern
+	 */
+	public int getPatternBudget() {
+		return patternBudget;
+	}
+
+	/**
+	 * Gets the number of links that were dropped, on their own or because their pattern is a trap.
+	 *
+	 * @return the number of dropped links
+	 */
+	public long droppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Gets the number of links that were held back, whether or not they were released later.
+	 *
+	 * @return the number of links held back
+	 */
+	public long heldBackCount() {
+		return heldBack.get();
+	}
+
+	/**
+	 * Gets the number of links that were held back and queued later.
+	 *
+	 * @return the number of released links
+	 */
+	public long releasedCount() {
+		return released.get();
+	}
+
+	/**
+	 * Gets the number of patterns found so far.
+	 *
+	 * @return the number of patterns
+	 */
+	public int patternCount() {
+		return patterns.size();
+	}
+
+	/**
+	 * Gets the number of patterns that turned out to be traps.
+	 *
+	 * @return the number of trap patterns
+	 */
+	public long trapPatternCount() {
+		return trapPatterns.get();
+	}
+
+	/**
+	 * Returns a one-line summary of the detector counters.
+	 *
+	 * @return summary of the detector counters
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d link(s) dropped, %d held back and %d of them released; %d trap(s) among %d pattern(s)",
+				droppedCount(), heldBackCount(), releasedCount(), trapPatternCount(), patternCount());
+	}
+}
@@ -1,151 +1,175 @@
 package lawnbway.jcrawler;
-import java.io.FileReader;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * UserAgentManagerSingleton is a singleton that keeps open the file with available user agents ("usr_agents")
+ * UserAgentManagerSingleton is a singleton that holds the available user agents ("usr_agents")
  * and provides random user agent strings (names) to CrawlJob instances that request user agent change.
- * 
+ *
+ * <p>The user agents are read from the classpath once, when the singleton is created, into an
+ * immutable array. Each thread has its own current user agent and picks a new one with
+ * ThreadLocalRandom, so switching user agents involves no I/O and no locking. In sticky mode,
+ * each thread keeps the user agent it picked first for all its requests.</p>
+ *
  * enum type fields are compile time constants and are constructed when the type is referenced for the
  * first time. Therefore multiple instantiations are not possible.
  */
 public enum UserAgentManagerSingleton {
 	INSTANCE;
-	
-	private FileReader fr;
-	private int usrAgentNum;
-	private RandomAccessFile raf;
-	volatile private String usrAgentName;
+
 	private static final String USR_AGENTS_NAME = "usr_agents";
-	private static final String USR_AGENTS_RELATIVE_PATH = "src/main/resources/";
-	private static final int DEFAULT_PROBABILITY = 30;	
-	
+	private static final int DEFAULT_PROBABILITY = 30;
+	private final String[] usrAgents;
+	private final ThreadLocal<String> usrAgentName;
+	private volatile boolean sticky;
+
 	/**
-	 * Instantiates the class by opening the file with user agents
-	 * and counting the number of user agents in the file.
-	 * Also, randomly chooses a user agent from the file, so it is available for CrawlJob to take.
-	 * 
-	 * @param fileName    the file with available user agent strings ("user_agents" by default) with one user agent per line
-	 * @throws IOException    if there is a problem with opening the file containing user agents
+	 * Instantiates the class by reading all the user agents from the classpath resource
+	 * "usr_agents", one user agent per line. Also, randomly chooses a user agent for each
+	 * thread the first time the thread asks for one.
 	 */
 	private UserAgentManagerSingleton() {
-		try {
-			fr = new FileReader(USR_AGENTS_RELATIVE_PATH + USR_AGENTS_NAME);
-			LineNumberReader lnr = new LineNumberReader(fr);
-			lnr.skip(Long.MAX_VALUE);
-			setUsrAgentNum(lnr.getLineNumber());
-			lnr.close();
-			raf = new RandomAccessFile(USR_AGENTS_RELATIVE_PATH + USR_AGENTS_NAME, "r");	
-			
+		usrAgents = loadUsrAgents();
+		usrAgentName = new ThreadLocal<String>() {
+			@Override
+			protected String initialValue() {
+				return usrAgents[ThreadLocalRandom.current().nextInt(usrAgents.length)];
+			}
+		};
+	}
+
+	private static String[] loadUsrAgents() {
+		List<String> agents = new ArrayList<String>();
+		InputStream in = UserAgentManagerSingleton.class.getClassLoader().getResourceAsStream(USR_AGENTS_NAME);
+		if (in == null) {
+			System.out.println("ERROR! " + USR_AGENTS_NAME + " is not found on the classpath.");
+			System.exit(1);
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty())
+					agents.add(line.trim());
+			}
 		} catch (IOException e) {
-			System.out.println("ERROR! There is a problem opening file containing user agents.");
+			System.out.println("ERROR! There is a problem reading file containing user agents.");
 			e.printStackTrace();
 			System.exit(1);
-		}	
-		this.setRandom();
+		}
+		if (agents.isEmpty()) {
+			System.out.println("ERROR! " + USR_AGENTS_NAME + " does not contain any user agents.");
+			System.exit(1);
+		}
+		return agents.toArray(new String[agents.size()]);
 	}
-	
+
 	/**
-	 * Chooses a random user agent from the file.
-	 * 
+	 * Switches the user agent of the current thread to another random user agent.
+	 * The new user agent is always different from the current one.
 	 */
-	public synchronized void setRandom() {
-		int usrAgentNum = getUsrAgentNum();
-		int randomLine = ThreadLocalRandom.current().nextInt(0, usrAgentNum + 1);
-		try {
-			raf.seek(0);  // move RAF pointer to the beginning
-			for(int i = 1; i < randomLine; i++) 
-				  raf.readLine(); 
-			setName(raf.readLine()); // set user agent to user agent #randomLine from usr_agents file
-		} catch (IOException e) {
-			System.out.println("There is a problem reading file containing user agents.");
-			e.printStackTrace();
-			System.exit(1);
-		}
-		
+	public void setRandom() {
+		if (usrAgents.length == 1)
+			return;
+		String current = usrAgentName.get();
+		String next;
+		do {
+			next = usrAgents[ThreadLocalRandom.current().nextInt(usrAgents.length)];
+		} while (next.equals(current));
+		setName(next);
 	}
-	
+
 	/**
-	 * Changes user agent with a certain probability (from 0 to 100).
+	 * Changes user agent of the current thread with a certain probability (from 0 to 100).
 	 * Uses DEFAULT_PROBABILITY if the provided parameter is not a valid probability.
-	 * 
+	 * Does nothing in sticky mode.
+	 *
 	 * @param probability    the probability that the user agent will be changed at this method invocation
 	 */
 	public void changeUserAgent(int probability) {
+		if (sticky)
+			return;
 		if (!isValidProbability(probability))
 			probability = DEFAULT_PROBABILITY;
-		
+
 		int chance = ThreadLocalRandom.current().nextInt(0, 100 + 1);	// Get random number from 0 to 100 (inclusive; this is why +1)
-		if (chance < probability || probability == 100) {  
-			UserAgentManagerSingleton.INSTANCE.setRandom();		// Switch to random user agent if the chance falls within the chosen probability
+		if (chance < probability || probability == 100) {
+			setRandom();		// Switch to random user agent if the chance falls within the chosen probability
 		}
-		setName(UserAgentManagerSingleton.INSTANCE.getName());	
 	}
-	
+
+	/**
+	 * Changes user agent of the current thread with a certain probability
+	 * and returns the user agent to use for the next request.
+	 *
+	 * @param probability    the probability that the user agent will be changed at this method invocation
+	 * @return name of the user agent of the current thread
+	 *
+	 * @see #changeUserAgent(int)
+	 */
+	public String nextUserAgent(int probability) {
+		changeUserAgent(probability);
+		return getName();
+	}
+
 	/**
 	 * Validates the probability that the changeUserAgent method uses.
-	 * 
+	 *
 	 * @param probability    the probability to be validated
 	 * @return true if the probability is valid, false if it is invalid
 	 */
 	private boolean isValidProbability(int probability) {
 		return (probability >= 0 && probability <= 100);
 	}
-	
+
 	/**
-	 * Sets the name of the currently selected user agent.
-	 * 
+	 * Sets the name of the user agent selected by the current thread.
+	 *
 	 * @param name    name of the selected user agent
 	 */
 	private void setName(String name) {
-		usrAgentName = name;
+		usrAgentName.set(name);
 	}
-	
+
 	/**
-	 * Gets the name of the currently selected user agent.
-	 * 
+	 * Gets the name of the user agent selected by the current thread.
+	 *
 	 * @return name of the selected user agent
 	 */
 	public String getName() {
-		return usrAgentName;
+		return usrAgentName.get();
 	}
-	
+
 	/**
-	 * Sets the number of available user agents from the user agent file.
-	 * 
-	 * @param usrAgentNum    the number of available user agents
+	 * Turns sticky mode on or off. In sticky mode, every thread (worker)
+	 * keeps using the same user agent for all its requests.
+	 *
+	 * @param sticky    true to keep one user agent per thread
 	 */
-	private void setUsrAgentNum(int usrAgentNum) {
-		if(usrAgentNum < 0) {
-			System.out.println("ERROR! " + USR_AGENTS_NAME + "cannot have negative number of lines.");
-			System.exit(1);
-		}
-		this.usrAgentNum = usrAgentNum;
+	public void setSticky(boolean sticky) {
+		this.sticky = sticky;
 	}
-	
+
 	/**
-	 * Gets the number of lines (corresponding to the number of user agents) from the user agent file.
-	 * 
-	 * @return the number of available user agents
+	 * Returns true if every thread keeps using the same user agent.
+	 *
+	 * @return true in sticky mode
 	 */
-	private int getUsrAgentNum() {
-		return usrAgentNum;
+	public boolean isSticky() {
+		return sticky;
 	}
-	
+
 	/**
-	 * Closes file streams used by this class.
-	 * To be invoked just before the program termination.
+	 * Gets the number of available user agents.
+	 *
+	 * @return the number of available user agents
 	 */
-	public void cleanup() {
-		try {
-			raf.close();
-			fr.close();
-		} catch (IOException e) {
-			System.out.println("ERROR! UserAgent cleanup failed.");
-			e.printStackTrace();
-		}	
+	public int getUsrAgentNum() {
+		return usrAgents.length;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package lawnbway.jcrawler;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * VisitedSet is the contract of the set of visited URL addresses used by the
+ * Frontier. Implementations must be safe to use from multiple threads, and 
+ * <tt>add</tt> must be atomic, since it is used to claim URLs for crawl jobs.
+ * 
+ * <p>A set that supports <tt>snapshot</tt> and <tt>restore</tt> can be saved in a
+ * checkpoint of the crawl. A snapshot is taken while the crawl is paused, so it
+ * only copies the set in memory; it is written once the crawl goes on.</p>
+ * 
+ * @see Frontier
+ * @see ConcurrentVisitedSet
+ * @see FingerprintVisitedSet
+ */
+public interface VisitedSet {
+	
+	/**
+	 * Adds the URL to the set if it is not present yet.
+	 * Exactly one of the threads adding the same URL succeeds.
+	 * 
+	 * @param url    the URL to add
+	 * @return true if the URL was added by this call, false if it was present
+	 */
+	boolean add(String url);
+	
+	/**
+	 * Returns true if the URL is present in the set.
+	 * 
+	 * @param url    the URL to check
+	 * @return true if the URL is present
+	 */
+	boolean contains(String url);
+	
+	/**
+	 * Gets the number of URLs in the set.
+	 * 
+	 * @return the number of URLs in the set
+	 */
+	int size();
+	
+	/**
+	 * A copy of a VisitedSet that is written to a checkpoint of the crawl.
+	 */
+	interface Snapshot {
+		
+		/**
+		 * Writes the copy in the binary format read by <tt>restore</tt>.
+		 * 
+		 * @param out    the output of the checkpoint
+		 * @throws IOException if the copy cannot be written
+		 */
+		void writeTo(DataOutput out) throws IOException;
+	}
+	
+	/**
+	 * Copies the set for a checkpoint. Not supported by default.
+	 * 
+	 * @return the copy
+	 * @throws UnsupportedOperationException if the set cannot be saved in a checkpoint
+	 * 
+	 * @see Checkpoint
+	 */
+	default Snapshot snapshot() {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be saved in a checkpoint");
+	}
+	
+	/**
+	 * Adds the URLs of a snapshot of a set of the same kind. Not supported by default.
+	 * 
+	 * @param in    the input of the checkpoint
+	 * @throws IOException if the snapshot cannot be read
+	 * @throws UnsupportedOperationException if the set cannot be restored from a checkpoint
+	 */
+	default void restore(DataInput in) throws IOException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be restored from a checkpoint");
+	}
+}
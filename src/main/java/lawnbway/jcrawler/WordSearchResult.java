@@ -1,13 +1,26 @@
 package lawnbway.jcrawler;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * WordSearchResult acts as a 3-tuple that is used by the CrawlJob and CrawlManager classes.
  * Represents the state of the current word search (searchForWord method in CrawlJob class)
+ *
+ * <p>It also records every hit of the search terms on the page: for each term that
+ * was found, the positions of its hits in the visible text of the page.</p>
  */
 public class WordSearchResult extends JobResult{
+
+	private final Map<String, List<Integer>> hits = new LinkedHashMap<String, List<Integer>>();
+	private int hitCount;
+
 	/**
 	 * Creates an instance of the WordSearchResult class.
-	 * 
+	 *
 	 * @param result	the result of the current word search
 	 * @param errorStatus    the error status of the job
 	 * @param url	the URL address of the current word search
@@ -15,4 +28,39 @@ public class WordSearchResult extends JobResult{
 	public WordSearchResult(boolean result, boolean errorStatus, String url) {
 		super(result, errorStatus, url);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Records a hit of a term. The search is successful once it has a hit.
+	 *
+	 * @param term	the term that was found
+	 * @param position	position of the hit in the visible text of the page
+	 */
+	public void addHit(String term, int position) {
+		List<Integer> positions = hits.get(term);
+		if (positions == null) {
+			positions = new ArrayList<Integer>();
+			hits.put(term, positions);
+		}
+		positions.add(position);
+		hitCount++;
+		setSuccess(true);
+	}
+
+	/**
+	 * Gets the hits of the search on the page.
+	 *
+	 * @return for each term that was found, the positions of its hits in the visible text
+	 */
+	public Map<String, List<Integer>> getHits() {
+		return Collections.unmodifiableMap(hits);
+	}
+
+	/**
+	 * Gets the number of hits of all the terms on the page.
+	 *
+	 * @return the number of hits
+	 */
+	public int getHitCount() {
+		return hitCount;
+	}
+}
@@ -0,0 +1,172 @@
+package lawnbway.jcrawler.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter is a thread-safe, lock-free Bloom filter over 64-bit fingerprints.
+ * It answers "definitely not present" or "possibly present" using a fixed number
+ * of bits, regardless of the size of the stored values.
+ * 
+ * <p>The filter is sized from the expected number of insertions and the desired
+ * false positive probability (fpp). The k bit positions of a value are derived from
+ * its fingerprint by double hashing (Kirsch and Mitzenmacher), so only one hash of
+ * the URL is ever computed.</p>
+ * 
+ * <p>The false positive rate grows as the filter fills up; <tt>fillRatio</tt> and
+ * <tt>expectedFpp</tt> report the current state so the filter can be sized for a crawl.
+ * Once more values than expected are inserted, the rate climbs quickly.</p>
+ * 
+ * @see URLFingerprint
+ */
+public class BloomFilter {
+	
+	private final AtomicLongArray bits;
+	private final long bitSize;
+	private final int hashCount;
+	private final AtomicLong bitsSet = new AtomicLong();
+	
+	/**
+	 * Creates a Bloom filter sized for the expected number of insertions.
+	 * 
+	 * @param expectedInsertions
+	 *        expected number of values, e.g. the page budget of a crawl
+	 * @param fpp
+	 *        desired false positive probability, between 0 and 1 exclusive
+	 * @throws IllegalArgumentException if the arguments are out of range
+	 */
+	public BloomFilter(long expectedInsertions, double fpp) {
+		if (expectedInsertions <= 0)
+			throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+		if (fpp <= 0 || fpp >= 1)
+			throw new IllegalArgumentException("False positive probability must be between 0 and 1: " + fpp);
+		
+		long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+		this.bits = new AtomicLongArray(words);
+		this.bitSize = (long) words * 64;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+	}
+	
+	/**
+	 * Adds the fingerprint to the filter.
+	 * 
+	 * @param fingerprint
+	 *        64-bit fingerprint of the value
+	 * @return true if any bit changed, meaning the value was definitely not present before
+	 */
+	public boolean put(long fingerprint) {
+		long h2 = secondHash(fingerprint);
+		boolean changed = false;
+		for (int i = 1; i <= hashCount; i++) {
+			long index = bitIndex(fingerprint, h2, i);
+			int word = (int) (index >>> 6);
+			long mask = 1L << index;
+			long current;
+			while (((current = bits.get(word)) & mask) == 0) {
+				if (bits.compareAndSet(word, current, current | mask)) {
+					bitsSet.incrementAndGet();
+					changed = true;
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Returns true if the fingerprint might have been added to the filter,
+	 * false if it definitely was not.
+	 * 
+	 * @param fingerprint
+	 *        64-bit fingerprint of the value
+	 * @return false if the value is definitely not present
+	 */
+	public boolean mightContain(long fingerprint) {
+		long h2 = secondHash(fingerprint);
+		for (int i = 1; i <= hashCount; i++) {
+			long index = bitIndex(fingerprint, h2, i);
+			if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the fraction of bits that are set.
+	 * 
+	 * @return fill ratio from 0 to 1
+	 */
+	public double fillRatio() {
+		return (double) bitsSet.get() / bitSize;
+	}
+	
+	/**
+	 * Estimates the current false positive probability from the fill ratio.
+	 * 
+	 * @return probability that <tt>mightContain</tt> returns true for a value that was not added
+	 */
+	public double expectedFpp() {
+		return Math.pow(fillRatio(), hashCount);
+	}
+	
+	/**
+	 * Gets the number of bits in the filter.
+	 * 
+	 * @return size of the filter in bits
+	 */
+	public long bitSize() {
+		return bitSize;
+	}
+	
+	/**
+	 * Gets the number of bits set per value.
+	 * 
+	 * @return number of hash functions
+	 */
+	public int hashCount() {
+		return hashCount;
+	}
+	
+	/**
+	 * Copies the bits of the filter, e.g. for a checkpoint of the crawl.
+	 * 
+	 * @return the words of the bit array
+	 */
+	public long[] copyBits() {
+		long[] words = new long[bits.length()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = bits.get(i);
+		return words;
+	}
+	
+	/**
+	 * Sets the bits that are set in a copy taken by <tt>copyBits</tt> from a filter
+	 * of the same size, so that every value added to that filter is present.
+	 * 
+	 * @param words
+	 *        the words of the bit array
+	 * @throws IllegalArgumentException if the copy is from a filter of another size
+	 */
+	public void restoreBits(long[] words) {
+		if (words.length != bits.length())
+			throw new IllegalArgumentException("The bits are from a filter of another size");
+		for (int i = 0; i < words.length; i++) {
+			long current;
+			while ((words[i] & ~(current = bits.get(i))) != 0) {
+				if (bits.compareAndSet(i, current, current | words[i])) {
+					bitsSet.addAndGet(Long.bitCount(words[i] & ~current));
+					break;
+				}
+			}
+		}
+	}
+	
+	private static long secondHash(long fingerprint) {
+		return URLFingerprint.mix(fingerprint ^ 0x9e3779b97f4a7c15L);
+	}
+	
+	private long bitIndex(long h1, long h2, int i) {
+		return ((h1 + i * h2) & Long.MAX_VALUE) % bitSize;
+	}
+}
@@ -0,0 +1,106 @@
+package lawnbway.jcrawler.util;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CancellationToken is shared by all the work of a crawl, so that the whole crawl
+ * can be stopped at once, e.g. as soon as the search word is found.
+ *
+ * <p>Cancellation is cooperative. Long loops, such as a StreamingHtmlExtractor or a
+ * KeywordMatcher scan, check <tt>isCancelled</tt> every few thousand characters.
+ * Work that waits for something else, such as a request in flight, registers an
+ * action with <tt>onCancel</tt> that aborts it, and closes the registration once
+ * it is done.</p>
+ *
+ * <p>A token is thread-safe, and can only be cancelled once.</p>
+ */
+public final class CancellationToken {
+
+	private volatile boolean cancelled;
+	private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Cancels the token and runs the registered actions on the calling thread.
+	 * Does nothing if the token is already cancelled.
+	 */
+	public void cancel() {
+		if (cancelled)
+			return;
+		cancelled = true;
+		for (Registration registration : registrations)
+			registration.fire();
+	}
+
+	/**
+	 * Returns true once the token is cancelled.
+	 *
+	 * @return whether the token is cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Throws a CancellationException if the token is cancelled.
+	 *
+	 * @throws CancellationException if the token is cancelled
+	 */
+	public void throwIfCancelled() {
+		if (cancelled)
+			throw new CancellationException("Crawl cancelled");
+	}
+
+	/**
+	 * Registers an action to run when the token is cancelled, or right away if it
+	 * already is. The action runs at most once, and not at all once the registration
+	 * is closed.
+	 *
+	 * @param action    the action that aborts the work
+	 * @return the registration, to be closed once the work is done
+	 */
+	public Registration onCancel(Runnable action) {
+		Registration registration = new Registration(action);
+		registrations.add(registration);
+		if (cancelled)
+			registration.fire();
+		return registration;
+	}
+
+	/**
+	 * An action registered with <tt>onCancel</tt>.
+	 */
+	public final class Registration implements AutoCloseable {
+		private final Runnable action;
+		private boolean fired;
+
+		private Registration(Runnable action) {
+			this.action = action;
+		}
+
+		private synchronized void fire() {
+			if (registrations.remove(this)) {	// whoever removes the registration runs it
+				fired = true;
+				action.run();
+			}
+		}
+
+		/**
+		 * Unregisters the action. Once this returns, the action either ran to its end or never runs.
+		 */
+		@Override
+		public synchronized void close() {
+			registrations.remove(this);
+		}
+
+		/**
+		 * Returns true if the action ran, because the token was cancelled before the registration was closed.
+		 *
+		 * @return whether the action ran
+		 */
+		public synchronized boolean hasFired() {
+			return fired;
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package lawnbway.jcrawler.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KeywordMatcher finds every occurrence of a set of terms in a text in a single pass,
+ * with an Aho-Corasick automaton. The cost of a scan depends on the length of the text
+ * and the number of hits, not on the number of terms, so a page is read once whether
+ * it is searched for one word or for hundreds of phrases.
+ *
+ * <p>Terms are trimmed and their runs of whitespace are collapsed to a single space,
+ * the way the visible text of a page is. With <tt>ignoreCase</tt>, terms and text are
+ * compared character by character in lower case. With <tt>wholeWord</tt>, a hit must
+ * not be preceded or followed by a letter, a digit or '_', e.g. "log" does not match
+ * "catalog" or "logs".</p>
+ *
+ * <p>A matcher is immutable and may be shared by any number of threads. Each thread
+ * scans its text with its own Scan, that may be fed the text in chunks. A scan bound
+ * to a CancellationToken checks it every few thousand characters, and stops with
+ * a CancellationException, e.g. once the first hit of a search ends the crawl.</p>
+ */
+public final class KeywordMatcher {
+
+	/**
+	 * Receives the hits of a scan, in the order in which they end in the text.
+	 */
+	public interface HitListener {
+
+		/**
+		 * Receives a hit.
+		 *
+		 * @param term    index of the term in <tt>getTerms()</tt>
+		 * @param position    position of the first character of the hit in the text
+		 */
+		void hit(int term, int position);
+	}
+
+	private static final int ROOT = 0;
+	private static final long EMPTY = -1;
+	private static final int DENSE_ROOT_CHARS = 256;
+	private static final int CANCELLATION_CHECK_MASK = (1 << 12) - 1;
+
+	private final List<String> terms;
+	private final boolean ignoreCase;
+	private final boolean wholeWord;
+	private final int[] termLength;
+	private final boolean[] startsWithWordChar;
+	private final boolean[] endsWithWordChar;
+	private final int maxTermLength;
+
+	// transitions of the automaton: (state << 16 | char) -> state, in an open-addressing table,
+	// and the transitions of the root for the most common characters in a plain array
+	private final long[] transitionKeys;
+	private final int[] transitionTargets;
+	private final int[] rootTargets = new int[DENSE_ROOT_CHARS];
+	private final int[] fail;
+	private final int[] output;	// index of the term that ends in the state, or -1
+	private final int[] nextOutput;	// nearest state on the fail chain with an output, or -1
+
+	/**
+	 * Builds a matcher for a set of terms. Blank terms are ignored and
+	 * duplicates are only matched once.
+	 *
+	 * @param terms    the terms to search for
+	 * @param ignoreCase    whether upper and lower case characters match
+	 * @param wholeWord    whether hits must be whole words
+	 */
+	public KeywordMatcher(Collection<String> terms, boolean ignoreCase, boolean wholeWord) {
+		this.ignoreCase = ignoreCase;
+		this.wholeWord = wholeWord;
+
+		Map<String, String> distinct = new LinkedHashMap<String, String>();
+		for (String term : terms) {
+			String normalized = normalize(term);
+			String key = ignoreCase ? fold(normalized) : normalized;
+			if (!key.isEmpty() && !distinct.containsKey(key))
+				distinct.put(key, normalized);
+		}
+		this.terms = Collections.unmodifiableList(new ArrayList<String>(distinct.values()));
+		int n = this.terms.size();
+		this.termLength = new int[n];
+		this.startsWithWordChar = new boolean[n];
+		this.endsWithWordChar = new boolean[n];
+
+		// build the trie
+		List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+		List<Integer> outputs = new ArrayList<Integer>();
+		children.add(new HashMap<Character, Integer>());
+		outputs.add(-1);
+		int transitions = 0;
+		int longest = 0;
+		int termIndex = 0;
+		for (String key : distinct.keySet()) {
+			int state = ROOT;
+			for (int i = 0; i < key.length(); i++) {
+				Integer next = children.get(state).get(key.charAt(i));
+				if (next == null) {
+					next = children.size();
+					children.get(state).put(key.charAt(i), next);
+					children.add(new HashMap<Character, Integer>());
+					outputs.add(-1);
+					transitions++;
+				}
+				state = next;
+			}
+			outputs.set(state, termIndex);
+			termLength[termIndex] = key.length();
+			startsWithWordChar[termIndex] = isWordChar(key.charAt(0));
+			endsWithWordChar[termIndex] = isWordChar(key.charAt(key.length() - 1));
+			longest = Math.max(longest, key.length());
+			termIndex++;
+		}
+		this.maxTermLength = longest;
+
+		int states = children.size();
+		this.output = new int[states];
+		for (int s = 0; s < states; s++)
+			output[s] = outputs.get(s);
+		int capacity = Integer.highestOneBit(Math.max(2, transitions) * 2 - 1) << 1;
+		this.transitionKeys = new long[capacity];
+		this.transitionTargets = new int[capacity];
+		Arrays.fill(transitionKeys, EMPTY);
+		for (int s = 0; s < states; s++)
+			for (Map.Entry<Character, Integer> child : children.get(s).entrySet())
+				putTransition(s, child.getKey(), child.getValue());
+		for (int c = 0; c < DENSE_ROOT_CHARS; c++)
+			rootTargets[c] = transition(ROOT, (char) c);
+
+		// fail links, breadth first
+		this.fail = new int[states];
+		this.nextOutput = new int[states];
+		Arrays.fill(nextOutput, -1);
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int child : children.get(ROOT).values()) {
+			fail[child] = ROOT;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (Map.Entry<Character, Integer> child : children.get(state).entrySet()) {
+				int target = child.getValue();
+				int f = fail[state];
+				int next;
+				while ((next = transition(f, child.getKey())) < 0 && f != ROOT)
+					f = fail[f];
+				fail[target] = next >= 0 ? next : ROOT;
+				nextOutput[target] = output[fail[target]] >= 0 ? fail[target] : nextOutput[fail[target]];
+				queue.add(target);
+			}
+		}
+	}
+
+	/**
+	 * Builds a matcher for a single word, that ignores case and matches
+	 * the word anywhere, also inside other words.
+	 *
+	 * @param word    the word to search for
+	 * @return the matcher
+	 */
+	public static KeywordMatcher forWord(String word) {
+		return new KeywordMatcher(Collections.singletonList(word), true, false);
+	}
+
+	/**
+	 * Gets the distinct terms of the matcher, after their whitespace was normalized.
+	 *
+	 * @return the terms, in the order in which they were given
+	 */
+	public List<String> getTerms() {
+		return terms;
+	}
+
+	/**
+	 * Returns true if upper and lower case characters match.
+	 *
+	 * @return whether case is ignored
+	 */
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
+	/**
+	 * Returns true if hits must be whole words.
+	 *
+	 * @return whether only whole words match
+	 */
+	public boolean isWholeWord() {
+		return wholeWord;
+	}
+
+	/**
+	 * Scans a whole text.
+	 *
+	 * @param text    the text
+	 * @param listener    receives the hits
+	 */
+	public void scan(CharSequence text, HitListener listener) {
+		scan(text, listener, null);
+	}
+
+	/**
+	 * Scans a whole text, unless the crawl is cancelled.
+	 *
+	 * @param text    the text
+	 * @param listener    receives the hits
+	 * @param cancellation    the cancellation token of the crawl, or null
+	 * @throws java.util.concurrent.CancellationException if the crawl is cancelled
+	 */
+	public void scan(CharSequence text, HitListener listener, CancellationToken cancellation) {
+		Scan scan = newScan(listener, cancellation);
+		scan.feed(text);
+		scan.finish();
+	}
+
+	/**
+	 * Starts a scan of a text that is fed in chunks.
+	 *
+	 * @param listener    receives the hits
+	 * @return the scan
+	 */
+	public Scan newScan(HitListener listener) {
+		return new Scan(listener, null);
+	}
+
+	/**
+	 * Starts a scan of a text that is fed in chunks, that stops once the crawl is cancelled.
+	 *
+	 * @param listener    receives the hits
+	 * @param cancellation    the cancellation token of the crawl, or null
+	 * @return the scan
+	 */
+	public Scan newScan(HitListener listener, CancellationToken cancellation) {
+		return new Scan(listener, cancellation);
+	}
+
+	@Override
+	public String toString() {
+		return terms.size() == 1 ? terms.get(0) : terms.toString();
+	}
+
+	/**
+	 * The state of a scan: the state of the automaton, the position in the text,
+	 * and for whole words the last characters read and the hits that wait for
+	 * the next character. A scan is not thread-safe.
+	 */
+	public final class Scan {
+		private final HitListener listener;
+		private final CancellationToken cancellation;
+		private final char[] recent;	// the last characters of the text, for the start of whole words
+		private final int recentMask;
+		private final int[] pending;	// hits that end at the previous character, for the end of whole words
+		private int pendingCount;
+		private int state = ROOT;
+		private int position;
+
+		private Scan(HitListener listener, CancellationToken cancellation) {
+			this.listener = listener;
+			this.cancellation = cancellation;
+			int size = wholeWord ? Integer.highestOneBit(Math.max(1, maxTermLength)) << 1 : 1;
+			this.recent = new char[size];
+			this.recentMask = size - 1;
+			this.pending = new int[wholeWord ? terms.size() : 0];
+		}
+
+		/**
+		 * Feeds the next chunk of the text.
+		 *
+		 * @param chunk    the chunk
+		 * @throws java.util.concurrent.CancellationException if the crawl is cancelled
+		 */
+		public void feed(CharSequence chunk) {
+			for (int i = 0; i < chunk.length(); i++) {
+				if (cancellation != null && (position & CANCELLATION_CHECK_MASK) == 0)
+					cancellation.throwIfCancelled();
+				char c = chunk.charAt(i);
+				if (wholeWord) {
+					flushPending(isWordChar(c));
+					recent[position & recentMask] = c;
+				}
+				char folded = ignoreCase ? Character.toLowerCase(c) : c;
+				int s = state;
+				int next;
+				if (s == ROOT && folded < DENSE_ROOT_CHARS) {
+					next = rootTargets[folded];
+				} else {
+					while ((next = transition(s, folded)) < 0 && s != ROOT)
+						s = fail[s];
+				}
+				state = next >= 0 ? next : ROOT;
+				for (int t = output[state] >= 0 ? state : nextOutput[state]; t >= 0; t = nextOutput[t])
+					found(output[t]);
+				position++;
+			}
+		}
+
+		/**
+		 * Ends the scan, reporting the hits at the very end of the text.
+		 */
+		public void finish() {
+			if (wholeWord)
+				flushPending(false);
+		}
+
+		private void found(int term) {
+			if (!wholeWord) {
+				listener.hit(term, position - termLength[term] + 1);
+				return;
+			}
+			int start = position - termLength[term] + 1;
+			if (startsWithWordChar[term] && start > 0 && isWordChar(recent[(start - 1) & recentMask]))
+				return;
+			pending[pendingCount++] = term;
+		}
+
+		private void flushPending(boolean nextIsWordChar) {
+			for (int i = 0; i < pendingCount; i++) {
+				int term = pending[i];
+				if (!nextIsWordChar || !endsWithWordChar[term])
+					listener.hit(term, position - termLength[term]);
+			}
+			pendingCount = 0;
+		}
+	}
+
+	private int transition(int state, char c) {
+		long key = ((long) state << 16) | c;
+		int mask = transitionKeys.length - 1;
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			if (transitionKeys[i] == key)
+				return transitionTargets[i];
+			if (transitionKeys[i] == EMPTY)
+				return -1;
+		}
+	}
+
+	private void putTransition(int state, char c, int target) {
+		long key = ((long) state << 16) | c;
+		int mask = transitionKeys.length - 1;
+		int i = hash(key) & mask;
+		while (transitionKeys[i] != EMPTY)
+			i = (i + 1) & mask;
+		transitionKeys[i] = key;
+		transitionTargets[i] = target;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static String normalize(String term) {
+		StringBuilder normalized = new StringBuilder(term.length());
+		boolean space = false;
+		for (int i = 0; i < term.length(); i++) {
+			char c = term.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = normalized.length() > 0;
+				continue;
+			}
+			if (space)
+				normalized.append(' ');
+			space = false;
+			normalized.append(c);
+		}
+		return normalized.toString();
+	}
+
+	private static String fold(String term) {
+		StringBuilder folded = new StringBuilder(term.length());
+		for (int i = 0; i < term.length(); i++)
+			folded.append(Character.toLowerCase(term.charAt(i)));
+		return folded.toString();
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+}
@@ -0,0 +1,145 @@
+package lawnbway.jcrawler.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts durations in buckets whose width grows with the duration,
+ * the way an HdrHistogram does: every power of two is split into 16 buckets of the same
+ * width, so a percentile read from the histogram is at most 6.25% above the real one,
+ * from nanoseconds to hours, with less than a thousand buckets.
+ *
+ * <p>Recording is lock-free and does not allocate: it increments a bucket of an
+ * AtomicLongArray and two LongAdders, so many threads may record at once without
+ * waiting for each other. The histogram is read while it is being recorded into; a
+ * reading may miss the durations recorded at the same time.</p>
+ *
+ * @see lawnbway.jcrawler.CrawlMetrics
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos    the duration, in nanoseconds; a negative one counts as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(indexOf(value));
+		count.increment();
+		total.add(value);
+		long known = max.get();
+		if (value > known)
+			max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Gets the bucket of a duration: the durations below 16 ns have a bucket each,
+	 * and every power of two above has 16 buckets.
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the largest duration of a bucket.
+	 */
+	private static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		long lowerBound = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Gets the number of durations recorded.
+	 *
+	 * @return the number of durations
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the sum of the durations recorded.
+	 *
+	 * @return the total duration, in nanoseconds
+	 */
+	public long totalNanos() {
+		return total.sum();
+	}
+
+	/**
+	 * Gets the mean of the durations recorded.
+	 *
+	 * @return the mean duration, in nanoseconds, or 0 if none was recorded
+	 */
+	public double meanNanos() {
+		long n = count();
+		return n == 0 ? 0 : (double) totalNanos() / n;
+	}
+
+	/**
+	 * Gets the longest duration recorded.
+	 *
+	 * @return the longest duration, in nanoseconds, or 0 if none was recorded
+	 */
+	public long maxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * Gets a percentile of the durations recorded: a duration that at least
+	 * <tt>percentile</tt> percent of the durations do not exceed, rounded up to
+	 * the end of its bucket, but not beyond the longest duration.
+	 *
+	 * @param percentile    the percentile, from 0 to 100, e.g. 99 for the 99th percentile
+	 * @return the duration, in nanoseconds, or 0 if none was recorded
+	 */
+	public long percentileNanos(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("A percentile must be between 0 and 100");
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			n += counts[i] = buckets.get(i);
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBoundOf(i), maxNanos());
+		}
+		return maxNanos();
+	}
+
+	/**
+	 * Returns the number of durations, their mean, median, 90th and 99th percentile and maximum, in milliseconds.
+	 *
+	 * @return summary of the histogram
+	 */
+	@Override
+	public String toString() {
+		return String.format("n=%d, mean %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms", count(),
+				meanNanos() / 1e6, percentileNanos(50) / 1e6, percentileNanos(90) / 1e6, percentileNanos(99) / 1e6,
+				maxNanos() / 1e6);
+	}
+}
@@ -0,0 +1,127 @@
+package lawnbway.jcrawler.util;
+
+/**
+ * LongHashSet is a set of primitive <tt>long</tt> values stored in an open-addressing
+ * table with linear probing. There is no boxing and no per-entry objects: the whole set
+ * is a single <tt>long[]</tt> that is doubled when it becomes more than half full.
+ * 
+ * <p>The value 0 marks an empty slot and cannot be stored. The values are expected
+ * to be well-mixed hashes, such as the ones produced by URLFingerprint.</p>
+ * 
+ * <p>This class is not thread-safe.</p>
+ * 
+ * @see URLFingerprint
+ */
+public class LongHashSet {
+	
+	private static final int MIN_CAPACITY = 16;
+	private long[] table;
+	private int size;
+	private int mask;
+	
+	/**
+	 * Creates an empty set that holds the expected number of values without resizing.
+	 * 
+	 * @param expectedSize
+	 *        expected number of values
+	 */
+	public LongHashSet(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2 && capacity < (1 << 30))
+			capacity <<= 1;
+		table = new long[capacity];
+		mask = capacity - 1;
+	}
+	
+	/**
+	 * Adds the value to the set if it is not present yet.
+	 * 
+	 * @param value
+	 *        non-zero value to add
+	 * @return true if the value was added, false if it was present
+	 * @throws IllegalArgumentException if the value is 0
+	 */
+	public boolean add(long value) {
+		if (value == 0)
+			throw new IllegalArgumentException("0 cannot be stored in LongHashSet");
+		int slot = (int) value & mask;
+		while (table[slot] != 0) {
+			if (table[slot] == value)
+				return false;
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		if (++size > (mask + 1) / 2)
+			grow();
+		return true;
+	}
+	
+	/**
+	 * Returns true if the value is present in the set.
+	 * 
+	 * @param value
+	 *        the value to look for
+	 * @return true if the value is present
+	 */
+	public boolean contains(long value) {
+		if (value == 0)
+			return false;
+		int slot = (int) value & mask;
+		while (table[slot] != 0) {
+			if (table[slot] == value)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the number of values in the set.
+	 * 
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the number of slots in the table.
+	 * 
+	 * @return current table capacity
+	 */
+	public int capacity() {
+		return table.length;
+	}
+	
+	/**
+	 * Copies the values of the set.
+	 * 
+	 * @return the values, in no particular order
+	 */
+	public long[] toArray() {
+		long[] values = new long[size];
+		int i = 0;
+		for (long value : table) {
+			if (value != 0)
+				values[i++] = value;
+		}
+		return values;
+	}
+	
+	/**
+	 * Doubles the table and re-inserts all the values.
+	 */
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		mask = table.length - 1;
+		for (long value : old) {
+			if (value == 0)
+				continue;
+			int slot = (int) value & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = value;
+		}
+	}
+}
@@ -0,0 +1,476 @@
+package lawnbway.jcrawler.util;
+
+import java.util.Arrays;
+
+/**
+ * ParsedURL is a single-pass, regex-free parser and normalizer of http(s) URL addresses.
+ * Parsing only records the offsets of the scheme, host, port, path, query and fragment
+ * within the original string, so it allocates nothing; the components are extracted
+ * as strings only when they are asked for.
+ *
+ * <p>An instance is a reusable view: <tt>parse</tt> may be called again with another
+ * URL, which lets hot loops parse every discovered link with a single instance.
+ * Instances are not thread-safe; use one per thread.</p>
+ *
+ * <p>A URL is considered valid if it has the http or https scheme, a host name made of
+ * letters, digits, dots and hyphens that ends with an alphabetic top-level domain
+ * (or is an IPv4 address or <tt>localhost</tt>), an optional numeric port, and no
+ * whitespace or control characters.</p>
+ *
+ * <p>Normalization lowercases the scheme and the host, drops the default port and
+ * the fragment, resolves <tt>.</tt> and <tt>..</tt> path segments (RFC 3986, section 5.2.4),
+ * and can optionally strip tracking parameters and sort the query parameters.</p>
+ */
+public final class ParsedURL {
+
+	private static final String[] TRACKING_PARAMS = { "fbclid", "gclid", "mc_cid", "mc_eid", "msclkid", "yclid" };
+	private static final String TRACKING_PREFIX = "utm_";
+
+	private String url;
+	private boolean https;
+	private int hostStart;
+	private int hostEnd;
+	private int port;
+	private int pathStart;
+	private int queryStart;  // index of '?', or -1
+	private int fragmentStart;  // index of '#', or -1
+
+	/**
+	 * Parses the URL and returns a new view of it.
+	 *
+	 * @param url
+	 *        the URL address to parse
+	 * @return parsed view of the URL, or null if the URL is invalid
+	 */
+	public static ParsedURL of(String url) {
+		ParsedURL parsed = new ParsedURL();
+		return parsed.parse(url) ? parsed : null;
+	}
+
+	/**
+	 * Parses the URL into this view, replacing the previous one.
+	 *
+	 * @param url
+	 *        the URL address to parse
+	 * @return true if the URL is valid; the view must not be used otherwise
+	 */
+	public boolean parse(String url) {
+		this.url = url;
+		if (url == null)
+			return false;
+		int length = url.length();
+
+		// scheme
+		if (!url.regionMatches(true, 0, "http", 0, 4))
+			return false;
+		int i = 4;
+		https = i < length && (url.charAt(i) == 's' || url.charAt(i) == 'S');
+		if (https)
+			i++;
+		if (!url.startsWith("://", i))
+			return false;
+		i += 3;
+
+		// authority, ends at the first '/', '?' or '#'
+		int authorityStart = i;
+		int authorityEnd = i;
+		while (authorityEnd < length) {
+			char c = url.charAt(authorityEnd);
+			if (c == '/' || c == '?' || c == '#')
+				break;
+			authorityEnd++;
+		}
+		hostStart = authorityStart;
+		for (int j = authorityEnd - 1; j >= authorityStart; j--) {
+			if (url.charAt(j) == '@') { // skip user info
+				hostStart = j + 1;
+				break;
+			}
+		}
+		hostEnd = hostStart;
+		while (hostEnd < authorityEnd && url.charAt(hostEnd) != ':')
+			hostEnd++;
+		if (!isValidHost(url, hostStart, hostEnd))
+			return false;
+
+		port = -1;
+		if (hostEnd < authorityEnd - 1) {
+			if (authorityEnd - hostEnd - 1 > 5)
+				return false;
+			port = 0;
+			for (int j = hostEnd + 1; j < authorityEnd; j++) {
+				char c = url.charAt(j);
+				if (c < '0' || c > '9')
+					return false;
+				port = port * 10 + (c - '0');
+			}
+			if (port > 65535)
+				return false;
+		}
+
+		// path, query and fragment
+		pathStart = authorityEnd;
+		queryStart = -1;
+		fragmentStart = -1;
+		for (int j = authorityEnd; j < length; j++) {
+			char c = url.charAt(j);
+			if (c <= ' ' || c == 0x7f || c == '"' || c == '<' || c == '>')
+				return false;
+			if (c == '?' && queryStart < 0 && fragmentStart < 0)
+				queryStart = j;
+			else if (c == '#' && fragmentStart < 0)
+				fragmentStart = j;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the host name: dot-separated labels of letters, digits and hyphens,
+	 * either ending with an alphabetic top-level domain or forming an IPv4 address.
+	 * <tt>localhost</tt> is valid as well.
+	 */
+	private static boolean isValidHost(String url, int start, int end) {
+		int length = end - start;
+		if (length < 1 || length > 253)
+			return false;
+		if (length == 9 && url.regionMatches(true, start, "localhost", 0, 9))
+			return true;
+
+		int labels = 0;
+		int labelStart = start;
+		boolean numeric = true;  // every label so far is numeric
+		boolean lastLabelAlphabetic = false;
+		for (int i = start; i <= end; i++) {
+			char c = i < end ? url.charAt(i) : '.';
+			if (c == '.') {
+				int labelLength = i - labelStart;
+				if (labelLength == 0 || labelLength > 63
+						|| url.charAt(labelStart) == '-' || url.charAt(i - 1) == '-')
+					return false;
+				labels++;
+				lastLabelAlphabetic = true;
+				for (int j = labelStart; j < i; j++) {
+					char d = url.charAt(j);
+					boolean digit = d >= '0' && d <= '9';
+					if (!digit)
+						numeric = false;
+					if (digit || d == '-')
+						lastLabelAlphabetic = false;
+				}
+				if (numeric && (labelLength > 3 || Integer.parseInt(url.substring(labelStart, i)) > 255))
+					numeric = false;
+				labelStart = i + 1;
+			}
+			else if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-')) {
+				return false;
+			}
+		}
+		if (numeric)
+			return labels == 4;
+		return labels >= 2 && lastLabelAlphabetic && end - url.lastIndexOf('.', end - 1) - 1 >= 2;
+	}
+
+	/**
+	 * Gets the original URL address of this view.
+	 *
+	 * @return the parsed URL
+	 */
+	public String url() {
+		return url;
+	}
+
+	/**
+	 * Gets the lowercase scheme.
+	 *
+	 * @return <tt>http</tt> or <tt>https</tt>
+	 */
+	public String scheme() {
+		return https ? "https" : "http";
+	}
+
+	/**
+	 * Returns true if the scheme is https.
+	 *
+	 * @return true for https, false for http
+	 */
+	public boolean isHttps() {
+		return https;
+	}
+
+	/**
+	 * Gets the lowercase host name.
+	 *
+	 * @return the host name, without user info and port
+	 */
+	public String host() {
+		return lowerCase(url, hostStart, hostEnd);
+	}
+
+	/**
+	 * Gets the host name without the leading <tt>www.</tt>, if there is one.
+	 *
+	 * @return lowercase authority of the URL
+	 */
+	public String authority() {
+		int start = hasWww() ? hostStart + 4 : hostStart;
+		return lowerCase(url, start, hostEnd);
+	}
+
+	/**
+	 * Gets the root of the URL: the scheme, the host and the port if it is not the default one.
+	 *
+	 * @return root URL in the format <tt>http(s)://(www.)hostname(:port)</tt>
+	 */
+	public String root() {
+		StringBuilder sb = new StringBuilder(hostEnd - hostStart + 14);
+		appendRoot(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the port number as written in the URL.
+	 *
+	 * @return the port number, or -1 if there is none
+	 */
+	public int port() {
+		return port;
+	}
+
+	/**
+	 * Gets the port the URL connects to.
+	 *
+	 * @return the explicit port, or 80 for http and 443 for https
+	 */
+	public int effectivePort() {
+		return port >= 0 ? port : https ? 443 : 80;
+	}
+
+	/**
+	 * Gets the path.
+	 *
+	 * @return the path, which may be empty
+	 */
+	public String path() {
+		return url.substring(pathStart, pathEnd());
+	}
+
+	/**
+	 * Gets the query without the leading <tt>?</tt>.
+	 *
+	 * @return the query, or null if there is none
+	 */
+	public String query() {
+		return queryStart < 0 ? null : url.substring(queryStart + 1, queryEnd());
+	}
+
+	/**
+	 * Gets the fragment without the leading <tt>#</tt>.
+	 *
+	 * @return the fragment, or null if there is none
+	 */
+	public String fragment() {
+		return fragmentStart < 0 ? null : url.substring(fragmentStart + 1);
+	}
+
+	/**
+	 * Returns true if the host of this URL is equal to the provided
+	 * lowercase host name, ignoring case, without extracting the host.
+	 *
+	 * @param lowerCaseHost
+	 *        host name to compare with
+	 * @return true if the hosts are equal
+	 */
+	public boolean hostEquals(String lowerCaseHost) {
+		return hostEnd - hostStart == lowerCaseHost.length()
+				&& url.regionMatches(true, hostStart, lowerCaseHost, 0, lowerCaseHost.length());
+	}
+
+	/**
+	 * Returns true if the host of this URL ends with the provided lowercase
+	 * suffix, ignoring case, without extracting the host.
+	 *
+	 * @param lowerCaseSuffix
+	 *        the suffix, e.g. <tt>.example.com</tt>
+	 * @return true if the host ends with the suffix
+	 */
+	public boolean hostEndsWith(String lowerCaseSuffix) {
+		int length = lowerCaseSuffix.length();
+		return hostEnd - hostStart >= length
+				&& url.regionMatches(true, hostEnd - length, lowerCaseSuffix, 0, length);
+	}
+
+	/**
+	 * Normalizes the URL without touching the query.
+	 *
+	 * @return normalized URL
+	 * @see #normalize(boolean, boolean)
+	 */
+	public String normalize() {
+		return normalize(false, false);
+	}
+
+	/**
+	 * Normalizes the URL: lowercases the scheme and the host, drops the default port
+	 * and the fragment, resolves dot segments in the path and replaces an empty path with
+	 * <tt>/</tt>. If the URL is already normalized, it is returned as is, without allocation.
+	 *
+	 * @param stripTracking
+	 *        removes <tt>utm_*</tt>, <tt>gclid</tt>, <tt>fbclid</tt> and similar tracking parameters
+	 * @param sortQuery
+	 *        sorts the query parameters, so that the same parameters in a different order
+	 *        produce the same URL
+	 * @return normalized URL
+	 */
+	public String normalize(boolean stripTracking, boolean sortQuery) {
+		int pathEnd = pathEnd();
+		boolean dotSegments = hasDotSegments(url, pathStart, pathEnd);
+		boolean changeQuery = queryStart >= 0 && (stripTracking || sortQuery);
+		if (!dotSegments && !changeQuery && fragmentStart < 0 && pathEnd > pathStart
+				&& isNormalRoot()) {
+			return url;
+		}
+
+		StringBuilder sb = new StringBuilder(url.length());
+		appendRoot(sb);
+		if (pathEnd == pathStart)
+			sb.append('/');
+		else if (dotSegments)
+			appendWithoutDotSegments(sb, url, pathStart, pathEnd);
+		else
+			sb.append(url, pathStart, pathEnd);
+
+		if (queryStart >= 0) {
+			if (changeQuery)
+				appendQuery(sb, url.substring(queryStart + 1, queryEnd()), stripTracking, sortQuery);
+			else
+				sb.append(url, queryStart, queryEnd());
+		}
+		return sb.toString();
+	}
+
+	private int pathEnd() {
+		return queryStart >= 0 ? queryStart : fragmentStart >= 0 ? fragmentStart : url.length();
+	}
+
+	private int queryEnd() {
+		return fragmentStart >= 0 ? fragmentStart : url.length();
+	}
+
+	private boolean hasWww() {
+		return hostEnd - hostStart > 4 && url.regionMatches(true, hostStart, "www.", 0, 4);
+	}
+
+	/**
+	 * Returns true if the scheme and host are lowercase and there is no default port.
+	 */
+	private boolean isNormalRoot() {
+		int schemeLength = https ? 5 : 4;
+		for (int i = 0; i < schemeLength; i++) {
+			if (Character.isUpperCase(url.charAt(i)))
+				return false;
+		}
+		if (hostStart != schemeLength + 3 || port == (https ? 443 : 80) || (port < 0 && hostEnd != pathStart))
+			return false;  // user info, default or empty port
+		for (int i = hostStart; i < hostEnd; i++) {
+			char c = url.charAt(i);
+			if (c >= 'A' && c <= 'Z')
+				return false;
+		}
+		return true;
+	}
+
+	private void appendRoot(StringBuilder sb) {
+		sb.append(https ? "https://" : "http://");
+		for (int i = hostStart; i < hostEnd; i++)
+			sb.append(toLowerCase(url.charAt(i)));
+		if (port >= 0 && port != (https ? 443 : 80))
+			sb.append(':').append(port);
+	}
+
+	private static boolean hasDotSegments(String url, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (url.charAt(i) == '.' && url.charAt(i - 1) == '/') {
+				int next = i + 1;
+				if (next == end || url.charAt(next) == '/')
+					return true;
+				if (url.charAt(next) == '.' && (next + 1 == end || url.charAt(next + 1) == '/'))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends the path with <tt>.</tt> and <tt>..</tt> segments resolved.
+	 * The path always starts with '/', since it directly follows the authority.
+	 */
+	private static void appendWithoutDotSegments(StringBuilder sb, String url, int start, int end) {
+		int base = sb.length();
+		int i = start;
+		while (i < end) {
+			int segmentEnd = url.indexOf('/', i + 1);
+			if (segmentEnd < 0 || segmentEnd > end)
+				segmentEnd = end;
+			int segmentLength = segmentEnd - i - 1;
+			boolean last = segmentEnd == end;
+			if (segmentLength == 1 && url.charAt(i + 1) == '.') {
+				if (last)
+					sb.append('/');
+			}
+			else if (segmentLength == 2 && url.charAt(i + 1) == '.' && url.charAt(i + 2) == '.') {
+				int slash = sb.lastIndexOf("/");
+				sb.setLength(slash < base ? base : slash);
+				if (last)
+					sb.append('/');
+			}
+			else {
+				sb.append(url, i, segmentEnd);
+			}
+			i = segmentEnd;
+		}
+		if (sb.length() == base)
+			sb.append('/');
+	}
+
+	private static void appendQuery(StringBuilder sb, String query, boolean stripTracking, boolean sortQuery) {
+		String[] params = query.split("&");
+		if (sortQuery)
+			Arrays.sort(params);
+		boolean first = true;
+		for (String param : params) {
+			if (param.isEmpty() || stripTracking && isTrackingParam(param))
+				continue;
+			sb.append(first ? '?' : '&').append(param);
+			first = false;
+		}
+	}
+
+	private static boolean isTrackingParam(String param) {
+		int eq = param.indexOf('=');
+		String name = eq < 0 ? param : param.substring(0, eq);
+		if (name.startsWith(TRACKING_PREFIX))
+			return true;
+		for (String tracking : TRACKING_PARAMS) {
+			if (tracking.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private static String lowerCase(String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				StringBuilder sb = new StringBuilder(end - start);
+				for (int j = start; j < end; j++)
+					sb.append(toLowerCase(s.charAt(j)));
+				return sb.toString();
+			}
+		}
+		return s.substring(start, end);
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+}
@@ -0,0 +1,320 @@
+package lawnbway.jcrawler.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * RobotsRules are the rules of robots.txt of a website that apply to this crawler:
+ * the Allow and Disallow rules of its group, and its Crawl-delay. They are created
+ * by <tt>RobotsUtil.parse</tt>.
+ *
+ * <p>The rules follow RFC 9309: the rule with the longest pattern that matches the
+ * path and query of a URL decides whether the URL may be crawled, and Allow wins
+ * if an Allow and a Disallow rule are equally long. A path no rule matches may be
+ * crawled. A pattern may contain <tt>*</tt>, which matches any sequence of characters,
+ * and may end with <tt>$</tt>, which matches the end of the path. Non-ASCII characters
+ * and the hex digits of percent-encoded characters are compared in the same encoding.</p>
+ *
+ * <p>The rules are compiled into a trie of the literal prefixes of the patterns, that
+ * is, the characters before the first <tt>*</tt> or <tt>$</tt>. A check walks the trie
+ * along the path once: a rule without wildcards matches as soon as its node is reached,
+ * so only the few patterns with wildcards whose prefix is on the way are matched
+ * character by character. The time of a check hardly depends on the number of rules.</p>
+ *
+ * <p>RobotsRules are immutable and may be shared by any number of threads.</p>
+ *
+ * @see RobotsUtil
+ */
+public final class RobotsRules {
+
+	/** The rules of a website without robots.txt: everything may be crawled. */
+	public static final RobotsRules ALLOW_ALL = new RobotsRules(new ArrayList<Rule>(), 0);
+
+	/** The rules of a website whose robots.txt is unreachable: nothing may be crawled. */
+	public static final RobotsRules DISALLOW_ALL = new RobotsRules(Arrays.asList(new Rule("/", false)), 0);
+
+	/** An Allow or Disallow rule, with its pattern in the encoding of the paths it is compared with. */
+	static final class Rule {
+		final String pattern;
+		final boolean allow;
+
+		Rule(String pattern, boolean allow) {
+			this.pattern = pattern;
+			this.allow = allow;
+		}
+	}
+
+	/** A node of the trie: the rules whose literal prefix ends here, and the nodes of the next characters. */
+	private static final class Node {
+		char[] keys = new char[0];
+		Node[] children = new Node[0];
+		byte prefixRule;	// NONE, ALLOW or DISALLOW: a rule without wildcards ends here
+		byte exactRule;	// a rule that ends with $ right after its literal prefix
+		Glob[] globs;	// rules with * whose literal prefix ends here, or null
+
+		Node child(char key) {
+			int index = Arrays.binarySearch(keys, key);
+			return index >= 0 ? children[index] : null;
+		}
+	}
+
+	/** The part of a pattern after its literal prefix: segments separated by *, maybe anchored by $. */
+	private static final class Glob {
+		final String[] segments;
+		final boolean anchored;
+		final int length;
+		final boolean allow;
+
+		Glob(String rest, int length, boolean allow) {
+			this.anchored = rest.endsWith("$");
+			this.segments = (anchored ? rest.substring(0, rest.length() - 1) : rest).split("\\*", -1);
+			this.length = length;
+			this.allow = allow;
+		}
+
+		/** Matches the path from the end of the literal prefix, which is followed by a * */
+		boolean matches(String path, int from) {
+			int position = from;
+			int last = segments.length - 1;
+			for (int i = 1; i < last; i++) { // segments[0] is empty: the rest starts with *
+				int found = path.indexOf(segments[i], position);
+				if (found < 0)
+					return false;
+				position = found + segments[i].length();
+			}
+			if (last == 0)
+				return !anchored || position == path.length();
+			if (anchored)
+				return path.endsWith(segments[last]) && path.length() - segments[last].length() >= position;
+			return path.indexOf(segments[last], position) >= 0;
+		}
+	}
+
+	private static final byte NONE = 0;
+	private static final byte ALLOW = 1;
+	private static final byte DISALLOW = 2;
+
+	private final Node root;
+	private final int ruleCount;
+	private final int allowCount;
+	private final double crawlDelay;
+
+	/**
+	 * Compiles the rules of a group of robots.txt.
+	 *
+	 * @param rules    the Allow and Disallow rules, with patterns that start with / or *
+	 * @param crawlDelay    the Crawl-delay in seconds, or 0 if there is none
+	 */
+	RobotsRules(List<Rule> rules, double crawlDelay) {
+		this.crawlDelay = crawlDelay;
+		this.ruleCount = rules.size();
+		int allows = 0;
+		TrieBuilder builder = new TrieBuilder();
+		for (Rule rule : rules) {
+			if (rule.allow)
+				allows++;
+			builder.add(rule);
+		}
+		this.allowCount = allows;
+		this.root = builder.build();
+	}
+
+	/**
+	 * Returns true if the URL may be crawled. <tt>/robots.txt</tt> may always be crawled.
+	 *
+	 * @param url    a valid URL address of the website of these rules
+	 * @return true if no rule disallows the path and query of the URL
+	 */
+	public boolean isAllowed(String url) {
+		ParsedURL parsed = URLUtil.parse(url);
+		return parsed == null || isPathAllowed(pathOf(parsed));
+	}
+
+	/**
+	 * Returns true if a path may be crawled. The path must be encoded as by <tt>pathOf</tt>.
+	 *
+	 * @param path    the path and query of a URL, starting with /
+	 * @return true if no rule disallows the path
+	 */
+	public boolean isPathAllowed(String path) {
+		if (path.equals("/robots.txt"))
+			return true;
+		int bestLength = -1;
+		boolean allowed = true;
+		Node node = root;
+		for (int depth = 0; node != null; depth++) {
+			byte decision = depth == path.length() && node.exactRule != NONE ? node.exactRule : node.prefixRule;
+			int length = node.exactRule != NONE && depth == path.length() ? depth + 1 : depth;	// $ counts too
+			if (decision != NONE && (length > bestLength || (length == bestLength && decision == ALLOW))) {
+				bestLength = length;
+				allowed = decision == ALLOW;
+			}
+			if (node.globs != null) {
+				for (Glob glob : node.globs) {
+					if ((glob.length > bestLength || (glob.length == bestLength && glob.allow && !allowed))
+							&& glob.matches(path, depth)) {
+						bestLength = glob.length;
+						allowed = glob.allow;
+					}
+				}
+			}
+			node = depth < path.length() ? node.child(path.charAt(depth)) : null;
+		}
+		return allowed;
+	}
+
+	/**
+	 * Gets the Crawl-delay of the website.
+	 *
+	 * @return the delay between two requests in seconds, or 0 if there is none
+	 */
+	public double getCrawlDelay() {
+		return crawlDelay;
+	}
+
+	/**
+	 * Gets the number of Allow and Disallow rules.
+	 *
+	 * @return the number of rules
+	 */
+	public int ruleCount() {
+		return ruleCount;
+	}
+
+	/**
+	 * Returns a one-line summary of the rules.
+	 *
+	 * @return summary of the rules
+	 */
+	@Override
+	public String toString() {
+		if (this == DISALLOW_ALL)
+			return "everything disallowed";
+		return String.format("%d allow and %d disallow rule(s)%s", allowCount, ruleCount - allowCount,
+				crawlDelay > 0 ? ", crawl-delay " + crawlDelay + " s" : "");
+	}
+
+	/**
+	 * Gets the path and query of a URL in the encoding of the patterns of the rules.
+	 *
+	 * @param url    a parsed URL
+	 * @return the path and query, starting with /
+	 */
+	public static String pathOf(ParsedURL url) {
+		String path = url.path();
+		String query = url.query();
+		if (path.isEmpty())
+			path = "/";
+		return encode(query == null ? path : path + "?" + query);
+	}
+
+	/**
+	 * Percent-encodes the characters that are not printable ASCII, in UTF-8, and
+	 * uppercases the hex digits of the characters that are percent-encoded already,
+	 * so that patterns and paths can be compared character by character.
+	 *
+	 * @param path    a pattern or a path
+	 * @return the encoded pattern or path, which is the same string if nothing needs to be encoded
+	 */
+	static String encode(String path) {
+		int i = 0;
+		for (; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c <= ' ' || c >= 0x7f || (c == '%' && hasLowerCaseHex(path, i)))
+				break;
+		}
+		if (i == path.length())
+			return path;
+		StringBuilder encoded = new StringBuilder(path.length() + 16).append(path, 0, i);
+		for (; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c == '%' && hasLowerCaseHex(path, i)) {
+				encoded.append('%').append(Character.toUpperCase(path.charAt(i + 1)))
+					.append(Character.toUpperCase(path.charAt(i + 2)));
+				i += 2;
+			} else if (c <= ' ' || c >= 0x7f) {
+				int end = Character.isHighSurrogate(c) && i + 1 < path.length() ? i + 2 : i + 1;
+				for (byte b : path.substring(i, end).getBytes(StandardCharsets.UTF_8))
+					encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+						.append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+				i = end - 1;
+			} else {
+				encoded.append(c);
+			}
+		}
+		return encoded.toString();
+	}
+
+	private static boolean hasLowerCaseHex(String path, int percent) {
+		if (percent + 2 >= path.length())
+			return false;
+		char high = path.charAt(percent + 1);
+		char low = path.charAt(percent + 2);
+		return Character.digit(high, 16) >= 0 && Character.digit(low, 16) >= 0
+				&& (Character.isLowerCase(high) || Character.isLowerCase(low));
+	}
+
+	/** Builds the trie with sorted maps, then freezes it into sorted arrays. */
+	private static final class TrieBuilder {
+		private final BuildNode root = new BuildNode();
+
+		private static final class BuildNode {
+			final Map<Character, BuildNode> children = new TreeMap<Character, BuildNode>();
+			byte prefixRule = NONE;
+			byte exactRule = NONE;
+			final List<Glob> globs = new ArrayList<Glob>();
+		}
+
+		void add(Rule rule) {
+			String pattern = rule.pattern;
+			int literalEnd = 0;
+			while (literalEnd < pattern.length() && pattern.charAt(literalEnd) != '*'
+					&& !(pattern.charAt(literalEnd) == '$' && literalEnd == pattern.length() - 1))
+				literalEnd++;
+			BuildNode node = root;
+			for (int i = 0; i < literalEnd; i++) {
+				BuildNode child = node.children.get(pattern.charAt(i));
+				if (child == null) {
+					child = new BuildNode();
+					node.children.put(pattern.charAt(i), child);
+				}
+				node = child;
+			}
+			byte decision = rule.allow ? ALLOW : DISALLOW;
+			if (literalEnd == pattern.length())
+				node.prefixRule = merge(node.prefixRule, decision);
+			else if (literalEnd == pattern.length() - 1 && pattern.charAt(literalEnd) == '$')
+				node.exactRule = merge(node.exactRule, decision);
+			else
+				node.globs.add(new Glob(pattern.substring(literalEnd), pattern.length(), rule.allow));
+		}
+
+		/** Of two rules with the same pattern, Allow wins. */
+		private static byte merge(byte current, byte decision) {
+			return current == ALLOW || decision == ALLOW ? ALLOW : DISALLOW;
+		}
+
+		Node build() {
+			return freeze(root);
+		}
+
+		private static Node freeze(BuildNode built) {
+			Node node = new Node();
+			node.prefixRule = built.prefixRule;
+			node.exactRule = built.exactRule;
+			node.globs = built.globs.isEmpty() ? null : built.globs.toArray(new Glob[0]);
+			node.keys = new char[built.children.size()];
+			node.children = new Node[built.children.size()];
+			int i = 0;
+			for (Map.Entry<Character, BuildNode> child : built.children.entrySet()) {
+				node.keys[i] = child.getKey();
+				node.children[i++] = freeze(child.getValue());
+			}
+			return node;
+		}
+	}
+}
@@ -1,101 +1,143 @@
 package lawnbway.jcrawler.util;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import lawnbway.jcrawler.util.URLUtil;
+import java.util.Locale;
 
 /**
- * 
- * 
- * RobotsUtil reads robots.txt of a specified website. 
- * Creates a list of links that will not be visited during 
- * the crawl. This list can be added to a set of visitedLinks 
- * at the beginning of the crawl; this ensures that website 
- * areas specified in robots.txt are excluded from the scan.
- * 
- * This parser follows Robot Exclusion Standard only. That is,
- * regex and any non-standard directives in robots.txt are not
- * supported and are ignored by this parser and, consequently,
- * this web crawler.
- * 
- * For more information see: http://www.robotstxt.org/orig.html
- * 
+ *
+ *
+ * RobotsUtil parses robots.txt of a website into the RobotsRules
+ * that apply to this crawler. It has no state: the rules of every
+ * website are kept by whoever fetched its robots.txt, e.g. a RobotsCache,
+ * so that the websites of several crawls do not get mixed up.
+ *
+ * This parser follows RFC 9309. The records of robots.txt are grouped
+ * by their User-agent lines: the rules of the groups whose User-agent
+ * is the product token of this crawler apply to it, or if there is
+ * none, the rules of the groups for all user agents (<tt>*</tt>).
+ * Allow and Disallow rules, with the <tt>*</tt> and <tt>$</tt> wildcards,
+ * and the non-standard Crawl-delay directive are supported. Sitemap and
+ * other directives are ignored.
+ *
+ * For more information see: https://www.rfc-editor.org/rfc/rfc9309
+ *
  * @author lawnboymax
  *
+ * @see RobotsRules
  */
 public final class RobotsUtil {
-	
-	private static List<String> robotExclusionLinks = new LinkedList<String>();
-	
+
+	/** Only the first 500 KiB of robots.txt are parsed, as in RFC 9309. */
+	public static final int MAX_LENGTH = 500 * 1024;
+	/** A longer Crawl-delay, in seconds, is cut down to a day. */
+	public static final double MAX_CRAWL_DELAY = 24 * 60 * 60;
+
 	// Suppresses default constructor, ensuring non-instantiability.
 		private RobotsUtil() {}
-	
+
 	/**
-	 * Creates a list of "areas" of a website, that are specified
-	 * as off-limits for all user-agents in robots.txt.
-	 * 
-	 * @param url	the URL address of a website whose robots.txt needs to be parsed
+	 * Parses robots.txt and compiles the rules that apply to a crawler.
+	 *
+	 * @param robotsTxt	the content of robots.txt
+	 * @param productToken	the product token of the crawler, matched case-insensitively
+	 * 	against the User-agent lines
+	 * @return the rules that apply to the crawler
 	 */
-	public static void parse(String url){
-			
-			// Prepare regex patterns for reading robots.txt
-			String usrAgent = "User-agent: \\*";
-			Pattern usrAgentRegex = Pattern.compile(usrAgent, Pattern.CASE_INSENSITIVE);
-			// Regex in robots.txt is not supported by this crawler. Ignore '*'
-			String disallow = "Disallow: (\\/*?[-a-zA-Z0-9@:%_\\\\+.~#?&//=]+)$";
-			Pattern disallowRegex = Pattern.compile(disallow);
-			
-			String root = URLUtil.getRootUrl(url);
-			try(BufferedReader in = new BufferedReader(
-		            new InputStreamReader(new URL(root + "/robots.txt").openStream()))) { // Open robots.txt of chosen website
-		        String line = "foo";
-		        Matcher agentMatch = usrAgentRegex.matcher(line);
-		        
-		        // Read robots.txt until reach record for all robots
-		        while((line = in.readLine()) != null && !agentMatch.find()) { 
-		        	agentMatch = usrAgentRegex.matcher(line);
-		        	}
-		        
-		        // Look for disallow fields that don't start with '*'
-		        Matcher disMatch = disallowRegex.matcher(line);
-		        System.out.print(String.format(
-		        "The following links are excluded from search (see %s/robots.txt): \n\n", root));
-		        while((line = in.readLine()) != null && !line.isEmpty()){
-		        	disMatch = disallowRegex.matcher(line);
-		        	
-		        	// Add disallowed paths to visited pages set
-		        	if (disMatch.find()) {
-			        	String disallowedPath = disMatch.group(1);
-			        	
-			        	if(disallowedPath == "/") { // robots are excluded from entire server
-			        		System.out.println("It looks like polite robots are not welcome on this server ;(");
-			        		System.exit(0);
-			        	}
-			        	robotExclusionLinks.add(root + disallowedPath);
-			        	System.out.println("Disallowed: " + root + disallowedPath);
-		        	}
-		        }
-	        	System.out.println();
-		    } catch (IOException e) {
-		        e.printStackTrace();
-		    }
+	public static RobotsRules parse(String robotsTxt, String productToken){
+
+		String token = productToken.toLowerCase(Locale.ROOT);
+		List<RobotsRules.Rule> ownRules = new ArrayList<RobotsRules.Rule>();
+		List<RobotsRules.Rule> anyRules = new ArrayList<RobotsRules.Rule>();
+		double ownDelay = 0;
+		double anyDelay = 0;
+		boolean ownGroupFound = false;
+		boolean inOwnGroup = false;
+		boolean inAnyGroup = false;
+		boolean groupHasRecords = true;	// the next User-agent line starts a new group
+
+		int length = Math.min(robotsTxt.length(), MAX_LENGTH);
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && robotsTxt.charAt(lineEnd) != '\n' && robotsTxt.charAt(lineEnd) != '\r')
+				lineEnd++;
+			String line = robotsTxt.substring(lineStart, lineEnd);
+			lineStart = lineEnd + 1;
+
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			int colon = line.indexOf(':');
+			if (colon < 0)
+				continue;
+			String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = line.substring(colon + 1).trim();
+
+			switch (key) {
+			case "user-agent":
+				if (groupHasRecords) {	// a new group
+					inOwnGroup = false;
+					inAnyGroup = false;
+					groupHasRecords = false;
+				}
+				String agent = value.toLowerCase(Locale.ROOT);
+				int end = 0;
+				while (end < agent.length() && (Character.isLetter(agent.charAt(end))
+						|| agent.charAt(end) == '-' || agent.charAt(end) == '_' || agent.charAt(end) == '*'))
+					end++;
+				agent = agent.substring(0, end);
+				if (agent.equals(token)) {
+					inOwnGroup = true;
+					ownGroupFound = true;
+				}
+				else if (agent.equals("*")) {
+					inAnyGroup = true;
+				}
+				break;
+			case "allow":
+			case "disallow":
+				groupHasRecords = true;
+				if (value.isEmpty() || !(inOwnGroup || inAnyGroup))
+					continue;	// an empty Disallow allows everything
+				String pattern = RobotsRules.encode(value.startsWith("/") || value.startsWith("*") ? value : "/" + value);
+				RobotsRules.Rule rule = new RobotsRules.Rule(pattern, key.equals("allow"));
+				if (inOwnGroup)
+					ownRules.add(rule);
+				if (inAnyGroup)
+					anyRules.add(rule);
+				break;
+			case "crawl-delay":
+				groupHasRecords = true;
+				double delay;
+				try {
+					delay = Double.parseDouble(value);
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				if (!Double.isFinite(delay) || delay <= 0)	// NaN, Infinity and 1e999 are no delay
+					continue;
+				delay = Math.min(delay, MAX_CRAWL_DELAY);
+				if (inOwnGroup)
+					ownDelay = Math.max(ownDelay, delay);
+				if (inAnyGroup)
+					anyDelay = Math.max(anyDelay, delay);
+				break;
+			default:
+				// Sitemap and non-standard directives do not end a group
+			}
+		}
+		return ownGroupFound ? new RobotsRules(ownRules, ownDelay) : new RobotsRules(anyRules, anyDelay);
 	}
-	
+
 	/**
-	 * Gets the list links that were found by this crawl job.
-	 * May contain invalid links, since the links are not validated at this point.
-	 * 
-	 * @return list of URL links.
+	 * Gets the address of robots.txt of the website of a URL.
+	 *
+	 * @param url	a valid URL address
+	 * @return the address of robots.txt at the root of the website
 	 */
-	public static List<String> getLinks(){
-		return robotExclusionLinks;
+	public static String getRobotsUrl(String url){
+		return URLUtil.getRootUrl(url) + "/robots.txt";
 	}
 
 }
@@ -0,0 +1,173 @@
+package lawnbway.jcrawler.util;
+
+import java.util.Arrays;
+
+/**
+ * SimHash computes a 64-bit fingerprint of the text of a page (Charikar), such that
+ * pages with mostly the same text have fingerprints that differ in few bits, while
+ * the fingerprints of unrelated pages differ in about half of their bits.
+ *
+ * <p>The text is split into words of letters and digits, which are lowercased, and every
+ * three consecutive words (a shingle) are hashed. Every shingle votes on each of the 64 bits
+ * of the fingerprint with the corresponding bit of its hash; a bit of the fingerprint is set
+ * if most shingles have it set. Markup, punctuation and whitespace do not change the
+ * fingerprint, and a changed word only changes the votes of the three shingles that contain it.</p>
+ *
+ * <p>The text may be added in chunks, in the order in which it is extracted from the
+ * page, and a word may be split across chunks. Besides the fingerprint, an exact hash
+ * of the sequence of words is kept, which only pages with the same words share, and a sample
+ * of the shingles, which tells how much of the text of a page was seen on other pages.</p>
+ *
+ * <p>A SimHash is not thread-safe; it is fed by the thread that reads the page.</p>
+ *
+ * @see URLFingerprint
+ */
+public final class SimHash {
+
+	private static final int SHINGLE_SIZE = 3;
+	private static final int MAX_SAMPLES = 64;
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final int[] votes = new int[64];
+	private long word = FNV_OFFSET_BASIS;	// hash of the current word, so far
+	private boolean inWord;
+	private long previous;	// hash of the previous word
+	private long beforePrevious;	// hash of the word before it
+	private long exact = FNV_OFFSET_BASIS;
+	private int wordCount;
+	private int shingleCount;
+	private final long[] samples = new long[MAX_SAMPLES];
+	private int sampleCount;
+
+	/**
+	 * Computes the fingerprint of a text.
+	 *
+	 * @param text
+	 *        the text of a page
+	 * @return 64-bit fingerprint
+	 */
+	public static long of(CharSequence text) {
+		return new SimHash().add(text).value();
+	}
+
+	/**
+	 * Gets the number of bits in which two fingerprints differ.
+	 *
+	 * @param a
+	 *        a fingerprint
+	 * @param b
+	 *        another fingerprint
+	 * @return the Hamming distance of the fingerprints, from 0 to 64
+	 */
+	public static int distance(long a, long b) {
+		return Long.bitCount(a ^ b);
+	}
+
+	/**
+	 * Adds the next chunk of the text.
+	 *
+	 * @param chunk
+	 *        the chunk, which continues the last word of the previous chunk
+	 *        unless it starts with a character other than a letter or digit
+	 * @return this SimHash
+	 */
+	public SimHash add(CharSequence chunk) {
+		for (int i = 0, n = chunk.length(); i < n; i++) {
+			char c = chunk.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				inWord = true;
+				word ^= Character.toLowerCase(c);
+				word *= FNV_PRIME;
+			}
+			else if (inWord) {
+				endWord();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the fingerprint of the text added so far. The last word of the text
+	 * is ended, so the next chunk starts a new word.
+	 *
+	 * @return 64-bit fingerprint, 0 if the text has less than three words
+	 */
+	public long value() {
+		if (inWord)
+			endWord();
+		long value = 0;
+		for (int bit = 0; bit < 64; bit++) {
+			if (votes[bit] > 0)
+				value |= 1L << bit;
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the exact hash of the words of the text added so far.
+	 *
+	 * @return non-zero 64-bit hash, which only texts with the same words have in common
+	 */
+	public long exactValue() {
+		if (inWord)
+			endWord();
+		long hash = URLFingerprint.mix(exact ^ wordCount);
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * Gets the number of words of the text added so far.
+	 *
+	 * @return the number of words
+	 */
+	public int wordCount() {
+		if (inWord)
+			endWord();
+		return wordCount;
+	}
+
+	/**
+	 * Gets the number of shingles that voted on the fingerprint. The fingerprint of
+	 * a text with few shingles tells little about the text, since few words differ.
+	 *
+	 * @return the number of words of the text, less two
+	 */
+	public int shingleCount() {
+		if (inWord)
+			endWord();
+		return shingleCount;
+	}
+
+	/**
+	 * Gets a sample of the hashes of the shingles: about a quarter of them, up to 64,
+	 * chosen by their hash, so that a shingle of two texts is sampled in both or in none.
+	 *
+	 * @return the sampled hashes, in the order of the text
+	 */
+	public long[] sampledShingles() {
+		if (inWord)
+			endWord();
+		return Arrays.copyOf(samples, sampleCount);
+	}
+
+	/**
+	 * Ends the current word, and adds the shingle it ends.
+	 */
+	private void endWord() {
+		long hash = URLFingerprint.mix(word);
+		word = FNV_OFFSET_BASIS;
+		inWord = false;
+		exact = (exact ^ hash) * FNV_PRIME;
+		if (++wordCount >= SHINGLE_SIZE) {
+			long shingle = URLFingerprint.mix(Long.rotateLeft(beforePrevious, 2) ^ Long.rotateLeft(previous, 1) ^ hash);
+			for (int bit = 0; bit < 64; bit++)
+				votes[bit] += (int) (shingle >>> bit & 1) * 2 - 1;
+			shingleCount++;
+			if ((shingle & 3) == 0 && sampleCount < MAX_SAMPLES)
+				samples[sampleCount++] = shingle;
+		}
+		beforePrevious = previous;
+		previous = hash;
+	}
+}
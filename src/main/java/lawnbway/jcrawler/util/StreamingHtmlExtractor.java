@@ -0,0 +1,485 @@
+package lawnbway.jcrawler.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.nodes.Entities;
+
+/**
+ * StreamingHtmlExtractor scans an HTML document once, from start to end, and
+ * reports the absolute URL of every hyperlink and the visible text of the document
+ * to a Handler as it goes. Unlike Jsoup.parse, it never builds a DOM: apart from the
+ * document itself, it only holds the tag being read and a chunk of text.
+ *
+ * <p>Links are the <tt>href</tt> attributes of <tt>a</tt> elements, resolved the same
+ * way as <tt>Element.absUrl("href")</tt>: against the first <tt>&lt;base href&gt;</tt>
+ * of the document, or against the URL of the document if there is none.
+ * Since the document is only read once, the base applies to the links that follow it,
+ * which is where it is placed in any valid document.</p>
+ *
+ * <p>Visible text is the text that <tt>Document.body().text()</tt> returns, with some
+ * approximations: the contents of <tt>script</tt>, <tt>style</tt> and <tt>title</tt>
+ * elements and comments are skipped, common character references are decoded, runs of
+ * whitespace are collapsed to a single space and block-level tags separate words.</p>
+ *
+ * <p>An extractor is not thread-safe, but may be reused for any number of documents.
+ * An extraction bound to a CancellationToken checks it between tags and every
+ * few thousand characters of text, and stops with a CancellationException.</p>
+ *
+ * @see lawnbway.jcrawler.ParseMode
+ */
+public final class StreamingHtmlExtractor {
+
+	/**
+	 * Receives the links and the text of a document, in document order.
+	 */
+	public interface Handler {
+
+		/**
+		 * Receives the absolute URL of a hyperlink. The URL is empty if the
+		 * link cannot be resolved, like <tt>Element.absUrl</tt>.
+		 *
+		 * @param url    the absolute URL
+		 */
+		void link(String url);
+
+		/**
+		 * Receives a chunk of visible text. Consecutive chunks make up the text
+		 * of the document; a chunk starts with a space if it is a new word.
+		 * The chunk is only valid during the call.
+		 *
+		 * @param text    the chunk of text
+		 */
+		void text(CharSequence text);
+
+		/**
+		 * Marks an end tag of an <tt>a</tt> element: the text received since the
+		 * last hyperlink is its anchor text, unless its end was marked before.
+		 * Does nothing by default.
+		 */
+		default void endLink() {
+		}
+	}
+
+	private static final String[] RAW_TEXT_TAGS = { "script", "style", "title" };
+	private static final String[] INLINE_TAGS = { "a", "abbr", "b", "bdi", "bdo", "cite", "code", "data", "dfn",
+			"em", "font", "i", "kbd", "mark", "q", "s", "samp", "small", "span", "strong", "sub", "sup", "time",
+			"u", "var" };
+
+	private static final int CANCELLATION_CHECK_INTERVAL = 1 << 12;
+	private static final CancellationToken NOT_CANCELLED = new CancellationToken();
+
+	private final StringBuilder chunk = new StringBuilder();
+	private final StringBuilder value = new StringBuilder();
+	private CharSequence html;
+	private int length;
+	private int pos;
+	private CancellationToken cancellation;
+	private int nextCheck;	// the position at which the cancellation is checked next
+	private String baseUrl;
+	private URL base;	// baseUrl parsed once per document rather than once per link
+	private boolean baseFound;
+	private boolean pendingSpace;
+	private boolean textStarted;
+
+	/**
+	 * Extracts the links and the visible text of a document.
+	 *
+	 * @param html    the document
+	 * @param documentUrl    URL of the document, that relative links are resolved against
+	 * @param handler    receives the links and the text
+	 */
+	public void extract(CharSequence html, String documentUrl, Handler handler) {
+		extract(html, documentUrl, handler, NOT_CANCELLED);
+	}
+
+	/**
+	 * Extracts the links and the visible text of a document, unless the crawl is cancelled.
+	 *
+	 * @param html    the document
+	 * @param documentUrl    URL of the document, that relative links are resolved against
+	 * @param handler    receives the links and the text
+	 * @param cancellation    the cancellation token of the crawl
+	 * @throws java.util.concurrent.CancellationException if the crawl is cancelled
+	 */
+	public void extract(CharSequence html, String documentUrl, Handler handler, CancellationToken cancellation) {
+		this.html = html;
+		this.length = html.length();
+		this.pos = 0;
+		setBase(documentUrl);
+		this.baseFound = false;
+		this.pendingSpace = false;
+		this.textStarted = false;
+		this.cancellation = cancellation;
+		this.nextCheck = 0;
+		try {
+			while (pos < length) {
+				checkCancellation();
+				if (html.charAt(pos) == '<')
+					readMarkup(handler);
+				else
+					readText(handler);
+			}
+		} finally {
+			this.html = null;
+			this.cancellation = null;
+		}
+	}
+
+	/**
+	 * Throws if the crawl is cancelled, once every CANCELLATION_CHECK_INTERVAL characters.
+	 */
+	private void checkCancellation() {
+		if (pos >= nextCheck) {
+			cancellation.throwIfCancelled();
+			nextCheck = pos + CANCELLATION_CHECK_INTERVAL;
+		}
+	}
+
+	/**
+	 * Reads a run of text up to the next markup and passes it to the handler.
+	 */
+	private void readText(Handler handler) {
+		chunk.setLength(0);
+		while (pos < length) {
+			char c = html.charAt(pos);
+			if (c == '<' && pos + 1 < length && isMarkupStart(html.charAt(pos + 1)))
+				break;
+			checkCancellation();	// a run of text may be the rest of the document
+			if (c == '&') {
+				pos = decodeReference(pos, chunk);
+				continue;
+			}
+			appendText(c);
+			pos++;
+		}
+		if (chunk.length() > 0)
+			handler.text(chunk);
+	}
+
+	private void appendText(char c) {
+		if (isWhitespace(c)) {
+			pendingSpace = true;
+			return;
+		}
+		if (pendingSpace && textStarted)
+			chunk.append(' ');
+		pendingSpace = false;
+		textStarted = true;
+		chunk.append(c);
+	}
+
+	/**
+	 * Reads a comment, a declaration or a tag starting at the current position.
+	 */
+	private void readMarkup(Handler handler) {
+		char next = pos + 1 < length ? html.charAt(pos + 1) : 0;
+		if (next == '!') {
+			if (startsWith("<!--", pos))
+				pos = skipPast("-->", pos + 4);
+			else
+				pos = skipPast(">", pos + 2);
+			return;
+		}
+		if (next == '?') {
+			pos = skipPast(">", pos + 2);
+			return;
+		}
+		boolean closing = next == '/';
+		int nameStart = closing ? pos + 2 : pos + 1;
+		if (nameStart >= length || !isLetter(html.charAt(nameStart))) {
+			// a lone '<' is text
+			chunk.setLength(0);
+			appendText('<');
+			handler.text(chunk);
+			pos++;
+			return;
+		}
+		int nameEnd = nameStart;
+		while (nameEnd < length && !isWhitespace(html.charAt(nameEnd)) && html.charAt(nameEnd) != '/'
+				&& html.charAt(nameEnd) != '>')
+			nameEnd++;
+		pos = nameEnd;
+
+		boolean isLink = !closing && nameEquals(nameStart, nameEnd, "a");
+		boolean isBase = !closing && !baseFound && nameEquals(nameStart, nameEnd, "base");
+		String href = readAttributes(isLink || isBase);
+
+		if (!isInline(nameStart, nameEnd))
+			pendingSpace = true;
+		if (closing) {
+			if (nameEquals(nameStart, nameEnd, "a"))
+				handler.endLink();
+			return;
+		}
+		if (href != null) {
+			if (isLink) {
+				handler.link(resolve(href));
+			} else {
+				baseFound = true;
+				String resolved = resolve(href);
+				if (!resolved.isEmpty())
+					setBase(resolved);
+			}
+		}
+		String rawText = rawTextTag(nameStart, nameEnd);
+		if (rawText != null)
+			pos = skipRawText(rawText);
+	}
+
+	private void setBase(String url) {
+		baseUrl = url;
+		try {
+			base = new URL(url);
+		} catch (MalformedURLException e) {
+			base = null;
+		}
+	}
+
+	/**
+	 * Resolves a link against the base URL like <tt>StringUtil.resolve(String, String)</tt>,
+	 * without parsing the base URL again.
+	 */
+	private String resolve(String href) {
+		if (base == null)
+			return StringUtil.resolve(baseUrl, href);
+		try {
+			return StringUtil.resolve(base, href).toExternalForm();
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Reads the attributes of a tag up to and including its closing '&gt;'.
+	 *
+	 * @param wantHref    whether the value of the href attribute is needed
+	 * @return the decoded value of the href attribute, or null if there is none or it is not needed
+	 */
+	private String readAttributes(boolean wantHref) {
+		String href = null;
+		while (pos < length) {
+			char c = html.charAt(pos);
+			if (c == '>') {
+				pos++;
+				return href;
+			}
+			if (isWhitespace(c) || c == '/') {
+				pos++;
+				continue;
+			}
+			int nameStart = pos;
+			while (pos < length && !isWhitespace(html.charAt(pos)) && html.charAt(pos) != '='
+					&& html.charAt(pos) != '>' && html.charAt(pos) != '/')
+				pos++;
+			boolean isHref = wantHref && href == null && nameEquals(nameStart, pos, "href");
+			while (pos < length && isWhitespace(html.charAt(pos)))
+				pos++;
+			if (pos >= length || html.charAt(pos) != '=') {
+				if (isHref)
+					href = "";
+				continue;
+			}
+			pos++;
+			while (pos < length && isWhitespace(html.charAt(pos)))
+				pos++;
+			String attributeValue = readAttributeValue(isHref);
+			if (isHref)
+				href = attributeValue;
+		}
+		return href;
+	}
+
+	private String readAttributeValue(boolean keep) {
+		value.setLength(0);
+		char quote = pos < length ? html.charAt(pos) : 0;
+		boolean quoted = quote == '"' || quote == '\'';
+		if (quoted)
+			pos++;
+		while (pos < length) {
+			char c = html.charAt(pos);
+			if (quoted ? c == quote : isWhitespace(c) || c == '>')
+				break;
+			if (keep && c == '&') {
+				pos = decodeReference(pos, value);
+				continue;
+			}
+			if (keep)
+				value.append(c);
+			pos++;
+		}
+		if (quoted && pos < length)
+			pos++;
+		return keep ? value.toString() : null;
+	}
+
+	/**
+	 * Skips the contents of a raw text element, such as a script, up to and
+	 * including its end tag.
+	 *
+	 * @return position after the end tag
+	 */
+	private int skipRawText(String tag) {
+		int i = pos;
+		while ((i = indexOf('<', i)) >= 0) {
+			if (i + 1 < length && html.charAt(i + 1) == '/' && regionMatchesIgnoreCase(i + 2, tag)) {
+				int after = i + 2 + tag.length();
+				if (after >= length || isWhitespace(html.charAt(after)) || html.charAt(after) == '>'
+						|| html.charAt(after) == '/')
+					return skipPast(">", after);
+			}
+			i++;
+		}
+		return length;
+	}
+
+	/**
+	 * Decodes the character reference starting at the '&amp;' at <tt>start</tt>.
+	 * Unknown references are kept as is, and so are references without a ';' that
+	 * are followed by '=' or an alphanumeric character in an attribute value,
+	 * such as <tt>&amp;lang=en</tt> in a query string.
+	 *
+	 * @return position after the reference
+	 */
+	private int decodeReference(int start, StringBuilder out) {
+		boolean text = out == chunk;
+		int i = start + 1;
+		int code = -1;
+		String decoded = null;
+		if (i < length && html.charAt(i) == '#') {
+			i++;
+			int radix = 10;
+			if (i < length && (html.charAt(i) == 'x' || html.charAt(i) == 'X')) {
+				radix = 16;
+				i++;
+			}
+			int digitsStart = i;
+			int n = 0;
+			while (i < length && Character.digit(html.charAt(i), radix) >= 0 && i - digitsStart < 7)
+				n = n * radix + Character.digit(html.charAt(i++), radix);
+			if (i > digitsStart)
+				code = Character.isValidCodePoint(n) && n != 0 ? n : 0xFFFD;
+		} else {
+			int nameStart = i;
+			while (i < length && Character.isLetterOrDigit(html.charAt(i)) && i - nameStart < 32)
+				i++;
+			boolean terminated = i < length && html.charAt(i) == ';';
+			if (!text && !terminated && i < length && html.charAt(i) == '=')
+				return reject(start, out);
+			code = namedReference(nameStart, i);
+			if (code < 0 && terminated && i > nameStart) {
+				decoded = Entities.getByName(html.subSequence(nameStart, i).toString());
+				if (decoded.isEmpty())
+					decoded = null;
+			}
+		}
+		if (code < 0 && decoded == null)
+			return reject(start, out);
+		if (i < length && html.charAt(i) == ';')
+			i++;
+		if (!text) {
+			if (decoded != null)
+				out.append(decoded);
+			else
+				out.appendCodePoint(code);
+			return i;
+		}
+		if (decoded != null) {
+			for (int j = 0; j < decoded.length(); j++)
+				appendText(decoded.charAt(j));
+		} else if (Character.isBmpCodePoint(code)) {
+			appendText((char) code);
+		} else {
+			appendText(Character.highSurrogate(code));
+			chunk.append(Character.lowSurrogate(code));
+		}
+		return i;
+	}
+
+	private int reject(int start, StringBuilder out) {
+		if (out == chunk)
+			appendText('&');
+		else
+			out.append('&');
+		return start + 1;
+	}
+
+	private int namedReference(int start, int end) {
+		if (nameEquals(start, end, "amp"))
+			return '&';
+		if (nameEquals(start, end, "lt"))
+			return '<';
+		if (nameEquals(start, end, "gt"))
+			return '>';
+		if (nameEquals(start, end, "quot"))
+			return '"';
+		if (nameEquals(start, end, "apos"))
+			return '\'';
+		if (nameEquals(start, end, "nbsp"))
+			return 0xA0;
+		return -1;
+	}
+
+	private String rawTextTag(int start, int end) {
+		for (String tag : RAW_TEXT_TAGS)
+			if (nameEquals(start, end, tag))
+				return tag;
+		return null;
+	}
+
+	private boolean isInline(int start, int end) {
+		for (String tag : INLINE_TAGS)
+			if (nameEquals(start, end, tag))
+				return true;
+		return false;
+	}
+
+	private boolean nameEquals(int start, int end, String name) {
+		return end - start == name.length() && regionMatchesIgnoreCase(start, name);
+	}
+
+	private boolean regionMatchesIgnoreCase(int start, String lowerCase) {
+		if (start + lowerCase.length() > length)
+			return false;
+		for (int i = 0; i < lowerCase.length(); i++)
+			if (Character.toLowerCase(html.charAt(start + i)) != lowerCase.charAt(i))
+				return false;
+		return true;
+	}
+
+	private boolean startsWith(String prefix, int start) {
+		if (start + prefix.length() > length)
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (html.charAt(start + i) != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	private int indexOf(char c, int from) {
+		for (int i = from; i < length; i++)
+			if (html.charAt(i) == c)
+				return i;
+		return -1;
+	}
+
+	private int skipPast(String end, int from) {
+		for (int i = from; i < length; i++)
+			if (html.charAt(i) == end.charAt(0) && startsWith(end, i))
+				return i + end.length();
+		return length;
+	}
+
+	private static boolean isMarkupStart(char c) {
+		return isLetter(c) || c == '/' || c == '!' || c == '?';
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+	}
+}
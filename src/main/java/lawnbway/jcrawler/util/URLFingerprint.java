@@ -0,0 +1,49 @@
+package lawnbway.jcrawler.util;
+
+/**
+ * URLFingerprint is a utility class that computes 64-bit fingerprints of URL addresses.
+ * The fingerprint is FNV-1a over the characters of the URL followed by the
+ * MurmurHash3 finalizer, so that every bit of the result depends on every character.
+ * Fingerprints are never 0, which lets hash tables use 0 as an empty slot marker.
+ */
+public final class URLFingerprint {
+	
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	// Suppresses default constructor, ensuring non-instantiability.
+	private URLFingerprint() {}
+	
+	/**
+	 * Computes the fingerprint of the URL.
+	 * 
+	 * @param url
+	 *        the URL address to fingerprint
+	 * @return non-zero 64-bit fingerprint
+	 */
+	public static long of(CharSequence url) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0, n = url.length(); i < n; i++) {
+			hash ^= url.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		hash = mix(hash);
+		return hash == 0 ? 1 : hash;
+	}
+	
+	/**
+	 * MurmurHash3 64-bit finalizer.
+	 * 
+	 * @param hash
+	 *        the value to mix
+	 * @return mixed value
+	 */
+	public static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -1,92 +1,93 @@
 package lawnbway.jcrawler.util;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 /**
  * URLUtil is a utiltiy class that is used to verify if a ceratin URL address is valid.
+ *
+ * <p>URL addresses are parsed by ParsedURL in a single pass, without regex. Each thread
+ * reuses its own ParsedURL instance, so the checks below allocate nothing unless a
+ * component of the URL is returned.</p>
+ *
+ * @see ParsedURL
  */
 public final class URLUtil {
-	
-	/**
-	 * The following regex does not match URLs with invalid (long) TLD 
-	 * (that is any length is allowed, although I am certain there should be a limit)
-	 * 
-	 * <p>The following grouping is used to capture some subexpressions:
-	 * <ul>
-	 * 	<li>group(1) - matches root path</li>
-	 * 	<li>group(2) - matches www (if exists)</li>
-	 * 	<li>group(3) - matches authority</li>
-	 * </ul>
-	 * This pattern is taken from: 
-	 * <blockquote>http://stackoverflow.com/questions/3809401/what-is-a-good-regular-expression-to-match-a-url</blockquote></p>
-	 */
-	private static final String HTTP_REGEX = "(https?:\\/\\/(www\\.)?([-a-zA-Z0-9@:%._\\\\+~#=]{2,256}\\.[a-z]{2,6}))\\b([-a-zA-Z0-9@:%_\\+.~#?&//=]*)";
-	private static final Pattern HTTP_PATTERN = Pattern.compile(HTTP_REGEX);
-	
+
+	private static final ThreadLocal<ParsedURL> PARSER = new ThreadLocal<ParsedURL>() {
+		@Override
+		protected ParsedURL initialValue() {
+			return new ParsedURL();
+		}
+	};
+
 	// Suppresses default constructor, ensuring non-instantiability.
 	private URLUtil() {}
-	
+
 	/**
-	 * Captures the subexpression that represents the root of the URL using the full address.
-	 * Returns the root.
-	 * 
+	 * Parses the URL with the ParsedURL instance of the current thread.
+	 * The returned view is only valid until the next call on the same thread.
+	 *
+	 * @param url
+	 *        A URL to parse
+	 * @return parsed view of the URL, or null if the URL is invalid
+	 */
+	public static ParsedURL parse(String url) {
+		ParsedURL parsed = PARSER.get();
+		return parsed.parse(url) ? parsed : null;
+	}
+
+	/**
+	 * Returns the root of the URL.
+	 *
 	 * <p>Validate URL before passing to this method.</p>
-	 * 
-	 * @param url    
+	 *
+	 * @param url
 	 *        A valid URL address
-	 * @return root URL in the following format:  <blockquote>http(s)://(www).hostname</blockquote> (Note: no port number)
-	 * @throws IllegalStateException when invalid URL parameter is passed and grouping fails
+	 * @return root URL in the following format:  <blockquote>http(s)://(www).hostname(:port)</blockquote>
+	 *         (Note: port number only if it is not the default one)
+	 * @throws IllegalStateException when invalid URL parameter is passed
 	 */
 	public static String getRootUrl(String url) {
-		Matcher m = HTTP_PATTERN.matcher(url);
-		m.find(); // no need to check return value since URL is supposedly validated
-		try {
-			String root = m.group(1);
-			return root;
-		}
-		catch (IllegalStateException e) {
-			e.printStackTrace();
-			System.exit(1);
-			return null;
-		}
+		return parseValid(url).root();
 	}
-	
+
 	/**
-	 * Captures the subexpression that represents the authority of the URL using the full address.
-	 * Returns the authority.
-	 * 
+	 * Returns the authority of the URL, that is the host name without the leading www.
+	 *
 	 * <p>Validate URL before passing to this method.</p>
-	 * 
-	 * @param url    
+	 *
+	 * @param url
 	 *        A valid URL address
 	 * @return authority part of provided URL
-	 * @throws IllegalStateException when invalid URL parameter is passed and grouping fails
+	 * @throws IllegalStateException when invalid URL parameter is passed
 	 */
 	public static String getAuthority(String url) {
-		Matcher m = HTTP_PATTERN.matcher(url);
-		m.find(); // no need to check return value since URL is supposedly validated
-		try {
-			String root = m.group(3);
-			return root;
-		}
-		catch (IllegalStateException e) {
-			e.printStackTrace();
-			System.exit(1);
-			return null;
-		}
+		return parseValid(url).authority();
 	}
-	
+
+	/**
+	 * Normalizes the URL: lowercases the scheme and the host, drops the default port
+	 * and the fragment and resolves dot segments in the path. The query is kept as is.
+	 *
+	 * @param url
+	 *        A URL to normalize
+	 * @return normalized URL, or null if the URL is invalid
+	 *
+	 * @see ParsedURL#normalize(boolean, boolean)
+	 */
+	public static String normalize(String url) {
+		ParsedURL parsed = parse(url);
+		return parsed == null ? null : parsed.normalize();
+	}
+
 	/**
 	 * Returns true if the passed URL is valid.
 	 *
-	 * @param url 
+	 * @param url
 	 * 		  A URL to validate
 	 * @return The result of URL validation
 	 */
 	public static boolean isValidUrl(String url) {
-		Matcher m = HTTP_PATTERN.matcher(url);
-		return m.find();
+		return PARSER.get().parse(url);
 	}
-	
+
 	/**
 	 * Returns true if the passed URL is invalid.
 	 * <p>Added for easier code readability.</p>
@@ -98,5 +99,11 @@ public final class URLUtil {
 	public static boolean isInvalidUrl(String url) {
 		return !isValidUrl(url);
 	}
-	
+
+	private static ParsedURL parseValid(String url) {
+		ParsedURL parsed = parse(url);
+		if (parsed == null)
+			throw new IllegalStateException("Invalid URL: " + url);
+		return parsed;
+	}
 }
@@ -0,0 +1,187 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.FrontierOrdering;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.util.CancellationToken;
+
+/**
+ * Searches synthetic site graphs for a phrase that is on a single page, the page
+ * farthest from the seed, and reports how many pages every FrontierOrdering fetches
+ * before the phrase is found.
+ *
+ * <p>Every page links to <tt>OUT_LINKS</tt> random pages, and a random spanning
+ * tree makes every page reachable from the seed. A link that leads one step closer
+ * to the page of the phrase shows some of its words in its anchor text with
+ * probability <tt>GUIDE_PROBABILITY</tt>, any other link with probability
+ * <tt>NOISE_PROBABILITY</tt>, as links of a real site hint at the topic of
+ * their pages. FIFO and BFS ignore the hints, BEST_FIRST follows them.</p>
+ *
+ * <p>Optional arguments: number of pages of a site (3000 by default) and number
+ * of site graphs (5 by default).</p>
+ */
+public class BestFirstBenchmark {
+
+	private static final int OUT_LINKS = 8;
+	private static final double GUIDE_PROBABILITY = 0.7;
+	private static final double NOISE_PROBABILITY = 0.05;
+	private static final String PHRASE = "quantum annealing schedule";
+	private static final String[] TOPIC_WORDS = PHRASE.split(" ");
+	private static final String[] FILLER_WORDS = { "about", "news", "archive", "gallery", "contact", "history",
+			"team", "events", "blog", "press", "notes", "more" };
+
+	public static void main(String[] args) throws IOException {
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		int graphs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		System.out.println(String.format("%d site graph(s) of %d pages, %d links per page", graphs, pages, OUT_LINKS));
+
+		FrontierOrdering[] orderings = FrontierOrdering.values();
+		long[][] fetched = new long[2][orderings.length];
+		for (int graph = 0; graph < graphs; graph++) {
+			SiteGraph site = new SiteGraph(pages, graph);
+			System.out.println(String.format("Graph %d: phrase on page %d, %d links away from the seed",
+					graph, site.target, site.targetDepth));
+			try (StubHttpServer server = new StubHttpServer(pages, site::html, 0)) {
+				for (int o = 0; o < orderings.length; o++) {
+					for (int serial = 0; serial < 2; serial++) {
+						long count = run(server, orderings[o], serial == 0, pages);
+						fetched[serial][o] += count;
+						System.out.println(String.format("  %-10s %-10s: %5d pages", orderings[o],
+								serial == 0 ? "serial" : "concurrent", count));
+					}
+				}
+			}
+		}
+		System.out.println("Average pages fetched until the first hit:");
+		for (int o = 0; o < orderings.length; o++)
+			System.out.println(String.format("  %-10s serial %8.1f, concurrent %8.1f", orderings[o],
+					fetched[0][o] / (double) graphs, fetched[1][o] / (double) graphs));
+	}
+
+	/**
+	 * Searches the site of the server for the phrase.
+	 *
+	 * @return the number of pages fetched, or -1 if the phrase was not found
+	 */
+	private static long run(StubHttpServer server, FrontierOrdering ordering, boolean serial, int pages) {
+		CrawlConfig config = CrawlConfig.builder().maxPagesToSearch(pages).frontierOrdering(ordering)
+				.fetcherType(FetcherType.HTTP_CLIENT).parseMode(ParseMode.STREAMING).build();
+		CrawlManager manager = serial ? new CrawlManager(config) : new CrawlManagerConcurrent(config);
+		CancellationToken token = new CancellationToken(); // cancelled by the first hit
+		manager.setCancellationToken(token);
+		long requestsBefore = server.getRequestCount();
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		try {
+			manager.search(server.getRootUrl() + "/page/0", PHRASE);
+		} finally {
+			System.setOut(console);
+		}
+		return token.isCancelled() ? server.getRequestCount() - requestsBefore - 1 : -1; // robots.txt is not a page
+	}
+
+	/**
+	 * A random site graph, with the phrase on the page farthest from page 0.
+	 */
+	private static final class SiteGraph {
+
+		private final String[] html;
+		private final int target;
+		private final int targetDepth;
+
+		SiteGraph(int pages, long seed) {
+			Random random = new Random(seed);
+			List<List<Integer>> links = new ArrayList<List<Integer>>(pages);
+			for (int page = 0; page < pages; page++)
+				links.add(new ArrayList<Integer>(OUT_LINKS));
+			for (int page = 1; page < pages; page++)
+				links.get(random.nextInt(page)).add(page);
+			for (List<Integer> out : links) {
+				while (out.size() < OUT_LINKS)
+					out.add(random.nextInt(pages));
+				Collections.shuffle(out, random);
+			}
+
+			int[] depth = distances(links, 0, false);
+			int farthest = 0;
+			for (int page = 0; page < pages; page++)
+				if (depth[page] > depth[farthest])
+					farthest = page;
+			this.target = farthest;
+			this.targetDepth = depth[farthest];
+
+			int[] toTarget = distances(links, target, true);
+			this.html = new String[pages];
+			for (int page = 0; page < pages; page++) {
+				StringBuilder text = new StringBuilder("<html><head><title>Page ").append(page)
+						.append("</title></head><body><p>Page ").append(page).append("</p>");
+				if (page == target)
+					text.append("<p>Notes on the ").append(PHRASE).append("</p>");
+				for (int child : links.get(page)) {
+					boolean closer = toTarget[child] < toTarget[page];
+					boolean hint = random.nextDouble() < (closer ? GUIDE_PROBABILITY : NOISE_PROBABILITY);
+					text.append("<a href=\"/page/").append(child).append("\">")
+						.append(FILLER_WORDS[random.nextInt(FILLER_WORDS.length)]).append(' ')
+						.append(hint ? TOPIC_WORDS[random.nextInt(TOPIC_WORDS.length)]
+								: FILLER_WORDS[random.nextInt(FILLER_WORDS.length)])
+						.append("</a> ");
+				}
+				html[page] = text.append("</body></html>").toString();
+			}
+		}
+
+		String html(int page) {
+			return html[page];
+		}
+
+		/**
+		 * Breadth first search from a page, along the links or against them.
+		 */
+		private static int[] distances(List<List<Integer>> links, int from, boolean reverse) {
+			int pages = links.size();
+			List<List<Integer>> edges = links;
+			if (reverse) {
+				edges = new ArrayList<List<Integer>>(pages);
+				for (int page = 0; page < pages; page++)
+					edges.add(new ArrayList<Integer>());
+				for (int page = 0; page < pages; page++)
+					for (int child : links.get(page))
+						edges.get(child).add(page);
+			}
+			int[] distance = new int[pages];
+			Arrays.fill(distance, Integer.MAX_VALUE);
+			distance[from] = 0;
+			Queue<Integer> queue = new ArrayDeque<Integer>();
+			queue.add(from);
+			while (!queue.isEmpty()) {
+				int page = queue.poll();
+				for (int next : edges.get(page)) {
+					if (distance[next] == Integer.MAX_VALUE) {
+						distance[next] = distance[page] + 1;
+						queue.add(next);
+					}
+				}
+			}
+			return distance;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import lawnbway.jcrawler.ConcurrentVisitedSet;
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.FingerprintVisitedSet;
+import lawnbway.jcrawler.Frontier;
+import lawnbway.jcrawler.FrontierEntry;
+import lawnbway.jcrawler.FrontierOrdering;
+import lawnbway.jcrawler.VisitedSet;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+/**
+ * Measures the cost of a checkpoint and of the recovery from it, for a frontier
+ * that has seen a million URLs, half of them crawled and half of them queued,
+ * with each of the visited sets that can be saved in a checkpoint.
+ *
+ * <p>The crawl is only paused while the state is copied in memory; the files are
+ * written afterwards by the thread of the checkpoint writer. The recovery reads the
+ * checkpoint back into a new CrawlManager, without crawling any further.</p>
+ *
+ * <p>Optional arguments: number of URLs (1000000 by default) and the checkpoint
+ * directory (the temporary directory by default).</p>
+ */
+public class CheckpointBenchmark {
+
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) throws IOException {
+		int urls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		Path parent = Paths.get(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+		double millions = urls / 1e6;
+		try (StubHttpServer server = new StubHttpServer(1, 0, 0)) {
+			for (String setName : new String[] { "ConcurrentVisitedSet", "FingerprintVisitedSet" }) {
+				for (int round = 0; round < ROUNDS; round++) {
+					Path directory = Files.createTempDirectory(parent, "checkpoint-bench");
+					CheckpointingManager manager = new CheckpointingManager(newSet(setName), directory, server.getRootUrl());
+					manager.fill(urls);
+
+					long start = System.nanoTime();
+					manager.takeCheckpoint();
+					double pauseMillis = (System.nanoTime() - start) / 1e6;
+					manager.awaitCheckpoint();
+					double totalMillis = (System.nanoTime() - start) / 1e6;
+					long bytes = size(directory);
+
+					CheckpointingManager resumed = new CheckpointingManager(newSet(setName), null, server.getRootUrl());
+					start = System.nanoTime();
+					resumed.resume(directory);
+					double recoveryMillis = (System.nanoTime() - start) / 1e6;
+					System.out.println(String.format("%s, %d URLs: pause %.1f ms, written after %.1f ms, %.1f MB; "
+							+ "per million URLs: pause %.1f ms, write %.1f ms, %.1f MB, recovery %.1f ms (%d queued)",
+							setName, urls, pauseMillis, totalMillis, bytes / 1e6, pauseMillis / millions,
+							totalMillis / millions, bytes / 1e6 / millions, recoveryMillis / millions, resumed.queued()));
+					delete(directory);
+				}
+			}
+		}
+	}
+
+	private static VisitedSet newSet(String name) {
+		return name.equals("ConcurrentVisitedSet") ? new ConcurrentVisitedSet() : new FingerprintVisitedSet();
+	}
+
+	private static String url(int i) {
+		return "https://www.example.com/section/" + (i / 1000) + "/page/" + i;
+	}
+
+	private static long size(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		}
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			List<Path> paths = new ArrayList<Path>();
+			files.forEach(paths::add);
+			Collections.reverse(paths);
+			for (Path path : paths)
+				Files.delete(path);
+		}
+	}
+
+	/**
+	 * A CrawlManager whose frontier is filled without crawling, and that does not
+	 * crawl once it is resumed.
+	 */
+	private static final class CheckpointingManager extends CrawlManager {
+
+		private final KeywordMatcher terms = KeywordMatcher.forWord("benchmark");
+
+		CheckpointingManager(VisitedSet visited, Path directory, String seedUrl) {
+			super(visited, CrawlConfig.builder().checkpoint(directory, Integer.MAX_VALUE).build());
+			this.frontier = new Frontier(visited, FrontierOrdering.FIFO) {
+				@Override
+				protected boolean isCrawlable(String url) {
+					return true;
+				}
+			};
+			this.seedUrls = Collections.singletonList(seedUrl + "/page/0");
+		}
+
+		void fill(int urls) {
+			frontier.push(seedUrls.get(0));
+			for (int i = 0; i < urls; i++)
+				frontier.push(url(i));
+			for (int i = 0; i < urls / 2; i++)
+				nextEntry();
+		}
+
+		void takeCheckpoint() {
+			startCheckpoints();
+			checkpoint(terms, false, Collections.<WordSearchResult> emptyList(), Collections.<FrontierEntry> emptyList());
+		}
+
+		void awaitCheckpoint() {
+			closeCheckpoints();
+		}
+
+		int queued() {
+			return frontier.size();
+		}
+
+		@Override
+		protected List<WordSearchResult> crawl(KeywordMatcher terms, boolean stopAtFirstHit, List<WordSearchResult> results) {
+			return results;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+
+/**
+ * Crawls a StubHttpServer site with CrawlManagerConcurrent, once with a fixed thread pool
+ * and once with virtual threads, for every level of concurrency (maximum fetches in flight).
+ *
+ * <p>Every response takes <tt>latencyMillis</tt>, so an ideal engine visits
+ * <tt>concurrency * 1000 / latencyMillis</tt> pages per second. The crawl searches for a
+ * word that is on no page, so it visits <tt>3 * concurrency</tt> pages.</p>
+ *
+ * <p>Virtual threads need Java 21 or newer; on older runtimes the virtual mode falls back to
+ * a fixed thread pool. Large levels of concurrency may need a higher limit of open files
+ * (<tt>ulimit -n</tt>). The peak number of platform threads shows the cost of each mode.</p>
+ *
+ * <p>Optional arguments: response latency in milliseconds (100 by default),
+ * followed by the levels of concurrency (1000, 5000 and 10000 by default).</p>
+ */
+public class FetchEngineBenchmark {
+
+	private static final int FANOUT = 50;
+
+	public static void main(String[] args) throws IOException {
+		long latencyMillis = args.length > 0 ? Long.parseLong(args[0]) : 100;
+		int[] levels = { 1000, 5000, 10000 };
+		if (args.length > 1) {
+			levels = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				levels[i - 1] = Integer.parseInt(args[i]);
+		}
+		System.out.println(String.format("Java %s, virtual threads %s, latency %d ms",
+				System.getProperty("java.version"),
+				ExecutorMode.isVirtualThreadSupported() ? "supported" : "not supported", latencyMillis));
+
+		for (int concurrency : levels) {
+			int pages = 3 * concurrency;
+			try (StubHttpServer server = new StubHttpServer(pages + 1, FANOUT, latencyMillis)) {
+				for (ExecutorMode mode : ExecutorMode.values())
+					run(server, mode, concurrency, pages);
+			}
+		}
+	}
+
+	private static void run(StubHttpServer server, ExecutorMode mode, int concurrency, int pages) {
+		CrawlManagerConcurrent manager = new CrawlManagerConcurrent(mode, concurrency);
+		manager.setMaxPagesToSearch(pages);
+		long requestsBefore = server.getRequestCount();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		long start = System.nanoTime();
+		try {
+			manager.search(server.getRootUrl() + "/page/0", "needle");
+		} finally {
+			System.setOut(console);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long requests = server.getRequestCount() - requestsBefore - 1; // robots.txt
+		System.out.println(String.format("%-17s concurrency %5d: %6d pages in %6.2f s, %8.1f pages/s, peak %d platform threads",
+				mode, concurrency, requests, seconds, requests / seconds, threads.getPeakThreadCount()));
+	}
+}
@@ -0,0 +1,76 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.Fetcher;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.JsoupFetcher;
+
+/**
+ * Crawls a StubHttpServer site with CrawlManagerConcurrent on a fixed thread pool,
+ * once with JsoupFetcher (one thread per fetch in flight, a new connection per request)
+ * and once with HttpClientFetcher (N_THREAD parsing threads, a shared client that keeps
+ * connections alive), for every level of concurrency (maximum fetches in flight).
+ *
+ * <p>Optional arguments: response latency in milliseconds (20 by default),
+ * followed by the levels of concurrency (50, 200 and 1000 by default).</p>
+ */
+public class FetcherBenchmark {
+
+	private static final int FANOUT = 50;
+
+	public static void main(String[] args) throws IOException {
+		long latencyMillis = args.length > 0 ? Long.parseLong(args[0]) : 20;
+		int[] levels = { 50, 200, 1000 };
+		if (args.length > 1) {
+			levels = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				levels[i - 1] = Integer.parseInt(args[i]);
+		}
+		System.out.println(String.format("Java %s, latency %d ms", System.getProperty("java.version"), latencyMillis));
+
+		for (int concurrency : levels) {
+			int pages = Math.max(5000, 5 * concurrency);
+			try (StubHttpServer server = new StubHttpServer(pages + 1, FANOUT, latencyMillis)) {
+				for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+					run(server, new JsoupFetcher(), concurrency, pages);
+					run(server, new HttpClientFetcher(), concurrency, pages);
+				}
+			}
+		}
+	}
+
+	private static void run(StubHttpServer server, Fetcher fetcher, int concurrency, int pages) {
+		CrawlManagerConcurrent manager = new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, concurrency);
+		manager.setFetcher(fetcher);
+		manager.setMaxPagesToSearch(pages);
+		long requestsBefore = server.getRequestCount();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		long start = System.nanoTime();
+		try {
+			manager.search(server.getRootUrl() + "/page/0", "needle");
+		} finally {
+			System.setOut(console);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long requests = server.getRequestCount() - requestsBefore - 1; // robots.txt
+		System.out.println(String.format("%-17s concurrency %5d: %6d pages in %6.2f s, %8.1f pages/s, peak %d threads",
+				fetcher.getClass().getSimpleName(), concurrency, requests, seconds, requests / seconds,
+				threads.getPeakThreadCount()));
+	}
+}
@@ -0,0 +1,132 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates large HTML pages for the parse benchmarks, shaped like the pages
+ * of a news site or a wiki: a head with a base URL, stylesheets and scripts,
+ * navigation lists, articles with inline markup and character references,
+ * tables and comments. The same seed always gives the same page.
+ */
+public final class HtmlFixtures {
+
+	public static final String DOCUMENT_URL = "http://fixture.example/wiki/Large_page";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String[] WORDS = { "crawler", "frontier", "politeness", "host", "queue", "document",
+			"parser", "link", "anchor", "heap", "thread", "pipeline", "latency", "throughput", "index",
+			"search", "robots", "delay", "token", "stream", "café", "naïve", "résumé" };
+
+	// Suppresses default constructor, ensuring non-instantiability.
+	private HtmlFixtures() {}
+
+	/**
+	 * Generates a page of about <tt>size</tt> characters.
+	 *
+	 * @param size    approximate number of characters of the page
+	 * @param seed    seed of the random content
+	 * @return the page
+	 */
+	public static String generate(int size, long seed) {
+		Random random = new Random(seed);
+		StringBuilder html = new StringBuilder(size + 4096);
+		html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n")
+			.append("<title>Large page ").append(seed).append("</title>\n")
+			.append("<base href=\"/wiki/\">\n")
+			.append("<link rel=\"stylesheet\" href=\"/static/site.css\">\n")
+			.append("<style>\nbody { font-family: sans-serif; }\n.nav > a { color: #333; }\n</style>\n")
+			.append("<script>\nvar links = '<a href=\"/from-script\">not a link</a>';\n")
+			.append("if (a < b && b > c) { document.write(links); }\n</script>\n</head>\n<body>\n");
+		int section = 0;
+		while (html.length() < size) {
+			appendNavigation(html, random, section);
+			appendArticle(html, random, section);
+			if (section % 3 == 0)
+				appendTable(html, random);
+			html.append("<!-- section ").append(section).append(" <a href=\"/commented-out\"> -->\n");
+			section++;
+		}
+		return html.append("<footer><p>&copy; 2017 Fixture &amp; Co.</p></footer>\n</body>\n</html>\n").toString();
+	}
+
+	/**
+	 * Writes a generated page to a file, unless the file exists.
+	 *
+	 * @param file    the file of the fixture
+	 * @param size    approximate number of characters of the page
+	 * @param seed    seed of the random content
+	 * @return the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static Path save(Path file, int size, long seed) throws IOException {
+		if (!Files.exists(file)) {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			Files.write(file, generate(size, seed).getBytes(UTF_8));
+		}
+		return file;
+	}
+
+	private static void appendNavigation(StringBuilder html, Random random, int section) {
+		html.append("<nav class=\"nav\"><ul>\n");
+		for (int i = 0; i < 20; i++) {
+			html.append("<li><a href=\"");
+			switch (random.nextInt(4)) {
+			case 0:
+				html.append("Article_").append(section).append('_').append(i);	// relative to the base
+				break;
+			case 1:
+				html.append("/index.php?title=Special:Search&amp;search=").append(word(random));
+				break;
+			case 2:
+				html.append("http://other").append(random.nextInt(50)).append(".example/path/").append(i);
+				break;
+			default:
+				html.append("#section-").append(section);
+				break;
+			}
+			html.append("\" title=\"").append(word(random)).append("\">").append(word(random)).append("</a></li>\n");
+		}
+		html.append("</ul></nav>\n");
+	}
+
+	private static void appendArticle(StringBuilder html, Random random, int section) {
+		html.append("<div class=\"article\" id=\"section-").append(section).append("\">\n<h2>Section ")
+			.append(section).append("</h2>\n");
+		for (int p = 0; p < 8; p++) {
+			html.append("<p>");
+			for (int w = 0; w < 60; w++) {
+				int markup = random.nextInt(40);
+				if (markup == 0)
+					html.append("<b>").append(word(random)).append("</b> ");
+				else if (markup == 1)
+					html.append("<a href='../talk/").append(word(random)).append("'>").append(word(random)).append("</a> ");
+				else if (markup == 2)
+					html.append("&lt;").append(word(random)).append("&gt; ");
+				else if (markup == 3)
+					html.append(word(random)).append("&nbsp;&#8212;&#x20AC; ");
+				else
+					html.append(word(random)).append(random.nextInt(8) == 0 ? ",\n" : " ");
+			}
+			html.append("</p>\n");
+		}
+		html.append("</div>\n");
+	}
+
+	private static void appendTable(StringBuilder html, Random random) {
+		html.append("<table>\n");
+		for (int r = 0; r < 10; r++) {
+			html.append("<tr>");
+			for (int c = 0; c < 5; c++)
+				html.append("<td>").append(word(random)).append(' ').append(random.nextInt(1000)).append("</td>");
+			html.append("</tr>\n");
+		}
+		html.append("</table>\n");
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+}
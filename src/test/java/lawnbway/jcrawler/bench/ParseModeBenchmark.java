@@ -0,0 +1,133 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import lawnbway.jcrawler.FetchResponse;
+import lawnbway.jcrawler.Fetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.SearchCrawlJob;
+
+/**
+ * Crawls saved HTML pages with SearchCrawlJob, once in ParseMode.DOM and once in
+ * ParseMode.STREAMING, and reports for every page and mode:
+ * <ul>
+ * <li>throughput, in MB of HTML per second</li>
+ * <li>bytes allocated per crawl</li>
+ * <li>bytes the job retains after the crawl, until its word search is done</li>
+ * </ul>
+ *
+ * <p>Optional arguments: the HTML files to crawl. By default, pages of 1, 4 and
+ * 16 million characters are generated by HtmlFixtures and saved to
+ * <tt>target/html-fixtures</tt>.</p>
+ */
+public class ParseModeBenchmark {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int[] FIXTURE_SIZES = { 1 << 20, 4 << 20, 16 << 20 };
+
+	public static void main(String[] args) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		for (String arg : args)
+			files.add(Paths.get(arg));
+		if (files.isEmpty()) {
+			for (int size : FIXTURE_SIZES)
+				files.add(HtmlFixtures.save(Paths.get("target", "html-fixtures", "page-" + (size >> 20) + "m.html"),
+						size, size));
+		}
+		System.out.println(String.format("Java %s, max heap %d MB", System.getProperty("java.version"),
+				Runtime.getRuntime().maxMemory() >> 20));
+
+		for (Path file : files) {
+			String html = new String(Files.readAllBytes(file), UTF_8);
+			for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+				for (ParseMode mode : ParseMode.values())
+					run(file, html, mode, round > 0);
+			}
+		}
+	}
+
+	private static void run(Path file, String html, ParseMode mode, boolean report) {
+		FetchResponse response = new FetchResponse(HtmlFixtures.DOCUMENT_URL, 200, "text/html; charset=utf-8", html);
+		int iterations = Math.max(3, (64 << 20) / html.length());
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		long allocated;
+		long retained;
+		double seconds;
+		int links;
+		try {
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+				crawl(response, mode);
+			seconds = (System.nanoTime() - start) / 1e9;
+			allocated = (allocatedBytes() - allocatedBefore) / iterations;
+
+			long usedBefore = usedHeap();
+			SearchCrawlJob job = crawl(response, mode);
+			retained = usedHeap() - usedBefore;
+			links = job.getLinks().size();
+		} finally {
+			System.setOut(console);
+		}
+
+		if (report)
+			System.out.println(String.format("%-16s %-9s %6.1f MB/s, %7.1f MB allocated, %7.1f MB retained, %d links",
+					file.getFileName(), mode, html.length() * (double) iterations / seconds / 1e6,
+					allocated / 1e6, retained / 1e6, links));
+	}
+
+	/**
+	 * Crawls the page the way a crawl job of CrawlManager does, and keeps the job
+	 * as it is between the parse and the analyze stage.
+	 */
+	private static SearchCrawlJob crawl(final FetchResponse response, ParseMode mode) {
+		SearchCrawlJob job = new SearchCrawlJob();
+		job.setParseMode(mode);
+		job.setFetcher(new Fetcher() {
+			@Override
+			public FetchResponse fetch(String url, String userAgent) {
+				return response;
+			}
+
+			@Override
+			public CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent) {
+				return CompletableFuture.completedFuture(response);
+			}
+
+			@Override
+			public boolean isNonBlocking() {
+				return true;
+			}
+		});
+		job.crawl(response.getUrl());
+		return job;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,100 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+/**
+ * Crawls a local site twice with the same response cache, as a nightly scan of the
+ * same websites would, and compares the second crawl with the first: the bytes of
+ * the bodies the server sent and the pages crawled per second. On the second crawl,
+ * every page is answered with 304 Not Modified, so nothing is downloaded or parsed.
+ * The same is measured with a server that ignores the validators, where the pages
+ * are downloaded again but not parsed, since their bodies hash to the cached ones.
+ *
+ * <p>Optional arguments: number of pages (5000 by default), kilobytes of text per
+ * page (20 by default) and latency of the server in milliseconds (2 by default).</p>
+ */
+public class ResponseCacheBenchmark {
+
+	private static final int FANOUT = 10;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) throws IOException {
+		final int pages = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final int kilobytes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		final String filler = text(kilobytes);
+
+		try (StubHttpServer server = new StubHttpServer(pages, page -> html(page, pages, filler), latencyMillis)) {
+			for (boolean validators : new boolean[] { true, false }) {
+				server.setValidators(validators);
+				for (int round = 0; round < ROUNDS; round++) {
+					Path directory = Files.createTempDirectory("response-cache-bench");
+					CrawlConfig config = CrawlConfig.builder()
+							.maxPagesToSearch(pages)
+							.fetcherType(FetcherType.HTTP_CLIENT)
+							.fetchThreads(32)
+							.maxBodySize(0)
+							.parseMode(ParseMode.STREAMING)
+							.userAgentSwitchProbability(0)
+							.responseCache(directory)
+							.build();
+					long bytes = server.getBodyBytes();
+					double firstSeconds = crawl(config, server);
+					long firstBytes = server.getBodyBytes() - bytes;
+					bytes = server.getBodyBytes();
+					double secondSeconds = crawl(config, server);
+					long secondBytes = server.getBodyBytes() - bytes;
+					System.out.println(String.format("%s: first crawl %.0f pages/s, %.1f MB; second crawl %.0f pages/s "
+							+ "(x%.1f), %.1f MB (%.1f MB saved); cache file %.1f MB",
+							validators ? "Conditional GET" : "Content hash only", pages / firstSeconds, firstBytes / 1e6,
+							pages / secondSeconds, firstSeconds / secondSeconds, secondBytes / 1e6,
+							(firstBytes - secondBytes) / 1e6, Files.size(directory.resolve("responses.bin")) / 1e6));
+					delete(directory);
+				}
+			}
+		}
+	}
+
+	private static double crawl(CrawlConfig config, StubHttpServer server) {
+		CrawlManager manager = new CrawlManagerConcurrent(config);
+		long start = System.nanoTime();
+		manager.search(server.getRootUrl() + "/page/0", new KeywordMatcher(Arrays.asList("needle", "haystack"), true, false));
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+	private static String html(int page, int pages, String filler) {
+		StringBuilder html = new StringBuilder(filler.length() + 64 * FANOUT);
+		html.append("<html><head><title>Page ").append(page).append("</title></head><body><p>Page ").append(page)
+			.append("</p><p>").append(filler).append("</p>");
+		for (long child = (long) page * FANOUT + 1; child <= (long) page * FANOUT + FANOUT && child < pages; child++)
+			html.append("<a href=\"/page/").append(child).append("\">Page ").append(child).append("</a> ");
+		return html.append("</body></html>").toString();
+	}
+
+	private static String text(int kilobytes) {
+		StringBuilder text = new StringBuilder(kilobytes * 1024);
+		String[] words = { "crawler", "frontier", "robots", "cache", "response", "page", "link", "validator" };
+		for (int i = 0; text.length() < kilobytes * 1024; i++)
+			text.append(words[(i * 7) % words.length]).append(i % 13 == 0 ? ". " : " ");
+		return text.toString();
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator)
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+}
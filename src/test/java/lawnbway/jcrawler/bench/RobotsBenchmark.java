@@ -0,0 +1,61 @@
+package lawnbway.jcrawler.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import lawnbway.jcrawler.util.RobotsRules;
+import lawnbway.jcrawler.util.RobotsUtil;
+
+/**
+ * Measures the time of a robots.txt check with the compiled RobotsRules, against
+ * a scan of the rules as regular expressions, for robots.txt of a growing number
+ * of rules. A tenth of the rules have wildcards.
+ *
+ * <p>Optional argument: number of checks per round (1000000 by default).</p>
+ */
+public class RobotsBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int checks = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		for (int ruleCount : new int[] { 10, 100, 1000 }) {
+			StringBuilder robotsTxt = new StringBuilder("User-agent: *\n");
+			List<String> patterns = new ArrayList<String>();
+			for (int i = 0; i < ruleCount; i++) {
+				String pattern = i % 10 == 0 ? "/section/" + i + "/*.pdf$" : "/section/" + i + "/private";
+				robotsTxt.append(i % 7 == 0 ? "Allow: " : "Disallow: ").append(pattern).append('\n');
+				patterns.add(pattern);
+			}
+			RobotsRules rules = RobotsUtil.parse(robotsTxt.toString(), "jcrawler");
+			List<Pattern> regexes = new ArrayList<Pattern>();
+			for (String pattern : patterns)
+				regexes.add(Pattern.compile(Pattern.quote(pattern).replace("*", "\\E.*\\Q").replace("$\\E", "\\E$")));
+			String[] paths = new String[1024];
+			for (int i = 0; i < paths.length; i++)
+				paths[i] = "/section/" + (i * 7 % (ruleCount * 2)) + (i % 3 == 0 ? "/private/page" : "/docs/manual.pdf");
+
+			for (int round = 0; round < ROUNDS; round++) {
+				int allowed = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < checks; i++)
+					if (rules.isPathAllowed(paths[i & 1023]))
+						allowed++;
+				double trieNanos = (double) (System.nanoTime() - start) / checks;
+
+				int scanChecks = Math.max(1, checks / ruleCount);
+				start = System.nanoTime();
+				for (int i = 0; i < scanChecks; i++) {
+					String path = paths[i & 1023];
+					for (Pattern regex : regexes)
+						if (regex.matcher(path).lookingAt())
+							allowed++;
+				}
+				double scanNanos = (double) (System.nanoTime() - start) / scanChecks;
+				System.out.println(String.format("%d rules: trie %.0f ns/check, regex scan %.0f ns/check (%d)",
+						ruleCount, trieNanos, scanNanos, allowed));
+			}
+		}
+	}
+}
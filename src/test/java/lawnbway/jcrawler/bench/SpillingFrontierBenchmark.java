@@ -0,0 +1,87 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import lawnbway.jcrawler.FrontierEntry;
+import lawnbway.jcrawler.SpillingFrontierQueue;
+
+/**
+ * Queues tens of millions of frontier entries, then drains them, and reports the
+ * heap in use after a garbage collection and the throughput along the way.
+ *
+ * <p>The SpillingFrontierQueue keeps <tt>HEAD_CAPACITY</tt> entries in memory, so its
+ * heap usage stays flat however many entries are queued. The ConcurrentLinkedQueue
+ * used by default keeps every entry in memory; it is only filled up to
+ * <tt>IN_MEMORY_ENTRIES</tt> for comparison. Run with a small heap, e.g. <tt>-Xmx256m</tt>,
+ * to see that the spilling queue is not bounded by it.</p>
+ *
+ * <p>Optional arguments: number of entries (20000000 by default) and the directory
+ * of the segment files (the temporary directory by default).</p>
+ */
+public class SpillingFrontierBenchmark {
+
+	private static final int HEAD_CAPACITY = 100000;
+	private static final int IN_MEMORY_ENTRIES = 1000000;
+	private static final int REPORT_EVERY = 5000000;
+
+	public static void main(String[] args) throws IOException {
+		long entries = args.length > 0 ? Long.parseLong(args[0]) : 20000000;
+		Path directory = Paths.get(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+		System.out.println(String.format("%d entries, max heap %d MB", entries, Runtime.getRuntime().maxMemory() >> 20));
+
+		long baseline = usedHeap();
+		Queue<FrontierEntry> inMemory = new ConcurrentLinkedQueue<FrontierEntry>();
+		for (int i = 0; i < IN_MEMORY_ENTRIES; i++)
+			inMemory.add(entry(i));
+		System.out.println(String.format("ConcurrentLinkedQueue: %d entries take %d MB of heap", IN_MEMORY_ENTRIES,
+				(usedHeap() - baseline) >> 20));
+		inMemory = null;
+
+		baseline = usedHeap();
+		try (SpillingFrontierQueue queue = new SpillingFrontierQueue(directory, HEAD_CAPACITY)) {
+			long start = System.nanoTime();
+			for (long i = 0; i < entries; i++) {
+				queue.add(entry(i));
+				if ((i + 1) % REPORT_EVERY == 0)
+					report("queued", i + 1, start, baseline, queue);
+			}
+			report("queued", entries, start, baseline, queue);
+
+			start = System.nanoTime();
+			for (long i = 0; i < entries; i++) {
+				FrontierEntry entry = queue.poll();
+				if (entry == null || !entry.getUrl().equals(url(i))) {
+					System.out.println("ERROR! Entry " + i + " is out of order: " + entry);
+					return;
+				}
+				if ((i + 1) % REPORT_EVERY == 0)
+					report("drained", i + 1, start, baseline, queue);
+			}
+			System.out.println("Every entry came back in order; " + queue);
+		}
+	}
+
+	private static FrontierEntry entry(long i) {
+		return new FrontierEntry(url(i), (int) (i % 10), url(i / 8), 0);
+	}
+
+	private static String url(long i) {
+		return "https://www.example.com/section/" + (i / 1000) + "/page/" + i;
+	}
+
+	private static void report(String action, long count, long startNanos, long baseline, SpillingFrontierQueue queue) {
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		System.out.println(String.format("SpillingFrontierQueue: %s %9d entries, %8.0f entries/s, heap %4d MB, %s",
+				action, count, count / seconds, (usedHeap() - baseline) >> 20, queue));
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
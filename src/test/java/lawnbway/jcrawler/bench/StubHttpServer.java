@@ -0,0 +1,247 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that serves a synthetic site for the fetch benchmarks.
+ *
+ * <p>Page <tt>/page/n</tt> links to pages <tt>n * fanout + 1</tt> to <tt>n * fanout + fanout</tt>,
+ * so crawling from <tt>/page/0</tt> walks a tree of <tt>pages</tt> pages breadth first.
+ * Every response is delayed by <tt>latencyMillis</tt> to mimic a remote server. The delay
+ * is a scheduled task rather than a sleeping thread, so the server itself can keep
+ * thousands of requests waiting with a handful of threads.</p>
+ *
+ * <p>Other site graphs are served by giving the HTML of every page instead of the fanout,
+ * or the HTML of every path and query, for sites whose URLs are not <tt>/page/n</tt>.</p>
+ *
+ * <p>Pages are served with an ETag, the hash of their HTML, and a Last-Modified time,
+ * the start of the server, and conditional requests are answered with 304 Not Modified
+ * if the page did not change, unless the validators are turned off.</p>
+ */
+public class StubHttpServer implements AutoCloseable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte[] ROBOTS = "User-agent: *\nDisallow: /private\n".getBytes(UTF_8);
+
+	static {
+		// the server writes headers and body separately; without TCP_NODELAY every
+		// response waits for the delayed ACK of the client (about 40 ms on Linux)
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService handlers = Executors.newFixedThreadPool(4);
+	private final ScheduledExecutorService responders = Executors.newScheduledThreadPool(4);
+	private final int pages;
+	private final int fanout;
+	private final IntFunction<String> pageHtml;
+	private final Function<String, String> siteHtml;
+	private final long latencyMillis;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong bodyBytes = new AtomicLong();
+	private final String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+	private volatile boolean validators = true;
+
+	/**
+	 * Starts the server on a free port of the loopback interface.
+	 *
+	 * @param pages    number of pages of the site
+	 * @param fanout    number of links on every page
+	 * @param latencyMillis    delay of every response, in milliseconds
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubHttpServer(int pages, int fanout, long latencyMillis) throws IOException {
+		this(pages, fanout, null, latencyMillis);
+	}
+
+	/**
+	 * Starts the server on a free port of the loopback interface, serving the
+	 * provided HTML as page <tt>/page/n</tt>.
+	 *
+	 * @param pages    number of pages of the site
+	 * @param pageHtml    gives the HTML of page n
+	 * @param latencyMillis    delay of every response, in milliseconds
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubHttpServer(int pages, IntFunction<String> pageHtml, long latencyMillis) throws IOException {
+		this(pages, 0, pageHtml, null, latencyMillis);
+	}
+
+	/**
+	 * Starts the server on a free port of the loopback interface, serving the
+	 * provided HTML for every path and query.
+	 *
+	 * @param siteHtml    gives the HTML of a path and its query, e.g. <tt>/list?sort=date</tt>, or null if there is no such page
+	 * @param latencyMillis    delay of every response, in milliseconds
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubHttpServer(Function<String, String> siteHtml, long latencyMillis) throws IOException {
+		this(0, 0, null, siteHtml, latencyMillis);
+	}
+
+	private StubHttpServer(int pages, int fanout, IntFunction<String> pageHtml, long latencyMillis) throws IOException {
+		this(pages, fanout, pageHtml, null, latencyMillis);
+	}
+
+	private StubHttpServer(int pages, int fanout, IntFunction<String> pageHtml, Function<String, String> siteHtml,
+			long latencyMillis) throws IOException {
+		this.pages = pages;
+		this.fanout = fanout;
+		this.pageHtml = pageHtml;
+		this.siteHtml = siteHtml;
+		this.latencyMillis = latencyMillis;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 20000);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) {
+				requests.incrementAndGet();
+				responders.schedule(new Runnable() {
+					@Override
+					public void run() {
+						respond(exchange);
+					}
+				}, StubHttpServer.this.latencyMillis, TimeUnit.MILLISECONDS);
+			}
+		});
+		server.setExecutor(handlers);
+		server.start();
+	}
+
+	/**
+	 * Gets the root URL of the site, using the host name <tt>localhost</tt>.
+	 *
+	 * @return root URL, e.g. http://localhost:8080
+	 */
+	public String getRootUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Gets the number of requests received so far.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * Gets the number of conditional requests answered with 304 Not Modified so far.
+	 *
+	 * @return the number of responses without a body
+	 */
+	public long getNotModifiedCount() {
+		return notModified.get();
+	}
+
+	/**
+	 * Gets the number of bytes of the bodies of the responses sent so far.
+	 *
+	 * @return the number of body bytes
+	 */
+	public long getBodyBytes() {
+		return bodyBytes.get();
+	}
+
+	/**
+	 * Turns the ETag and Last-Modified headers, and the answers to conditional requests, on or off.
+	 *
+	 * @param enabled    false to ignore conditional requests, like a server without validators
+	 */
+	public void setValidators(boolean enabled) {
+		this.validators = enabled;
+	}
+
+	private void respond(HttpExchange exchange) {
+		try (OutputStream out = exchange.getResponseBody()) {
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/robots.txt")) {
+				send(exchange, out, 200, "text/plain", ROBOTS);
+				return;
+			}
+			String html;
+			if (siteHtml != null) {
+				String query = exchange.getRequestURI().getRawQuery();
+				html = siteHtml.apply(exchange.getRequestURI().getRawPath() + (query != null ? "?" + query : ""));
+			}
+			else {
+				int page = pageOf(path);
+				html = page < 0 ? null : html(page);
+			}
+			if (html == null) {
+				send(exchange, out, 404, "text/plain", "Not found".getBytes(UTF_8));
+				return;
+			}
+			if (validators) {
+				String etag = "\"" + Integer.toHexString(html.hashCode()) + "\"";
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.getResponseHeaders().set("Last-Modified", lastModified);
+				String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+				if (etag.equals(ifNoneMatch) || (ifNoneMatch == null 
+						&& lastModified.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since")))) {
+					notModified.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					return;
+				}
+			}
+			send(exchange, out, 200, "text/html; charset=utf-8", html.getBytes(UTF_8));
+		} catch (IOException e) {
+			// the client went away; nothing to do
+		}
+	}
+
+	private void send(HttpExchange exchange, OutputStream out, int status, String contentType,
+			byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		bodyBytes.addAndGet(body.length);	// before the client may have read it all
+		out.write(body);
+	}
+
+	private int pageOf(String path) {
+		if (!path.startsWith("/page/"))
+			return -1;
+		try {
+			int page = Integer.parseInt(path.substring("/page/".length()));
+			return page < pages ? page : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private String html(int page) {
+		if (pageHtml != null)
+			return pageHtml.apply(page);
+		StringBuilder html = new StringBuilder(128 + 32 * fanout);
+		html.append("<html><head><title>Page ").append(page).append("</title></head><body><p>Stub page ")
+			.append(page).append("</p>");
+		for (long child = (long) page * fanout + 1; child <= (long) page * fanout + fanout && child < pages; child++)
+			html.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a> ");
+		return html.append("</body></html>").toString();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		responders.shutdownNow();
+		handlers.shutdownNow();
+	}
+}
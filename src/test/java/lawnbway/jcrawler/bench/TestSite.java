@@ -0,0 +1,151 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+
+/**
+ * A synthetic site for the crawl tests, served by a StubHttpServer.
+ *
+ * <p>Page <tt>/page/n</tt> links to pages <tt>n * fanout + 1</tt> to <tt>n * fanout + fanout</tt>
+ * that are less than <tt>pages</tt>, so crawling from <tt>/page/0</tt> walks a tree. Every page
+ * has a paragraph, <tt>Page n</tt>, which ends with <tt>with a needle</tt> on the pages that
+ * have a needle. The paragraph may be replaced, and more HTML may follow the links of a page.</p>
+ *
+ * <pre>
+ * TestSite site = new TestSite(12, 2).needles(n -&gt; n % 4 == 1).missingPage();
+ * try (StubHttpServer server = site.start(0)) {
+ *     TestSite.forEachManager(concurrent -&gt; ...);
+ * }
+ * </pre>
+ */
+public final class TestSite {
+
+	/** A test that runs once with a CrawlManager and once with a CrawlManagerConcurrent. */
+	public interface ManagerTest {
+		void run(boolean concurrent) throws IOException;
+	}
+
+	private final int pages;
+	private final int fanout;
+	private IntPredicate needles = n -> false;
+	private IntFunction<String> content;
+	private IntFunction<String> moreHtml = n -> "";
+	private boolean missingPage;
+
+	/**
+	 * Creates a tree of pages without needles.
+	 *
+	 * @param pages    number of pages of the tree
+	 * @param fanout    number of links of a page to its children
+	 */
+	public TestSite(int pages, int fanout) {
+		this.pages = pages;
+		this.fanout = fanout;
+	}
+
+	/**
+	 * Sets the pages whose paragraph ends with <tt>with a needle</tt>.
+	 *
+	 * @param needles    true for the number of a page that has a needle
+	 * @return this site
+	 */
+	public TestSite needles(IntPredicate needles) {
+		this.needles = needles;
+		return this;
+	}
+
+	/**
+	 * Replaces the paragraph of every page, and the needles with it.
+	 *
+	 * @param content    gives the HTML before the links of page n
+	 * @return this site
+	 */
+	public TestSite content(IntFunction<String> content) {
+		this.content = content;
+		return this;
+	}
+
+	/**
+	 * Adds HTML after the links of every page, e.g. more links.
+	 *
+	 * @param moreHtml    gives the HTML after the links of page n, which may be empty
+	 * @return this site
+	 */
+	public TestSite moreHtml(IntFunction<String> moreHtml) {
+		this.moreHtml = moreHtml;
+		return this;
+	}
+
+	/**
+	 * Makes page 0 link to page <tt>pages</tt> as well, which the server does not have.
+	 *
+	 * @return this site
+	 */
+	public TestSite missingPage() {
+		this.missingPage = true;
+		return this;
+	}
+
+	/**
+	 * Gets the HTML of a page.
+	 *
+	 * @param n    the number of the page
+	 * @return the HTML of <tt>/page/n</tt>
+	 */
+	public String page(int n) {
+		StringBuilder html = new StringBuilder("<html><body>");
+		if (content != null)
+			html.append(content.apply(n));
+		else
+			html.append("<p>Page ").append(n).append(needles.test(n) ? " with a needle" : "").append("</p>");
+		for (int child = n * fanout + 1; child <= n * fanout + fanout && child < pages; child++)
+			html.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a> ");
+		if (n == 0 && missingPage)
+			html.append("<a href=\"/page/").append(pages).append("\">Missing</a>");
+		return html.append(moreHtml.apply(n)).append("</body></html>").toString();
+	}
+
+	/**
+	 * Starts a server of the pages of the tree.
+	 *
+	 * @param latencyMillis    delay of every response, in milliseconds
+	 * @return the server
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubHttpServer start(long latencyMillis) throws IOException {
+		return new StubHttpServer(pages, this::page, latencyMillis);
+	}
+
+	/**
+	 * Creates a CrawlManager or a CrawlManagerConcurrent.
+	 *
+	 * @param concurrent    true for a CrawlManagerConcurrent
+	 * @param config    the settings of the manager
+	 * @return the manager
+	 */
+	public static CrawlManager newManager(boolean concurrent, CrawlConfig config) {
+		return concurrent ? new CrawlManagerConcurrent(config) : new CrawlManager(config);
+	}
+
+	/**
+	 * Runs a test with a CrawlManager, then with a CrawlManagerConcurrent. A failure
+	 * tells which of them failed.
+	 *
+	 * @param test    the test
+	 * @throws IOException if the test fails with an IOException
+	 */
+	public static void forEachManager(ManagerTest test) throws IOException {
+		for (boolean concurrent : new boolean[] { false, true }) {
+			try {
+				test.run(concurrent);
+			} catch (AssertionError e) {
+				throw new AssertionError((concurrent ? "CrawlManagerConcurrent: " : "CrawlManager: ") + e.getMessage(), e);
+			}
+		}
+	}
+}
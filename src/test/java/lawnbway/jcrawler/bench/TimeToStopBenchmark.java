@@ -0,0 +1,85 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.Fetcher;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.JsoupFetcher;
+import lawnbway.jcrawler.util.CancellationToken;
+
+/**
+ * Searches a StubHttpServer site for a word that is on one of the pages linked from
+ * the root page, and reports how long CrawlManagerConcurrent takes to stop once the
+ * word is found, i.e. from the cancellation of the crawl until <tt>search</tt> returns.
+ *
+ * <p>Every response takes <tt>latencyMillis</tt>. When the word is found, the fetches
+ * of the next level of pages are in flight: an engine that cannot abort them waits for
+ * their responses, up to <tt>latencyMillis</tt>. Jsoup reads on platform threads cannot
+ * be aborted; on Java 21 or newer, the reads of virtual threads are aborted by the
+ * interrupt. HttpClient cancels the exchanges in flight.</p>
+ *
+ * <p>Optional arguments: response latency in milliseconds (1000 by default) and the
+ * maximum number of fetches in flight (50 by default).</p>
+ */
+public class TimeToStopBenchmark {
+
+	private static final int FANOUT = 50;
+	private static final String WORD = "Stub page 7";
+
+	public static void main(String[] args) throws IOException {
+		long latencyMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		System.out.println(String.format("Java %s, virtual threads %s, latency %d ms, concurrency %d",
+				System.getProperty("java.version"),
+				ExecutorMode.isVirtualThreadSupported() ? "supported" : "not supported", latencyMillis, concurrency));
+
+		try (StubHttpServer server = new StubHttpServer(FANOUT * FANOUT, FANOUT, latencyMillis)) {
+			for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+				boolean report = round > 0;
+				run(server, "jsoup", ExecutorMode.FIXED_THREAD_POOL, new JsoupFetcher(), concurrency, report);
+				run(server, "jsoup", ExecutorMode.VIRTUAL_THREADS, new JsoupFetcher(), concurrency, report);
+				run(server, "httpclient", ExecutorMode.FIXED_THREAD_POOL, new HttpClientFetcher(), concurrency, report);
+			}
+		}
+	}
+
+	private static void run(StubHttpServer server, String name, ExecutorMode mode, Fetcher fetcher,
+			int concurrency, boolean report) {
+		CrawlManagerConcurrent manager = new CrawlManagerConcurrent(mode, concurrency);
+		manager.setFetcher(fetcher);
+		CancellationToken token = new CancellationToken();
+		final long[] cancelNanos = new long[1];
+		token.onCancel(() -> cancelNanos[0] = System.nanoTime());
+		manager.setCancellationToken(token);
+		long requestsBefore = server.getRequestCount();
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		long start = System.nanoTime();
+		long end;
+		try {
+			manager.search(server.getRootUrl() + "/page/0", WORD);
+		} finally {
+			end = System.nanoTime();
+			System.setOut(console);
+		}
+
+		if (!report)
+			return;
+		if (!token.isCancelled()) {
+			System.out.println(String.format("%-10s %-17s: ERROR! \"%s\" was not found", name, mode, WORD));
+			return;
+		}
+		System.out.println(String.format("%-10s %-17s: found after %6.3f s, stopped %7.1f ms later, %d requests",
+				name, mode, (cancelNanos[0] - start) / 1e9, (end - cancelNanos[0]) / 1e6,
+				server.getRequestCount() - requestsBefore));
+	}
+}
@@ -0,0 +1,78 @@
+package lawnbway.jcrawler.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lawnbway.jcrawler.util.ParsedURL;
+
+/**
+ * Compares the regex-based URL checks that URLUtil used before with ParsedURL
+ * on a corpus of links extracted from the Wikipedia main page (<tt>bench/links.txt</tt>).
+ * 
+ * <p>Each link goes through what the crawler does on discovery: validation,
+ * authority extraction and root extraction. The regex path runs a fresh Matcher
+ * for each of the three; the parser path parses once and also normalizes.</p>
+ * 
+ * <p>Optional argument: number of measured iterations over the corpus (2000 by default).</p>
+ */
+public class URLParserBenchmark {
+	
+	private static final String HTTP_REGEX = "(https?:\\/\\/(www\\.)?([-a-zA-Z0-9@:%._\\\\+~#=]{2,256}\\.[a-z]{2,6}))\\b([-a-zA-Z0-9@:%_\\+.~#?&//=]*)";
+	private static final Pattern HTTP_PATTERN = Pattern.compile(HTTP_REGEX);
+	
+	private static int sink; // keeps the JIT from removing the work
+	
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		List<String> links = loadCorpus();
+		System.out.println(String.format("Corpus: %d links", links.size()));
+		
+		for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+			long regexNanos = time(links, iterations, true);
+			long parserNanos = time(links, iterations, false);
+			double ops = (double) links.size() * iterations;
+			System.out.println(String.format("round %d: regex %.1f ns/link, parser %.1f ns/link (%.1fx)", 
+					round, regexNanos / ops, parserNanos / ops, (double) regexNanos / parserNanos));
+		}
+		System.out.println(sink == 42 ? "" : "done");
+	}
+	
+	private static long time(List<String> links, int iterations, boolean regex) {
+		ParsedURL parsed = new ParsedURL();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			for (String link : links) {
+				if (regex) {
+					if (HTTP_PATTERN.matcher(link).find()) {
+						Matcher root = HTTP_PATTERN.matcher(link);
+						root.find();
+						Matcher authority = HTTP_PATTERN.matcher(link);
+						authority.find();
+						sink += root.group(1).length() + authority.group(3).length();
+					}
+				}
+				else if (parsed.parse(link)) {
+					sink += parsed.root().length() + parsed.authority().length() + parsed.normalize().length();
+				}
+			}
+		}
+		return System.nanoTime() - start;
+	}
+	
+	private static List<String> loadCorpus() throws IOException {
+		List<String> links = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				URLParserBenchmark.class.getResourceAsStream("/bench/links.txt"), Charset.forName("UTF-8")))) {
+			String line;
+			while ((line = in.readLine()) != null)
+				links.add(line);
+		}
+		return links;
+	}
+}
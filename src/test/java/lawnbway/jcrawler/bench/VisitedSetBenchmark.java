@@ -0,0 +1,74 @@
+package lawnbway.jcrawler.bench;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import lawnbway.jcrawler.BloomFilteredVisitedSet;
+import lawnbway.jcrawler.ConcurrentVisitedSet;
+import lawnbway.jcrawler.FingerprintVisitedSet;
+import lawnbway.jcrawler.VisitedSet;
+
+/**
+ * Compares heap usage and add/contains throughput of the visited set backends
+ * against a plain HashSet of URL strings, which CrawlManager used before.
+ * 
+ * <p>Run with a large heap, e.g. <tt>-Xmx4g</tt>, and optionally the number of URLs
+ * as the first argument (1 000 000 by default).</p>
+ */
+public class VisitedSetBenchmark {
+	
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		System.out.println(String.format("%-24s %12s %14s %14s", "backend", "bytes/URL", "add ns/op", "contains ns/op"));
+		for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+			run("HashSet<String>", new HashSetVisitedSet(), n);
+			run("ConcurrentVisitedSet", new ConcurrentVisitedSet(), n);
+			run("FingerprintVisitedSet", new FingerprintVisitedSet(), n);
+			run("Bloom + Fingerprint", new BloomFilteredVisitedSet(n, 0.01, new FingerprintVisitedSet()), n);
+		}
+	}
+	
+	private static void run(String name, VisitedSet visited, int n) {
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++)
+			visited.add(url(i));
+		long addNanos = System.nanoTime() - start;
+		long heapAfter = usedHeap(); // URL strings created by url(i) are garbage unless the set keeps them
+		
+		start = System.nanoTime();
+		int hits = 0;
+		for (int i = 0; i < 2 * n; i++) {
+			if (visited.contains(url(i)))
+				hits++;
+		}
+		long containsNanos = System.nanoTime() - start;
+		if (hits != n || visited.size() != n)
+			throw new IllegalStateException(name + " lost URLs");
+		
+		System.out.println(String.format("%-24s %12.1f %14.1f %14.1f", name, 
+				(double) (heapAfter - heapBefore) / n, (double) addNanos / n, (double) containsNanos / (2 * n)));
+	}
+	
+	private static String url(int i) {
+		return "https://en.wikipedia.org/wiki/Special:Random/article_" + i + "?oldid=" + (i * 31);
+	}
+	
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * The set of URL strings CrawlManager used as its visited set before VisitedSet was introduced.
+	 */
+	private static class HashSetVisitedSet implements VisitedSet {
+		private final Set<String> urls = Collections.synchronizedSet(new HashSet<String>());
+		@Override public boolean add(String url) { return urls.add(url); }
+		@Override public boolean contains(String url) { return urls.contains(url); }
+		@Override public int size() { return urls.size(); }
+	}
+}
@@ -10,8 +10,26 @@ import lawnbway.jcrawler.test.UserAgentManagerSingletonTest;
 @RunWith(Suite.class)
 @SuiteClasses({
         AuthorityCheckerSingletonTest.class,
+        BloomFilterTest.class,
+        CancellationTokenTest.class,
+        CheckpointTest.class,
+        CrawlConfigTest.class,
+        CrawlListenerTest.class,
+        CrawlMetricsTest.class,
+        DuplicateIndexTest.class,
+        FetcherTest.class,
+        FrontierTest.class,
+        KeywordMatcherTest.class,
+        PipelineStageTest.class,
+        PolitenessSchedulerTest.class,
+        ResponseCacheTest.class,
+        RobotsTest.class,
+        SpillingFrontierQueueTest.class,
+        StreamingHtmlExtractorTest.class,
+        TrapDetectorTest.class,
         UrlUtilTest.class,
-        UserAgentManagerSingletonTest.class
+        UserAgentManagerSingletonTest.class,
+        VisitedSetTest.class
         })
 
 public class AllTests {
@@ -2,12 +2,20 @@ package lawnbway.jcrawler.test;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.*;
 
 import lawnbway.jcrawler.AuthorityCheckerSingleton;
+import lawnbway.jcrawler.AuthorityScope;
 
 public class AuthorityCheckerSingletonTest {
 	
+        @Before
+        public void resetAuthority() {
+        	// the singleton outlives a single test run when AllTests runs the class again
+        	AuthorityCheckerSingleton.INSTANCE.reset();
+        }
 
         @Test
         public void sameAuthorityShouldBeSame() {
@@ -27,4 +35,32 @@ public class AuthorityCheckerSingletonTest {
         	assertFalse("https://developers.google.com/?hl=en does not have the same authority as https://www.google.com/", 
             		AuthorityCheckerSingleton.INSTANCE.isSameAuthority("https://developers.google.com/?hl=en"));  	
         }
-}
\ No newline at end of file
+        
+        @Test
+        public void scopeShouldContainEverySeedAuthority() {
+        	AuthorityScope scope = AuthorityScope.of("https://www.google.com/", "https://news.ycombinator.com/news");
+        	
+        	assertEquals(Arrays.asList("google.com", "news.ycombinator.com"), scope.getAuthorities());
+        	assertTrue(scope.contains("https://google.com/humans.txt"));
+        	assertTrue(scope.contains("https://WWW.GOOGLE.COM/humans.txt"));
+        	assertTrue(scope.contains("https://news.ycombinator.com/newsfaq.html"));
+        	assertFalse("Other hosts are out of scope", scope.contains("https://www.reddit.com/"));
+        	assertFalse("Hosts that merely start with the authority are out of scope", 
+        			scope.contains("https://google.com.evil.net/"));
+        	assertFalse("Subdomains are out of scope by default", scope.contains("https://developers.google.com/"));
+        	assertFalse("Invalid URLs are out of scope", scope.contains("google.com"));
+        }
+        
+        @Test
+        public void scopeWithSubdomainsShouldContainSubdomains() {
+        	AuthorityScope scope = new AuthorityScope(Arrays.asList("https://www.google.com/"), true);
+        	
+        	assertTrue(scope.contains("https://developers.google.com/?hl=en"));
+        	assertTrue(scope.contains("https://a.b.google.com/"));
+        	assertFalse(scope.contains("https://notgoogle.com/"));
+        	
+        	AuthorityCheckerSingleton.INSTANCE.setAuthorityScope(scope);
+        	assertTrue(AuthorityCheckerSingleton.INSTANCE.isSameAuthority("https://developers.google.com/?hl=en"));
+        	assertEquals("google.com", AuthorityCheckerSingleton.INSTANCE.getAuthorityUrl());
+        }
+}
@@ -0,0 +1,59 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.BloomFilteredVisitedSet;
+import lawnbway.jcrawler.util.BloomFilter;
+import lawnbway.jcrawler.util.URLFingerprint;
+
+public class BloomFilterTest {
+	private static final int N_URLS = 100000;
+	private static final double FPP = 0.01;
+
+	@Test
+	public void addedValuesShouldBePresent() {
+		BloomFilter filter = new BloomFilter(N_URLS, FPP);
+		for (int i = 0; i < N_URLS; i++)
+			filter.put(URLFingerprint.of(url(i)));
+		for (int i = 0; i < N_URLS; i++)
+			assertTrue("Bloom filter must not have false negatives", filter.mightContain(URLFingerprint.of(url(i))));
+	}
+
+	@Test
+	public void falsePositiveRateShouldMatchConfiguration() {
+		BloomFilter filter = new BloomFilter(N_URLS, FPP);
+		for (int i = 0; i < N_URLS; i++)
+			filter.put(URLFingerprint.of(url(i)));
+
+		int falsePositives = 0;
+		for (int i = N_URLS; i < 2 * N_URLS; i++) {
+			if (filter.mightContain(URLFingerprint.of(url(i))))
+				falsePositives++;
+		}
+		double measured = (double) falsePositives / N_URLS;
+		assertTrue("Measured false positive rate " + measured + " must be close to " + FPP, measured < 2 * FPP);
+		assertEquals("Filter filled to capacity is about half full", 0.5, filter.fillRatio(), 0.05);
+		assertEquals("Estimated false positive rate must be close to the measured one", measured, filter.expectedFpp(), FPP);
+	}
+
+	@Test
+	public void filterOnlySetShouldClaimOnce() {
+		BloomFilteredVisitedSet visited = new BloomFilteredVisitedSet(N_URLS, FPP, null);
+		assertTrue(visited.add("https://en.wikipedia.org/wiki/Main_Page"));
+		assertFalse(visited.add("https://en.wikipedia.org/wiki/Main_Page"));
+		assertTrue(visited.contains("https://en.wikipedia.org/wiki/Main_Page"));
+		assertEquals(1, visited.size());
+		assertTrue(visited.fillRatio() > 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidProbabilityShouldBeRejected() {
+		new BloomFilter(N_URLS, 1.5);
+	}
+
+	private static String url(int i) {
+		return "https://en.wikipedia.org/wiki/Page_" + i;
+	}
+}
@@ -0,0 +1,150 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.util.CancellationToken;
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.StreamingHtmlExtractor;
+
+public class CancellationTokenTest {
+
+	@Test
+	public void registeredActionsShouldRunOnce() {
+		CancellationToken token = new CancellationToken();
+		AtomicInteger runs = new AtomicInteger();
+		token.onCancel(runs::incrementAndGet);
+		CancellationToken.Registration closed = token.onCancel(runs::incrementAndGet);
+		closed.close();
+		token.cancel();
+		token.cancel();
+		assertEquals("A closed registration must not run", 1, runs.get());
+		assertFalse(closed.hasFired());
+
+		token.onCancel(runs::incrementAndGet);
+		assertEquals("Registering on a cancelled token runs the action right away", 2, runs.get());
+	}
+
+	@Test
+	public void closedRegistrationShouldWaitForItsActionToEnd() throws InterruptedException {
+		CancellationToken token = new CancellationToken();
+		CountDownLatch running = new CountDownLatch(1);
+		AtomicInteger ended = new AtomicInteger();
+		CancellationToken.Registration registration = token.onCancel(() -> {
+			running.countDown();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				return;
+			}
+			ended.incrementAndGet();
+		});
+		Thread canceller = new Thread(token::cancel);
+		canceller.start();
+		running.await();
+		registration.close();
+		assertEquals("An action that is running must end before the registration is closed", 1, ended.get());
+		assertTrue(registration.hasFired());
+		canceller.join();
+	}
+
+	@Test
+	public void scansShouldStopOnceCancelled() {
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+			text.append("<p>word</p>");
+		final AtomicInteger hits = new AtomicInteger();
+
+		try {
+			KeywordMatcher.forWord("word").scan(text, (term, position) -> hits.incrementAndGet(), token);
+			fail("The scan must throw");
+		} catch (CancellationException e) {
+			assertTrue("The scan must stop before the end of the text", hits.get() < 10000);
+		}
+		try {
+			new StreamingHtmlExtractor().extract(text.toString(), "http://example.com/", new StreamingHtmlExtractor.Handler() {
+				@Override
+				public void link(String url) {
+				}
+
+				@Override
+				public void text(CharSequence text) {
+					hits.incrementAndGet();
+				}
+			}, token);
+			fail("The extractor must throw");
+		} catch (CancellationException e) {
+			// expected
+		}
+
+		// a link cancels the crawl, and a megabyte of text without markup follows it
+		final CancellationToken afterLink = new CancellationToken();
+		StringBuilder longText = new StringBuilder("<a href=\"/next\">next</a>");
+		while (longText.length() < 1 << 20)
+			longText.append("word ");
+		final StringBuilder received = new StringBuilder();
+		try {
+			new StreamingHtmlExtractor().extract(longText, "http://example.com/", new StreamingHtmlExtractor.Handler() {
+				@Override
+				public void link(String url) {
+					afterLink.cancel();
+				}
+
+				@Override
+				public void text(CharSequence text) {
+					received.append(text);
+				}
+			}, afterLink);
+			fail("The extractor must throw");
+		} catch (CancellationException e) {
+			assertTrue("The text must not be read to its end", received.length() < 1 << 16);
+		}
+	}
+
+	@Test
+	public void firstHitShouldCancelTheRequestsInFlight() throws IOException {
+		// the hit is on the root page; crawling all the pages would take 50 seconds
+		try (StubHttpServer server = new StubHttpServer(400, 20, 1000)) {
+			CrawlManagerConcurrent manager = new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, 8);
+			manager.setFetcher(new HttpClientFetcher());
+			manager.setParseMode(ParseMode.STREAMING);
+			CancellationToken token = new CancellationToken();
+			manager.setCancellationToken(token);
+
+			long start = System.nanoTime();
+			manager.search(Arrays.asList(server.getRootUrl() + "/page/0"), "Stub page 0");
+			long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+			assertTrue("The hit must cancel the crawl", token.isCancelled());
+			assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 4000);
+		}
+	}
+
+	@Test
+	public void cancelledCrawlShouldReturnNoMoreResults() throws IOException {
+		try (StubHttpServer server = new StubHttpServer(31, 5, 0)) {
+			CrawlManagerConcurrent manager = new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, 4);
+			CancellationToken token = new CancellationToken();
+			token.cancel();
+			manager.setCancellationToken(token);
+			List<WordSearchResult> results = manager.search(server.getRootUrl() + "/page/0", KeywordMatcher.forWord("Stub"));
+			assertTrue(results.isEmpty());
+		}
+	}
+}
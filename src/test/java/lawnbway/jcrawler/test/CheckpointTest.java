@@ -0,0 +1,120 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import lawnbway.jcrawler.Checkpoint;
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.FingerprintVisitedSet;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.bench.TestSite;
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+public class CheckpointTest {
+	private static final int PAGES = 200;
+	private static final int FANOUT = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Page n links to pages 5n+1 to 5n+5; every seventh page contains the word "needle". */
+	private static final TestSite SITE = new TestSite(PAGES, FANOUT).needles(n -> n % 7 == 3);
+
+	private static CrawlManager newManager(boolean concurrent, CrawlConfig config) {
+		CrawlManager manager = concurrent ? new CrawlManagerConcurrent(new FingerprintVisitedSet(), config)
+				: new CrawlManager(new FingerprintVisitedSet(), config);
+		manager.setFetcher(new HttpClientFetcher());
+		return manager;
+	}
+
+	@Test
+	public void resumedCrawlShouldFetchEveryPageOnce() throws IOException {
+		try (StubHttpServer server = SITE.start(0)) {
+			TestSite.forEachManager(concurrent -> {
+				for (boolean spill : new boolean[] { false, true }) {
+					Path checkpoints = folder.newFolder().toPath();
+					CrawlConfig.Builder builder = CrawlConfig.builder().maxPagesToSearch(60).checkpoint(checkpoints, 25)
+							.parseMode(ParseMode.STREAMING);
+					Path spillDirectory = folder.newFolder().toPath();
+					if (spill)
+						builder.frontierSpill(spillDirectory, 4);
+					KeywordMatcher terms = new KeywordMatcher(Arrays.asList("needle", "haystack"), true, false);
+
+					long before = server.getRequestCount();
+					List<WordSearchResult> firstResults = newManager(concurrent, builder.build())
+							.search(server.getRootUrl() + "/page/0", terms);
+					Checkpoint checkpoint = Checkpoint.latest(checkpoints);
+					assertEquals("The last checkpoint is taken at the end of the crawl", 60, checkpoint.getPagesCrawled());
+					assertEquals(firstResults.size(), checkpoint.getResults().size());
+					assertEquals(Collections.singletonList(server.getRootUrl() + "/page/0"), checkpoint.getSeedUrls());
+					assertEquals(terms.getTerms(), checkpoint.getTerms().getTerms());
+					assertEquals("Older checkpoints must be deleted", 1, Files.list(checkpoints).count());
+					assertEquals("The spilled frontier must be deleted", 0, Files.list(spillDirectory).count());
+
+					List<WordSearchResult> results = newManager(concurrent, builder.maxPagesToSearch(1000).build())
+							.resume(checkpoints);
+					assertEquals("Every page must be fetched once, and robots.txt once per crawl",
+							2 + PAGES, server.getRequestCount() - before);
+					assertEquals("The results before the checkpoint must be kept", (PAGES + 3) / 7, results.size());
+					assertEquals(PAGES, Checkpoint.latest(checkpoints).getPagesCrawled());
+					assertEquals(0, Checkpoint.latest(checkpoints).getQueuedCount());
+					assertEquals(0, Files.list(spillDirectory).count());
+				}
+			});
+		}
+	}
+
+	@Test
+	public void crawlStoppedAtTheFirstHitShouldNotBeContinued() throws IOException {
+		try (StubHttpServer server = SITE.start(0)) {
+			Path checkpoints = folder.newFolder().toPath();
+			CrawlConfig config = CrawlConfig.builder().checkpoint(checkpoints, 1000).parseMode(ParseMode.STREAMING).build();
+			newManager(false, config).search(server.getRootUrl() + "/page/0", "needle");
+
+			long before = server.getRequestCount();
+			List<WordSearchResult> results = newManager(false, config).resume(checkpoints);
+			assertEquals(1, results.size());
+			assertEquals(server.getRootUrl() + "/page/3", results.get(0).getCurrentUrl());
+			assertEquals("Only robots.txt is fetched again", 1, server.getRequestCount() - before);
+		}
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void resumeShouldFailWithoutCheckpoint() throws IOException {
+		new CrawlManager().resume(folder.newFolder().toPath());
+	}
+
+	@Test
+	public void checkpointOfAnOlderVersionShouldBeRejected() throws IOException {
+		Path checkpoints = folder.newFolder().toPath();
+		Path older = Files.createDirectory(checkpoints.resolve("checkpoint-000001"));
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(older.resolve("crawl.bin")))) {
+			out.writeInt(0x4a43524b);
+			out.writeInt(1);	// without the number of trapped links
+			out.writeLong(System.currentTimeMillis());
+		}
+		try {
+			Checkpoint.latest(checkpoints);
+			fail("A checkpoint of version 1 must not be resumed");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().endsWith("is not a checkpoint of this version of the crawler"));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.CrawlerCli;
+import lawnbway.jcrawler.DuplicateIndex;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.bench.StubHttpServer;
+
+public class CrawlConfigTest {
+
+	@Test
+	public void builderShouldCheckTheSettings() {
+		CrawlConfig config = CrawlConfig.builder().fetchThreads(50).build();
+		assertEquals(1000, config.getMaxPagesToSearch());
+		assertEquals(Integer.MAX_VALUE, config.getMaxDepth());
+		assertEquals(50, config.getFetchThreads());
+		assertEquals(FetcherType.JSOUP, config.getFetcherType());
+		assertEquals(ParseMode.DOM, config.getParseMode());
+		assertEquals(-1, config.getDuplicateDistance());
+		assertEquals(Duration.ZERO, config.getMetricsInterval());
+		assertFalse(config.isQuiet());
+		assertNull(config.getEventLog());
+
+		for (CrawlConfig.Builder invalid : Arrays.asList(CrawlConfig.builder().fetchThreads(0),
+				CrawlConfig.builder().maxDepth(-1), CrawlConfig.builder().politeness(1, 0, 0),
+				CrawlConfig.builder().userAgentSwitchProbability(101), CrawlConfig.builder().fetchTimeout(Duration.ZERO),
+				CrawlConfig.builder().duplicateDetection(DuplicateIndex.MAX_DISTANCE + 1),
+				CrawlConfig.builder().metricsInterval(Duration.ofSeconds(-1)))) {
+			try {
+				invalid.build();
+				fail("Invalid settings must be rejected");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void commandLineShouldSetTheConfig() {
+		CrawlerCli cli = CrawlerCli.parse("--max-pages", "50", "--executor=virtual-threads", "--fetcher", "http_client",
+				"--timeout", "2000", "--rate", "2.5", "--connections-per-host", "4",
+				"--robots-agent", "nightlybot", "--robots-ttl=3600", "--cache-dir", "cache", "--duplicates", "3", "--metrics", "10", "--quiet", "--events=events.jsonl", "https://example.com/", "needle", "https://example.org/", "haystack");
+		CrawlConfig config = cli.getConfig();
+		assertEquals(50, config.getMaxPagesToSearch());
+		assertEquals(ExecutorMode.VIRTUAL_THREADS, config.getExecutorMode());
+		assertEquals(FetcherType.HTTP_CLIENT, config.getFetcherType());
+		assertEquals(Duration.ofSeconds(2), config.getFetchTimeout());
+		assertEquals(2.5, config.getRequestsPerSecond(), 0);
+		assertEquals(4, config.getMaxConnectionsPerHost());
+		assertEquals("nightlybot", config.getRobotsProductToken());
+		assertEquals(Duration.ofHours(1), config.getRobotsTtl());
+		assertEquals(Paths.get("cache"), config.getResponseCacheDirectory());
+		assertEquals(3, config.getDuplicateDistance());
+		assertEquals(Duration.ofSeconds(10), config.getMetricsInterval());
+		assertTrue(config.isQuiet());
+		assertEquals(Paths.get("events.jsonl"), config.getEventLog());
+		assertFalse(cli.isSerial());
+		assertEquals(Arrays.asList("https://example.com/", "https://example.org/"), cli.getSeedUrls());
+		assertEquals(Arrays.asList("needle", "haystack"), cli.getTerms());
+		assertTrue(CrawlerCli.parse("--serial", "https://example.com/", "needle").isSerial());
+
+		for (String[] invalid : Arrays.asList(new String[] { "--no-such-option", "1", "https://example.com/", "x" },
+				new String[] { "--parse-mode", "sax", "https://example.com/", "x" },
+				new String[] { "--max-pages", "https://example.com/", "x" }, new String[] { "https://example.com/" },
+				new String[] { "--serial", "--rate", "2", "https://example.com/", "x" },
+				new String[] { "--connections-per-host=4", "--serial", "https://example.com/", "x" })) {
+			try {
+				CrawlerCli.parse(invalid);
+				fail("Invalid command line must be rejected: " + Arrays.toString(invalid));
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void maxDepthShouldLimitTheCrawl() throws IOException {
+		// pages 1 to 5 are at depth 1, pages 6 to 30 at depth 2
+		try (StubHttpServer server = new StubHttpServer(31, 5, 0)) {
+			CrawlConfig config = CrawlConfig.builder().maxDepth(1).parseMode(ParseMode.STREAMING).build();
+			for (CrawlManager manager : Arrays.asList(new CrawlManager(config), new CrawlManagerConcurrent(config))) {
+				manager.setFetcher(new HttpClientFetcher());
+				long before = server.getRequestCount();
+				manager.search(server.getRootUrl() + "/page/0", "no such word");
+				assertEquals("robots.txt and the pages up to depth 1 must be fetched", 1 + 6,
+						server.getRequestCount() - before);
+			}
+		}
+	}
+}
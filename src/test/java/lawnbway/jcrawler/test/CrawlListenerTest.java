@@ -0,0 +1,170 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlListener;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.JsonLinesCrawlListener;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.bench.TestSite;
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+public class CrawlListenerTest {
+	private static final int PAGES = 12;
+	private static final int NEEDLES = 3;
+	/** Every page is fetched and has links or a hit, and the missing page is fetched and fails. */
+	private static final int EVENTS = 2 * PAGES + NEEDLES + 2;
+
+	/** Pages 0 to 11 are a binary tree, and page 0 also links to a page that does not exist. */
+	private static final TestSite SITE = new TestSite(PAGES, 2).needles(n -> n % 4 == 1).missingPage();
+
+	/** Records the events as short strings, from any thread. */
+	private static class RecordingListener implements CrawlListener {
+		final Queue<String> events = new ConcurrentLinkedQueue<String>();
+
+		@Override
+		public void pageFetched(String url, int statusCode) {
+			events.add("fetched " + statusCode);
+		}
+
+		@Override
+		public void linksFound(String url, int count) {
+			events.add("links");
+		}
+
+		@Override
+		public void hitFound(WordSearchResult result) {
+			events.add("hit " + result.getHitCount());
+		}
+
+		@Override
+		public void error(String url, Throwable error) {
+			events.add("error");
+		}
+
+		long count(String event) {
+			return events.stream().filter(event::equals).count();
+		}
+	}
+
+	@Test
+	public void jsonLinesShouldBeEscapedAndInOrder() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonLinesCrawlListener listener = new JsonLinesCrawlListener(out);
+		listener.pageFetched("https://example.com/\"quoted\"", 200);
+		listener.pageSkipped("https://example.com/a\\b", "line\nbreak\u0001");
+		WordSearchResult result = new WordSearchResult(false, false, "https://example.com/");
+		result.addHit("needle", 3);
+		result.addHit("needle", 9);
+		result.addHit("hay", 1);
+		listener.hitFound(result);
+		for (int i = 0; i < 5000; i++)
+			listener.linksFound("https://example.com/" + i, i);
+		listener.error(null, new IOException("unreachable"));
+		listener.close();
+
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(5004, lines.length);
+		assertEquals(5004, listener.writtenCount());
+		assertTrue(lines[0].matches("\\{\"time\":\"[^\"]+Z\",\"thread\":\"[^\"]+\",\"event\":\"fetched\","
+				+ "\"url\":\"https://example.com/\\\\\"quoted\\\\\"\",\"status\":200\\}"));
+		assertTrue(lines[1].endsWith("\"event\":\"skipped\",\"url\":\"https://example.com/a\\\\b\","
+				+ "\"reason\":\"line\\nbreak\\u0001\"}"));
+		assertTrue(lines[2].endsWith("\"event\":\"hit\",\"url\":\"https://example.com/\",\"hits\":{\"needle\":2,\"hay\":1}}"));
+		for (int i = 0; i < 5000; i++)
+			assertTrue(lines[3 + i].endsWith("\"url\":\"https://example.com/" + i + "\",\"count\":" + i + "}"));
+		assertTrue(lines[5003].endsWith("\"event\":\"error\",\"url\":null,\"error\":\"java.io.IOException: unreachable\"}"));
+	}
+
+	@Test
+	public void slowOutputShouldDropEventsRatherThanQueueThemAll() throws Exception {
+		final CountDownLatch stalled = new CountDownLatch(1);
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		OutputStream pipe = new FilterOutputStream(written) {
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				try {
+					stalled.await();	// a pipe that nobody reads, until the test lets it go
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				out.write(bytes, offset, length);
+			}
+		};
+		JsonLinesCrawlListener listener = new JsonLinesCrawlListener(pipe, 100);
+		for (int i = 0; i < 100000; i++)
+			listener.linksFound("https://example.com/" + i, i);
+		assertTrue("The crawl must not wait for the output", listener.droppedCount() >= 100000 - 100 - 1024);
+		stalled.countDown();
+		listener.close();
+		listener.linksFound("https://example.com/late", 0);
+		assertEquals(100001, listener.writtenCount() + listener.droppedCount());
+		assertEquals(listener.writtenCount(), new String(written.toByteArray(), StandardCharsets.UTF_8).split("\n").length);
+		assertTrue(listener.toString().endsWith(listener.droppedCount() + " dropped"));
+	}
+
+	@Test
+	public void crawlShouldTellEveryListener() throws IOException {
+		Path eventLog = Files.createTempFile("events", ".jsonl");
+		PrintStream console = System.out;
+		try (StubHttpServer server = SITE.start(0)) {
+			TestSite.forEachManager(concurrent -> {
+				for (boolean quiet : new boolean[] { false, true }) {
+					Files.deleteIfExists(eventLog);
+					CrawlConfig config = CrawlConfig.builder().fetcherType(FetcherType.HTTP_CLIENT).quiet(quiet)
+							.eventLog(eventLog).build();
+					CrawlManager manager = TestSite.newManager(concurrent, config);
+					RecordingListener listener = new RecordingListener();
+					manager.setCrawlListener(listener);
+					ByteArrayOutputStream printed = new ByteArrayOutputStream();
+					System.setOut(new PrintStream(printed, true));
+					try {
+						manager.search(server.getRootUrl() + "/page/0",
+								new KeywordMatcher(Collections.singletonList("needle"), true, false));
+					} finally {
+						System.setOut(console);
+					}
+
+					assertEquals(PAGES, listener.count("fetched 200"));
+					assertEquals(1, listener.count("fetched 404"));
+					assertEquals(1, listener.count("error"));
+					assertEquals(PAGES, listener.count("links"));
+					assertEquals(NEEDLES, listener.count("hit 1"));
+					assertEquals(EVENTS, listener.events.size());
+
+					List<String> lines = Files.readAllLines(eventLog, StandardCharsets.UTF_8);
+					assertEquals("Every event is written once the crawl is over", EVENTS, lines.size());
+					assertEquals(NEEDLES, lines.stream().filter(line -> line.contains("\"hits\":{\"needle\":1}")).count());
+
+					String output = printed.toString();
+					assertEquals(!quiet, output.contains("**Visiting** Received web page at "));
+					assertEquals(!quiet, output.contains("**Hit** 1 hit(s) of 1 term(s)"));
+					assertTrue("The summary is printed anyway", output.contains("**Done** Visited 13 web page(s)"));
+					assertTrue(output.contains("**Events** " + EVENTS + " event(s) written, 0 dropped"));
+				}
+			});
+		} finally {
+			Files.deleteIfExists(eventLog);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlMetrics;
+import lawnbway.jcrawler.CrawlMetrics.Counter;
+import lawnbway.jcrawler.CrawlMetrics.Stage;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.bench.TestSite;
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.LatencyHistogram;
+
+public class CrawlMetricsTest {
+	private static final int PAGES = 12;
+	private static final long LATENCY_MILLIS = 20;
+	private static final int ROBOTS_BYTES = "User-agent: *\nDisallow: /private\n".length();
+
+	/** Pages 0 to 11 are a binary tree, and page 0 also links to a page that does not exist. */
+	private static final TestSite SITE = new TestSite(PAGES, 2).needles(n -> n % 4 == 1).missingPage();
+
+	@Test
+	public void histogramShouldReadPercentilesWithinABucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.percentileNanos(99));
+		for (long micros = 1000; micros >= 1; micros--)
+			histogram.record(micros * 1000);
+		histogram.record(-5);
+		assertEquals(1001, histogram.count());
+		assertEquals(1000000, histogram.maxNanos());
+		assertEquals(1000000, histogram.percentileNanos(100));
+		assertEquals(500500000L / 1001, histogram.meanNanos(), 1);
+		long median = histogram.percentileNanos(50);
+		assertTrue("The median must be at most a bucket above 500 us, not " + median,
+				median >= 500000 && median <= 500000 * 1.0625);
+		long p99 = histogram.percentileNanos(99);
+		assertTrue("The 99th percentile must be at most a bucket above 990 us, not " + p99,
+				p99 >= 990000 && p99 <= 1000000);
+		assertEquals(0, histogram.percentileNanos(0));
+	}
+
+	@Test
+	public void concurrentRecordingShouldNotLoseCounts() throws InterruptedException {
+		final CrawlMetrics metrics = new CrawlMetrics();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 250000; i++) {
+					metrics.record(Stage.PARSE, i % 1000);
+					metrics.increment(Counter.PAGES_SEARCHED);
+				}
+				metrics.recordError(new IOException("unreachable"));
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(1000000, metrics.histogram(Stage.PARSE).count());
+		assertEquals(4 * 250 * 499500L, metrics.histogram(Stage.PARSE).totalNanos());
+		assertEquals(999, metrics.histogram(Stage.PARSE).maxNanos());
+		assertEquals(1000000, metrics.count(Counter.PAGES_SEARCHED));
+		assertEquals(4, metrics.errorCount("IOException"));
+		assertEquals(4, metrics.count(Counter.ERRORS));
+	}
+
+	@Test
+	public void crawlShouldRecordEveryStage() throws IOException {
+		TestSite.forEachManager(concurrent -> {
+			for (ParseMode parseMode : ParseMode.values()) {
+				try (StubHttpServer server = SITE.start(LATENCY_MILLIS)) {
+					CrawlConfig config = CrawlConfig.builder().fetcherType(FetcherType.HTTP_CLIENT).parseMode(parseMode).build();
+					CrawlManager manager = TestSite.newManager(concurrent, config);
+					crawl(manager, server);
+					CrawlMetrics metrics = manager.getMetrics();
+
+					assertEquals("The missing page is fetched too", PAGES + 1, metrics.count(Counter.PAGES_FETCHED));
+					assertEquals(1, metrics.errorCount("HTTP 404"));
+					assertEquals(1, metrics.count(Counter.ERRORS));
+					assertEquals("robots.txt is not fetched by the crawl jobs", server.getBodyBytes() - ROBOTS_BYTES,
+							metrics.count(Counter.BYTES_DOWNLOADED));
+					assertEquals(PAGES + 1, metrics.histogram(Stage.FETCH).count());
+					assertEquals(PAGES + 1, metrics.histogram(Stage.CONNECT).count());
+					assertEquals(PAGES + 1, metrics.histogram(Stage.DOWNLOAD).count());
+					assertTrue("The server delays every response",
+							metrics.histogram(Stage.CONNECT).percentileNanos(50) >= LATENCY_MILLIS * 1000000);
+					assertEquals(PAGES, metrics.histogram(Stage.PARSE).count());
+					assertEquals(parseMode == ParseMode.DOM ? PAGES : 0, metrics.histogram(Stage.EXTRACT).count());
+					assertEquals(PAGES, metrics.histogram(Stage.SEARCH).count());
+					assertEquals(PAGES, metrics.count(Counter.PAGES_SEARCHED));
+
+					assertEquals(PAGES + 1, metrics.gauge("pages.visited"));
+					assertEquals(0, metrics.gauge("frontier.size"));
+					assertTrue(metrics.gauge("links.discovered") >= PAGES);
+					assertEquals(concurrent ? 0 : -1, metrics.gauge("parse.active"));
+					assertEquals(concurrent ? 0 : -1, metrics.gauge("fetch.utilisation"));
+				}
+			}
+		});
+	}
+
+	@Test
+	public void blockingFetchShouldOnlyBeTimedAsAWhole() throws IOException {
+		try (StubHttpServer server = SITE.start(0)) {
+			CrawlManager manager = new CrawlManager(CrawlConfig.builder().fetcherType(FetcherType.JSOUP).build());
+			crawl(manager, server);
+			CrawlMetrics metrics = manager.getMetrics();
+			assertEquals(PAGES + 1, metrics.histogram(Stage.FETCH).count());
+			assertEquals(0, metrics.histogram(Stage.CONNECT).count());
+			assertEquals(server.getBodyBytes() - ROBOTS_BYTES, metrics.count(Counter.BYTES_DOWNLOADED));
+			assertTrue(metrics.toString().contains("fetch: n=" + (PAGES + 1)));
+		}
+	}
+
+	private static void crawl(CrawlManager manager, StubHttpServer server) {
+		manager.search(server.getRootUrl() + "/page/0", new KeywordMatcher(Collections.singletonList("needle"), true, false));
+	}
+}
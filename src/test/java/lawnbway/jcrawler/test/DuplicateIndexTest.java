@@ -0,0 +1,160 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.DuplicateIndex;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.bench.TestSite;
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.SimHash;
+
+public class DuplicateIndexTest {
+	private static final int ORIGINALS = 20;
+	private static final String[] WORDS = { "crawler", "frontier", "robots", "cache", "response", "page", "link",
+			"validator", "search", "term", "anchor", "depth", "host", "fetch", "parse", "queue" };
+
+	/** Text of a given number of words, the same for the same seed. */
+	private static String text(int seed, int words) {
+		StringBuilder text = new StringBuilder();
+		long state = seed * 0x9e3779b97f4a7c15L + 1;
+		for (int i = 0; i < words; i++) {
+			state = state * 6364136223846793005L + 1442695040888963407L;
+			text.append(WORDS[(int) (state >>> 60)]).append(i % 9 == 8 ? ". " : " ");
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Pages 0 to 19 are a tree of articles, and each has a copy under a session ID.
+	 * Pages 20 to 39 are their print views, which only page 0 links to, and which
+	 * link to each other.
+	 */
+	private static final TestSite SITE = new TestSite(ORIGINALS, 2).content(DuplicateIndexTest::article)
+			.moreHtml(DuplicateIndexTest::copyLinks);
+
+	private static String article(int n) {
+		int article = n < ORIGINALS ? n : n - ORIGINALS;
+		return (n >= ORIGINALS ? "<h1>Print view</h1>" : "") + "<p>" + text(article, 300)
+				+ (article % 5 == 2 ? "needle" : "") + "</p>";
+	}
+
+	private static String copyLinks(int n) {
+		if (n < ORIGINALS)
+			return "<a href=\"/page/" + n + "?session=42\">Same page</a>"
+					+ (n == 0 ? "<a href=\"/page/" + ORIGINALS + "\">Print</a>" : "");
+		return n + 1 < 2 * ORIGINALS ? "<a href=\"/page/" + (n + 1) + "\">Next print view</a>" : "";
+	}
+
+	@Test
+	public void simHashShouldIgnoreMarkupCaseAndChunks() {
+		String text = text(1, 100);
+		assertEquals(SimHash.of(text), SimHash.of(text.toUpperCase().replace(" ", " ,\n ")));
+		SimHash chunked = new SimHash();
+		for (int i = 0; i < text.length(); i += 7)
+			chunked.add(text.substring(i, Math.min(text.length(), i + 7)));
+		assertEquals(SimHash.of(text), chunked.value());
+		assertEquals(new SimHash().add(text).exactValue(), chunked.exactValue());
+		assertEquals(98, chunked.shingleCount());
+		assertEquals("The last word counts without a space after it", 98, new SimHash().add(text.trim()).shingleCount());
+		assertNotEquals(new SimHash().add(text).exactValue(), new SimHash().add(text + " more").exactValue());
+		assertEquals(0, SimHash.of("two words"));
+	}
+
+	@Test
+	public void similarTextsShouldHaveCloseFingerprints() {
+		String text = text(1, 300);
+		String edited = "Print view " + text;
+		int near = SimHash.distance(SimHash.of(text), SimHash.of(edited));
+		assertTrue("A few more words must change few bits, not " + near, near <= 3);
+		int far = SimHash.distance(SimHash.of(text), SimHash.of(text(2, 300)));
+		assertTrue("Unrelated texts must differ in many bits, not " + far, far > 16);
+	}
+
+	@Test
+	public void indexShouldFindExactAndNearDuplicates() {
+		DuplicateIndex index = new DuplicateIndex(3);
+		String text = text(1, 300);
+		assertNull(index.check("https://www.example.com/a", new SimHash().add(text)));
+		assertNull("A page crawled again is not a copy of itself", index.check("https://www.example.com/a", new SimHash().add(text)));
+		assertEquals("https://www.example.com/a", index.check("https://www.example.com/a?session=1",
+				new SimHash().add(text.toUpperCase())));
+		assertEquals("https://www.example.com/a", index.check("https://www.example.com/a/print",
+				new SimHash().add("Print view " + text)));
+		assertNull(index.check("https://www.example.com/b", new SimHash().add(text(2, 300))));
+		assertNull("Short pages are only compared exactly", index.check("https://www.example.com/c", new SimHash().add("Not found")));
+		assertNull(index.check("https://www.example.com/d", new SimHash().add("Not found here")));
+		assertEquals("https://www.example.com/d", index.check("https://www.example.com/e", new SimHash().add("Not found here")));
+		assertNull(index.check("https://www.example.com/f", new SimHash().add("")));
+		assertNull("Pages without words are never duplicates", index.check("https://www.example.com/g", new SimHash()));
+		assertEquals(2, index.exactCount());
+		assertEquals(1, index.nearCount());
+		assertEquals(10, index.checkedCount());
+		assertEquals(3.0 / 10, index.duplicateRatio(), 1e-9);
+
+		DuplicateIndex exact = new DuplicateIndex(0);
+		assertNull(exact.check("https://www.example.com/a", new SimHash().add(text)));
+		assertNull(exact.check("https://www.example.com/a/print", new SimHash().add("Print view " + text)));
+		assertEquals("https://www.example.com/a", exact.check("https://www.example.com/a?session=1", new SimHash().add(text)));
+		try {
+			new DuplicateIndex(DuplicateIndex.MAX_DISTANCE + 1);
+			fail("The distance must be checked");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void pagesWithoutTextShouldBeFollowed() throws IOException {
+		// pages 1 and 2 are different image galleries, which link to a page with the word
+		IntFunction<String> site = n -> n == 0 ? "<html><body><a href=\"/page/1\">1</a> <a href=\"/page/2\">2</a></body></html>"
+				: n < 3 ? "<html><body><img src=\"/image/" + n + ".png\"><a href=\"/page/" + (n + 2) + "\"></a></body></html>"
+				: "<html><body><p>Page " + n + " with a needle in it</p></body></html>";
+		for (ParseMode parseMode : ParseMode.values()) {
+			try (StubHttpServer server = new StubHttpServer(5, site, 0)) {
+				CrawlConfig config = CrawlConfig.builder().fetcherType(FetcherType.HTTP_CLIENT).parseMode(parseMode)
+						.duplicateDetection(3).build();
+				CrawlManager manager = new CrawlManager(config);
+				List<WordSearchResult> results = manager.search(server.getRootUrl() + "/page/0",
+						new KeywordMatcher(Collections.singletonList("needle"), true, false));
+				assertEquals("The links of both galleries must be followed", 2, results.size());
+				assertEquals(0, manager.getDuplicateIndex().exactCount());
+			}
+		}
+	}
+
+	@Test
+	public void duplicatesShouldNotBeSearchedOrFollowed() throws IOException {
+		TestSite.forEachManager(concurrent -> {
+			for (ParseMode parseMode : ParseMode.values()) {
+				try (StubHttpServer server = new StubHttpServer(2 * ORIGINALS, SITE::page, 0)) {
+					CrawlConfig config = CrawlConfig.builder().fetcherType(FetcherType.HTTP_CLIENT).parseMode(parseMode)
+							.duplicateDetection(3).build();
+					CrawlManager manager = TestSite.newManager(concurrent, config);
+					List<WordSearchResult> results = manager.search(server.getRootUrl() + "/page/0",
+							new KeywordMatcher(Collections.singletonList("needle"), true, false));
+					assertEquals("Only the articles must be searched", ORIGINALS / 5, results.size());
+					for (WordSearchResult result : results)
+						assertFalse(result.getCurrentUrl().contains("session"));
+					DuplicateIndex index = manager.getDuplicateIndex();
+					assertEquals(ORIGINALS, index.exactCount());
+					assertEquals(1, index.nearCount());
+					assertEquals(2 * ORIGINALS + 1, index.checkedCount());
+					assertEquals("The print views linked from the first one must not be fetched",
+							1 + 2 * ORIGINALS + 1, server.getRequestCount());
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,114 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.FetchResponse;
+import lawnbway.jcrawler.Fetcher;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.JsoupFetcher;
+import lawnbway.jcrawler.SearchCrawlJob;
+import lawnbway.jcrawler.bench.StubHttpServer;
+
+public class FetcherTest {
+	private static final int PAGES = 31;
+	private static final int FANOUT = 5;
+	private static final String USER_AGENT = "jcrawler-test";
+	private static StubHttpServer server;
+
+	@BeforeClass
+	public static void startServer() throws IOException {
+		server = new StubHttpServer(PAGES, FANOUT, 0);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.close();
+	}
+
+	@Test
+	public void fetchersShouldReturnTheSameDocument() throws IOException {
+		String url = server.getRootUrl() + "/page/0";
+		FetchResponse jsoup = new JsoupFetcher().fetch(url, USER_AGENT);
+		FetchResponse httpClient = new HttpClientFetcher().fetch(url, USER_AGENT);
+
+		assertEquals(200, jsoup.getStatusCode());
+		assertEquals(200, httpClient.getStatusCode());
+		assertTrue(jsoup.isHtml());
+		assertTrue(httpClient.isHtml());
+		assertEquals(jsoup.getBody(), httpClient.getBody());
+		assertTrue(httpClient.getBody().contains("/page/5"));
+	}
+
+	@Test
+	public void errorStatusShouldBeReturnedNotThrown() throws IOException {
+		String url = server.getRootUrl() + "/missing";
+		assertEquals(404, new JsoupFetcher().fetch(url, USER_AGENT).getStatusCode());
+		assertEquals(404, new HttpClientFetcher().fetch(url, USER_AGENT).getStatusCode());
+	}
+
+	@Test
+	public void asyncFetchesShouldShareOneClient() {
+		Fetcher fetcher = new HttpClientFetcher();
+		assertTrue(fetcher.isNonBlocking());
+		List<CompletableFuture<FetchResponse>> futures = new ArrayList<CompletableFuture<FetchResponse>>();
+		for (int i = 0; i < PAGES; i++)
+			futures.add(fetcher.fetchAsync(server.getRootUrl() + "/page/" + i, USER_AGENT));
+		for (int i = 0; i < PAGES; i++)
+			assertTrue(futures.get(i).join().getBody().contains("Stub page " + i + "<"));
+	}
+
+	@Test
+	public void crawlJobShouldCollectLinksThroughFetcher() {
+		SearchCrawlJob job = new SearchCrawlJob();
+		job.setFetcher(new HttpClientFetcher());
+		assertTrue(job.crawl(server.getRootUrl() + "/page/1").isSuccessful());
+		assertEquals(FANOUT, job.getLinks().size());
+		assertEquals(server.getRootUrl() + "/page/6", job.getLinks().get(0));
+	}
+
+	@Test
+	public void longResponsesShouldBeTruncated() throws IOException {
+		String url = server.getRootUrl() + "/page/0";
+		String body = new HttpClientFetcher().fetch(url, USER_AGENT).getBody();
+		assertEquals(body.substring(0, 40), new JsoupFetcher(Duration.ofSeconds(5), 40).fetch(url, USER_AGENT).getBody());
+		assertEquals(body.substring(0, 40), new HttpClientFetcher(Duration.ofSeconds(5), 40).fetch(url, USER_AGENT).getBody());
+		assertEquals(body, new HttpClientFetcher(Duration.ofSeconds(5), 0).fetch(url, USER_AGENT).getBody());
+	}
+
+	@Test
+	public void truncatedResponsesShouldEndWithAWholeCharacter() throws IOException {
+		StringBuilder longPage = new StringBuilder("<html><body><p>");
+		while (longPage.length() < 2 << 20)
+			longPage.append("caf\u00e9 ");
+		try (StubHttpServer cafe = new StubHttpServer(1, page -> longPage.toString(), 0)) {
+			String url = cafe.getRootUrl() + "/page/0";
+			// "<html><body><p>caf" is 18 bytes, and the two bytes of the first accent follow
+			assertEquals("<html><body><p>caf", new HttpClientFetcher(Duration.ofSeconds(5), 19).fetch(url, USER_AGENT).getBody());
+			assertEquals("<html><body><p>caf\u00e9", new HttpClientFetcher(Duration.ofSeconds(5), 20).fetch(url, USER_AGENT).getBody());
+			assertFalse(new HttpClientFetcher().fetch(url, USER_AGENT).getBody().contains("\ufffd"));
+			assertEquals("Both fetchers read 1 MB by default", new JsoupFetcher().fetch(url, USER_AGENT).getBody(),
+					new HttpClientFetcher().fetch(url, USER_AGENT).getBody());
+		}
+	}
+
+	@Test
+	public void asyncCrawlShouldVisitEveryPage() {
+		long before = server.getRequestCount();
+		CrawlManagerConcurrent manager = new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, 8);
+		manager.setFetcher(new HttpClientFetcher());
+		manager.search(server.getRootUrl() + "/page/0", "no such word");
+		assertEquals("robots.txt and every page must be fetched once", PAGES + 1, server.getRequestCount() - before);
+	}
+}
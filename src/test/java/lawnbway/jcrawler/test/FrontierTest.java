@@ -0,0 +1,197 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+
+import lawnbway.jcrawler.ConcurrentVisitedSet;
+import lawnbway.jcrawler.Frontier;
+import lawnbway.jcrawler.FrontierEntry;
+import lawnbway.jcrawler.FrontierOrdering;
+import lawnbway.jcrawler.KeywordLinkScorer;
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.URLUtil;
+
+public class FrontierTest {
+	private static final int N_URLS = 2000;
+	private static final int N_PUSHERS = 4;
+	private static final int N_POLLERS = 4;
+
+	private Frontier frontier;
+
+	@Before
+	public void createFrontier() {
+		frontier = newFrontier(FrontierOrdering.FIFO);
+	}
+
+	private static Frontier newFrontier(FrontierOrdering ordering) {
+		// authority is global state, so only validate the URLs in this test
+		return new Frontier(new ConcurrentVisitedSet(), ordering) {
+			@Override
+			protected boolean isCrawlable(String url) {
+				return URLUtil.isValidUrl(url);
+			}
+		};
+	}
+
+	@Test
+	public void claimShouldSucceedOnce() {
+		assertTrue("First claim of a URL must succeed", frontier.claim("https://www.google.com/humans.txt"));
+		assertFalse("Second claim of a URL must fail", frontier.claim("https://www.google.com/humans.txt"));
+		assertFalse("URLs differing only in the fragment are the same page",
+				frontier.claim("https://www.google.com/humans.txt#top"));
+		assertEquals(1, frontier.seenCount());
+		assertEquals("Claimed URL is not visited", 0, frontier.visitedCount());
+	}
+
+	@Test
+	public void pushShouldDropSeenAndInvalidUrls() {
+		assertTrue(frontier.push("https://www.google.com/a"));
+		assertFalse("Invalid URL must not be queued", frontier.push("not a url"));
+		assertFalse("Duplicate URL must not be queued", frontier.push("https://www.google.com/a"));
+		assertFalse("Same page with a fragment must not be queued", frontier.push("https://www.google.com/a#top"));
+		assertTrue(frontier.push("https://www.google.com/b"));
+
+		assertEquals("Only unique, crawlable URLs are queued", 2, frontier.size());
+		assertEquals(5, frontier.offeredCount());
+		assertEquals(2, frontier.duplicateCount());
+		assertEquals(1, frontier.uncrawlableCount());
+
+		assertEquals("https://www.google.com/a", frontier.poll());
+		assertEquals("https://www.google.com/b", frontier.poll());
+		assertNull("Exhausted frontier must return null", frontier.poll());
+		assertTrue(frontier.isEmpty());
+		assertEquals(2, frontier.visitedCount());
+		assertEquals(2, frontier.peakSize());
+		assertFalse("Visited URL must not be queued again", frontier.push("https://www.google.com/a"));
+	}
+
+	@Test
+	public void pushShouldDropLinksDeeperThanMaxDepth() {
+		frontier.setMaxDepth(1);
+		assertTrue(frontier.push("https://www.google.com/a", 1));
+		assertFalse("Link deeper than max depth must not be queued", frontier.push("https://www.google.com/b", 2));
+		assertTrue("Link too deep before may be queued at a lower depth", frontier.push("https://www.google.com/b", 0));
+		assertEquals(1, frontier.tooDeepCount());
+
+		FrontierEntry entry = frontier.pollEntry();
+		assertEquals("https://www.google.com/a", entry.getUrl());
+		assertEquals(1, entry.getDepth());
+		assertEquals(0, frontier.pollEntry().getDepth());
+	}
+
+	@Test
+	public void bfsShouldHandOutShallowLinksFirst() {
+		frontier = newFrontier(FrontierOrdering.BFS);
+		frontier.push("https://www.google.com/");
+		FrontierEntry seed = frontier.pollEntry();
+		frontier.pushAll(Arrays.asList("https://www.google.com/a", "https://www.google.com/b"), null, seed);
+		FrontierEntry a = frontier.pollEntry();
+		assertEquals("https://www.google.com/a", a.getUrl());
+		assertEquals("https://www.google.com/", a.getParent());
+		frontier.pushAll(Arrays.asList("https://www.google.com/a/1"), null, a);
+		frontier.push("https://www.google.com/c", 1);
+
+		assertEquals("Links of equal depth keep their order", "https://www.google.com/b", frontier.poll());
+		assertEquals("A shallower link comes before a deeper one", "https://www.google.com/c", frontier.poll());
+		FrontierEntry deep = frontier.pollEntry();
+		assertEquals("https://www.google.com/a/1", deep.getUrl());
+		assertEquals(2, deep.getDepth());
+		assertNull(frontier.poll());
+	}
+
+	@Test
+	public void bestFirstShouldHandOutRelevantLinksFirst() {
+		frontier = newFrontier(FrontierOrdering.BEST_FIRST);
+		frontier.setLinkScorer(new KeywordLinkScorer(KeywordMatcher.forWord("quantum computing")));
+		frontier.push("https://www.google.com/");
+		FrontierEntry seed = frontier.pollEntry();
+		frontier.pushAll(Arrays.asList("https://www.google.com/about", "https://www.google.com/quantum-computing", 
+				"https://www.google.com/physics", "https://www.google.com/news"),
+				Arrays.asList("About us", "Read more", "Quantum physics", "Computing and quantum news"), seed);
+
+		FrontierEntry best = frontier.pollEntry();
+		assertEquals("Both words in the anchor", "https://www.google.com/news", best.getUrl());
+		assertEquals(1.0, best.getScore(), 1e-9);
+		FrontierEntry inUrl = frontier.pollEntry();
+		assertEquals("Both words in the URL", "https://www.google.com/quantum-computing", inUrl.getUrl());
+		assertEquals(0.5, inUrl.getScore(), 1e-9);
+		assertEquals("One word in the anchor, with the same score but found later", "https://www.google.com/physics",
+				frontier.poll());
+		FrontierEntry worst = frontier.pollEntry();
+		assertEquals("https://www.google.com/about", worst.getUrl());
+		assertEquals(0.0, worst.getScore(), 0);
+
+		frontier.pushAll(Arrays.asList("https://www.google.com/news/1"), Arrays.asList("Today"), best);
+		assertEquals("Links found on a relevant page inherit half its score", 0.5, frontier.pollEntry().getScore(), 1e-9);
+	}
+
+	@Test
+	public void concurrentWorkersShouldNeverClaimUrlTwice() throws InterruptedException {
+		final List<String> urls = new ArrayList<String>();
+		for (int i = 0; i < N_URLS; i++)
+			urls.add("https://www.google.com/page/" + i);
+
+		final ConcurrentMap<String, AtomicInteger> claims = new ConcurrentHashMap<String, AtomicInteger>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch pushersDone = new CountDownLatch(N_PUSHERS);
+		ExecutorService pool = Executors.newFixedThreadPool(N_PUSHERS + N_POLLERS);
+
+		// every pusher discovers every URL, as if all pages linked to each other
+		for (int p = 0; p < N_PUSHERS; p++) {
+			final int offset = p * N_URLS / N_PUSHERS;
+			pool.execute(new Runnable() {
+				public void run() {
+					await(start);
+					for (int i = 0; i < N_URLS; i++)
+						frontier.push(urls.get((i + offset) % N_URLS));
+					pushersDone.countDown();
+				}
+			});
+		}
+		for (int p = 0; p < N_POLLERS; p++) {
+			pool.execute(new Runnable() {
+				public void run() {
+					await(start);
+					String url;
+					while ((url = frontier.poll()) != null || pushersDone.getCount() > 0) {
+						if (url == null)
+							continue;
+						AtomicInteger count = claims.putIfAbsent(url, new AtomicInteger(1));
+						if (count != null)
+							count.incrementAndGet();
+					}
+				}
+			});
+		}
+		start.countDown();
+		pool.shutdown();
+		assertTrue("Workers must finish", pool.awaitTermination(30, TimeUnit.SECONDS));
+
+		assertEquals("Every URL must be claimed", N_URLS, claims.size());
+		for (String url : urls)
+			assertEquals(url + " must be claimed exactly once", 1, claims.get(url).get());
+		assertEquals(N_URLS, frontier.visitedCount());
+		assertEquals("Queue must never hold duplicates", N_URLS, frontier.offeredCount() - frontier.duplicateCount());
+		assertNull(frontier.poll());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+public class KeywordMatcherTest {
+
+	private static List<String> hits(KeywordMatcher matcher, String... chunks) {
+		final List<String> hits = new ArrayList<String>();
+		final List<String> terms = matcher.getTerms();
+		KeywordMatcher.Scan scan = matcher.newScan((term, position) -> hits.add(terms.get(term) + "@" + position));
+		for (String chunk : chunks)
+			scan.feed(chunk);
+		scan.finish();
+		return hits;
+	}
+
+	@Test
+	public void overlappingTermsShouldAllBeFound() {
+		KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("he", "she", "his", "hers"), false, false);
+		assertEquals(Arrays.asList("she@1", "he@2", "hers@2"), hits(matcher, "ushers"));
+		assertEquals(Arrays.asList("his@0", "she@2", "he@3"), hits(matcher, "hishe"));
+	}
+
+	@Test
+	public void caseShouldBeIgnoredOnlyIfAsked() {
+		KeywordMatcher exact = new KeywordMatcher(Arrays.asList("Java"), false, false);
+		KeywordMatcher folded = new KeywordMatcher(Arrays.asList("Java", "JAVA"), true, false);
+		assertEquals(Arrays.asList("Java@10"), hits(exact, "java JAVA Java"));
+		assertEquals("Terms equal but for case are one term", 1, folded.getTerms().size());
+		assertEquals(Arrays.asList("Java@0", "Java@5", "Java@10"), hits(folded, "java JAVA Java"));
+	}
+
+	@Test
+	public void wholeWordsShouldNotMatchInsideWords() {
+		KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("log", "c++", "new  york"), true, true);
+		assertEquals(Arrays.asList("new york"), matcher.getTerms().subList(2, 3));
+		assertEquals(Arrays.asList("log@0", "log@19", "c++@24", "new york@30"),
+				hits(matcher, "log catalog logs_ (log) c++ & New York"));
+		assertEquals("A hit at the end of a chunk waits for the next chunk",
+				Arrays.asList("log@5"), hits(matcher, "log", "s log"));
+	}
+
+	@Test
+	public void chunkedScanShouldFindTheSameHitsAsNaiveSearch() {
+		Random random = new Random(42);
+		List<String> terms = new ArrayList<String>();
+		for (int i = 0; i < 300; i++)
+			terms.add(randomText(random, 1 + random.nextInt(6)));
+		String text = randomText(random, 20000);
+		KeywordMatcher matcher = new KeywordMatcher(terms, false, false);
+
+		List<String> expected = new ArrayList<String>();
+		for (String term : matcher.getTerms())
+			for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + 1))
+				expected.add(term + "@" + i);
+		List<String> found = hits(matcher, text.substring(0, 7), text.substring(7, 12000), text.substring(12000));
+		Collections.sort(expected);
+		Collections.sort(found);
+		assertEquals(expected, found);
+	}
+
+	private static String randomText(Random random, int length) {
+		char[] text = new char[length];
+		for (int i = 0; i < length; i++)
+			text[i] = "abcd ".charAt(random.nextInt(5));
+		return new String(text);
+	}
+
+	@Test
+	public void crawlShouldRecordEveryTermOnEveryPage() throws IOException {
+		try (StubHttpServer server = new StubHttpServer(31, 5, 0)) {
+			KeywordMatcher terms = new KeywordMatcher(Arrays.asList("Stub page 3", "PAGE 1", "missing"), true, true);
+			for (CrawlManager manager : Arrays.asList(new CrawlManager(),
+					new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, 4))) {
+				// Element.text() runs "Stub page 1" into the first link, "6"; the streaming text does not
+				manager.setParseMode(ParseMode.STREAMING);
+				List<WordSearchResult> results = manager.search(server.getRootUrl() + "/page/0", terms);
+				assertEquals("Whole words must not match page 30 or pages 10 to 19", 2, results.size());
+				for (WordSearchResult result : results) {
+					assertEquals(1, result.getHitCount());
+					String term = result.getCurrentUrl().endsWith("/page/3") ? "Stub page 3" : "PAGE 1";
+					assertEquals(Collections.singletonList(term.equals("PAGE 1") ? 5 : 0), result.getHits().get(term));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.PipelineStage;
+import lawnbway.jcrawler.bench.StubHttpServer;
+
+public class PipelineStageTest {
+
+	@Test
+	public void fullStageShouldBlockSubmitter() throws InterruptedException {
+		final PipelineStage stage = new PipelineStage("test", 1, 2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(4);
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			}
+		};
+		for (int i = 0; i < 3; i++)
+			stage.submit(task);	// one running, two queued
+
+		Thread submitter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stage.submit(task);
+			}
+		});
+		submitter.start();
+		submitter.join(200);
+		assertTrue("Submitter must wait while the queue is full", submitter.isAlive());
+		assertEquals(1, stage.activeCount());
+		assertEquals(3, stage.queueDepth());
+
+		release.countDown();
+		submitter.join(1000);
+		assertFalse(submitter.isAlive());
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		stage.shutdownNow();
+		assertTrue(stage.awaitTermination(1, TimeUnit.SECONDS));
+		assertEquals(4, stage.completedCount());
+		assertEquals(0, stage.queueDepth());
+		assertTrue(stage.peakQueueDepth() >= 2);
+	}
+
+	@Test
+	public void everyPageShouldGoThroughEveryStage() throws IOException {
+		int pages = 40;
+		try (StubHttpServer server = new StubHttpServer(pages, 3, 0)) {
+			CrawlManagerConcurrent manager = new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, 4);
+			manager.setPipelineSizes(1, 1, 1);
+			manager.search(server.getRootUrl() + "/page/0", "no such word");
+
+			List<PipelineStage> stages = manager.getPipelineStages();
+			assertEquals(3, stages.size());
+			for (PipelineStage stage : stages)
+				assertEquals(stage.getName(), pages, stage.completedCount());
+			assertTrue("Bounded queue must not exceed its capacity and the waiting fetchers",
+					stages.get(1).peakQueueDepth() <= 1 + 4);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.PolitenessScheduler;
+import lawnbway.jcrawler.util.CancellationToken;
+
+public class PolitenessSchedulerTest {
+
+	@Test
+	public void requestsToSameHostShouldBeSpacedOut() throws InterruptedException {
+		PolitenessScheduler scheduler = PolitenessScheduler.withMinDelay(50, 10);
+		for (int i = 0; i < 4; i++)
+			scheduler.add("http://example.com/page" + i);
+
+		long start = System.nanoTime();
+		assertEquals("http://example.com/page0", scheduler.take());
+		assertNull("Host must wait before the next request", scheduler.poll());
+		assertTrue(scheduler.nanosUntilReady() > 0);
+		for (int i = 1; i < 4; i++)
+			assertEquals("http://example.com/page" + i, scheduler.take());
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("Three delays of 50ms expected, took " + elapsedMillis + "ms", elapsedMillis >= 140);
+		assertEquals(0, scheduler.pendingCount());
+	}
+
+	@Test
+	public void cancellationShouldStopTheWaitForAHost() throws InterruptedException {
+		PolitenessScheduler scheduler = PolitenessScheduler.withMinDelay(10000, 1);
+		scheduler.add("http://example.com/a");
+		scheduler.add("http://example.com/b");
+		CancellationToken token = new CancellationToken();
+		String first = scheduler.take(token);
+		scheduler.release(first);
+
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				return;
+			}
+			token.cancel();
+		});
+		canceller.start();
+		long start = System.nanoTime();
+		assertNull("A cancelled crawl gets no more URLs", scheduler.take(token));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("The wait must end with the crawl, not after the delay of the host, took " + elapsedMillis + "ms",
+				elapsedMillis < 2000);
+		canceller.join();
+		assertEquals(1, scheduler.pendingCount());
+	}
+
+	@Test
+	public void connectionsPerHostShouldBeLimited() {
+		PolitenessScheduler scheduler = new PolitenessScheduler(0, 1, 2);
+		for (int i = 0; i < 3; i++)
+			scheduler.add("http://example.com/page" + i);
+
+		String first = scheduler.poll();
+		assertNotNull(scheduler.poll());
+		assertNull("Both connections of the host are taken", scheduler.poll());
+		assertEquals(Long.MAX_VALUE, scheduler.nanosUntilReady());
+
+		scheduler.release(first);
+		assertEquals("http://example.com/page2", scheduler.poll());
+	}
+
+	@Test
+	public void otherHostsShouldNotWaitForBusyHost() {
+		PolitenessScheduler scheduler = PolitenessScheduler.withMinDelay(10000, 1);
+		scheduler.add("http://example.com/a");
+		scheduler.add("http://example.com/b");
+		scheduler.add("http://www.example.org/a");
+
+		assertNotNull(scheduler.poll());
+		assertNotNull(scheduler.poll());
+		assertNull("Both hosts are throttled now", scheduler.poll());
+		assertEquals(1, scheduler.pendingCount());
+		assertEquals(2, scheduler.hostCount());
+	}
+
+	@Test
+	public void crawlDelayShouldLowerTheRate() {
+		PolitenessScheduler scheduler = new PolitenessScheduler(0, 1, 1);
+		scheduler.setCrawlDelay("example.com", 10);
+		scheduler.add("http://example.com/a");
+		scheduler.add("http://example.com/b");
+		scheduler.add("http://example.org/a");
+		scheduler.add("http://example.org/b");
+
+		List<String> fetched = new ArrayList<String>();
+		String url;
+		while ((url = scheduler.poll()) != null) {
+			fetched.add(url);
+			scheduler.release(url);
+		}
+		assertEquals("Only example.com must be held back by its Crawl-delay", 3, fetched.size());
+		assertFalse(fetched.contains("http://example.com/b"));
+		assertEquals(1, scheduler.pendingCount());
+		assertTrue("Next request to example.com is seconds away",
+				scheduler.nanosUntilReady() > TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	public void infiniteCrawlDelayShouldNotLiftTheRate() {
+		PolitenessScheduler scheduler = new PolitenessScheduler(1, 1, 5);
+		scheduler.setCrawlDelay("example.com", Double.POSITIVE_INFINITY);
+		scheduler.setCrawlDelay("example.com", Double.NaN);
+		for (int i = 0; i < 5; i++)
+			scheduler.add("http://example.com/" + i);
+		int handedOut = 0;
+		while (scheduler.poll() != null)
+			handedOut++;
+		assertEquals("The configured rate of 1 request per second must still apply", 1, handedOut);
+	}
+}
@@ -0,0 +1,235 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlResult;
+import lawnbway.jcrawler.FetchResponse;
+import lawnbway.jcrawler.Fetcher;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.JsoupFetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.ResponseCache;
+import lawnbway.jcrawler.SearchCrawlJob;
+import lawnbway.jcrawler.WordSearchResult;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.bench.TestSite;
+import lawnbway.jcrawler.util.KeywordMatcher;
+
+public class ResponseCacheTest {
+	private static final int PAGES = 40;
+	private static final int FANOUT = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Version of the site: page 1 gets a new link and a new word once it is 2. */
+	private volatile int version = 1;
+
+	/** Page n links to pages 3n+1 to 3n+3; every fifth page contains the word "needle". */
+	private final TestSite site = new TestSite(PAGES, FANOUT).needles(n -> n % 5 == 2).moreHtml(n -> n == 1 && version > 1
+			? "<p>Page 1 with a haystack <a href=\"/page/" + (PAGES - 1) + "\">last</a></p>" : "");
+
+	private static FetchResponse response(String url, String body, String etag) {
+		return new FetchResponse(url, 200, "text/html", body, etag, "Sat, 17 Oct 2026 10:00:00 GMT");
+	}
+
+	private static int hits(List<WordSearchResult> results) {
+		int hits = 0;
+		for (WordSearchResult result : results)
+			hits += result.getHitCount();
+		return hits;
+	}
+
+	@Test
+	public void pagesShouldBeKeptAcrossCrawls() throws IOException {
+		Path directory = folder.newFolder().toPath();
+		String url = "https://www.example.com/a";
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			assertEquals(0, cache.size());
+			cache.put(url, response(url, "<p>first</p>", "\"1\""), Arrays.asList(url + "/1", url + "/2"),
+					Arrays.asList("one", "two"), "first");
+			cache.put("HTTPS://www.Example.com:443/b#top", response(url, "<p>b</p>", null),
+					Collections.<String> emptyList(), Collections.<String> emptyList(), "b");
+		}
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			assertEquals(2, cache.size());
+			ResponseCache.Page page = cache.get(url);
+			assertEquals("\"1\"", page.getETag());
+			assertEquals("Sat, 17 Oct 2026 10:00:00 GMT", page.getLastModified());
+			assertEquals("<p>first</p>".length(), page.getBodyLength());
+			assertNotNull("Pages must be kept by normalized URL", cache.get("https://www.example.com/b"));
+			assertNull(cache.get("https://www.example.com/c"));
+
+			ResponseCache.Content content = cache.reuse(page, new FetchResponse(url, 304, null, "", null, null));
+			assertEquals(Arrays.asList(url + "/1", url + "/2"), content.getLinks());
+			assertEquals(Arrays.asList("one", "two"), content.getAnchorTexts());
+			assertEquals("first", content.getText());
+			assertEquals(1, cache.notModifiedCount());
+			assertEquals(page.getBodyLength(), cache.charactersSaved());
+
+			assertTrue(page.hasSameContent(response(url, "<p>first</p>", "\"2\"")));
+			assertFalse(page.hasSameContent(response(url, "<p>First</p>", "\"1\"")));
+			cache.reuse(page, response(url, "<p>first</p>", "\"2\""));
+			assertEquals(1, cache.unchangedCount());
+			assertEquals("New validators of an unchanged page must be kept", "\"2\"", cache.get(url).getETag());
+			assertEquals("first", cache.reuse(cache.get(url), response(url, "<p>first</p>", "\"2\"")).getText());
+		}
+	}
+
+	@Test
+	public void recordCutShortShouldBeDropped() throws IOException {
+		Path directory = folder.newFolder().toPath();
+		String url = "https://www.example.com/a";
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			cache.put(url, response(url, "a", "\"a\""), Collections.<String> emptyList(),
+					Collections.<String> emptyList(), "a");
+		}
+		Path file = directory.resolve("responses.bin");
+		long size = Files.size(file);
+		Files.write(file, new byte[] { 0, 0, 0, 40, 0, 0, 1, 0, 0, 12 }, StandardOpenOption.APPEND);
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			assertEquals(1, cache.size());
+			assertEquals("The record cut short must be truncated", size, Files.size(file));
+			cache.put(url + "/b", response(url + "/b", "b", null), Collections.<String> emptyList(),
+					Collections.<String> emptyList(), "b");
+		}
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			assertEquals(2, cache.size());
+			assertEquals("b", cache.reuse(cache.get(url + "/b"), new FetchResponse(url, 304, null, "")).getText());
+		}
+	}
+
+	@Test
+	public void outdatedCopiesShouldBeCompacted() throws IOException {
+		Path directory = folder.newFolder().toPath();
+		String url = "https://www.example.com/a";
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			text.append("word ");
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			for (int i = 0; i < 10; i++)
+				cache.put(url, response(url, "<p>" + i + "</p>", "\"" + i + "\""), Collections.<String> emptyList(),
+						Collections.<String> emptyList(), text + String.valueOf(i));
+			assertEquals(1, cache.size());
+		}
+		long size = Files.size(directory.resolve("responses.bin"));
+		assertTrue("Only the latest copy must be kept, but the cache takes " + size + " bytes", size < 2 * text.length());
+		try (ResponseCache cache = ResponseCache.open(directory)) {
+			assertEquals("\"9\"", cache.get(url).getETag());
+			assertEquals(text + "9", cache.reuse(cache.get(url), new FetchResponse(url, 304, null, "")).getText());
+		}
+	}
+
+	@Test
+	public void cacheShouldBeUsedByOneCrawlAtATime() throws IOException {
+		Path directory = folder.newFolder().toPath();
+		ResponseCache cache = ResponseCache.open(directory);
+		try {
+			ResponseCache.open(directory).close();
+			fail("The cache must be locked");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			cache.close();
+		}
+		ResponseCache.open(directory).close();
+	}
+
+	@Test
+	public void secondCrawlShouldOnlyFetchChangedPages() throws IOException {
+		TestSite.forEachManager(concurrent -> {
+			for (Fetcher fetcher : new Fetcher[] { new JsoupFetcher(), new HttpClientFetcher() }) {
+				version = 1;
+				try (StubHttpServer server = site.start(0)) {
+					CrawlConfig config = CrawlConfig.builder().parseMode(ParseMode.STREAMING)
+							.responseCache(folder.newFolder().toPath()).build();
+					KeywordMatcher terms = new KeywordMatcher(Arrays.asList("needle", "haystack"), true, false);
+					List<WordSearchResult> first = newManager(concurrent, config, fetcher)
+							.search(server.getRootUrl() + "/page/0", terms);
+					assertEquals(0, server.getNotModifiedCount());
+					long bodyBytes = server.getBodyBytes();
+
+					version = 2;
+					List<WordSearchResult> second = newManager(concurrent, config, fetcher)
+							.search(server.getRootUrl() + "/page/0", terms);
+					assertEquals("Every page but the changed one must be answered with 304",
+							PAGES - 1, server.getNotModifiedCount());
+					assertEquals(first.size() + 1, second.size());
+					assertEquals("The links and text of the cached pages must be searched", hits(first) + 1, hits(second));
+					assertTrue("Only the changed page must be downloaded",
+							server.getBodyBytes() - bodyBytes < bodyBytes / 10);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void unchangedBodyShouldNotBeParsedAgain() throws IOException {
+		try (StubHttpServer server = site.start(0)) {
+			server.setValidators(false);
+			String url = server.getRootUrl() + "/page/1";
+			try (ResponseCache cache = ResponseCache.open(folder.newFolder().toPath())) {
+				List<List<String>> links = new ArrayList<List<String>>();
+				for (int crawl = 0; crawl < 2; crawl++) {
+					SearchCrawlJob job = new SearchCrawlJob();
+					job.setResponseCache(cache);
+					job.setParseMode(ParseMode.STREAMING);
+					assertTrue(job.crawl(url).isSuccessful());
+					links.add(job.getLinks());
+				}
+				assertEquals(0, server.getNotModifiedCount());
+				assertEquals(1, cache.storedCount());
+				assertEquals("The second body must be recognized by its hash", 1, cache.unchangedCount());
+				assertEquals(links.get(0), links.get(1));
+				assertEquals(3, links.get(1).size());
+			}
+		}
+	}
+
+	@Test
+	public void notModifiedWithoutCachedCopyShouldFail() {
+		SearchCrawlJob job = new SearchCrawlJob();
+		job.setFetcher(new Fetcher() {
+			@Override
+			public FetchResponse fetch(String url, String userAgent) {
+				return new FetchResponse(url, 304, null, "");	// a server that ignores the missing validators
+			}
+
+			@Override
+			public CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent) {
+				return CompletableFuture.completedFuture(fetch(url, userAgent));
+			}
+
+			@Override
+			public boolean isNonBlocking() {
+				return false;
+			}
+		});
+		CrawlResult result = job.crawl("https://www.example.com/");
+		assertTrue("An empty body must not be parsed", result.errorOccured());
+		assertFalse(result.isSuccessful());
+		assertTrue(job.getLinks().isEmpty());
+	}
+
+	private static CrawlManager newManager(boolean concurrent, CrawlConfig config, Fetcher fetcher) {
+		CrawlManager manager = TestSite.newManager(concurrent, config);
+		manager.setFetcher(fetcher);
+		return manager;
+	}
+}
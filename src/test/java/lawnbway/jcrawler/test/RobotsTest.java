@@ -0,0 +1,262 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.AuthorityScope;
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.FetchResponse;
+import lawnbway.jcrawler.Fetcher;
+import lawnbway.jcrawler.Frontier;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.RobotsCache;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.util.RobotsRules;
+import lawnbway.jcrawler.util.RobotsUtil;
+
+public class RobotsTest {
+
+	/** Serves the robots.txt of a map by root URL, with status 404 if there is none, and counts the fetches. */
+	private static final class MapFetcher implements Fetcher {
+		final Map<String, String> robots = new ConcurrentHashMap<String, String>();
+		final Map<String, AtomicInteger> fetches = new ConcurrentHashMap<String, AtomicInteger>();
+		volatile int status = 200;
+
+		@Override
+		public FetchResponse fetch(String url, String userAgent) throws IOException {
+			String root = url.substring(0, url.length() - "/robots.txt".length());
+			fetches.computeIfAbsent(root, key -> new AtomicInteger()).incrementAndGet();
+			if (status < 0)
+				throw new IOException("Connection refused");
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			String body = robots.get(root);
+			return new FetchResponse(url, body == null ? 404 : status, "text/plain", body == null ? "" : body);
+		}
+
+		@Override
+		public CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isNonBlocking() {
+			return false;
+		}
+
+		int fetchCount(String root) {
+			AtomicInteger count = fetches.get(root);
+			return count == null ? 0 : count.get();
+		}
+	}
+
+	private static RobotsRules rules(String... lines) {
+		return RobotsUtil.parse(String.join("\n", lines), "jcrawler");
+	}
+
+	@Test
+	public void longestMatchShouldWin() {
+		RobotsRules rules = rules("User-agent: *", "Disallow: /private", "Allow: /private/public", "Allow: /page",
+				"Disallow: /page");
+		assertFalse("A Disallow rule is a prefix, not a URL", rules.isPathAllowed("/private/foo"));
+		assertFalse(rules.isPathAllowed("/private"));
+		assertFalse(rules.isPathAllowed("/privateer"));
+		assertTrue("The longer Allow rule wins", rules.isPathAllowed("/private/public/index.html"));
+		assertTrue("Allow wins a tie", rules.isPathAllowed("/page/1"));
+		assertTrue("A path no rule matches is allowed", rules.isPathAllowed("/"));
+		assertTrue(rules.isPathAllowed("/public"));
+		assertTrue("robots.txt is always allowed", rules("User-agent: *", "Disallow: /").isPathAllowed("/robots.txt"));
+		assertFalse(rules("User-agent: *", "Disallow: /").isPathAllowed("/index.html"));
+		assertTrue("An empty Disallow allows everything", rules("User-agent: *", "Disallow:").isPathAllowed("/index.html"));
+	}
+
+	@Test
+	public void wildcardsShouldMatch() {
+		RobotsRules rules = rules("User-agent: *", "Disallow: /*.pdf$", "Disallow: /*/secret/", "Disallow: /search?q=*",
+				"Disallow: /exact$", "Disallow: /docs/", "Allow: /docs/*.html$", "Disallow: /a*b*c");
+		assertFalse(rules.isPathAllowed("/files/report.pdf"));
+		assertTrue("$ anchors the end of the path", rules.isPathAllowed("/files/report.pdf?download=1"));
+		assertTrue(rules.isPathAllowed("/files/report.pdfx"));
+		assertFalse(rules.isPathAllowed("/users/secret/key"));
+		assertTrue(rules.isPathAllowed("/secret/key"));
+		assertFalse(rules.isPathAllowed("/search?q=robots"));
+		assertTrue(rules.isPathAllowed("/search"));
+		assertFalse(rules.isPathAllowed("/exact"));
+		assertTrue(rules.isPathAllowed("/exact/"));
+		assertFalse(rules.isPathAllowed("/docs/manual.txt"));
+		assertTrue("The longer Allow rule with a wildcard wins", rules.isPathAllowed("/docs/manual.html"));
+		assertFalse(rules.isPathAllowed("/axxbyyc"));
+		assertFalse(rules.isPathAllowed("/abc/d"));
+		assertTrue(rules.isPathAllowed("/axxcyyb"));
+	}
+
+	@Test
+	public void groupOfTheCrawlerShouldApply() {
+		String robotsTxt = String.join("\r\n", "# robots.txt of example.com", "user-agent: Googlebot",
+				"disallow: /google", "", "User-agent: otherbot", "User-Agent: JCrawler/1.0 # this crawler",
+				"Disallow: /jcrawler", "Crawl-delay: 2.5", "Sitemap: https://www.example.com/sitemap.xml",
+				"User-agent: *", "Disallow: /", "Crawl-delay: 10", "User-agent: jcrawler", "Disallow: /more");
+		RobotsRules own = RobotsUtil.parse(robotsTxt, "jcrawler");
+		assertFalse(own.isPathAllowed("/jcrawler/1"));
+		assertFalse("Groups of the same user agent are merged", own.isPathAllowed("/more"));
+		assertTrue("The group for all user agents does not apply", own.isPathAllowed("/google"));
+		assertEquals(2.5, own.getCrawlDelay(), 0);
+		assertEquals(2, own.ruleCount());
+
+		RobotsRules any = RobotsUtil.parse(robotsTxt, "somebot");
+		assertFalse(any.isPathAllowed("/index.html"));
+		assertEquals(10, any.getCrawlDelay(), 0);
+		assertEquals("A delay that is not a number is ignored", 0,
+				RobotsUtil.parse("User-agent: *\nCrawl-delay: NaN", "jcrawler").getCrawlDelay(), 0);
+		assertEquals("An infinite delay is ignored, rather than read as no rate limit", 0,
+				RobotsUtil.parse("User-agent: *\nCrawl-delay: 1e999\nCrawl-delay: Infinity", "jcrawler").getCrawlDelay(), 0);
+		assertEquals(RobotsUtil.MAX_CRAWL_DELAY, RobotsUtil.parse("User-agent: *\nCrawl-delay: 1e300", "jcrawler").getCrawlDelay(), 0);
+		assertTrue("No group means no rules", RobotsUtil.parse("Disallow: /", "jcrawler").isPathAllowed("/index.html"));
+	}
+
+	@Test
+	public void encodedPathsShouldMatch() {
+		RobotsRules rules = rules("User-agent: *", "Disallow: /caf%c3%a9", "Disallow: /naïve");
+		assertFalse(rules.isAllowed("https://www.example.com/café/menu"));
+		assertFalse(rules.isAllowed("https://www.example.com/caf%C3%A9"));
+		assertFalse(rules.isAllowed("https://www.example.com/na%C3%AFve"));
+		assertTrue(rules.isAllowed("https://www.example.com/cafe"));
+	}
+
+	@Test
+	public void cacheShouldFetchOncePerWebsite() throws InterruptedException {
+		MapFetcher fetcher = new MapFetcher();
+		fetcher.robots.put("https://www.example.com", "User-agent: *\nDisallow: /private\nCrawl-delay: 3");
+		fetcher.robots.put("https://www.example.org", "User-agent: *\nDisallow: /tmp");
+		final RobotsCache cache = new RobotsCache(fetcher, "jcrawler", Duration.ofHours(1));
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		final AtomicInteger disallowed = new AtomicInteger();
+		for (int i = 0; i < 400; i++) {
+			final String url = (i % 2 == 0 ? "https://www.example.com" : "https://www.example.org")
+					+ (i % 4 < 2 ? "/private/" : "/tmp/") + i;
+			pool.execute(() -> {
+				if (!cache.isAllowed(url))
+					disallowed.incrementAndGet();
+			});
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals("robots.txt must be fetched once per website", 1, fetcher.fetchCount("https://www.example.com"));
+		assertEquals(1, fetcher.fetchCount("https://www.example.org"));
+		assertEquals(200, disallowed.get());
+		assertEquals(3, cache.getCrawlDelay("https://www.example.com/"), 0);
+		assertEquals(2, cache.size());
+
+		assertTrue("A website without robots.txt may be crawled", cache.isAllowed("https://www.example.net/private"));
+		fetcher.robots.put("https://news.example.com", "User-agent: *\nDisallow: /private");
+		fetcher.robots.put("https://blog.example.com", "User-agent: *\nDisallow: /private");
+		fetcher.status = 503;
+		assertFalse("A website whose robots.txt fails may not be crawled", cache.isAllowed("https://news.example.com/"));
+		fetcher.status = -1;
+		assertFalse("A website that cannot be reached may not be crawled", cache.isAllowed("https://blog.example.com/"));
+	}
+
+	@Test
+	public void expiredRulesShouldBeFetchedAgain() throws InterruptedException {
+		MapFetcher fetcher = new MapFetcher();
+		fetcher.robots.put("https://www.example.com", "User-agent: *\nDisallow: /private");
+		RobotsCache cache = new RobotsCache(fetcher, "jcrawler", Duration.ofMillis(200));
+		assertFalse(cache.isAllowed("https://www.example.com/private"));
+		assertFalse(cache.isAllowed("https://www.example.com/private/1"));
+		assertEquals(1, fetcher.fetchCount("https://www.example.com"));
+
+		Thread.sleep(300);
+		fetcher.robots.put("https://www.example.com", "User-agent: *\nDisallow: /tmp");
+		assertTrue("Expired rules must be replaced", cache.isAllowed("https://www.example.com/private"));
+		assertEquals(2, fetcher.fetchCount("https://www.example.com"));
+
+		Thread.sleep(300);
+		fetcher.status = 500;
+		assertFalse("The previous rules are kept while robots.txt fails", cache.isAllowed("https://www.example.com/tmp"));
+		assertTrue(cache.isAllowed("https://www.example.com/private"));
+	}
+
+	@Test
+	public void linksShouldNotWaitForRobots() throws Exception {
+		final MapFetcher robots = new MapFetcher();
+		robots.robots.put("https://news.example.com", "User-agent: *\nDisallow: /private");
+		final CompletableFuture<Void> served = new CompletableFuture<Void>();
+		Fetcher fetcher = new Fetcher() {
+			@Override
+			public FetchResponse fetch(String url, String userAgent) throws IOException {
+				return robots.fetch(url, userAgent);
+			}
+
+			@Override
+			public CompletableFuture<FetchResponse> fetchAsync(String url, String userAgent) {
+				// robots.txt arrives once the test lets it
+				return served.thenApplyAsync(ignored -> {
+					try {
+						return robots.fetch(url, userAgent);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+
+			@Override
+			public boolean isNonBlocking() {
+				return true;
+			}
+		};
+		Frontier frontier = new Frontier();
+		frontier.setAuthorityScope(new AuthorityScope(Arrays.asList("https://www.example.com/"), true));
+		frontier.setRobotsCache(new RobotsCache(fetcher, "jcrawler", Duration.ofHours(1)));
+
+		assertFalse(frontier.push("https://news.example.com/1"));
+		assertFalse(frontier.push("https://news.example.com/private/2"));
+		assertFalse(frontier.push("https://news.example.com/1"));
+		assertFalse("Links outside of the scope do not fetch robots.txt", frontier.push("https://www.example.org/"));
+		assertEquals("The links wait for robots.txt", 3, frontier.awaitingRobotsCount());
+		assertEquals(0, frontier.size());
+		assertFalse(frontier.awaitRobots(50, TimeUnit.MILLISECONDS));
+
+		served.complete(null);
+		assertTrue(frontier.awaitRobots(10, TimeUnit.SECONDS));
+		while (frontier.awaitingRobotsCount() > 0)
+			frontier.awaitRobots(10, TimeUnit.SECONDS);
+		assertEquals(1, robots.fetchCount("https://news.example.com"));
+		assertEquals(1, frontier.size());
+		assertEquals("https://news.example.com/1", frontier.poll());
+		assertEquals(1, frontier.duplicateCount());
+		assertEquals(2, frontier.uncrawlableCount());
+		assertTrue("Once robots.txt is cached, the links are checked right away", frontier.push("https://news.example.com/3"));
+	}
+
+	@Test
+	public void crawlShouldSkipDisallowedLinks() throws IOException {
+		// the stub server disallows /private
+		try (StubHttpServer server = new StubHttpServer(3,
+				page -> "<html><body><a href=\"/page/" + (page + 1) + "\">next</a> <a href=\"/private/" + page
+						+ "\">private</a></body></html>", 0)) {
+			CrawlManager manager = new CrawlManager(CrawlConfig.builder().parseMode(ParseMode.STREAMING).build());
+			manager.setFetcher(new HttpClientFetcher());
+			manager.search(server.getRootUrl() + "/page/0", "no such word");
+			// pages 0 to 2, and page 3 which does not exist
+			assertEquals("robots.txt and the pages must be fetched, but no private page", 1 + 4, server.getRequestCount());
+		}
+	}
+}
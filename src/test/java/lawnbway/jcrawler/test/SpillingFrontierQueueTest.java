@@ -0,0 +1,114 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.FrontierEntry;
+import lawnbway.jcrawler.FrontierOrdering;
+import lawnbway.jcrawler.HttpClientFetcher;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.SpillingFrontierQueue;
+import lawnbway.jcrawler.bench.StubHttpServer;
+
+public class SpillingFrontierQueueTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static FrontierEntry entry(int i) {
+		return new FrontierEntry("https://www.google.com/page/" + i, i % 7, i % 3 == 0 ? null : "https://www.google.com/",
+				i / 4.0);
+	}
+
+	@Test
+	public void entriesShouldComeBackInOrderAcrossSegments() throws IOException {
+		// a head of 10 entries, write batches of 256 bytes and segments of 1 KB
+		try (SpillingFrontierQueue queue = new SpillingFrontierQueue(folder.getRoot().toPath(), 10, 1024, 256)) {
+			int pushed = 0;
+			int polled = 0;
+			for (int round = 0; round < 50; round++) {
+				for (int i = 0; i < 40; i++)
+					assertTrue(queue.offer(entry(pushed++)));
+				for (int i = 0; i < 25; i++)
+					assertEntry(polled++, queue.poll());
+				assertEquals(pushed - polled, queue.size());
+			}
+			assertTrue("Most entries must be spilled", queue.spilledCount() > pushed / 2);
+			assertTrue("Spilled entries must be written to several segments", Files.list(queue.getDirectory()).count() > 1);
+
+			while (polled < pushed)
+				assertEntry(polled++, queue.poll());
+			assertNull(queue.poll());
+			assertTrue(queue.isEmpty());
+			assertEquals("Segments must be deleted once they are read", 0, Files.list(queue.getDirectory()).count());
+		}
+	}
+
+	@Test
+	public void longUrlsShouldBeSpilled() throws IOException {
+		char[] path = new char[2000];
+		Arrays.fill(path, 'x');
+		String longUrl = "https://www.google.com/" + new String(path);
+		try (SpillingFrontierQueue queue = new SpillingFrontierQueue(folder.getRoot().toPath(), 1, 1024, 256)) {
+			queue.add(entry(0));
+			queue.add(new FrontierEntry(longUrl, 1, null, 0));
+			queue.add(entry(2));
+			assertEntry(0, queue.poll());
+			assertEquals(longUrl, queue.poll().getUrl());
+			assertEntry(2, queue.poll());
+			assertNull(queue.poll());
+		}
+	}
+
+	@Test
+	public void closeShouldDeleteTheSegments() throws IOException {
+		SpillingFrontierQueue queue = new SpillingFrontierQueue(folder.getRoot().toPath(), 1, 1024, 256);
+		for (int i = 0; i < 1000; i++)
+			queue.add(entry(i));
+		assertEntry(0, queue.poll());
+		assertEntry(1, queue.poll());
+		assertTrue(Files.exists(queue.getDirectory()));
+		queue.close();
+		assertFalse(Files.exists(queue.getDirectory()));
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void spillingFrontierShouldCrawlEveryPage() throws IOException {
+		try (StubHttpServer server = new StubHttpServer(200, 5, 0)) {
+			CrawlConfig config = CrawlConfig.builder().frontierSpill(folder.getRoot().toPath(), 3)
+					.parseMode(ParseMode.STREAMING).build();
+			for (CrawlManager manager : Arrays.asList(new CrawlManager(config), new CrawlManagerConcurrent(config))) {
+				manager.setFetcher(new HttpClientFetcher());
+				long before = server.getRequestCount();
+				manager.search(server.getRootUrl() + "/page/0", "no such word");
+				assertEquals("robots.txt and every page must be fetched", 1 + 200, server.getRequestCount() - before);
+			}
+		}
+		try {
+			CrawlConfig.builder().frontierSpill(folder.getRoot().toPath(), 3).frontierOrdering(FrontierOrdering.BFS).build();
+			fail("Only a FIFO frontier can spill");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static void assertEntry(int i, FrontierEntry actual) {
+		FrontierEntry expected = entry(i);
+		assertNotNull("Entry " + i + " is missing", actual);
+		assertEquals(expected.getUrl(), actual.getUrl());
+		assertEquals(expected.getDepth(), actual.getDepth());
+		assertEquals(expected.getParent(), actual.getParent());
+		assertEquals(expected.getScore(), actual.getScore(), 0);
+	}
+}
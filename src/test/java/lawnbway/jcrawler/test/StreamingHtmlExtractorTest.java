@@ -0,0 +1,121 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.ExecutorMode;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.SearchCrawlJob;
+import lawnbway.jcrawler.bench.HtmlFixtures;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.util.StreamingHtmlExtractor;
+
+public class StreamingHtmlExtractorTest {
+
+	private static class Collector implements StreamingHtmlExtractor.Handler {
+		final List<String> links = new ArrayList<String>();
+		final StringBuilder text = new StringBuilder();
+		final List<Integer> linkEnds = new ArrayList<Integer>();
+
+		@Override
+		public void link(String url) {
+			links.add(url);
+		}
+
+		@Override
+		public void endLink() {
+			linkEnds.add(links.size());
+		}
+
+		@Override
+		public void text(CharSequence chunk) {
+			text.append(chunk);
+		}
+	}
+
+	private static Collector extract(String html, String url) {
+		Collector collector = new Collector();
+		new StreamingHtmlExtractor().extract(html, url, collector);
+		return collector;
+	}
+
+	@Test
+	public void linksShouldMatchJsoup() {
+		String html = HtmlFixtures.generate(200000, 1);
+		Document document = Jsoup.parse(html, HtmlFixtures.DOCUMENT_URL);
+		List<String> expected = new ArrayList<String>();
+		for (Element link : document.select("a[href]"))
+			expected.add(link.absUrl("href"));
+
+		List<String> links = extract(html, HtmlFixtures.DOCUMENT_URL).links;
+		assertTrue(links.size() > 1000);
+		assertEquals(expected, links);
+	}
+
+	@Test
+	public void textShouldMatchJsoupApartFromSpacing() {
+		String html = HtmlFixtures.generate(200000, 2);
+		String expected = Jsoup.parse(html, HtmlFixtures.DOCUMENT_URL).body().text();
+		String text = extract(html, HtmlFixtures.DOCUMENT_URL).text.toString();
+		// block-level end tags separate words here, but not in Element.text()
+		assertEquals(expected.replace(" ", ""), text.replace(" ", ""));
+		assertFalse(text.contains("not a link"));
+		assertFalse(text.contains("section 0"));
+	}
+
+	@Test
+	public void baseShouldApplyToFollowingLinks() {
+		Collector collector = extract("<html><head><base href='http://cdn.example/a/'>"
+				+ "<base href='http://ignored.example/'></head><body><a href=\"b.html\">b</a>"
+				+ "<A HREF=/c>c</A><a name=anchor>no href</a><a href='?q=1&amp;lang=en&copy=2'>q</a></body></html>",
+				"http://site.example/dir/page.html");
+		assertEquals(3, collector.links.size());
+		assertEquals("http://cdn.example/a/b.html", collector.links.get(0));
+		assertEquals("http://cdn.example/c", collector.links.get(1));
+		assertEquals("http://cdn.example/a/?q=1&lang=en&copy=2", collector.links.get(2));
+	}
+
+	@Test
+	public void endOfLinksShouldBeReported() {
+		Collector collector = extract("<p><a href='/a'>first <b>link</b></a> between <A HREF='/b'>second</A>"
+				+ "<a name=anchor>no href</a></p>", "http://site.example/");
+		assertEquals(2, collector.links.size());
+		assertEquals("Every end tag of a link is reported after its text", Arrays.asList(1, 2, 2), collector.linkEnds);
+	}
+
+	@Test
+	public void scriptsStylesAndCommentsShouldBeSkipped() {
+		Collector collector = extract("<p>one<script>var s = '</p><a href=\"x\">';</SCRIPT>two</p>"
+				+ "<style>p { }</style><!-- <a href='y'>three</a> --><td>four</td><td>fi<b>ve</b> &lt;6&gt; &#55;</td>",
+				"http://site.example/");
+		assertTrue(collector.links.isEmpty());
+		assertEquals("one two four five <6> 7", collector.text.toString());
+	}
+
+	@Test
+	public void streamingCrawlShouldCollectTheSameLinks() throws IOException {
+		try (StubHttpServer server = new StubHttpServer(31, 5, 0)) {
+			SearchCrawlJob job = new SearchCrawlJob();
+			job.setParseMode(ParseMode.STREAMING);
+			assertTrue(job.crawl(server.getRootUrl() + "/page/1").isSuccessful());
+			assertEquals(5, job.getLinks().size());
+			assertEquals(server.getRootUrl() + "/page/6", job.getLinks().get(0));
+
+			long before = server.getRequestCount();
+			CrawlManagerConcurrent manager = new CrawlManagerConcurrent(ExecutorMode.FIXED_THREAD_POOL, 4);
+			manager.setParseMode(ParseMode.STREAMING);
+			manager.search(server.getRootUrl() + "/page/0", "no such word");
+			assertEquals("robots.txt and every page must be fetched once", 31 + 1, server.getRequestCount() - before);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.ConcurrentVisitedSet;
+import lawnbway.jcrawler.CrawlConfig;
+import lawnbway.jcrawler.CrawlManager;
+import lawnbway.jcrawler.CrawlManagerConcurrent;
+import lawnbway.jcrawler.FetcherType;
+import lawnbway.jcrawler.Frontier;
+import lawnbway.jcrawler.FrontierEntry;
+import lawnbway.jcrawler.FrontierOrdering;
+import lawnbway.jcrawler.ParseMode;
+import lawnbway.jcrawler.TrapDetector;
+import lawnbway.jcrawler.bench.StubHttpServer;
+import lawnbway.jcrawler.util.KeywordMatcher;
+import lawnbway.jcrawler.util.URLUtil;
+
+public class TrapDetectorTest {
+	private static final int ARTICLES = 30;
+	private static final int FANOUT = 3;
+	private static final int MAX_PAGES = 400;
+	private static final String[] WORDS = { "crawler", "frontier", "robots", "cache", "response", "page", "link",
+			"validator", "search", "term", "anchor", "depth", "host", "fetch", "parse", "queue" };
+
+	/** Pages of the trap site fetched with status 200, other than the articles. */
+	private final AtomicInteger trapPages = new AtomicInteger();
+
+	private static Frontier newFrontier(int patternBudget) {
+		// authority is global state, so only validate the URLs in this test
+		Frontier frontier = new Frontier(new ConcurrentVisitedSet(), FrontierOrdering.FIFO) {
+			@Override
+			protected boolean isCrawlable(String url) {
+				return URLUtil.isValidUrl(url);
+			}
+		};
+		frontier.setTrapDetector(new TrapDetector(patternBudget, MAX_PAGES));
+		return frontier;
+	}
+
+	/**
+	 * The articles <tt>/page/n</tt> are a tree, and the first one also links to three traps:
+	 * an empty calendar that links to the months before and after, a list whose every page
+	 * links to itself with one more filter or sort parameter, and a directory that links to
+	 * a subdirectory of the same name.
+	 */
+	private String site(String target) {
+		if (target.startsWith("/page/")) {
+			int n = Integer.parseInt(target.substring("/page/".length()));
+			if (n >= ARTICLES)
+				return null;
+			StringBuilder html = new StringBuilder("<html><body><p>Article ").append(n).append(' ');
+			long state = n * 0x9e3779b97f4a7c15L + 1;
+			for (int i = 0; i < 100; i++) {
+				state = state * 6364136223846793005L + 1442695040888963407L;
+				html.append(WORDS[(int) (state >>> 60)]).append(' ');
+			}
+			html.append("</p>");
+			for (int child = n * FANOUT + 1; child <= n * FANOUT + FANOUT && child < ARTICLES; child++)
+				html.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a> ");
+			if (n == 0)
+				html.append("<a href=\"/calendar/2026/1\">Events</a> <a href=\"/list?sort=name\">All articles</a> "
+						+ "<a href=\"/docs/\">Documentation</a>");
+			return html.append("</body></html>").toString();
+		}
+		trapPages.incrementAndGet();
+		StringBuilder html = new StringBuilder("<html><body>");
+		if (target.startsWith("/calendar/")) {
+			String[] date = target.substring("/calendar/".length()).split("/");
+			int month = Integer.parseInt(date[0]) * 12 + Integer.parseInt(date[1]) - 1;
+			html.append("<p>No events this month. Subscribe to the calendar to be told about new events.</p>")
+				.append("<a href=\"/calendar/").append((month - 1) / 12).append('/').append((month - 1) % 12 + 1)
+				.append("\">Previous</a> <a href=\"/calendar/").append((month + 1) / 12).append('/')
+				.append((month + 1) % 12 + 1).append("\">Next</a>");
+		}
+		else if (target.startsWith("/list")) {
+			html.append("<p>All the articles of the site, sorted and filtered as you like.</p>")
+				.append("<a href=\"").append(target).append("&amp;sort=date\">By date</a> <a href=\"").append(target)
+				.append("&amp;filter").append(target.length()).append("=on\">More filters</a>");
+		}
+		else if (target.startsWith("/docs/")) {
+			html.append("<p>The documentation of the crawler, with a link to its next chapter.</p>")
+				.append("<a href=\"chapter/\">Next chapter</a>");
+		}
+		else {
+			trapPages.decrementAndGet();
+			return null;
+		}
+		return html.append("</body></html>").toString();
+	}
+
+	@Test
+	public void patternShouldReplaceVariableSegments() {
+		assertEquals("https://www.example.com/calendar/*/*?", TrapDetector.patternOf("https://www.example.com/calendar/2024/05?view=week"));
+		assertEquals("https://www.example.com/", TrapDetector.patternOf("https://www.example.com/"));
+		assertEquals("http://localhost:8080/page/*", TrapDetector.patternOf("http://localhost:8080/page/12"));
+		assertEquals("https://www.example.com/item/*/reviews", TrapDetector.patternOf(
+				"https://www.example.com/item/ZGVhZGJlZWZkZWFkYmVlZmRlYWRiZWVmZGVhZGJlZWY/reviews"));
+		assertEquals("https://www.example.com/docs/chapter/", TrapDetector.patternOf("https://www.example.com/docs/chapter/"));
+	}
+
+	@Test
+	public void trapsShouldBeFoundInTheLinkAlone() {
+		assertFalse(TrapDetector.isTrap("https://www.example.com/docs/chapter/chapter/chapter/"));
+		assertTrue(TrapDetector.isTrap("https://www.example.com/docs/chapter/chapter/chapter/chapter/"));
+		assertTrue(TrapDetector.isTrap("https://www.example.com/a/b/a/b/a/b/a/b"));
+		assertFalse(TrapDetector.isTrap("https://www.example.com/list?sort=name&sort=date&sort=size"));
+		assertTrue(TrapDetector.isTrap("https://www.example.com/list?sort=name&sort=date&sort=size&sort=name"));
+		StringBuilder longUrl = new StringBuilder("https://www.example.com/search?q=");
+		while (longUrl.length() <= TrapDetector.MAX_URL_LENGTH)
+			longUrl.append("crawler+");
+		assertTrue(TrapDetector.isTrap(longUrl.toString()));
+		assertFalse(TrapDetector.isTrap("https://www.example.com/calendar/2024/05?view=week"));
+	}
+
+	@Test
+	public void patternShouldEarnItsLinks() {
+		Frontier frontier = newFrontier(5);
+		for (int month = 1; month <= 10; month++)
+			frontier.push("https://www.example.com/calendar/2026/" + month);
+		assertTrue(frontier.push("https://www.example.com/about"));
+		assertEquals("Only the budget of the pattern may be queued", 6, frontier.size());
+		assertEquals(5, frontier.trappedCount());
+		assertEquals(5, frontier.getTrapDetector().heldBackCount());
+
+		FrontierEntry first = frontier.pollEntry();
+		frontier.crawled(first, true);
+		assertEquals("A page with new content earns two links", 7, frontier.size());
+		assertEquals(2, frontier.getTrapDetector().releasedCount());
+		assertEquals("Released links are no longer trapped", 3, frontier.trappedCount());
+		assertTrue(frontier.toString().startsWith("discovered 11 link(s): queued 8, "));
+		assertFalse("Links held back are seen", frontier.push("https://www.example.com/calendar/2026/10"));
+	}
+
+	@Test
+	public void patternWithoutNewContentShouldBeDropped() {
+		Frontier frontier = newFrontier(5);
+		for (int month = 1; month <= 10; month++)
+			frontier.push("https://www.example.com/calendar/2026/" + month);
+		for (int i = 0; i < 5; i++)
+			frontier.crawled(frontier.pollEntry(), false);
+		assertEquals(1, frontier.getTrapDetector().trapPatternCount());
+		assertEquals("The links held back by a trap are dropped", 5, frontier.getTrapDetector().droppedCount());
+		assertFalse(frontier.push("https://www.example.com/calendar/2026/11"));
+		assertTrue("Other patterns are not affected", frontier.push("https://www.example.com/news/2026/11"));
+		assertEquals(1, frontier.size());
+	}
+
+	@Test
+	public void trapSiteShouldNotTakeTheBudget() throws IOException {
+		try (StubHttpServer server = new StubHttpServer(this::site, 0)) {
+			trapPages.set(0);
+			crawl(new CrawlManager(config().build()), server);
+			int wastedBefore = trapPages.get();
+			assertEquals("Without detection, the traps take the rest of the budget", MAX_PAGES - ARTICLES, wastedBefore);
+
+			for (int run = 0; run < 4; run++) {
+				boolean concurrent = run % 2 == 1;
+				trapPages.set(0);
+				CrawlConfig.Builder builder = config().trapDetection(10);
+				if (run >= 2)
+					builder.duplicateDetection(3);
+				CrawlConfig config = builder.build();
+				long requests = server.getRequestCount();
+				crawl(concurrent ? new CrawlManagerConcurrent(config) : new CrawlManager(config), server);
+				int wastedAfter = trapPages.get();
+				assertTrue(String.format("The traps took %d page(s) of the budget, and %d without detection",
+						wastedAfter, wastedBefore), wastedAfter <= 40);
+				assertEquals("robots.txt and every article must be fetched", 1 + ARTICLES + wastedAfter,
+						server.getRequestCount() - requests);
+			}
+		}
+	}
+
+	private static CrawlConfig.Builder config() {
+		return CrawlConfig.builder().maxPagesToSearch(MAX_PAGES).fetcherType(FetcherType.HTTP_CLIENT)
+				.parseMode(ParseMode.STREAMING);
+	}
+
+	private static void crawl(CrawlManager manager, StubHttpServer server) {
+		manager.search(server.getRootUrl() + "/page/0", new KeywordMatcher(Collections.singletonList("needle"), true, false));
+	}
+}
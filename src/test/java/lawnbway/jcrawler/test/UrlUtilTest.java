@@ -3,6 +3,7 @@ package lawnbway.jcrawler.test;
 import static org.junit.Assert.*;
 
 import org.junit.Test;
+import lawnbway.jcrawler.util.ParsedURL;
 import lawnbway.jcrawler.util.URLUtil;
 
 public class UrlUtilTest {
@@ -66,4 +67,46 @@ public class UrlUtilTest {
         	assertTrue("http://www.\"\".com/s/ref=nb_sb_noss?url=search-alias%3Daps&field-keywords=windows+10+OEM is an invalid URL", 
             		URLUtil.isInvalidUrl("http://www.\"\".com/s/ref=nb_sb_noss?url=search-alias%3Daps&field-keywords=windows+10+OEM")); // '"' is not allowed
         }
-}
\ No newline at end of file
+        
+        @Test
+        public void parsedUrlShouldSplitComponents() {
+        	ParsedURL url = ParsedURL.of("HTTPS://user@WWW.Example.com:8443/a/b.html?x=1&y=2#frag");
+        	assertNotNull(url);
+        	assertEquals("https", url.scheme());
+        	assertEquals("www.example.com", url.host());
+        	assertEquals("example.com", url.authority());
+        	assertEquals(8443, url.port());
+        	assertEquals("/a/b.html", url.path());
+        	assertEquals("x=1&y=2", url.query());
+        	assertEquals("frag", url.fragment());
+        	assertEquals("https://www.example.com:8443", url.root());
+        	assertTrue(url.hostEquals("www.example.com"));
+        	assertTrue(url.hostEndsWith(".example.com"));
+        	
+        	assertTrue("IPv4 hosts are valid", URLUtil.isValidUrl("http://127.0.0.1:8080/index.html"));
+        	assertTrue("localhost is valid", URLUtil.isValidUrl("http://localhost:8080/"));
+        	assertTrue("Invalid IPv4 host is invalid", URLUtil.isInvalidUrl("http://127.0.0.300/"));
+        	assertTrue("Spaces are not allowed", URLUtil.isInvalidUrl("https://www.google.com/a b"));
+        	assertTrue("Port must be numeric", URLUtil.isInvalidUrl("https://www.google.com:80a/"));
+        }
+        
+        @Test
+        public void normalizeShouldProduceCanonicalUrl() {
+        	assertEquals("Normalized URL must be returned as is", 
+        			"https://en.wikipedia.org/wiki/Main_Page", URLUtil.normalize("https://en.wikipedia.org/wiki/Main_Page"));
+        	assertEquals("Host must be lowercase, default port and fragment dropped", 
+        			"http://www.reddit.com/wiki", URLUtil.normalize("HTTP://WWW.Reddit.COM:80/wiki#top"));
+        	assertEquals("Empty path must become /", 
+        			"https://www.google.com/?q=1", URLUtil.normalize("https://www.google.com?q=1"));
+        	assertEquals("Dot segments must be resolved", 
+        			"https://www.google.com/a/c/", URLUtil.normalize("https://www.google.com/a/./b/../c/"));
+        	assertEquals("Dot segments must not climb above the root", 
+        			"https://www.google.com/x", URLUtil.normalize("https://www.google.com/../../x"));
+        	assertEquals("Non-default port must be kept", 
+        			"https://www.google.com:8443/", URLUtil.normalize("https://www.google.com:8443/"));
+        	assertEquals("Tracking parameters must be stripped and the rest sorted", 
+        			"https://www.google.com/s?a=1&q=2", 
+        			ParsedURL.of("https://www.google.com/s?utm_source=x&q=2&gclid=y&a=1").normalize(true, true));
+        	assertNull("Invalid URL can not be normalized", URLUtil.normalize("mailto:someone@example.com"));
+        }
+}
@@ -74,4 +74,23 @@ public class UserAgentManagerSingletonTest {
 					, UserAgentManagerSingleton.INSTANCE.getName(), rememberAgent);
 		}
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void userAgentShouldNotChangeInStickyMode() {
+		UserAgentManagerSingleton.INSTANCE.setSticky(true);
+		try {
+			String rememberAgent = UserAgentManagerSingleton.INSTANCE.getName();
+			for (int i = 0; i < 200; i++)
+				assertSame("In sticky mode, user agent should stay the same"
+						, rememberAgent, UserAgentManagerSingleton.INSTANCE.nextUserAgent(100));
+		} finally {
+			UserAgentManagerSingleton.INSTANCE.setSticky(false);
+		}
+	}
+	
+	@Test
+	public void allUserAgentsShouldBeLoaded() {
+		assertEquals("Every line of the file should be a user agent"
+				, agentList.size(), UserAgentManagerSingleton.INSTANCE.getUsrAgentNum());
+	}
+}
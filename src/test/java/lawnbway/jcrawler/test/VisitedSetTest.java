@@ -0,0 +1,89 @@
+package lawnbway.jcrawler.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import lawnbway.jcrawler.BloomFilteredVisitedSet;
+import lawnbway.jcrawler.ConcurrentVisitedSet;
+import lawnbway.jcrawler.FingerprintVisitedSet;
+import lawnbway.jcrawler.VisitedSet;
+import lawnbway.jcrawler.util.LongHashSet;
+
+public class VisitedSetTest {
+	private static final int N_URLS = 100000;
+
+	@Test
+	public void longHashSetShouldGrowAndKeepValues() {
+		LongHashSet set = new LongHashSet(4);
+		for (long i = 1; i <= N_URLS; i++)
+			assertTrue("New value must be added", set.add(i * 0x9E3779B97F4A7C15L));
+		for (long i = 1; i <= N_URLS; i++) {
+			assertTrue("Added value must be present", set.contains(i * 0x9E3779B97F4A7C15L));
+			assertFalse("Present value must not be added twice", set.add(i * 0x9E3779B97F4A7C15L));
+		}
+		assertFalse("0 is never present", set.contains(0));
+		assertEquals(N_URLS, set.size());
+		assertTrue("Table must stay at most half full", set.capacity() >= 2 * N_URLS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void longHashSetShouldRejectZero() {
+		new LongHashSet(4).add(0);
+	}
+
+	@Test
+	public void fingerprintSetShouldBehaveLikeStringSet() {
+		assertSameContract(new ConcurrentVisitedSet());
+		assertSameContract(new FingerprintVisitedSet(16));
+		assertSameContract(new BloomFilteredVisitedSet(N_URLS, 0.01, new FingerprintVisitedSet()));
+	}
+
+	private static void assertSameContract(VisitedSet visited) {
+		for (int i = 0; i < N_URLS; i++)
+			assertTrue("New URL must be added", visited.add("https://en.wikipedia.org/wiki/Page_" + i));
+		for (int i = 0; i < N_URLS; i++) {
+			assertTrue("Added URL must be present", visited.contains("https://en.wikipedia.org/wiki/Page_" + i));
+			assertFalse("Present URL must not be added twice", visited.add("https://en.wikipedia.org/wiki/Page_" + i));
+		}
+		assertFalse("URL that was not added must not be present", visited.contains("https://en.wikipedia.org/wiki/Main_Page"));
+		assertEquals(N_URLS, visited.size());
+	}
+
+	@Test
+	public void snapshotShouldRestoreTheSet() throws IOException {
+		assertSnapshotRestores(new ConcurrentVisitedSet(), new ConcurrentVisitedSet());
+		assertSnapshotRestores(new FingerprintVisitedSet(), new FingerprintVisitedSet());
+		assertSnapshotRestores(new BloomFilteredVisitedSet(N_URLS, 0.01, null), new BloomFilteredVisitedSet(N_URLS, 0.01, null));
+		assertSnapshotRestores(new BloomFilteredVisitedSet(N_URLS, 0.01, new FingerprintVisitedSet()),
+				new BloomFilteredVisitedSet(N_URLS, 0.01, new FingerprintVisitedSet()));
+		try {
+			assertSnapshotRestores(new BloomFilteredVisitedSet(N_URLS, 0.01, null), new BloomFilteredVisitedSet(2 * N_URLS, 0.01, null));
+			fail("A filter of another size must not be restored");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static void assertSnapshotRestores(VisitedSet visited, VisitedSet restored) throws IOException {
+		for (int i = 0; i < N_URLS; i += 2)
+			visited.add("https://en.wikipedia.org/wiki/Page_" + i);
+		VisitedSet.Snapshot snapshot = visited.snapshot();
+		int size = visited.size(); // a Bloom filter alone may count a few URLs less
+		visited.add("https://en.wikipedia.org/wiki/Main_Page");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		snapshot.writeTo(new DataOutputStream(bytes));
+		restored.restore(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		for (int i = 0; i < N_URLS; i += 2)
+			assertTrue("URL of the snapshot must be restored", restored.contains("https://en.wikipedia.org/wiki/Page_" + i));
+		assertFalse("URL added after the snapshot must not be restored", restored.contains("https://en.wikipedia.org/wiki/Main_Page"));
+		assertEquals(size, restored.size());
+	}
+}